@@ -9,6 +9,7 @@ import org.apache.maven.plugins.annotations.LifecyclePhase;
 import org.apache.maven.plugins.annotations.Mojo;
 import org.apache.maven.plugins.annotations.Parameter;
 import org.apache.maven.project.MavenProject;
+import org.apache.maven.project.MavenProjectHelper;
 import org.apache.maven.reporting.AbstractMavenReport;
 import org.apache.maven.reporting.MavenReportException;
 
@@ -67,6 +68,12 @@ public class SchemaSpyReport extends AbstractMavenReport {
     @Parameter(defaultValue = "${project}", readonly = true, required = true)
     private MavenProject project;
 
+    /**
+     * Used to attach the archive (if any) to the project.
+     */
+    @Component
+    private MavenProjectHelper projectHelper;
+
 
     /**
      * The name of the database being analysed.
@@ -303,6 +310,76 @@ public class SchemaSpyReport extends AbstractMavenReport {
     @Parameter(defaultValue ="true")
     private Boolean noLogo;
 
+    /**
+     * Write the report into this zip (or jar) archive rather than into the
+     * output directory. The archive is attached to the project with the
+     * "schemaspy" classifier so it can be installed and deployed along with
+     * the project's other artifacts.
+     */
+    @Parameter
+    private File archive;
+
+    /**
+     * Maximum number of schemas to analyze concurrently when evaluating
+     * multiple schemas - defaults to the number of available processors.
+     */
+    @Parameter
+    private String schemaThreads;
+
+    /**
+     * Analyze each of multiple schemas in a JVM of its own rather than
+     * concurrently within a single JVM. Can't be combined with archive.
+     */
+    @Parameter
+    private Boolean forkSchemas;
+
+    /**
+     * Arguments for the JVMs that schemas are analyzed by when forkSchemas
+     * is specified, for example "-Xmx1g".
+     */
+    @Parameter
+    private String jvmArgs;
+
+    /**
+     * Read the tables and columns of all of the schemas being evaluated in a
+     * couple of queries rather than querying each schema separately.
+     */
+    @Parameter
+    private Boolean harvestCatalog;
+
+    /**
+     * Also write a gzipped copy of each page that web servers can serve as is.
+     */
+    @Parameter
+    private Boolean gzipOutput;
+
+    /**
+     * Keep the uncompressed pages when gzipOutput is specified.
+     */
+    @Parameter
+    private Boolean keepUncompressed;
+
+    /**
+     * Only regenerate the pages of tables that have changed since the
+     * previous report was generated into the same output directory.
+     */
+    @Parameter
+    private Boolean incremental;
+
+    /**
+     * Write the generated files on this many threads of their own, which helps
+     * when the output directory is on slow storage - defaults to 0.
+     */
+    @Parameter
+    private String writeThreads;
+
+    /**
+     * Names of additional anomaly rule classes, separated by commas.
+     * The classes are loaded from pathToDrivers as well as the plugin's classpath.
+     */
+    @Parameter
+    private String anomalyRules;
+
     /**
      * Whether to create the report only on the execution root of a multi-module project.
      *
@@ -445,6 +522,17 @@ public class SchemaSpyReport extends AbstractMavenReport {
         addFlagToArguments(argList, "-cid", commentsInitiallyDisplayed);
         addFlagToArguments(argList, "-noads", noAds);
         addFlagToArguments(argList, "-nologo", noLogo);
+        if (archive != null)
+            addToArguments(argList, "-archive", archive.getAbsolutePath());
+        addToArguments(argList, "-schemathreads", schemaThreads);
+        addFlagToArguments(argList, "-forkschemas", forkSchemas);
+        addToArguments(argList, "-jvmargs", jvmArgs);
+        addFlagToArguments(argList, "-harvestcatalog", harvestCatalog);
+        addFlagToArguments(argList, "-gzipoutput", gzipOutput);
+        addFlagToArguments(argList, "-keepuncompressed", keepUncompressed);
+        addFlagToArguments(argList, "-incremental", incremental);
+        addToArguments(argList, "-writethreads", writeThreads);
+        addToArguments(argList, "-anomalyRules", anomalyRules);
         /*
         addToArguments(argList, "-jdbcUrl", jdbcUrl);
         */
@@ -459,6 +547,11 @@ public class SchemaSpyReport extends AbstractMavenReport {
         } catch (Exception e) {
             throw new MavenReportException(e.getMessage(), e);
         }
+
+        if (archive != null && archive.isFile() && projectHelper != null) {
+            String type = archive.getName().endsWith(".jar") ? "jar" : "zip";
+            projectHelper.attachArtifact(project, type, "schemaspy", archive);
+        }
     }
 
     @Override
@@ -29,7 +29,9 @@ import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
 import java.net.URISyntaxException;
+import java.net.MalformedURLException;
 import java.net.URL;
+import java.net.URLClassLoader;
 import java.net.URLDecoder;
 import java.sql.DatabaseMetaData;
 import java.util.ArrayList;
@@ -51,9 +53,14 @@ import java.util.jar.JarInputStream;
 import java.util.logging.Level;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
+import net.sourceforge.schemaspy.anomaly.AnomalyRule;
 import net.sourceforge.schemaspy.model.InvalidConfigurationException;
 import net.sourceforge.schemaspy.util.DbSpecificConfig;
 import net.sourceforge.schemaspy.util.Dot;
+import net.sourceforge.schemaspy.util.FileOutputSink;
+import net.sourceforge.schemaspy.util.OutputSink;
+import net.sourceforge.schemaspy.util.WriteBehindOutputSink;
+import net.sourceforge.schemaspy.util.ZipOutputSink;
 import net.sourceforge.schemaspy.view.DefaultSqlFormatter;
 import net.sourceforge.schemaspy.view.SqlFormatter;
 
@@ -65,6 +72,7 @@ import net.sourceforge.schemaspy.view.SqlFormatter;
 public class Config
 {
     private static Config instance;
+    private static final ThreadLocal<Config> threadInstance = new InheritableThreadLocal<Config>();
     private final List<String> options;
     private Map<String, String> dbSpecificOptions;
     private Map<String, String> originalDbSpecificOptions;
@@ -92,6 +100,7 @@ public class Config
     private String userConnectionPropertiesFile;
     private Properties userConnectionProperties;
     private Integer maxDbThreads;
+    private Integer maxSchemaThreads;
     private Integer maxDetailedTables;
     private String driverPath;
     private String css;
@@ -103,6 +112,8 @@ public class Config
     private Level logLevel;
     private SqlFormatter sqlFormatter;
     private String sqlFormatterClass;
+    private List<AnomalyRule<?>> anomalyRules;
+    private String anomalyRuleClasses;
     private Boolean generateHtml;
     private Boolean includeImpliedConstraints;
     private Boolean logoEnabled;
@@ -112,7 +123,18 @@ public class Config
     private Boolean viewsEnabled;
     private Boolean meterEnabled;
     private Boolean railsEnabled;
+    private Boolean xmlCompressionEnabled;
+    private Boolean outputCompressionEnabled;
+    private Boolean uncompressedOutputKept;
+    private Boolean incrementalEnabled;
     private Boolean evaluteAll;
+    private Boolean oneOfMultipleSchemas;
+    private Boolean forkSchemasEnabled;
+    private String jvmArgs;
+    private String outputArchive;
+    private OutputSink outputSink;
+    private Integer writeThreads;
+    private Boolean catalogHarvestEnabled;
     private Boolean highQuality;
     private Boolean lowQuality;
     private Boolean adsEnabled;
@@ -140,8 +162,21 @@ public class Config
      */
     public Config(String[] argv)
     {
+        this(Arrays.asList(argv));
         setInstance(this);
-        options = fixupArgs(Arrays.asList(argv));
+    }
+
+    /**
+     * Construct the configuration of one of several schemas that are being
+     * analyzed by this JVM.  Unlike {@link #Config(String[])} the global
+     * instance isn't replaced; use {@link #setThreadInstance(Config)} to make
+     * it visible to the thread that's doing the analysis.
+     *
+     * @param argv
+     */
+    Config(List<String> argv)
+    {
+        options = fixupArgs(argv);
 
         helpRequired =  options.remove("-?") ||
                         options.remove("/?") ||
@@ -153,6 +188,10 @@ public class Config
     }
 
     public static Config getInstance() {
+        Config config = threadInstance.get();
+        if (config != null)
+            return config;
+
         if (instance == null)
             instance = new Config();
 
@@ -170,6 +209,22 @@ public class Config
         instance = config;
     }
 
+    /**
+     * Sets the instance returned by {@link #getInstance()} to the current
+     * thread and any threads that it subsequently starts, overriding the
+     * global instance.  This lets multiple schemas be analyzed concurrently
+     * within the same JVM.
+     *
+     * @param config the thread's configuration or <code>null</code> to
+     *      revert to the global instance
+     */
+    public static void setThreadInstance(Config config) {
+        if (config == null)
+            threadInstance.remove();
+        else
+            threadInstance.set(config);
+    }
+
     public void setHtmlGenerationEnabled(boolean generateHtml) {
         this.generateHtml = generateHtml;
     }
@@ -211,6 +266,81 @@ public class Config
         return outputDir;
     }
 
+    /**
+     * Write everything into the specified zip (or jar) archive rather than
+     * into the output directory.  Paths within the archive are relative
+     * to the output directory, which isn't created.
+     *
+     * @param archive
+     */
+    public void setOutputArchive(String archive) {
+        outputArchive = archive;
+    }
+
+    /**
+     * @see #setOutputArchive(String)
+     */
+    public String getOutputArchive() {
+        if (outputArchive == null)
+            outputArchive = pullParam("-archive");
+        return outputArchive;
+    }
+
+    /**
+     * Share the specified sink, e.g. between the schemas of a multi-schema run
+     *
+     * @param outputSink
+     */
+    public void setOutputSink(OutputSink outputSink) {
+        this.outputSink = outputSink;
+    }
+
+    /**
+     * Returns where the generated files are written:
+     * the output directory or, if specified, an {@link #getOutputArchive() archive}
+     *
+     * @return
+     */
+    public OutputSink getOutputSink() {
+        if (outputSink == null) {
+            if (getOutputArchive() != null)
+                outputSink = new ZipOutputSink(getOutputDir(), new File(getOutputArchive()));
+            else if (getWriteThreads() > 0)
+                outputSink = new WriteBehindOutputSink(getWriteThreads(), 4 * getWriteThreads());
+            else
+                outputSink = new FileOutputSink();
+        }
+        return outputSink;
+    }
+
+    /**
+     * Write the generated files on this many threads of their own so rendering
+     * doesn't have to wait for the files to hit the disk, which helps when the
+     * output directory is on slow (e.g. network) storage.
+     * Defaults to 0, meaning that files are written by the threads that render them.
+     *
+     * @param writeThreads
+     */
+    public void setWriteThreads(int writeThreads) {
+        this.writeThreads = Integer.valueOf(writeThreads);
+    }
+
+    /**
+     * @see #setWriteThreads(int)
+     */
+    public int getWriteThreads() {
+        if (writeThreads == null) {
+            int threads = 0;
+            String param = pullParam("-writethreads");
+            if (param != null)
+                threads = Math.max(Integer.parseInt(param), 0);
+
+            writeThreads = Integer.valueOf(threads);
+        }
+
+        return writeThreads.intValue();
+    }
+
     /**
      * Set the path to Graphviz so we can find dot to generate ER diagrams
      *
@@ -696,6 +826,38 @@ public class Config
         return maxDbThreads.intValue();
     }
 
+    /**
+     * Maximum number of schemas to analyze concurrently when evaluating
+     * multiple schemas (<code>-all</code> or <code>-schemas</code>).
+     *
+     * @param maxSchemaThreads
+     */
+    public void setMaxSchemaThreads(int maxSchemaThreads) {
+        this.maxSchemaThreads = Integer.valueOf(maxSchemaThreads);
+    }
+
+    /**
+     * Defaults to the number of available processors.
+     *
+     * @see #setMaxSchemaThreads(int)
+     */
+    public int getMaxSchemaThreads() {
+        if (maxSchemaThreads == null) {
+            int max = Runtime.getRuntime().availableProcessors();
+            String threads = pullParam("-schemaThreads");
+            if (threads == null)
+                threads = pullParam("-schemathreads");
+            if (threads != null)
+                max = Integer.parseInt(threads);
+            if (max < 1)
+                max = 1;
+
+            maxSchemaThreads = Integer.valueOf(max);
+        }
+
+        return maxSchemaThreads.intValue();
+    }
+
     public boolean isLogoEnabled() {
         if (logoEnabled == null)
             logoEnabled = !options.remove("-nologo");
@@ -749,6 +911,98 @@ public class Config
         return railsEnabled;
     }
 
+    /**
+     * If enabled the XML representation of the schema is written gzipped
+     * (to <code>&lt;name&gt;.xml.gz</code>) rather than as plain text.<p/>
+     *
+     * Defaults to <code>false</code> (disabled).
+     *
+     * @param enabled
+     */
+    public void setXmlCompressionEnabled(boolean enabled) {
+        xmlCompressionEnabled = enabled;
+    }
+
+    /**
+     * @see #setXmlCompressionEnabled(boolean)
+     * @return
+     */
+    public boolean isXmlCompressionEnabled() {
+        if (xmlCompressionEnabled == null)
+            xmlCompressionEnabled = options.remove("-gzipxml");
+
+        return xmlCompressionEnabled;
+    }
+
+    /**
+     * Write the HTML pages and style sheet (and any SVG diagrams) as
+     * gzip-compressed <code>.gz</code> files that web servers can serve as-is.
+     * Defaults to <code>false</code> (disabled).
+     *
+     * @param enabled
+     * @see #setUncompressedOutputKept(boolean)
+     */
+    public void setOutputCompressionEnabled(boolean enabled) {
+        outputCompressionEnabled = enabled;
+    }
+
+    /**
+     * @see #setOutputCompressionEnabled(boolean)
+     * @return
+     */
+    public boolean isOutputCompressionEnabled() {
+        if (outputCompressionEnabled == null)
+            outputCompressionEnabled = options.remove("-gzipoutput");
+
+        return outputCompressionEnabled;
+    }
+
+    /**
+     * When {@link #isOutputCompressionEnabled() compressing output} also write
+     * the uncompressed files.
+     * Defaults to <code>false</code> (only the compressed files are written).
+     *
+     * @param kept
+     */
+    public void setUncompressedOutputKept(boolean kept) {
+        uncompressedOutputKept = kept;
+    }
+
+    /**
+     * @see #setUncompressedOutputKept(boolean)
+     * @return
+     */
+    public boolean isUncompressedOutputKept() {
+        if (uncompressedOutputKept == null)
+            uncompressedOutputKept = options.remove("-keepuncompressed");
+
+        return uncompressedOutputKept;
+    }
+
+    /**
+     * Only regenerate the pages and diagrams of tables whose details
+     * (or those of their relatives) have changed since the previous run
+     * into the same output directory, as recorded in its manifest.
+     * Files of tables that no longer exist are removed.
+     * Defaults to <code>false</code> (everything is regenerated).
+     *
+     * @param enabled
+     */
+    public void setIncrementalEnabled(boolean enabled) {
+        incrementalEnabled = enabled;
+    }
+
+    /**
+     * @see #setIncrementalEnabled(boolean)
+     * @return
+     */
+    public boolean isIncrementalEnabled() {
+        if (incrementalEnabled == null)
+            incrementalEnabled = options.remove("-incremental");
+
+        return incrementalEnabled;
+    }
+
     /**
      * Allow Html In Comments - encode them unless otherwise specified
      */
@@ -958,6 +1212,75 @@ public class Config
         return schemas;
     }
 
+    /**
+     * Set the (comma separated) names of additional {@link AnomalyRule anomaly rule}
+     * classes to evaluate.<p/>
+     * The implementations must be made available to the class
+     * loader, typically by specifying the path to their jar with <em>-dp</em>
+     * ({@link #setDriverPath(String)}).
+     */
+    public void setAnomalyRules(String ruleClassNames) {
+        anomalyRuleClasses = ruleClassNames;
+        anomalyRules = null;
+    }
+
+    /**
+     * Returns the user-specified {@link AnomalyRule anomaly rules} that are evaluated
+     * in addition to the built-in ones.
+     *
+     * @return
+     * @throws InvalidConfigurationException if unable to instantiate any of the rules
+     */
+    public List<AnomalyRule<?>> getAnomalyRules() throws InvalidConfigurationException {
+        if (anomalyRules == null) {
+            if (anomalyRuleClasses == null)
+                anomalyRuleClasses = pullParam("-anomalyRules");
+
+            anomalyRules = new ArrayList<AnomalyRule<?>>();
+            if (anomalyRuleClasses != null) {
+                ClassLoader loader = null;
+                for (String ruleClass : anomalyRuleClasses.split("[ ,\"]")) {
+                    if (ruleClass.length() == 0)
+                        continue;
+
+                    try {
+                        if (loader == null)
+                            loader = getDriverPathClassLoader();
+                        anomalyRules.add((AnomalyRule<?>)Class.forName(ruleClass, true, loader).getDeclaredConstructor().newInstance());
+                    } catch (Exception exc) {
+                        throw new InvalidConfigurationException("Failed to initialize instance of anomaly rule " + ruleClass + ": ", exc)
+                                    .setParamName("-anomalyRules");
+                    }
+                }
+            }
+        }
+
+        return anomalyRules;
+    }
+
+    /**
+     * Returns a class loader that loads classes from the <em>-dp</em> path
+     * ({@link #setDriverPath(String)}) as well as from SchemaSpy's class path
+     *
+     * @return
+     * @throws MalformedURLException
+     */
+    private ClassLoader getDriverPathClassLoader() throws MalformedURLException {
+        ClassLoader parent = getClass().getClassLoader();
+        if (getDriverPath() == null)
+            return parent;
+
+        List<URL> classpath = new ArrayList<URL>();
+        StringTokenizer tokenizer = new StringTokenizer(getDriverPath(), File.pathSeparator);
+        while (tokenizer.hasMoreTokens()) {
+            File pathElement = new File(tokenizer.nextToken());
+            if (pathElement.exists())
+                classpath.add(pathElement.toURI().toURL());
+        }
+
+        return new URLClassLoader(classpath.toArray(new URL[classpath.size()]), parent);
+    }
+
     /**
      * Set the name of the {@link SqlFormatter SQL formatter} class to use to
      * format SQL into HTML.<p/>
@@ -1027,7 +1350,83 @@ public class Config
      */
     public boolean isOneOfMultipleSchemas() {
         // set by MultipleSchemaAnalyzer
-        return Boolean.getBoolean("oneofmultipleschemas");
+        if (oneOfMultipleSchemas == null)
+            oneOfMultipleSchemas = Boolean.getBoolean("oneofmultipleschemas");
+        return oneOfMultipleSchemas;
+    }
+
+    /**
+     * @see #isOneOfMultipleSchemas()
+     */
+    public void setOneOfMultipleSchemas(boolean oneOfMultipleSchemas) {
+        this.oneOfMultipleSchemas = oneOfMultipleSchemas;
+    }
+
+    /**
+     * When evaluating multiple schemas analyze each of them in its own JVM
+     * rather than within this one.
+     * Useful for drivers that don't tolerate concurrent use.
+     *
+     * @param enabled
+     */
+    public void setForkSchemasEnabled(boolean enabled) {
+        forkSchemasEnabled = enabled;
+    }
+
+    /**
+     * @see #setForkSchemasEnabled(boolean)
+     */
+    public boolean isForkSchemasEnabled() {
+        if (forkSchemasEnabled == null)
+            forkSchemasEnabled = options.remove("-forkschemas");
+        return forkSchemasEnabled;
+    }
+
+    /**
+     * When evaluating multiple schemas within this JVM retrieve the tables and
+     * columns of all of them with a single catalog-wide query each rather than
+     * per schema/table.
+     * Has no effect when {@link #isForkSchemasEnabled() forking}.
+     *
+     * @param enabled
+     */
+    public void setCatalogHarvestEnabled(boolean enabled) {
+        catalogHarvestEnabled = enabled;
+    }
+
+    /**
+     * @see #setCatalogHarvestEnabled(boolean)
+     */
+    public boolean isCatalogHarvestEnabled() {
+        if (catalogHarvestEnabled == null)
+            catalogHarvestEnabled = options.remove("-harvestcatalog");
+        return catalogHarvestEnabled;
+    }
+
+    /**
+     * Additional (space separated) arguments, such as the heap size, to pass
+     * to the JVMs that analyze individual schemas when
+     * {@link #isForkSchemasEnabled() forking}.
+     * Heap and stack sizes that this JVM was started with are passed along regardless.<p/>
+     *
+     * Equals signs within arguments must be escaped (<code>\=</code>) on the command line.
+     *
+     * @param jvmArgs
+     */
+    public void setJvmArgs(String jvmArgs) {
+        this.jvmArgs = jvmArgs;
+    }
+
+    /**
+     * @see #setJvmArgs(String)
+     */
+    public String getJvmArgs() {
+        if (jvmArgs == null) {
+            jvmArgs = pullParam("-jvmargs");
+            if (jvmArgs != null)
+                jvmArgs = jvmArgs.replace(ESCAPED_EQUALS, "=");
+        }
+        return jvmArgs;
     }
 
     /**
@@ -1639,6 +2038,18 @@ public class Config
             params.add("-rankdirbug");
         if (isRailsEnabled())
             params.add("-rails");
+        if (isXmlCompressionEnabled())
+            params.add("-gzipxml");
+        if (isOutputCompressionEnabled())
+            params.add("-gzipoutput");
+        if (isUncompressedOutputKept())
+            params.add("-keepuncompressed");
+        if (isIncrementalEnabled())
+            params.add("-incremental");
+        if (isForkSchemasEnabled())
+            params.add("-forkschemas");
+        if (isCatalogHarvestEnabled())
+            params.add("-harvestcatalog");
         if (isSingleSignOn())
             params.add("-sso");
         if (!isAdsEnabled())
@@ -1727,6 +2138,11 @@ public class Config
             params.add("-meta");
             params.add(value);
         }
+        value = getJvmArgs();
+        if (value != null) {
+            params.add("-jvmargs");
+            params.add(value.replace("=", ESCAPED_EQUALS));
+        }
         if (getGraphvizDir() != null) {
             params.add("-gv");
             params.add(getGraphvizDir().toString());
@@ -1735,6 +2151,16 @@ public class Config
         params.add(getLogLevel().toString().toLowerCase());
         params.add("-sqlFormatter");
         params.add(getSqlFormatter().getClass().getName());
+        if (!getAnomalyRules().isEmpty()) {
+            StringBuilder rules = new StringBuilder();
+            for (AnomalyRule<?> rule : getAnomalyRules()) {
+                if (rules.length() > 0)
+                    rules.append(',');
+                rules.append(rule.getClass().getName());
+            }
+            params.add("-anomalyRules");
+            params.add(rules.toString());
+        }
         params.add("-i");
         params.add(getTableInclusions().pattern());
         params.add("-I");
@@ -1745,10 +2171,92 @@ public class Config
         params.add(getIndirectColumnExclusions().pattern());
         params.add("-dbthreads");
         params.add(String.valueOf(getMaxDbThreads()));
+        params.add("-schemathreads");
+        params.add(String.valueOf(getMaxSchemaThreads()));
         params.add("-maxdet");
         params.add(String.valueOf(getMaxDetailedTables()));
         params.add("-o");
         params.add(getOutputDir().toString());
+        value = getOutputArchive();
+        if (value != null) {
+            params.add("-archive");
+            params.add(value);
+        }
+        if (getWriteThreads() > 0) {
+            params.add("-writethreads");
+            params.add(String.valueOf(getWriteThreads()));
+        }
+
+        return params;
+    }
+
+    /**
+     * Return the subset of {@link #asList()} that affects the content of the
+     * generated pages and diagrams.  Options that only affect how the database
+     * is connected to (including credentials), how the work is spread across
+     * threads or what's logged are left out so they can be changed
+     * without everything having to be regenerated.
+     *
+     * @return
+     */
+    public List<String> getRenderingOptions() {
+        List<String> params = new ArrayList<String>();
+
+        if (isEncodeCommentsEnabled())
+            params.add("-ahic");
+        if (!isImpliedConstraintsEnabled())
+            params.add("-noimplied");
+        if (!isLogoEnabled())
+            params.add("-nologo");
+        if (isMeterEnabled())
+            params.add("-meter");
+        if (!isNumRowsEnabled())
+            params.add("-norows");
+        if (!isViewsEnabled())
+            params.add("-noviews");
+        if (isRankDirBugEnabled())
+            params.add("-rankdirbug");
+        if (isRailsEnabled())
+            params.add("-rails");
+        if (isOutputCompressionEnabled())
+            params.add("-gzipoutput");
+        if (isUncompressedOutputKept())
+            params.add("-keepuncompressed");
+        if (!isAdsEnabled())
+            params.add("-noads");
+
+        params.add("-css");
+        params.add(getCss());
+        params.add("-charset");
+        params.add(getCharset());
+        params.add("-font");
+        params.add(getFont());
+        params.add("-fontsize");
+        params.add(String.valueOf(getFontSize()));
+        params.add("-renderer");  // instead of -hq and/or -lq
+        params.add(getRenderer());
+        String value = getDescription();
+        if (value != null) {
+            params.add("-desc");
+            params.add(value);
+        }
+        value = getMeta();
+        if (value != null) {
+            params.add("-meta");
+            params.add(value);
+        }
+        params.add("-sqlFormatter");
+        params.add(getSqlFormatter().getClass().getName());
+        params.add("-i");
+        params.add(getTableInclusions().pattern());
+        params.add("-I");
+        params.add(getTableExclusions().pattern());
+        params.add("-x");
+        params.add(getColumnExclusions().pattern());
+        params.add("-X");
+        params.add(getIndirectColumnExclusions().pattern());
+        params.add("-maxdet");
+        params.add(String.valueOf(getMaxDetailedTables()));
 
         return params;
     }
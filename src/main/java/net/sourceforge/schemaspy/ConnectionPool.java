@@ -0,0 +1,71 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Connections that are idle between the analysis of one schema and the next.
+ * Lets schemas that are analyzed within the same JVM reuse connections
+ * rather than each of them establishing its own.
+ *
+ * @author John Currier
+ */
+class ConnectionPool {
+    private final Queue<Connection> idle = new ConcurrentLinkedQueue<Connection>();
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * Take an idle connection out of the pool
+     *
+     * @return an idle connection or <code>null</code> if there aren't any
+     */
+    public Connection take() {
+        return idle.poll();
+    }
+
+    /**
+     * Return a connection that's no longer in use to the pool
+     *
+     * @param connection
+     */
+    public void release(Connection connection) {
+        if (connection != null)
+            idle.add(connection);
+    }
+
+    /**
+     * Close all of the idle connections
+     */
+    public void close() {
+        Connection connection;
+        while ((connection = idle.poll()) != null) {
+            try {
+                connection.close();
+            } catch (SQLException exc) {
+                logger.log(Level.FINE, "Failed to close connection", exc);
+            }
+        }
+    }
+}
@@ -19,6 +19,7 @@
 package net.sourceforge.schemaspy;
 
 import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
@@ -27,53 +28,90 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
+import net.sourceforge.schemaspy.anomaly.AnomalyAnalyzer;
+import net.sourceforge.schemaspy.anomaly.DefaultNullStringColumnsRule;
+import net.sourceforge.schemaspy.anomaly.IncrementingColumnNamesRule;
+import net.sourceforge.schemaspy.anomaly.SingleColumnTablesRule;
+import net.sourceforge.schemaspy.anomaly.TablesWithoutIndexesRule;
+import net.sourceforge.schemaspy.anomaly.UniqueNullableColumnsRule;
 import net.sourceforge.schemaspy.model.ForeignKeyConstraint;
 import net.sourceforge.schemaspy.model.ImpliedForeignKeyConstraint;
 import net.sourceforge.schemaspy.model.RailsForeignKeyConstraint;
+import net.sourceforge.schemaspy.model.RelationshipGraph;
 import net.sourceforge.schemaspy.model.Table;
 import net.sourceforge.schemaspy.model.TableColumn;
 import net.sourceforge.schemaspy.model.TableIndex;
 import net.sourceforge.schemaspy.util.Inflection;
 
 public class DbAnalyzer {
+    /**
+     * Returns the constraints implied by columns whose name, type and length
+     * match the primary key of another table.
+     * Composite primary keys are matched when another table contains
+     * all of the key's columns (by name, type and length) unless more than
+     * one table has the same composite key, in which case it's ambiguous.
+     * A column is only ever given one implied parent, with single-column
+     * keys taking precedence over composite ones.<p>
+     *
+     * A side-effect of calling this method is that the returned collection of
+     * constraints will be "tied into" the associated tables.
+     *
+     * @param tables
+     * @return
+     */
     public static List<ImpliedForeignKeyConstraint> getImpliedConstraints(Collection<Table> tables) {
-        List<TableColumn> columnsWithoutParents = new ArrayList<TableColumn>();
-        Map<TableColumn, Table> allPrimaries = new TreeMap<TableColumn, Table>(new Comparator<TableColumn>() {
-            public int compare(TableColumn column1, TableColumn column2) {
-                int rc = column1.getName().compareToIgnoreCase(column2.getName());
-                if (rc == 0)
-                    rc = column1.getType().compareToIgnoreCase(column2.getType());
-                if (rc == 0)
-                    rc = column1.getLength() - column2.getLength();
-                return rc;
-            }
-        });
-
+        final Map<ImpliedKey, TableColumn> allPrimaries = new HashMap<ImpliedKey, TableColumn>();
+        final Map<ImpliedKey, List<CompositeKey>> compositePrimaries = new HashMap<ImpliedKey, List<CompositeKey>>();
+        Map<List<ImpliedKey>, CompositeKey> distinctComposites = new HashMap<List<ImpliedKey>, CompositeKey>();
+        Set<List<ImpliedKey>> ambiguousComposites = new HashSet<List<ImpliedKey>>();
+        int numComposites = 0;
         int duplicatePrimaries = 0;
 
-        // gather all the primary key columns and columns without parents
+        // gather all the primary key columns
         for (Table table : tables) {
             List<TableColumn> tablePrimaries = table.getPrimaryColumns();
-            if (tablePrimaries.size() == 1) { // can't match up multiples...yet...
-                for (TableColumn primary : tablePrimaries) {
-                    if (primary.allowsImpliedChildren() &&
-                        allPrimaries.put(primary, table) != null)
-                        ++duplicatePrimaries;
+            if (tablePrimaries.size() == 1) {
+                TableColumn primary = tablePrimaries.get(0);
+                if (primary.allowsImpliedChildren() &&
+                    allPrimaries.put(new ImpliedKey(primary), primary) != null)
+                    ++duplicatePrimaries;
+            } else if (tablePrimaries.size() > 1) {
+                CompositeKey composite = CompositeKey.create(table, tablePrimaries);
+                if (composite != null) {
+                    if (distinctComposites.put(composite.keys, composite) != null)
+                        ambiguousComposites.add(composite.keys);
+                    ++numComposites;
                 }
             }
+        }
 
-            for (TableColumn column : table.getColumns()) {
-                if (!column.isForeignKey() && column.allowsImpliedParents())
-                    columnsWithoutParents.add(column);
+        // index the composite keys that identify a single table by their anchor
+        for (CompositeKey composite : distinctComposites.values()) {
+            if (!ambiguousComposites.contains(composite.keys)) {
+                List<CompositeKey> anchored = compositePrimaries.get(composite.anchor);
+                if (anchored == null) {
+                    anchored = new ArrayList<CompositeKey>(1);
+                    compositePrimaries.put(composite.anchor, anchored);
+                }
+                anchored.add(composite);
             }
         }
 
@@ -83,24 +121,303 @@ public class DbAnalyzer {
         if (duplicatePrimaries > allPrimaries.size()) // bizarre logic, but it does approximately what we need
             return new ArrayList<ImpliedForeignKeyConstraint>();
 
-        sortColumnsByTable(columnsWithoutParents);
+        // same idea for composite keys (e.g. they're all keyed by 'TENANT_ID' + 'ID')
+        if (numComposites - distinctComposites.size() > distinctComposites.size())
+            compositePrimaries.clear();
+
+        // find the potential relationships in parallel...
+        List<Table> childTables = sortTablesByName(new ArrayList<Table>(tables));
+        List<ImpliedMatch> matches = new ArrayList<ImpliedMatch>();
+        for (List<ImpliedMatch> tableMatches : new ParallelTableEvaluator<List<ImpliedMatch>>(childTables) {
+                @Override
+                protected List<ImpliedMatch> evaluate(Table table) {
+                    return getImpliedMatches(table, allPrimaries, compositePrimaries);
+                }
+            }.evaluate()) {
+            matches.addAll(tableMatches);
+        }
 
+        // ...but tie them into the model serially as the model isn't thread-safe
         List<ImpliedForeignKeyConstraint> impliedConstraints = new ArrayList<ImpliedForeignKeyConstraint>();
+        Set<TableColumn> impliedChildren = new HashSet<TableColumn>();
+        for (ImpliedMatch match : matches) {
+            // make sure the potential child->parent relationships isn't already a
+            // parent->child relationship and that none of the child columns
+            // have already been given an implied parent
+            if (!match.isReversed() && Collections.disjoint(impliedChildren, match.childColumns)) {
+                impliedChildren.addAll(match.childColumns);
+                // ok, we've found a potential relationship with a column matches a primary
+                // key column in another table and isn't already related to that column
+                if (match.childColumns.size() == 1)
+                    impliedConstraints.add(new ImpliedForeignKeyConstraint(match.parentColumns.get(0), match.childColumns.get(0)));
+                else
+                    impliedConstraints.add(new ImpliedForeignKeyConstraint(match.parentColumns, match.childColumns));
+            }
+        }
+
+        return impliedConstraints;
+    }
+
+    /**
+     * Returns the potential implied relationships where <code>table</code> is the child,
+     * with those to composite keys (widest first) before those to single-column keys
+     * so a composite key gets its columns rather than the keys of some of them.
+     * Doesn't modify the model, so it's safe to evaluate multiple tables concurrently.
+     */
+    private static List<ImpliedMatch> getImpliedMatches(Table table, Map<ImpliedKey, TableColumn> primaries, Map<ImpliedKey, List<CompositeKey>> compositePrimaries) {
+        List<TableColumn> columnsWithoutParents = new ArrayList<TableColumn>();
+        for (TableColumn column : table.getColumns()) {
+            if (!column.isForeignKey() && column.allowsImpliedParents())
+                columnsWithoutParents.add(column);
+        }
+
+        if (columnsWithoutParents.isEmpty())
+            return Collections.emptyList();
+
+        sortColumnsByTable(columnsWithoutParents);
+
+        List<ImpliedMatch> matches = new ArrayList<ImpliedMatch>();
+        List<ImpliedMatch> compositeMatches = new ArrayList<ImpliedMatch>(0);
         for (TableColumn childColumn : columnsWithoutParents) {
-            Table primaryTable = allPrimaries.get(childColumn);
-            if (primaryTable != null && primaryTable != childColumn.getTable()) {
-                TableColumn parentColumn = primaryTable.getColumn(childColumn.getName());
-                // make sure the potential child->parent relationships isn't already a
-                // parent->child relationship
-                if (parentColumn.getParentConstraint(childColumn) == null) {
-                    // ok, we've found a potential relationship with a column matches a primary
-                    // key column in another table and isn't already related to that column
-                    impliedConstraints.add(new ImpliedForeignKeyConstraint(parentColumn, childColumn));
+            ImpliedKey key = new ImpliedKey(childColumn);
+
+            TableColumn primary = primaries.get(key);
+            if (primary != null && primary.getTable() != table) {
+                TableColumn parentColumn = primary.getTable().getColumn(childColumn.getName());
+                matches.add(new ImpliedMatch(Collections.singletonList(parentColumn), Collections.singletonList(childColumn)));
+            }
+
+            List<CompositeKey> composites = compositePrimaries.get(key);
+            if (composites != null) {
+                for (CompositeKey composite : composites) {
+                    if (composite.table != table) {
+                        List<TableColumn> childColumns = composite.match(table);
+                        if (childColumns != null)
+                            compositeMatches.add(new ImpliedMatch(composite.columns, childColumns));
+                    }
                 }
             }
         }
 
-        return impliedConstraints;
+        if (compositeMatches.isEmpty())
+            return matches;
+
+        Collections.sort(compositeMatches, new Comparator<ImpliedMatch>() {
+            public int compare(ImpliedMatch match1, ImpliedMatch match2) {
+                return match2.childColumns.size() - match1.childColumns.size();
+            }
+        });
+        compositeMatches.addAll(matches);
+        return compositeMatches;
+    }
+
+    /**
+     * The normalized name, type and length of a column that's used to
+     * match potential foreign keys to primary keys.
+     * Names and types are compared without regard to case.
+     */
+    private static class ImpliedKey {
+        private final String name;
+        private final String type;
+        private final int length;
+        private final int hash;
+
+        ImpliedKey(TableColumn column) {
+            name = column.getName();
+            type = column.getType();
+            length = column.getLength();
+            hash = 31 * (31 * hash(name) + hash(type)) + length;
+        }
+
+        /**
+         * Hash that's consistent with {@link String#compareToIgnoreCase(String)}
+         */
+        private static int hash(String str) {
+            int hash = 0;
+            for (int i = 0; i < str.length(); ++i)
+                hash = 31 * hash + Character.toLowerCase(Character.toUpperCase(str.charAt(i)));
+            return hash;
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof ImpliedKey))
+                return false;
+            ImpliedKey other = (ImpliedKey)obj;
+            return hash == other.hash && length == other.length &&
+                    name.compareToIgnoreCase(other.name) == 0 &&
+                    type.compareToIgnoreCase(other.type) == 0;
+        }
+    }
+
+    /**
+     * A multi-column primary key that's indexed by the key of
+     * its alphabetically first column (its anchor).
+     * Its <code>keys</code> are the keys of all of its columns in name order
+     * and identify it regardless of the order of its columns.
+     */
+    private static class CompositeKey {
+        private final Table table;
+        private final List<TableColumn> columns;
+        private final List<ImpliedKey> keys;
+        private final ImpliedKey anchor;
+
+        private CompositeKey(Table table, List<TableColumn> columns, List<ImpliedKey> keys, ImpliedKey anchor) {
+            this.table = table;
+            this.columns = columns;
+            this.keys = keys;
+            this.anchor = anchor;
+        }
+
+        /**
+         * Returns <code>null</code> if any of the columns aren't allowed to have implied children
+         */
+        static CompositeKey create(Table table, List<TableColumn> primaries) {
+            List<TableColumn> columns = new ArrayList<TableColumn>(primaries.size());
+            TableColumn anchorColumn = null;
+
+            for (TableColumn primary : primaries) {
+                if (primary == null || !primary.allowsImpliedChildren())
+                    return null;
+                columns.add(primary);
+                if (anchorColumn == null || primary.getName().compareToIgnoreCase(anchorColumn.getName()) < 0)
+                    anchorColumn = primary;
+            }
+
+            List<TableColumn> byName = sortColumnsByTable(new ArrayList<TableColumn>(columns));
+            List<ImpliedKey> keys = new ArrayList<ImpliedKey>(byName.size());
+            for (TableColumn column : byName)
+                keys.add(new ImpliedKey(column));
+
+            return new CompositeKey(table, Collections.unmodifiableList(columns), keys, new ImpliedKey(anchorColumn));
+        }
+
+        /**
+         * Returns the columns of <code>table</code> that correspond to this key's columns
+         * (in the same order), or <code>null</code> if it doesn't have all of them
+         * with the same name, type and length.
+         */
+        List<TableColumn> match(Table table) {
+            List<TableColumn> childColumns = new ArrayList<TableColumn>(columns.size());
+
+            for (TableColumn primary : columns) {
+                TableColumn childColumn = table.getColumn(primary.getName());
+                if (childColumn == null || childColumn.isForeignKey() || !childColumn.allowsImpliedParents())
+                    return null;
+                if (!new ImpliedKey(childColumn).equals(new ImpliedKey(primary)))
+                    return null;
+                childColumns.add(childColumn);
+            }
+
+            return childColumns;
+        }
+    }
+
+    /**
+     * A potential implied relationship between parent and child columns
+     */
+    private static class ImpliedMatch {
+        private final List<TableColumn> parentColumns;
+        private final List<TableColumn> childColumns;
+
+        ImpliedMatch(List<TableColumn> parentColumns, List<TableColumn> childColumns) {
+            this.parentColumns = parentColumns;
+            this.childColumns = childColumns;
+        }
+
+        /**
+         * Returns <code>true</code> if any of the child columns are already
+         * parents of their corresponding parent column
+         */
+        boolean isReversed() {
+            for (int i = 0; i < childColumns.size(); ++i) {
+                if (parentColumns.get(i).getParentConstraint(childColumns.get(i)) != null)
+                    return true;
+            }
+
+            return false;
+        }
+    }
+
+    /**
+     * Evaluates each table (in parallel when there are enough of them) and
+     * returns the results in the same order as the tables.
+     * Implementations of {@link #evaluate(Table)} must not modify the model.<p>
+     *
+     * All evaluations share one pool of daemon threads that's created the
+     * first time it's needed.
+     */
+    private abstract static class ParallelTableEvaluator<T> {
+        private static final int MIN_TABLES_PER_THREAD = 64;
+        private static final int MAX_THREADS = Runtime.getRuntime().availableProcessors();
+        private final List<Table> tables;
+
+        /**
+         * Holds the pool so it isn't created until it's needed
+         */
+        private static class Pool {
+            private static final ExecutorService executor = Executors.newFixedThreadPool(MAX_THREADS, new ThreadFactory() {
+                private final AtomicInteger count = new AtomicInteger();
+
+                public Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "DbAnalyzer-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        ParallelTableEvaluator(List<Table> tables) {
+            this.tables = tables;
+        }
+
+        protected abstract T evaluate(Table table);
+
+        List<T> evaluate() {
+            int numThreads = Math.min(MAX_THREADS, tables.size() / MIN_TABLES_PER_THREAD);
+            List<T> results = new ArrayList<T>(tables.size());
+
+            if (numThreads <= 1) {
+                for (Table table : tables)
+                    results.add(evaluate(table));
+                return results;
+            }
+
+            List<Future<T>> futures = new ArrayList<Future<T>>(tables.size());
+            try {
+                for (final Table table : tables) {
+                    futures.add(Pool.executor.submit(new Callable<T>() {
+                        public T call() {
+                            return evaluate(table);
+                        }
+                    }));
+                }
+
+                for (Future<T> future : futures)
+                    results.add(future.get());
+            } catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while evaluating tables", exc);
+            } catch (ExecutionException exc) {
+                Throwable cause = exc.getCause();
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException)cause;
+                if (cause instanceof Error)
+                    throw (Error)cause;
+                throw new RuntimeException(cause);
+            } finally {
+                // don't leave the rest of the work hogging the shared threads
+                for (Future<T> future : futures)
+                    future.cancel(true);
+            }
+
+            return results;
+        }
     }
 
     /**
@@ -119,29 +436,51 @@ public class DbAnalyzer {
      * @param tables
      * @return List of {@link RailsForeignKeyConstraint}s
      */
-    public static List<RailsForeignKeyConstraint> getRailsConstraints(Map<String, Table> tables) {
-        List<RailsForeignKeyConstraint> railsConstraints = new ArrayList<RailsForeignKeyConstraint>(tables.size());
-
+    public static List<RailsForeignKeyConstraint> getRailsConstraints(final Map<String, Table> tables) {
         // iterate thru each column in each table looking for columns that
-        // match Rails naming conventions
-        for (Table table : tables.values()) {
-            for (TableColumn column : table.getColumns()) {
-            	String columnName = column.getName().toLowerCase();
-                if (!column.isForeignKey() && column.allowsImpliedParents() && columnName.endsWith("_id")) {
-                    String singular = columnName.substring(0, columnName.length() - 3);
-                    String primaryTableName = Inflection.pluralize(singular);
-                    Table primaryTable = tables.get(primaryTableName);
-                    if (primaryTable != null) {
-                        TableColumn primaryColumn = primaryTable.getColumn("ID");
-                        if (primaryColumn != null) {
-                            railsConstraints.add(new RailsForeignKeyConstraint(primaryColumn, column));
-                        }
+        // match Rails naming conventions...
+        List<ImpliedMatch> matches = new ArrayList<ImpliedMatch>();
+        for (List<ImpliedMatch> tableMatches : new ParallelTableEvaluator<List<ImpliedMatch>>(new ArrayList<Table>(tables.values())) {
+                @Override
+                protected List<ImpliedMatch> evaluate(Table table) {
+                    return getRailsMatches(table, tables);
+                }
+            }.evaluate()) {
+            matches.addAll(tableMatches);
+        }
+
+        // ...and tie them into the model serially as the model isn't thread-safe
+        List<RailsForeignKeyConstraint> railsConstraints = new ArrayList<RailsForeignKeyConstraint>(matches.size());
+        for (ImpliedMatch match : matches)
+            railsConstraints.add(new RailsForeignKeyConstraint(match.parentColumns.get(0), match.childColumns.get(0)));
+
+        return railsConstraints;
+    }
+
+    /**
+     * Returns the columns of the specified table that refer to the <code>ID</code>
+     * column of another table by Rails naming conventions.
+     * Doesn't modify the model so it can be called concurrently for different tables.
+     */
+    private static List<ImpliedMatch> getRailsMatches(Table table, Map<String, Table> tables) {
+        List<ImpliedMatch> matches = new ArrayList<ImpliedMatch>(0);
+
+        for (TableColumn column : table.getColumns()) {
+            String columnName = column.getName().toLowerCase();
+            if (!column.isForeignKey() && column.allowsImpliedParents() && columnName.endsWith("_id")) {
+                String singular = columnName.substring(0, columnName.length() - 3);
+                String primaryTableName = Inflection.pluralize(singular);
+                Table primaryTable = tables.get(primaryTableName);
+                if (primaryTable != null) {
+                    TableColumn primaryColumn = primaryTable.getColumn("ID");
+                    if (primaryColumn != null) {
+                        matches.add(new ImpliedMatch(Collections.singletonList(primaryColumn), Collections.singletonList(column)));
                     }
                 }
             }
         }
 
-        return railsConstraints;
+        return matches;
     }
 
     /**
@@ -161,11 +500,11 @@ public class DbAnalyzer {
         return constraints;
     }
 
-    public static List<Table> getOrphans(Collection<Table> tables) {
+    public static List<Table> getOrphans(RelationshipGraph relationships, Collection<Table> tables) {
         List<Table> orphans = new ArrayList<Table>();
 
         for (Table table : tables) {
-            if (table.isOrphan(false)) {
+            if (relationships.isOrphan(table, false)) {
                 orphans.add(table);
             }
         }
@@ -178,86 +517,22 @@ public class DbAnalyzer {
      * and have an index that specifies that they must be unique (a rather strange combo).
      */
     public static List<TableColumn> getMustBeUniqueNullableColumns(Collection<Table> tables) {
-        List<TableColumn> uniqueNullables = new ArrayList<TableColumn>();
-
-        for (Table table : tables) {
-            for (TableIndex index : table.getIndexes()) {
-                if (index.isUniqueNullable()) {
-                    uniqueNullables.addAll(index.getColumns());
-                }
-            }
-        }
-
-        return sortColumnsByTable(uniqueNullables);
+        return AnomalyAnalyzer.evaluate(new UniqueNullableColumnsRule(), tables);
     }
 
     /**
      * Return a list of <code>Table</code>s that have neither an index nor a primary key.
      */
     public static List<Table> getTablesWithoutIndexes(Collection<Table> tables) {
-        List<Table> withoutIndexes = new ArrayList<Table>();
-
-        for (Table table : tables) {
-            if (!table.isView() && table.getIndexes().size() == 0)
-                withoutIndexes.add(table);
-        }
-
-        return sortTablesByName(withoutIndexes);
+        return AnomalyAnalyzer.evaluate(new TablesWithoutIndexesRule(), tables);
     }
 
     public static List<Table> getTablesWithIncrementingColumnNames(Collection<Table> tables) {
-        List<Table> denormalizedTables = new ArrayList<Table>();
-
-        for (Table table : tables) {
-            Map<String, Long> columnPrefixes = new HashMap<String, Long>();
-
-            for (TableColumn column : table.getColumns()) {
-                // search for columns that start with the same prefix
-                // and end in an incrementing number
-
-                String columnName = column.getName();
-                String numbers = null;
-                for (int i = columnName.length() - 1; i > 0; --i) {
-                    if (Character.isDigit(columnName.charAt(i))) {
-                        numbers = String.valueOf(columnName.charAt(i)) + (numbers == null ? "" : numbers);
-                    } else {
-                        break;
-                    }
-                }
-
-                // attempt to detect where they had an existing column
-                // and added a "column2" type of column (we'll call this one "1")
-                if (numbers == null) {
-                    numbers = "1";
-                    columnName = columnName + numbers;
-                }
-
-                // see if we've already found a column with the same prefix
-                // that had a numeric suffix +/- 1.
-                String prefix = columnName.substring(0, columnName.length() - numbers.length());
-                long numeric = Long.parseLong(numbers);
-                Long existing = columnPrefixes.get(prefix);
-                if (existing != null && Math.abs(existing.longValue() - numeric) == 1) {
-                    // found one so add it to our list and stop evaluating this table
-                    denormalizedTables.add(table);
-                    break;
-                }
-                columnPrefixes.put(prefix, new Long(numeric));
-            }
-        }
-
-        return sortTablesByName(denormalizedTables);
+        return AnomalyAnalyzer.evaluate(new IncrementingColumnNamesRule(), tables);
     }
 
     public static List<Table> getTablesWithOneColumn(Collection<Table> tables) {
-        List<Table> singleColumnTables = new ArrayList<Table>();
-
-        for (Table table : tables) {
-            if (table.getColumns().size() == 1)
-                singleColumnTables.add(table);
-        }
-
-        return sortTablesByName(singleColumnTables);
+        return AnomalyAnalyzer.evaluate(new SingleColumnTablesRule(), tables);
     }
 
     public static List<Table> sortTablesByName(List<Table> tables) {
@@ -291,21 +566,7 @@ public class DbAnalyzer {
      * @return List
      */
     public static List<TableColumn> getDefaultNullStringColumns(Collection<Table> tables) {
-        List<TableColumn> defaultNullStringColumns = new ArrayList<TableColumn>();
-
-        for (Table table : tables) {
-            for (TableColumn column : table.getColumns()) {
-                Object defaultValue = column.getDefaultValue();
-                if (defaultValue != null && defaultValue instanceof String) {
-                    String defaultString = defaultValue.toString();
-                    if (defaultString.trim().equalsIgnoreCase("null")) {
-                        defaultNullStringColumns.add(column);
-                    }
-                }
-            }
-        }
-
-        return sortColumnsByTable(defaultNullStringColumns);
+        return AnomalyAnalyzer.evaluate(new DefaultNullStringColumnsRule(), tables);
     }
 
     /**
@@ -341,11 +602,41 @@ public class DbAnalyzer {
      * @param meta DatabaseMetaData
      */
     public static List<String> getPopulatedSchemas(DatabaseMetaData meta, String schemaSpec) throws SQLException {
-        Set<String> schemas = new TreeSet<String>(); // alpha sorted
+        return new ArrayList<String>(getPopulatedSchemaTableCounts(meta, schemaSpec, null).keySet());
+    }
+
+    /**
+     * Returns the alpha sorted names of the schemas that contain tables and match the
+     * <code>schemaSpec</code> regular expression along with how many tables/views
+     * each of them contains.<p/>
+     *
+     * If <code>properties</code> has a <code>selectPopulatedSchemasSql</code> that
+     * returns <code>schema_name</code> and <code>table_count</code> then the schemas are
+     * determined with that single query.
+     * Otherwise (or if that query fails) each schema is probed for tables individually
+     * and its table count is <code>null</code>.
+     *
+     * @param meta DatabaseMetaData
+     * @param schemaSpec
+     * @param properties database type-specific properties, may be <code>null</code>
+     */
+    public static Map<String, Integer> getPopulatedSchemaTableCounts(DatabaseMetaData meta, String schemaSpec, Properties properties) throws SQLException {
         Pattern schemaRegex = Pattern.compile(schemaSpec);
         Logger logger = Logger.getLogger(DbAnalyzer.class.getName());
         boolean logging = logger.isLoggable(Level.FINE);
 
+        String sql = properties == null ? null : properties.getProperty("selectPopulatedSchemasSql");
+        if (sql != null) {
+            try {
+                return selectPopulatedSchemas(meta, sql, schemaRegex);
+            } catch (SQLException sqlException) {
+                logger.warning("Failed to determine populated schemas with " + sql + ": " + sqlException);
+                logger.warning("Probing each schema for tables instead");
+            }
+        }
+
+        Map<String, Integer> schemas = new TreeMap<String, Integer>(); // alpha sorted
+
         Iterator<String> iter = getSchemas(meta).iterator();
         while (iter.hasNext()) {
             String schema = iter.next().toString();
@@ -357,7 +648,7 @@ public class DbAnalyzer {
                         if (logging)
                             logger.fine("Including schema " + schema +
                                         ": matches + \"" + schemaRegex + "\" and contains tables");
-                        schemas.add(schema);
+                        schemas.put(schema, null);
                     } else {
                         if (logging)
                             logger.fine("Excluding schema " + schema +
@@ -375,7 +666,35 @@ public class DbAnalyzer {
             }
         }
 
-        return new ArrayList<String>(schemas);
+        return schemas;
+    }
+
+    /**
+     * Determine the populated schemas and their table counts with a single query
+     */
+    private static Map<String, Integer> selectPopulatedSchemas(DatabaseMetaData meta, String sql, Pattern schemaRegex) throws SQLException {
+        Map<String, Integer> schemas = new TreeMap<String, Integer>(); // alpha sorted
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+
+        try {
+            stmt = meta.getConnection().prepareStatement(sql);
+            rs = stmt.executeQuery();
+
+            while (rs.next()) {
+                String schema = rs.getString("schema_name");
+                int tableCount = rs.getInt("table_count");
+                if (schema != null && tableCount > 0 && schemaRegex.matcher(schema).matches())
+                    schemas.put(schema, tableCount);
+            }
+        } finally {
+            if (rs != null)
+                rs.close();
+            if (stmt != null)
+                stmt.close();
+        }
+
+        return schemas;
     }
 
     /**
@@ -0,0 +1,510 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+import net.sourceforge.schemaspy.model.ForeignKeyConstraint;
+import net.sourceforge.schemaspy.model.RelationshipGraph;
+import net.sourceforge.schemaspy.model.Table;
+
+/**
+ * Sorts {@link Table}s by their referential integrity constraints
+ * without modifying the tables' relationships.<p/>
+ *
+ * Unlike {@link TableOrderer} the foreign key graph is taken from a
+ * {@link RelationshipGraph} and copied into int-indexed adjacency arrays.  Cycles are found as strongly connected
+ * components (Tarjan's algorithm) and each component is broken by removing
+ * non-real constraints followed by as few real constraints as a greedy
+ * feedback arc heuristic (Eades, Lin and Smyth) can manage.
+ * The resulting acyclic graph is then ordered the same way as
+ * {@link TableOrderer} orders it.<p/>
+ *
+ * The order only differs from {@link TableOrderer}'s when there are cycles,
+ * since they're broken differently, or when a table's only relationship is
+ * with itself.  Such tables are listed with the tables that aren't
+ * related to anything rather than with the leaves.
+ */
+public class GraphTableOrderer {
+    private List<Table> nodes;
+    private int numEdges;
+    private int[] edgeParent;
+    private int[] edgeChild;
+    private ForeignKeyConstraint[] edgeConstraint;
+    private boolean[] edgeRemoved;
+    private int[] outStart;
+    private int[] outEdges;
+    private int[] inStart;
+    private int[] inEdges;
+
+    /**
+     * Returns a list of <code>Table</code>s ordered such that parents are listed first
+     * and child tables are listed last.<p/>
+     *
+     * <code>recursiveConstraints</code> gets populated with the real constraints
+     * that had to be ignored to resolve the returned list.
+     * Neither the tables nor their constraints are modified, so the
+     * model can be used concurrently (by readers) while this runs.
+     *
+     * @param tables
+     * @param recursiveConstraints
+     * @return
+     */
+    public List<Table> getTablesOrderedByRI(Collection<Table> tables, Collection<ForeignKeyConstraint> recursiveConstraints) {
+        return getTablesOrderedByRI(new RelationshipGraph(tables), tables, recursiveConstraints);
+    }
+
+    /**
+     * Same as {@link #getTablesOrderedByRI(Collection, Collection)} but uses the
+     * relationships that have already been captured in <code>relationships</code>.
+     *
+     * @param relationships
+     * @param tables
+     * @param recursiveConstraints
+     * @return
+     */
+    public List<Table> getTablesOrderedByRI(RelationshipGraph relationships, Collection<Table> tables, Collection<ForeignKeyConstraint> recursiveConstraints) {
+        buildGraph(relationships, tables);
+        breakCycles(recursiveConstraints);
+        return order();
+    }
+
+    /**
+     * Collapse the column-level relationships between the (non-remote) tables
+     * into one edge per constraint
+     */
+    private void buildGraph(RelationshipGraph relationships, Collection<Table> tables) {
+        nodes = new ArrayList<Table>();
+        for (Table table : tables) {
+            // ignore remote tables since there's no way to deal with them
+            if (!table.isRemote())
+                nodes.add(table);
+        }
+        DbAnalyzer.sortTablesByName(nodes);
+
+        // node of each of the graph's tables
+        int[] node = new int[relationships.getNumTables()];
+        Arrays.fill(node, -1);
+        for (int i = 0; i < nodes.size(); ++i) {
+            int tableId = relationships.getTableId(nodes.get(i));
+            if (tableId != -1)
+                node[tableId] = i;
+        }
+
+        // multi-column constraints show up once per column, so only take each one once
+        Set<ForeignKeyConstraint> constraints = new HashSet<ForeignKeyConstraint>();
+        List<ForeignKeyConstraint> edges = new ArrayList<ForeignKeyConstraint>();
+        List<Integer> parents = new ArrayList<Integer>();
+        List<Integer> children = new ArrayList<Integer>();
+
+        for (int child = 0; child < nodes.size(); ++child) {
+            int tableId = relationships.getTableId(nodes.get(child));
+            if (tableId == -1)
+                continue;
+            for (int edge : relationships.getParentEdges(tableId)) {
+                int parent = node[relationships.getParentTableId(edge)];
+                if (parent == -1)
+                    continue;
+                ForeignKeyConstraint constraint = relationships.getConstraint(edge);
+                if (constraint != null && constraints.add(constraint)) {
+                    edges.add(constraint);
+                    parents.add(parent);
+                    children.add(child);
+                }
+            }
+        }
+
+        numEdges = edges.size();
+        edgeParent = new int[numEdges];
+        edgeChild = new int[numEdges];
+        edgeConstraint = edges.toArray(new ForeignKeyConstraint[numEdges]);
+        edgeRemoved = new boolean[numEdges];
+        for (int edge = 0; edge < numEdges; ++edge) {
+            edgeParent[edge] = parents.get(edge);
+            edgeChild[edge] = children.get(edge);
+        }
+
+        outStart = new int[nodes.size() + 1];
+        inStart = new int[nodes.size() + 1];
+        outEdges = new int[numEdges];
+        inEdges = new int[numEdges];
+        buildAdjacency(edgeParent, outStart, outEdges);
+        buildAdjacency(edgeChild, inStart, inEdges);
+    }
+
+    /**
+     * Compressed adjacency: the edges of node <code>n</code> are
+     * <code>adjacent[start[n]]</code> thru <code>adjacent[start[n + 1] - 1]</code>
+     */
+    private void buildAdjacency(int[] edgeNode, int[] start, int[] adjacent) {
+        for (int edge = 0; edge < numEdges; ++edge)
+            ++start[edgeNode[edge] + 1];
+        for (int node = 0; node < nodes.size(); ++node)
+            start[node + 1] += start[node];
+        int[] next = start.clone();
+        for (int edge = 0; edge < numEdges; ++edge)
+            adjacent[next[edgeNode[edge]]++] = edge;
+    }
+
+    private void breakCycles(Collection<ForeignKeyConstraint> recursiveConstraints) {
+        for (int edge = 0; edge < numEdges; ++edge) {
+            if (edgeParent[edge] == edgeChild[edge]) {
+                edgeRemoved[edge] = true;
+                if (edgeConstraint[edge].isReal())
+                    recursiveConstraints.add(edgeConstraint[edge]);
+            }
+        }
+
+        int[] component = findStronglyConnectedComponents();
+
+        // gather the members of each component
+        int numComponents = 0;
+        for (int node = 0; node < component.length; ++node)
+            numComponents = Math.max(numComponents, component[node] + 1);
+        int[] componentSize = new int[numComponents];
+        for (int node = 0; node < component.length; ++node)
+            ++componentSize[component[node]];
+
+        List<List<Integer>> cycles = new ArrayList<List<Integer>>();
+        List<List<Integer>> members = new ArrayList<List<Integer>>(Collections.<List<Integer>>nCopies(numComponents, null));
+        for (int node = 0; node < component.length; ++node) {
+            if (componentSize[component[node]] > 1) {
+                List<Integer> cycle = members.get(component[node]);
+                if (cycle == null) {
+                    cycle = new ArrayList<Integer>(componentSize[component[node]]);
+                    members.set(component[node], cycle);
+                    cycles.add(cycle);
+                }
+                cycle.add(node);
+            }
+        }
+
+        int[] outDegree = new int[component.length];
+        int[] inDegree = new int[component.length];
+        int[] position = new int[component.length];
+        boolean[] placed = new boolean[component.length];
+
+        for (List<Integer> cycle : cycles) {
+            // get rid of everything that isn't explicitly specified by the database
+            for (int node : cycle) {
+                for (int i = outStart[node]; i < outStart[node + 1]; ++i) {
+                    int edge = outEdges[i];
+                    if (component[edgeChild[edge]] == component[node] && !edgeConstraint[edge].isReal())
+                        edgeRemoved[edge] = true;
+                }
+            }
+
+            breakCycle(cycle, component, outDegree, inDegree, position, placed, recursiveConstraints);
+        }
+    }
+
+    /**
+     * Iterative implementation of Tarjan's strongly connected components algorithm
+     * (iterative so deep chains of tables can't overflow the stack)
+     *
+     * @return the component of each node
+     */
+    private int[] findStronglyConnectedComponents() {
+        final int numNodes = nodes.size();
+        int[] index = new int[numNodes];
+        int[] lowLink = new int[numNodes];
+        boolean[] onStack = new boolean[numNodes];
+        int[] component = new int[numNodes];
+        int[] nextEdge = new int[numNodes];
+        int[] stack = new int[numNodes];
+        int[] callStack = new int[numNodes];
+        int stackSize = 0;
+        int nextIndex = 1; // 0 == unvisited
+        int numComponents = 0;
+
+        for (int root = 0; root < numNodes; ++root) {
+            if (index[root] != 0)
+                continue;
+
+            int depth = 0;
+            callStack[depth++] = root;
+            index[root] = lowLink[root] = nextIndex++;
+            nextEdge[root] = outStart[root];
+            stack[stackSize++] = root;
+            onStack[root] = true;
+
+            while (depth > 0) {
+                int node = callStack[depth - 1];
+
+                if (nextEdge[node] < outStart[node + 1]) {
+                    int edge = outEdges[nextEdge[node]++];
+                    if (edgeRemoved[edge])
+                        continue;
+                    int child = edgeChild[edge];
+                    if (index[child] == 0) {
+                        index[child] = lowLink[child] = nextIndex++;
+                        nextEdge[child] = outStart[child];
+                        stack[stackSize++] = child;
+                        onStack[child] = true;
+                        callStack[depth++] = child;
+                    } else if (onStack[child]) {
+                        lowLink[node] = Math.min(lowLink[node], index[child]);
+                    }
+                } else {
+                    if (lowLink[node] == index[node]) {
+                        int member;
+                        do {
+                            member = stack[--stackSize];
+                            onStack[member] = false;
+                            component[member] = numComponents;
+                        } while (member != node);
+                        ++numComponents;
+                    }
+
+                    --depth;
+                    if (depth > 0) {
+                        int parent = callStack[depth - 1];
+                        lowLink[parent] = Math.min(lowLink[parent], lowLink[node]);
+                    }
+                }
+            }
+        }
+
+        return component;
+    }
+
+    /**
+     * Order the members of a strongly connected component with the greedy
+     * feedback arc set heuristic of Eades, Lin and Smyth and remove the
+     * (real) constraints that point backwards in that ordering.
+     *
+     * <code>outDegree</code>, <code>inDegree</code>, <code>position</code> and <code>placed</code>
+     * are work areas indexed by node that are shared between components.
+     */
+    private void breakCycle(List<Integer> cycle, int[] component, int[] outDegree, int[] inDegree,
+                            int[] position, boolean[] placed, Collection<ForeignKeyConstraint> recursiveConstraints) {
+        final int id = component[cycle.get(0)];
+        for (int node : cycle) {
+            outDegree[node] = countEdges(node, outStart, outEdges, edgeChild, component, id);
+            inDegree[node] = countEdges(node, inStart, inEdges, edgeParent, component, id);
+        }
+
+        Deque<Integer> front = new ArrayDeque<Integer>();
+        Deque<Integer> back = new ArrayDeque<Integer>();
+        Deque<Integer> sinks = new ArrayDeque<Integer>();
+        Deque<Integer> sources = new ArrayDeque<Integer>();
+        // entries are (delta, node) encoded so the largest delta (then lowest node) comes first
+        PriorityQueue<Long> byDelta = new PriorityQueue<Long>();
+
+        for (int node : cycle) {
+            if (outDegree[node] == 0)
+                sinks.add(node);
+            else if (inDegree[node] == 0)
+                sources.add(node);
+            byDelta.add(encode(outDegree[node] - inDegree[node], node));
+        }
+
+        int numPlaced = 0;
+        while (numPlaced < cycle.size()) {
+            int node = -1;
+            boolean atBack = false;
+
+            if (!sinks.isEmpty()) {
+                node = sinks.poll();
+                atBack = true;
+            } else if (!sources.isEmpty()) {
+                node = sources.poll();
+            } else {
+                while (!byDelta.isEmpty() && node == -1) {
+                    long entry = byDelta.poll();
+                    int candidate = (int)entry;
+                    if (!placed[candidate] && decodeDelta(entry) == outDegree[candidate] - inDegree[candidate])
+                        node = candidate;
+                }
+            }
+
+            if (node == -1 || placed[node])
+                continue;
+
+            placed[node] = true;
+            ++numPlaced;
+            if (atBack)
+                back.addFirst(node);
+            else
+                front.addLast(node);
+
+            // the node's gone, so update the degrees of its neighbors
+            for (int i = outStart[node]; i < outStart[node + 1]; ++i) {
+                int edge = outEdges[i];
+                int child = edgeChild[edge];
+                if (!edgeRemoved[edge] && component[child] == id && !placed[child]) {
+                    if (--inDegree[child] == 0 && outDegree[child] != 0)
+                        sources.add(child);
+                    byDelta.add(encode(outDegree[child] - inDegree[child], child));
+                }
+            }
+            for (int i = inStart[node]; i < inStart[node + 1]; ++i) {
+                int edge = inEdges[i];
+                int parent = edgeParent[edge];
+                if (!edgeRemoved[edge] && component[parent] == id && !placed[parent]) {
+                    if (--outDegree[parent] == 0)
+                        sinks.add(parent);
+                    byDelta.add(encode(outDegree[parent] - inDegree[parent], parent));
+                }
+            }
+        }
+
+        int nextPosition = 0;
+        for (int node : front)
+            position[node] = nextPosition++;
+        for (int node : back)
+            position[node] = nextPosition++;
+
+        for (int node : cycle) {
+            for (int i = outStart[node]; i < outStart[node + 1]; ++i) {
+                int edge = outEdges[i];
+                int child = edgeChild[edge];
+                if (!edgeRemoved[edge] && component[child] == id && position[child] < position[node]) {
+                    edgeRemoved[edge] = true;
+                    recursiveConstraints.add(edgeConstraint[edge]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Count the remaining edges of <code>node</code> whose other end is in the same component
+     */
+    private int countEdges(int node, int[] start, int[] adjacent, int[] otherEnd, int[] component, int id) {
+        int count = 0;
+        for (int i = start[node]; i < start[node + 1]; ++i) {
+            int edge = adjacent[i];
+            if (!edgeRemoved[edge] && component[otherEnd[edge]] == id)
+                ++count;
+        }
+        return count;
+    }
+
+    private static long encode(int delta, int node) {
+        return ((long)-delta << 32) | (node & 0xffffffffL);
+    }
+
+    private static int decodeDelta(long entry) {
+        return (int)-(entry >> 32);
+    }
+
+    /**
+     * Order the (now acyclic) graph the way {@link TableOrderer} does:
+     * repeatedly trim the leaves (tables without children) and then the roots
+     * (tables without parents).  The roots are listed in the order that they
+     * were trimmed, followed by the leaves in the reverse order that they were
+     * trimmed and then by the tables that aren't related to anything.
+     * A table's relationship with itself doesn't count.
+     */
+    private List<Table> order() {
+        final int numNodes = nodes.size();
+        int[] numParents = new int[numNodes];
+        int[] numChildren = new int[numNodes];
+        boolean[] related = new boolean[numNodes];
+
+        for (int edge = 0; edge < numEdges; ++edge) {
+            int parent = edgeParent[edge];
+            int child = edgeChild[edge];
+            if (parent != child) {
+                related[parent] = true;
+                related[child] = true;
+                if (!edgeRemoved[edge]) {
+                    ++numChildren[parent];
+                    ++numParents[child];
+                }
+            }
+        }
+
+        List<Table> unattached = new ArrayList<Table>();
+        List<Integer> leaves = new ArrayList<Integer>();
+        List<Integer> roots = new ArrayList<Integer>();
+        int remaining = 0;
+
+        for (int node = 0; node < numNodes; ++node) {
+            if (!related[node]) {
+                unattached.add(nodes.get(node));
+            } else {
+                ++remaining;
+                if (numChildren[node] == 0)
+                    leaves.add(node);
+                if (numParents[node] == 0)
+                    roots.add(node);
+            }
+        }
+
+        List<Table> heads = new ArrayList<Table>();
+        List<List<Table>> tails = new ArrayList<List<Table>>();
+        boolean[] trimmed = new boolean[numNodes];
+
+        while (remaining > 0 && !(leaves.isEmpty() && roots.isEmpty())) {
+            // tables only become leaves (or roots) for the next pass,
+            // just like TableOrderer unlinks them after trimming a level
+            List<Table> trimmedLeaves = new ArrayList<Table>(leaves.size());
+            List<Integer> nextLeaves = new ArrayList<Integer>();
+            for (int node : leaves) {
+                if (!trimmed[node]) {
+                    trimmed[node] = true;
+                    --remaining;
+                    trimmedLeaves.add(nodes.get(node));
+                    for (int i = inStart[node]; i < inStart[node + 1]; ++i) {
+                        int edge = inEdges[i];
+                        if (!edgeRemoved[edge] && --numChildren[edgeParent[edge]] == 0)
+                            nextLeaves.add(edgeParent[edge]);
+                    }
+                }
+            }
+
+            List<Table> trimmedRoots = new ArrayList<Table>(roots.size());
+            List<Integer> nextRoots = new ArrayList<Integer>();
+            for (int node : roots) {
+                if (!trimmed[node]) {
+                    trimmed[node] = true;
+                    --remaining;
+                    trimmedRoots.add(nodes.get(node));
+                    for (int i = outStart[node]; i < outStart[node + 1]; ++i) {
+                        int edge = outEdges[i];
+                        if (!edgeRemoved[edge] && --numParents[edgeChild[edge]] == 0)
+                            nextRoots.add(edgeChild[edge]);
+                    }
+                }
+            }
+
+            tails.add(TableOrderer.sortTrimmedLevel(trimmedLeaves));
+            heads.addAll(TableOrderer.sortTrimmedLevel(trimmedRoots));
+            leaves = nextLeaves;
+            roots = nextRoots;
+        }
+
+        List<Table> ordered = new ArrayList<Table>(numNodes);
+        ordered.addAll(heads);
+        for (int i = tails.size() - 1; i >= 0; --i)
+            ordered.addAll(tails.get(i));
+        ordered.addAll(TableOrderer.sortTrimmedLevel(unattached));
+
+        return ordered;
+    }
+}
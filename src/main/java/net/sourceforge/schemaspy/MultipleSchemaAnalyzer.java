@@ -18,24 +18,40 @@
  */
 package net.sourceforge.schemaspy;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.PrintStream;
-import java.io.Reader;
+import java.lang.management.ManagementFactory;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Pattern;
+import net.sourceforge.schemaspy.model.CatalogHarvest;
+import net.sourceforge.schemaspy.model.Database;
+import net.sourceforge.schemaspy.model.InvalidConfigurationException;
 import net.sourceforge.schemaspy.model.ProcessExecutionException;
+import net.sourceforge.schemaspy.model.SchemaRelationshipGraph;
 import net.sourceforge.schemaspy.util.LineWriter;
+import net.sourceforge.schemaspy.util.OutputCompressor;
+import net.sourceforge.schemaspy.util.OutputSink;
 import net.sourceforge.schemaspy.view.HtmlMultipleSchemasIndexPage;
+import net.sourceforge.schemaspy.view.HtmlSchemaRelationshipsPage;
 
 /**
  * @author John Currier
@@ -52,10 +68,160 @@ public final class MultipleSchemaAnalyzer {
         return instance;
     }
 
-    public void analyze(String dbName, DatabaseMetaData meta, String schemaSpec, List<String> schemas, List<String> args, String user, File outputDir, String charset, String loadedFrom) throws SQLException, IOException {
+    /**
+     * Analyze each of the populated schemas, writing their output to
+     * subdirectories of <code>outputDir</code>.<p/>
+     *
+     * The schemas are analyzed concurrently within this JVM, sharing the
+     * database driver and connections, unless {@link Config#isForkSchemasEnabled()}
+     * in which case each schema is analyzed by its own JVM.
+     * Either way the schemas with the most tables are started first.<p/>
+     *
+     * Schemas that are analyzed within this JVM also contribute their foreign
+     * keys to a {@link SchemaRelationshipGraph} that's used to add the
+     * relationships between the schemas to the index page once they're done.
+     */
+    public void analyze(String dbName, DatabaseMetaData meta, String schemaSpec, List<String> schemas, List<String> args, String user, File outputDir, String charset, String loadedFrom) throws Exception {
         long start = System.currentTimeMillis();
-        List<String> genericCommand = new ArrayList<String>();
+
+        Config config = Config.getInstance();
+        if (config.isForkSchemasEnabled() && config.getOutputArchive() != null)
+            throw new InvalidConfigurationException("-archive can't be combined with -forkschemas");
+
+        List<String> populatedSchemas;
+        Map<String, Integer> tableCounts;
+        if (schemas == null) {
+            System.out.println("Analyzing schemas that match regular expression '" + schemaSpec + "':");
+            System.out.println("(use -schemaSpec on command line or in .properties to exclude other schemas)");
+            tableCounts = getPopulatedSchemas(meta, schemaSpec, user, config.getDbProperties(config.getDbType()));
+            populatedSchemas = new ArrayList<String>(tableCounts.keySet());
+        } else {
+            System.out.println("Analyzing schemas:");
+            populatedSchemas = schemas;
+            tableCounts = Collections.emptyMap();
+        }
+
+        for (String populatedSchema : populatedSchemas)
+            System.out.print(" " + populatedSchema);
+        System.out.println();
+
+        String databaseProduct = meta == null ? null : HtmlMultipleSchemasIndexPage.getInstance().getDatabaseProduct(meta);
+
+        // relationships between databases (rather than schemas) don't make sense
+        SchemaRelationshipGraph schemaRelationships = null;
+        if (!config.isForkSchemasEnabled() && dbName != null)
+            schemaRelationships = new SchemaRelationshipGraph(populatedSchemas);
+
+        // an archive can't have its index page replaced once the relationships are known
+        if (schemaRelationships == null || config.getOutputArchive() == null)
+            writeIndexPage(dbName, populatedSchemas, databaseProduct, null, outputDir, charset);
+
+        List<String> analysisOrder = getAnalysisOrder(populatedSchemas, tableCounts);
+        if (config.isForkSchemasEnabled()) {
+            analyzeInChildProcesses(dbName, analysisOrder, args, outputDir, loadedFrom, config.getJvmArgs(), config.getMaxSchemaThreads());
+        } else {
+            analyzeInProcess(dbName, analysisOrder, args, outputDir, meta, config.getMaxSchemaThreads(), config.isCatalogHarvestEnabled(), schemaRelationships);
+            if (schemaRelationships != null)
+                writeIndexPage(dbName, populatedSchemas, databaseProduct, schemaRelationships, outputDir, charset);
+        }
+
+        long end = System.currentTimeMillis();
+        System.out.println();
+        System.out.println("Wrote relationship details of " + populatedSchemas.size() + " schema" + (populatedSchemas.size() == 1 ? "" : "s") + " in " + (end - start) / 1000 + " seconds.");
+        System.out.println("Start with " + new File(outputDir, "index.html"));
+    }
+
+    public void analyze(String dbName, List<String> schemas, List<String> args,
+            String user, File outputDir, String charset, String loadedFromJar) throws Exception {
+        analyze(dbName, null, null, schemas, args, user, outputDir, charset, loadedFromJar);
+    }
+
+    /**
+     * Analyze the schemas on a pool of <code>maxThreads</code> threads.
+     * Each schema gets its own {@link Config} (see {@link Config#setThreadInstance(Config)})
+     * while the connection that <code>meta</code> came from, if any, and any
+     * subsequent connections are reused from one schema to the next.
+     * If <code>harvestCatalog</code> then the schemas also share a {@link CatalogHarvest}
+     * whose metadata of each schema is released once it's been analyzed.
+     * Each analyzed schema is added to <code>schemaRelationships</code> (if any).
+     * The schemas write to this analyzer's {@link Config#getOutputSink() output sink}.
+     * All of the schemas are attempted before any failures are reported.
+     */
+    private void analyzeInProcess(String dbName, List<String> populatedSchemas, List<String> args, File outputDir, DatabaseMetaData meta, int maxThreads, boolean harvestCatalog, final SchemaRelationshipGraph schemaRelationships) throws Exception {
+        final ConnectionPool connectionPool = new ConnectionPool();
+        final CatalogHarvest catalogHarvest = harvestCatalog ? new CatalogHarvest(populatedSchemas) : null;
+        OutputSink sink = Config.getInstance().getOutputSink();
+        if (meta != null)
+            connectionPool.release(meta.getConnection());
+
+        int numThreads = Math.min(populatedSchemas.size(), maxThreads);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(numThreads, 1));
+        List<String> failures = new ArrayList<String>();
+
+        try {
+            List<Future<Void>> analyses = new ArrayList<Future<Void>>();
+            for (final String schema : populatedSchemas) {
+                final Config config = new Config(getSchemaArgs(dbName, schema, args, outputDir));
+                config.setOneOfMultipleSchemas(true);
+                config.setOutputSink(sink);
+
+                analyses.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws Exception {
+                        Config.setThreadInstance(config);
+                        try {
+                            System.out.println("Analyzing " + schema);
+                            System.out.flush();
+                            Database db = new SchemaAnalyzer(connectionPool, catalogHarvest).analyze(config);
+                            if (db != null && schemaRelationships != null)
+                                schemaRelationships.add(db);
+                        } finally {
+                            Config.setThreadInstance(null);
+                            if (catalogHarvest != null)
+                                catalogHarvest.release(schema);
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            for (int i = 0; i < analyses.size(); ++i) {
+                try {
+                    analyses.get(i).get();
+                } catch (ExecutionException exc) {
+                    Throwable cause = exc.getCause();
+                    if (cause instanceof Error)
+                        throw (Error)cause;
+                    String schema = populatedSchemas.get(i);
+                    logger.log(Level.SEVERE, "Failed to analyze " + schema, cause);
+                    failures.add(schema + ": " + cause);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+            connectionPool.close();
+        }
+
+        if (!failures.isEmpty()) {
+            StringBuilder err = new StringBuilder("Failed to analyze " + failures.size() + " of " + populatedSchemas.size() + " schemas:");
+            for (String failure : failures) {
+                err.append(System.getProperty("line.separator"));
+                err.append("  ");
+                err.append(failure);
+            }
+            throw new Exception(err.toString());
+        }
+    }
+
+    /**
+     * Analyze each schema in its own JVM, running up to <code>maxProcesses</code>
+     * of them at a time.
+     * Each line of a child's output is prefixed with the name of its schema.
+     * All of the schemas are attempted before any failures are reported.
+     */
+    private void analyzeInChildProcesses(final String dbName, List<String> populatedSchemas, List<String> args, final File outputDir, String loadedFrom, String jvmArgs, int maxProcesses) throws Exception {
+        final List<String> genericCommand = new ArrayList<String>();
         genericCommand.add("java");
+        genericCommand.addAll(getChildJvmArgs(jvmArgs));
         genericCommand.add("-Doneofmultipleschemas=true");
         if (new File(loadedFrom).isDirectory()) {
             genericCommand.add("-cp");
@@ -73,78 +239,201 @@ public final class MultipleSchemaAnalyzer {
                 genericCommand.add("\"" + next + "\"");
         }
 
-        List<String> populatedSchemas;
-        if (schemas == null) {
-            System.out.println("Analyzing schemas that match regular expression '" + schemaSpec + "':");
-            System.out.println("(use -schemaSpec on command line or in .properties to exclude other schemas)");
-            populatedSchemas = getPopulatedSchemas(meta, schemaSpec, user);
-        } else {
-            System.out.println("Analyzing schemas:");
-            populatedSchemas = schemas;
+        int numProcesses = Math.min(populatedSchemas.size(), maxProcesses);
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(numProcesses, 1));
+        List<String> failures = new ArrayList<String>();
+
+        try {
+            List<Future<String>> analyses = new ArrayList<Future<String>>();
+            for (final String schema : populatedSchemas) {
+                analyses.add(executor.submit(new Callable<String>() {
+                    public String call() throws Exception {
+                        return analyzeInChildProcess(schema, getSchemaArgs(dbName, schema, genericCommand, outputDir));
+                    }
+                }));
+            }
+
+            for (Future<String> analysis : analyses) {
+                try {
+                    String failure = analysis.get();
+                    if (failure != null)
+                        failures.add(failure);
+                } catch (ExecutionException exc) {
+                    Throwable cause = exc.getCause();
+                    if (cause instanceof Exception)
+                        throw (Exception)cause;
+                    if (cause instanceof Error)
+                        throw (Error)cause;
+                    throw exc;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
         }
 
-        for (String populatedSchema : populatedSchemas)
-            System.out.print(" " + populatedSchema);
-        System.out.println();
+        if (!failures.isEmpty()) {
+            StringBuilder err = new StringBuilder("Failed to analyze " + failures.size() + " of " + populatedSchemas.size() + " schemas:");
+            for (String failure : failures) {
+                err.append(System.getProperty("line.separator"));
+                err.append("  ");
+                err.append(failure);
+            }
+            throw new ProcessExecutionException(err.toString());
+        }
+    }
 
-        writeIndexPage(dbName, populatedSchemas, meta, outputDir, charset);
+    /**
+     * Run <code>command</code> to analyze <code>schema</code> and wait for it to complete
+     *
+     * @return a description of the failure or <code>null</code> if it succeeded
+     */
+    private String analyzeInChildProcess(String schema, List<String> command) throws IOException, InterruptedException {
+        System.out.println("Analyzing " + schema);
+        System.out.flush();
+        Process java = Runtime.getRuntime().exec(command.toArray(new String[]{}));
+        String prefix = "[" + schema + "] ";
+        ProcessOutputReader stdout = new ProcessOutputReader(java.getInputStream(), System.out, prefix);
+        ProcessOutputReader stderr = new ProcessOutputReader(java.getErrorStream(), System.err, prefix);
+        stdout.start();
+        stderr.start();
 
-        for (String schema : populatedSchemas) {
-            List<String> command = new ArrayList<String>(genericCommand);
-            if (dbName == null)
-                command.add("-db");
-            else
-                command.add("-s");
-            command.add(schema);
-            command.add("-o");
-            command.add(new File(outputDir, schema).toString());
-            System.out.println("Analyzing " + schema);
-            System.out.flush();
-            Process java = Runtime.getRuntime().exec(command.toArray(new String[]{}));
-            new ProcessOutputReader(java.getInputStream(), System.out).start();
-            new ProcessOutputReader(java.getErrorStream(), System.err).start();
+        try {
+            int rc = java.waitFor();
 
-            try {
-                int rc = java.waitFor();
-                if (rc != 0) {
-                    StringBuilder err = new StringBuilder("Failed to execute this process (rc " + rc + "):");
-                    for (String chunk : command) {
-                        err.append(" ");
-                        err.append(chunk);
-                    }
-                    throw new ProcessExecutionException(err.toString());
-                }
-            } catch (InterruptedException exc) {
+            // make sure all of its output precedes any mention of its failure
+            stdout.join();
+            stderr.join();
+
+            if (rc == 0)
+                return null;
+
+            StringBuilder err = new StringBuilder(schema + " (rc " + rc + "):");
+            for (String chunk : command) {
+                err.append(" ");
+                err.append(chunk);
             }
+            return err.toString();
+        } finally {
+            java.destroy();
         }
+    }
 
-        long end = System.currentTimeMillis();
-        System.out.println();
-        System.out.println("Wrote relationship details of " + populatedSchemas.size() + " schema" + (populatedSchemas.size() == 1 ? "" : "s") + " in " + (end - start) / 1000 + " seconds.");
-        System.out.println("Start with " + new File(outputDir, "index.html"));
+    /**
+     * Returns the arguments for the child JVMs: the heap and stack sizes that
+     * this JVM was started with followed by <code>jvmArgs</code> (which
+     * take precedence)
+     */
+    private List<String> getChildJvmArgs(String jvmArgs) {
+        List<String> childArgs = new ArrayList<String>();
+
+        for (String arg : ManagementFactory.getRuntimeMXBean().getInputArguments()) {
+            if (arg.startsWith("-Xmx") || arg.startsWith("-Xms") || arg.startsWith("-Xss") ||
+                    arg.startsWith("-XX:MaxPermSize="))
+                childArgs.add(arg);
+        }
+
+        if (jvmArgs != null) {
+            for (String arg : jvmArgs.trim().split("\\s+")) {
+                if (arg.length() > 0)
+                    childArgs.add(arg);
+            }
+        }
+
+        return childArgs;
     }
 
-    public void analyze(String dbName, List<String> schemas, List<String> args,
-            String user, File outputDir, String charset, String loadedFromJar) throws SQLException, IOException {
-        analyze(dbName, null, null, schemas, args, user, outputDir, charset, loadedFromJar);
+    /**
+     * Returns the schemas in the order that they should be analyzed: those
+     * with the most tables first so that a big schema that's started late doesn't
+     * leave the rest of the workers idle at the end.
+     * Schemas with unknown table counts follow in their original order.
+     */
+    private List<String> getAnalysisOrder(List<String> schemas, final Map<String, Integer> tableCounts) {
+        List<String> ordered = new ArrayList<String>(schemas);
+
+        Collections.sort(ordered, new Comparator<String>() {
+            public int compare(String schema1, String schema2) {
+                Integer count1 = tableCounts.get(schema1);
+                Integer count2 = tableCounts.get(schema2);
+                if (count1 == null)
+                    return count2 == null ? 0 : 1;
+                if (count2 == null)
+                    return -1;
+                return count2.compareTo(count1);
+            }
+        });
+
+        return ordered;
     }
 
-   private void writeIndexPage(String dbName, List<String> populatedSchemas, DatabaseMetaData meta, File outputDir, String charset) throws IOException {
+    /**
+     * Returns the arguments that identify the specified schema and where its
+     * output goes in addition to the common <code>args</code>
+     */
+    private List<String> getSchemaArgs(String dbName, String schema, List<String> args, File outputDir) {
+        List<String> schemaArgs = new ArrayList<String>(args);
+        if (dbName == null)
+            schemaArgs.add("-db");
+        else
+            schemaArgs.add("-s");
+        schemaArgs.add(schema);
+        schemaArgs.add("-o");
+        schemaArgs.add(new File(outputDir, schema).toString());
+        return schemaArgs;
+    }
+
+    /**
+     * Write the index page and, if <code>schemaRelationships</code> are known,
+     * the relationships page of each schema
+     */
+    private void writeIndexPage(String dbName, List<String> populatedSchemas, String databaseProduct, SchemaRelationshipGraph schemaRelationships, File outputDir, String charset) throws IOException {
         if (populatedSchemas.size() > 0) {
-            LineWriter index = new LineWriter(new File(outputDir, "index.html"), charset);
-            HtmlMultipleSchemasIndexPage.getInstance().write(dbName, populatedSchemas, meta, index);
-            index.close();
+            Config config = Config.getInstance();
+            OutputSink sink = config.getOutputSink();
+            OutputCompressor compressor = null;
+            if (config.isOutputCompressionEnabled())
+                compressor = new OutputCompressor(sink, 1, config.isUncompressedOutputKept());
+
+            try {
+                LineWriter index = newPageWriter(new File(outputDir, "index.html"), charset, sink, compressor);
+                HtmlMultipleSchemasIndexPage.getInstance().write(dbName, populatedSchemas, databaseProduct, schemaRelationships, outputDir, index);
+                index.close();
+
+                if (schemaRelationships != null) {
+                    for (String schema : populatedSchemas) {
+                        LineWriter html = newPageWriter(new File(outputDir, schema + ".relationships.html"), charset, sink, compressor);
+                        HtmlSchemaRelationshipsPage.getInstance().write(dbName, schema, schemaRelationships, populatedSchemas.get(0), html);
+                        html.close();
+                    }
+                }
+
+                if (compressor != null)
+                    compressor.finish();
+            } finally {
+                if (compressor != null)
+                    compressor.cancel();
+            }
         }
     }
 
-    private List<String> getPopulatedSchemas(DatabaseMetaData meta, String schemaSpec, String user) throws SQLException {
-        List<String> populatedSchemas;
+    private LineWriter newPageWriter(File file, String charset, OutputSink sink, OutputCompressor compressor) throws IOException {
+        if (compressor == null)
+            return new LineWriter(sink.newOutputStream(file), charset);
+        return new LineWriter(compressor.newOutputStream(file), charset);
+    }
+
+    /**
+     * Returns the populated schemas that match <code>schemaSpec</code> along with
+     * their table counts (<code>null</code> if unknown)
+     */
+    private Map<String, Integer> getPopulatedSchemas(DatabaseMetaData meta, String schemaSpec, String user, Properties properties) throws SQLException {
+        Map<String, Integer> populatedSchemas;
 
         if (meta.supportsSchemasInTableDefinitions()) {
             Pattern schemaRegex = Pattern.compile(schemaSpec);
 
-            populatedSchemas = DbAnalyzer.getPopulatedSchemas(meta, schemaSpec);
-            Iterator<String> iter = populatedSchemas.iterator();
+            populatedSchemas = DbAnalyzer.getPopulatedSchemaTableCounts(meta, schemaSpec, properties);
+            Iterator<String> iter = populatedSchemas.keySet().iterator();
             while (iter.hasNext()) {
                 String schema = iter.next();
                 if (!schemaRegex.matcher(schema).matches()) {
@@ -161,28 +450,34 @@ public final class MultipleSchemaAnalyzer {
                 }
             }
         } else {
-            populatedSchemas = Arrays.asList(new String[] {user});
+            populatedSchemas = Collections.singletonMap(user, null);
         }
 
         return populatedSchemas;
     }
 
+    /**
+     * Copies a child process's output, a line at a time, prefixing each line
+     * so the output of concurrent children can be told apart
+     */
     private static class ProcessOutputReader extends Thread {
-        private final Reader processReader;
+        private final BufferedReader processReader;
         private final PrintStream out;
+        private final String prefix;
 
-        ProcessOutputReader(InputStream processStream, PrintStream out) {
-            processReader = new InputStreamReader(processStream);
+        ProcessOutputReader(InputStream processStream, PrintStream out, String prefix) {
+            processReader = new BufferedReader(new InputStreamReader(processStream));
             this.out = out;
+            this.prefix = prefix;
             setDaemon(true);
         }
 
         @Override
         public void run() {
             try {
-                int ch;
-                while ((ch = processReader.read()) != -1) {
-                    out.print((char)ch);
+                String line;
+                while ((line = processReader.readLine()) != null) {
+                    out.println(prefix + line);
                     out.flush();
                 }
             } catch (IOException ioException) {
@@ -196,4 +491,4 @@ public final class MultipleSchemaAnalyzer {
             }
         }
     }
-}
\ No newline at end of file
+}
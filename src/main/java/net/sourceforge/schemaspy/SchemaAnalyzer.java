@@ -31,32 +31,45 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Handler;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
+import java.util.zip.GZIPOutputStream;
+import net.sourceforge.schemaspy.model.CatalogHarvest;
 import net.sourceforge.schemaspy.model.ConnectionFailure;
 import net.sourceforge.schemaspy.model.Database;
 import net.sourceforge.schemaspy.model.EmptySchemaException;
 import net.sourceforge.schemaspy.model.ForeignKeyConstraint;
 import net.sourceforge.schemaspy.model.ImpliedForeignKeyConstraint;
+import net.sourceforge.schemaspy.model.RelationshipGraph;
 import net.sourceforge.schemaspy.model.InvalidConfigurationException;
 import net.sourceforge.schemaspy.model.Table;
 import net.sourceforge.schemaspy.model.TableColumn;
 import net.sourceforge.schemaspy.model.xml.SchemaMeta;
 import net.sourceforge.schemaspy.util.ConnectionURLBuilder;
-import net.sourceforge.schemaspy.util.DOMUtil;
 import net.sourceforge.schemaspy.util.DbSpecificOption;
 import net.sourceforge.schemaspy.util.Dot;
 import net.sourceforge.schemaspy.util.LineWriter;
 import net.sourceforge.schemaspy.util.LogFormatter;
+import net.sourceforge.schemaspy.util.OutputCompressor;
+import net.sourceforge.schemaspy.util.OutputManifest;
+import net.sourceforge.schemaspy.util.OutputSink;
 import net.sourceforge.schemaspy.util.PasswordReader;
 import net.sourceforge.schemaspy.util.ResourceWriter;
+import net.sourceforge.schemaspy.util.XmlWriter;
+import net.sourceforge.schemaspy.view.ColumnIndex;
 import net.sourceforge.schemaspy.view.DotFormatter;
 import net.sourceforge.schemaspy.view.HtmlAnomaliesPage;
 import net.sourceforge.schemaspy.view.HtmlColumnsPage;
@@ -70,17 +83,39 @@ import net.sourceforge.schemaspy.view.StyleSheet;
 import net.sourceforge.schemaspy.view.TextFormatter;
 import net.sourceforge.schemaspy.view.WriteStats;
 import net.sourceforge.schemaspy.view.XmlTableFormatter;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
 /**
  * @author John Currier
  */
 public class SchemaAnalyzer {
+    private static final Map<String, Driver> drivers = new ConcurrentHashMap<String, Driver>();
     private final Logger logger = Logger.getLogger(getClass().getName());
+    private final ConnectionPool connectionPool;
+    private final CatalogHarvest catalogHarvest;
     private boolean fineEnabled;
 
+    public SchemaAnalyzer() {
+        this(null, null);
+    }
+
+    /**
+     * Analyzer that takes its connection from, and returns it to,
+     * <code>connectionPool</code>.
+     * Used when multiple schemas are analyzed within the same JVM.
+     *
+     * @param connectionPool
+     * @param catalogHarvest optional tables/columns shared by all of those schemas
+     */
+    SchemaAnalyzer(ConnectionPool connectionPool, CatalogHarvest catalogHarvest) {
+        this.connectionPool = connectionPool;
+        this.catalogHarvest = catalogHarvest;
+    }
+
     public Database analyze(Config config) throws Exception {
+        Connection pooledConnection = null;    // to be returned to the connectionPool
+        OutputSink sink = null;
+        OutputCompressor compressor = null;
+
         try {
             if (config.isHelpRequired()) {
                 config.dumpUsage(null, false);
@@ -111,11 +146,8 @@ public class SchemaAnalyzer {
             long startSummarizing = start;
 
             File outputDir = config.getOutputDir();
-            if (!outputDir.isDirectory()) {
-                if (!outputDir.mkdirs()) {
-                    throw new IOException("Failed to create directory '" + outputDir + "'");
-                }
-            }
+            sink = config.getOutputSink();
+            sink.mkdirs(outputDir);
 
             List<String> schemas = config.getSchemas();
             if (schemas != null) {
@@ -123,14 +155,20 @@ public class SchemaAnalyzer {
 
                 // following params will be replaced by something appropriate
                 yankParam(args, "-o");
+                yankParam(args, "-archive");
                 yankParam(args, "-s");
+                yankParam(args, "-schemathreads");
+                yankParam(args, "-jvmargs");
                 args.remove("-all");
                 args.remove("-schemas");
                 args.remove("-schemata");
+                args.remove("-forkschemas");
+                args.remove("-harvestcatalog");
 
                 String dbName = config.getDb();
 
                 MultipleSchemaAnalyzer.getInstance().analyze(dbName, schemas, args, config.getUser(), outputDir, config.getCharset(), Config.getLoadedFromJar());
+                sink.close();
                 return null;
             }
 
@@ -154,9 +192,15 @@ public class SchemaAnalyzer {
             if (config.getDriverPath() != null)
                 driverPath = config.getDriverPath() + File.pathSeparator + driverPath;
 
-            Connection connection = getConnection(config, urlBuilder.getConnectionURL(), driverClass, driverPath);
+            Connection connection = connectionPool == null ? null : connectionPool.take();
+            if (connection == null)
+                connection = getConnection(config, urlBuilder.getConnectionURL(), driverClass, driverPath);
+            if (connectionPool != null)
+                pooledConnection = connection;
 
             DatabaseMetaData meta = connection.getMetaData();
+            if (catalogHarvest != null)
+                meta = catalogHarvest.getMetaData(meta);
             String dbName = config.getDb();
             String schema = config.getSchema();
 
@@ -170,13 +214,19 @@ public class SchemaAnalyzer {
                 }
 
                 yankParam(args, "-o");  // param will be replaced by something appropriate
+                yankParam(args, "-archive");        // the schemas share this analyzer's archive
                 yankParam(args, "-s");  // param will be replaced by something appropriate
                 args.remove("-all");    // param will be replaced by something appropriate
+                yankParam(args, "-schemathreads");  // only meaningful to this analyzer
+                yankParam(args, "-jvmargs");        // only meaningful to this analyzer
+                args.remove("-forkschemas");        // only meaningful to this analyzer
+                args.remove("-harvestcatalog");     // only meaningful to this analyzer
 
                 String schemaSpec = config.getSchemaSpec();
                 if (schemaSpec == null)
                     schemaSpec = properties.getProperty("schemaSpec", ".*");
                 MultipleSchemaAnalyzer.getInstance().analyze(dbName, meta, schemaSpec, null, args, config.getUser(), outputDir, config.getCharset(), Config.getLoadedFromJar());
+                sink.close();
                 return null;    // no database to return
             }
 
@@ -190,8 +240,8 @@ public class SchemaAnalyzer {
 
             SchemaMeta schemaMeta = config.getMeta() == null ? null : new SchemaMeta(config.getMeta(), dbName, schema);
             if (config.isHtmlGenerationEnabled()) {
-                new File(outputDir, "tables").mkdirs();
-                new File(outputDir, "diagrams/summary").mkdirs();
+                sink.mkdirs(new File(outputDir, "tables"));
+                sink.mkdirs(new File(outputDir, "diagrams/summary"));
 
                 logger.info("Connected to " + meta.getDatabaseProductName() + " - " + meta.getDatabaseProductVersion());
 
@@ -222,15 +272,9 @@ public class SchemaAnalyzer {
                     throw new EmptySchemaException();
             }
 
-            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-            DocumentBuilder builder = factory.newDocumentBuilder();
-            Document document = builder.newDocument();
-            Element rootNode = document.createElement("database");
-            document.appendChild(rootNode);
-            DOMUtil.appendAttribute(rootNode, "name", dbName);
-            if (schema != null)
-                DOMUtil.appendAttribute(rootNode, "schema", schema);
-            DOMUtil.appendAttribute(rootNode, "type", db.getDatabaseProduct());
+            // the RI ordering doesn't modify the model so it can be done while the html's being written
+            final List<ForeignKeyConstraint> recursiveConstraints = new ArrayList<ForeignKeyConstraint>();
+            Future<List<Table>> orderedTablesFuture = null;
 
             if (config.isHtmlGenerationEnabled()) {
                 startSummarizing = System.currentTimeMillis();
@@ -246,9 +290,19 @@ public class SchemaAnalyzer {
                     System.out.print("Writing/graphing summary");
                     System.out.print(".");
                 }
-                ImageWriter.getInstance().writeImages(outputDir);
-                ResourceWriter.getInstance().writeResource("/jquery.js", new File(outputDir, "/jquery.js"));
-                ResourceWriter.getInstance().writeResource("/schemaSpy.js", new File(outputDir, "/schemaSpy.js"));
+
+                // pages are compressed while the following ones are being written
+                if (config.isOutputCompressionEnabled())
+                    compressor = new OutputCompressor(sink, Runtime.getRuntime().availableProcessors(), config.isUncompressedOutputKept());
+
+                ImageWriter.getInstance().writeImages(outputDir, sink);
+                if (compressor == null) {
+                    ResourceWriter.getInstance().writeResource("/jquery.js", new File(outputDir, "/jquery.js"), sink);
+                    ResourceWriter.getInstance().writeResource("/schemaSpy.js", new File(outputDir, "/schemaSpy.js"), sink);
+                } else {
+                    ResourceWriter.getInstance().writeResource("/jquery.js", compressor.newOutputStream(new File(outputDir, "jquery.js")));
+                    ResourceWriter.getInstance().writeResource("/schemaSpy.js", compressor.newOutputStream(new File(outputDir, "schemaSpy.js")));
+                }
                 if (!fineEnabled)
                     System.out.print(".");
 
@@ -266,7 +320,7 @@ public class SchemaAnalyzer {
 
                 // generate the compact form of the relationships .dot file
                 String dotBaseFilespec = "relationships";
-                out = new LineWriter(new File(diagramsDir, dotBaseFilespec + ".real.compact.dot"), Config.DOT_CHARSET);
+                out = new LineWriter(sink.newOutputStream(new File(diagramsDir, dotBaseFilespec + ".real.compact.dot")), Config.DOT_CHARSET);
                 WriteStats stats = new WriteStats(tables);
                 DotFormatter.getInstance().writeRealRelationships(db, tables, true, showDetailedTables, stats, out);
                 boolean hasRealRelationships = stats.getNumTablesWritten() > 0 || stats.getNumViewsWritten() > 0;
@@ -276,7 +330,7 @@ public class SchemaAnalyzer {
                     // real relationships exist so generate the 'big' form of the relationships .dot file
                     if (!fineEnabled)
                         System.out.print(".");
-                    out = new LineWriter(new File(diagramsDir, dotBaseFilespec + ".real.large.dot"), Config.DOT_CHARSET);
+                    out = new LineWriter(sink.newOutputStream(new File(diagramsDir, dotBaseFilespec + ".real.large.dot")), Config.DOT_CHARSET);
                     DotFormatter.getInstance().writeRealRelationships(db, tables, false, showDetailedTables, stats, out);
                     out.close();
                 }
@@ -289,28 +343,36 @@ public class SchemaAnalyzer {
                 else
                     impliedConstraints = new ArrayList<ImpliedForeignKeyConstraint>();
 
-                List<Table> orphans = DbAnalyzer.getOrphans(tables);
+                // the graph used by the real relationships diagrams predates the implied constraints
+                if (!impliedConstraints.isEmpty())
+                    db.invalidateRelationshipGraph();
+
+                // all of the relationships are now known
+                RelationshipGraph relationships = db.getRelationshipGraph();
+                orderedTablesFuture = orderTablesByRI(db, recursiveConstraints);
+
+                List<Table> orphans = DbAnalyzer.getOrphans(relationships, tables);
                 boolean hasOrphans = !orphans.isEmpty() && Dot.getInstance().isValid();
 
                 if (!fineEnabled)
                     System.out.print(".");
 
                 File impliedDotFile = new File(diagramsDir, dotBaseFilespec + ".implied.compact.dot");
-                out = new LineWriter(impliedDotFile, Config.DOT_CHARSET);
+                out = new LineWriter(sink.newOutputStream(impliedDotFile), Config.DOT_CHARSET);
                 boolean hasImplied = DotFormatter.getInstance().writeAllRelationships(db, tables, true, showDetailedTables, stats, out);
 
                 Set<TableColumn> excludedColumns = stats.getExcludedColumns();
                 out.close();
                 if (hasImplied) {
                     impliedDotFile = new File(diagramsDir, dotBaseFilespec + ".implied.large.dot");
-                    out = new LineWriter(impliedDotFile, Config.DOT_CHARSET);
+                    out = new LineWriter(sink.newOutputStream(impliedDotFile), Config.DOT_CHARSET);
                     DotFormatter.getInstance().writeAllRelationships(db, tables, false, showDetailedTables, stats, out);
                     out.close();
                 } else {
-                    impliedDotFile.delete();
+                    sink.delete(impliedDotFile);
                 }
 
-                out = new LineWriter(new File(outputDir, dotBaseFilespec + ".html"), config.getCharset());
+                out = newPageWriter(new File(outputDir, dotBaseFilespec + ".html"), 8192, config.getCharset(), sink, compressor);
                 HtmlRelationshipsPage.getInstance().write(db, diagramsDir, dotBaseFilespec, hasOrphans, hasRealRelationships, hasImplied, excludedColumns, out);
                 out.close();
 
@@ -318,14 +380,14 @@ public class SchemaAnalyzer {
                     System.out.print(".");
 
                 dotBaseFilespec = "utilities";
-                out = new LineWriter(new File(outputDir, dotBaseFilespec + ".html"), config.getCharset());
+                out = newPageWriter(new File(outputDir, dotBaseFilespec + ".html"), 8192, config.getCharset(), sink, compressor);
                 HtmlOrphansPage.getInstance().write(db, orphans, diagramsDir, out);
                 out.close();
 
                 if (!fineEnabled)
                     System.out.print(".");
 
-                out = new LineWriter(new File(outputDir, "index.html"), 64 * 1024, config.getCharset());
+                out = newPageWriter(new File(outputDir, "index.html"), 64 * 1024, config.getCharset(), sink, compressor);
                 HtmlMainIndexPage.getInstance().write(db, tables, hasOrphans, out);
                 out.close();
 
@@ -333,7 +395,7 @@ public class SchemaAnalyzer {
                     System.out.print(".");
 
                 List<ForeignKeyConstraint> constraints = DbAnalyzer.getForeignKeyConstraints(tables);
-                out = new LineWriter(new File(outputDir, "constraints.html"), 256 * 1024, config.getCharset());
+                out = newPageWriter(new File(outputDir, "constraints.html"), 256 * 1024, config.getCharset(), sink, compressor);
                 HtmlConstraintsPage constraintIndexFormatter = HtmlConstraintsPage.getInstance();
                 constraintIndexFormatter.write(db, constraints, tables, hasOrphans, out);
                 out.close();
@@ -341,18 +403,14 @@ public class SchemaAnalyzer {
                 if (!fineEnabled)
                     System.out.print(".");
 
-                out = new LineWriter(new File(outputDir, "anomalies.html"), 16 * 1024, config.getCharset());
+                out = newPageWriter(new File(outputDir, "anomalies.html"), 16 * 1024, config.getCharset(), sink, compressor);
                 HtmlAnomaliesPage.getInstance().write(db, tables, impliedConstraints, hasOrphans, out);
                 out.close();
 
                 if (!fineEnabled)
                     System.out.print(".");
 
-                for (HtmlColumnsPage.ColumnInfo columnInfo : HtmlColumnsPage.getInstance().getColumnInfos()) {
-                    out = new LineWriter(new File(outputDir, columnInfo.getLocation()), 16 * 1024, config.getCharset());
-                    HtmlColumnsPage.getInstance().write(db, tables, columnInfo, hasOrphans, out);
-                    out.close();
-                }
+                writeColumnsPages(db, tables, hasOrphans, outputDir, config.getCharset(), sink, compressor);
 
                 // create detailed diagrams
 
@@ -365,25 +423,63 @@ public class SchemaAnalyzer {
                     System.out.print("Writing/diagramming details");
                 }
 
+                // an archive starts out empty so there's nothing to be incremental about
+                OutputManifest manifest = null;
+                if (config.getOutputArchive() == null) {
+                    if (config.isIncrementalEnabled())
+                        manifest = new OutputManifest(outputDir);
+                    else
+                        OutputManifest.discard(outputDir);  // it won't describe what we're about to write
+                }
+                int unchanged = 0;
+
                 HtmlTablePage tableFormatter = HtmlTablePage.getInstance();
                 for (Table table : tables) {
+                    String page = "tables/" + table.getName() + ".html";
+                    String digest = null;
+                    if (manifest != null) {
+                        digest = tableFormatter.getInputDigest(db, table, hasOrphans, stats);
+                        if (manifest.isCurrent(page, digest)) {
+                            logger.fine("Details of " + table.getName() + " haven't changed");
+                            ++unchanged;
+                            continue;
+                        }
+                    }
+
                     if (!fineEnabled)
                         System.out.print('.');
                     else
                         logger.fine("Writing details of " + table.getName());
 
-                    out = new LineWriter(new File(outputDir, "tables/" + table.getName() + ".html"), 24 * 1024, config.getCharset());
+                    out = newPageWriter(new File(outputDir, page), 24 * 1024, config.getCharset(), sink, compressor);
                     tableFormatter.write(db, table, hasOrphans, outputDir, stats, out);
                     out.close();
+
+                    if (manifest != null)
+                        manifest.put(page, digest, tableFormatter.getOutputFiles(table));
                 }
 
-                out = new LineWriter(new File(outputDir, "schemaSpy.css"), config.getCharset());
-                StyleSheet.getInstance().write(out);
-                out.close();
-            }
+                if (compressor == null) {
+                    sink.writeStatic(new File(outputDir, "schemaSpy.css"), StyleSheet.getInstance().getContent(config.getCharset()));
+                } else {
+                    out = newPageWriter(new File(outputDir, "schemaSpy.css"), 8192, config.getCharset(), sink, compressor);
+                    StyleSheet.getInstance().write(out);
+                    out.close();
+                }
+
+                if (compressor != null)
+                    compressor.finish();
 
+                if (manifest != null) {
+                    // files have to be complete before they can be accounted for
+                    sink.flush();
+                    manifest.finish();
+                    if (!fineEnabled && unchanged > 0)
+                        System.out.print("(" + unchanged + " unchanged)");
+                    logger.info(unchanged + " of " + tables.size() + " tables/views were unchanged");
+                }
+            }
 
-            XmlTableFormatter.getInstance().appendTables(rootNode, tables);
 
             String xmlName = dbName;
 
@@ -393,36 +489,54 @@ public class SchemaAnalyzer {
             if (schema != null)
                 xmlName += '.' + schema;
 
-            out = new LineWriter(new File(outputDir, xmlName + ".xml"), Config.DOT_CHARSET);
-            document.getDocumentElement().normalize();
-            DOMUtil.printDOM(document, out);
+            if (config.isXmlCompressionEnabled())
+                out = new LineWriter(new GZIPOutputStream(sink.newOutputStream(new File(outputDir, xmlName + ".xml.gz"))), Config.DOT_CHARSET);
+            else
+                out = new LineWriter(sink.newOutputStream(new File(outputDir, xmlName + ".xml")), Config.DOT_CHARSET);
+            XmlWriter xmlWriter = new XmlWriter(out, Config.DOT_CHARSET);
+            xmlWriter.startElement("database");
+            xmlWriter.attribute("name", dbName);
+            if (schema != null)
+                xmlWriter.attribute("schema", schema);
+            xmlWriter.attribute("type", db.getDatabaseProduct());
+            XmlTableFormatter.getInstance().writeTables(xmlWriter, tables);
+            xmlWriter.finish();
             out.close();
 
+            // another schema can use the connection while we finish up
+            if (pooledConnection != null) {
+                connectionPool.release(pooledConnection);
+                pooledConnection = null;
+            }
+
             // 'try' to make some memory available for the sorting process
             // (some people have run out of memory while RI sorting tables)
-            builder = null;
             connection = null;
-            document = null;
-            factory = null;
             meta = null;
             properties = null;
-            rootNode = null;
             urlBuilder = null;
 
-            List<ForeignKeyConstraint> recursiveConstraints = new ArrayList<ForeignKeyConstraint>();
-
-            // create an orderer to be able to determine insertion and deletion ordering of tables
-            TableOrderer orderer = new TableOrderer();
-
-            // side effect is that the RI relationships get trashed
-            // also populates the recursiveConstraints collection
-            List<Table> orderedTables = orderer.getTablesOrderedByRI(db.getTables(), recursiveConstraints);
+            // determine insertion and deletion ordering of tables
+            // (also populates the recursiveConstraints collection)
+            if (orderedTablesFuture == null)
+                orderedTablesFuture = orderTablesByRI(db, recursiveConstraints);
+            List<Table> orderedTables;
+            try {
+                orderedTables = orderedTablesFuture.get();
+            } catch (ExecutionException exc) {
+                Throwable cause = exc.getCause();
+                if (cause instanceof RuntimeException)
+                    throw (RuntimeException)cause;
+                if (cause instanceof Error)
+                    throw (Error)cause;
+                throw new RuntimeException(cause);
+            }
 
-            out = new LineWriter(new File(outputDir, "insertionOrder.txt"), 16 * 1024, Config.DOT_CHARSET);
+            out = new LineWriter(sink.newOutputStream(new File(outputDir, "insertionOrder.txt")), 16 * 1024, Config.DOT_CHARSET);
             TextFormatter.getInstance().write(orderedTables, false, out);
             out.close();
 
-            out = new LineWriter(new File(outputDir, "deletionOrder.txt"), 16 * 1024, Config.DOT_CHARSET);
+            out = new LineWriter(sink.newOutputStream(new File(outputDir, "deletionOrder.txt")), 16 * 1024, Config.DOT_CHARSET);
             Collections.reverse(orderedTables);
             TextFormatter.getInstance().write(orderedTables, false, out);
             out.close();
@@ -462,13 +576,128 @@ public class SchemaAnalyzer {
                 }
             }
 
+            if (!config.isOneOfMultipleSchemas())
+                sink.close();   // the multiple schema analyzer closes its own
+
             return db;
         } catch (Config.MissingRequiredParameterException missingParam) {
             config.dumpUsage(missingParam.getMessage(), missingParam.isDbTypeSpecific());
             return null;
+        } finally {
+            // the analysis failed before it was done with the connection
+            if (pooledConnection != null)
+                connectionPool.release(pooledConnection);
+
+            // don't leave threads or scratch files behind if it failed before finishing
+            if (compressor != null)
+                compressor.cancel();
+            if (sink != null && !config.isOneOfMultipleSchemas())
+                closeAfterFailure(sink);
         }
     }
 
+    /**
+     * Close <code>sink</code> without letting a failure to do so hide whatever
+     * caused the analysis to fail.  Does nothing if it's already been closed.
+     */
+    private void closeAfterFailure(OutputSink sink) {
+        try {
+            sink.close();
+        } catch (Exception exc) {
+            logger.warning("Failed to close the output: " + exc);
+        }
+    }
+
+    /**
+     * Returns a writer for the specified page that, if there's a <code>compressor</code>,
+     * writes the page through it
+     */
+    private static LineWriter newPageWriter(File file, int sz, String charset, OutputSink sink, OutputCompressor compressor) throws IOException {
+        if (compressor == null)
+            return new LineWriter(sink.newOutputStream(file), sz, charset);
+        return new LineWriter(compressor.newOutputStream(file), sz, charset);
+    }
+
+    /**
+     * Write the <code>columns.by*.html</code> pages.
+     * All of the pages share a single {@link ColumnIndex} and each page
+     * is sorted and written by its own thread.
+     *
+     * @param db
+     * @param tables
+     * @param hasOrphans
+     * @param outputDir
+     * @param charset
+     * @param sink
+     * @param compressor optional
+     * @throws IOException
+     */
+    private void writeColumnsPages(final Database db, Collection<Table> tables, final boolean hasOrphans,
+                                   final File outputDir, final String charset, final OutputSink sink, final OutputCompressor compressor) throws IOException {
+        final ColumnIndex columns = new ColumnIndex(tables);
+        final HtmlColumnsPage formatter = HtmlColumnsPage.getInstance();
+        List<HtmlColumnsPage.ColumnInfo> columnInfos = formatter.getColumnInfos();
+        int numThreads = Math.min(columnInfos.size(), Runtime.getRuntime().availableProcessors());
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(numThreads, 1));
+
+        try {
+            List<Future<Void>> pages = new ArrayList<Future<Void>>();
+            for (final HtmlColumnsPage.ColumnInfo columnInfo : columnInfos) {
+                pages.add(executor.submit(new Callable<Void>() {
+                    public Void call() throws IOException {
+                        LineWriter out = newPageWriter(new File(outputDir, columnInfo.getLocation()), 16 * 1024, charset, sink, compressor);
+                        try {
+                            formatter.write(db, columns, columnInfo, hasOrphans, out);
+                        } finally {
+                            out.close();
+                        }
+                        return null;
+                    }
+                }));
+            }
+
+            for (Future<Void> page : pages) {
+                try {
+                    page.get();
+                } catch (InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while writing columns pages", exc);
+                } catch (ExecutionException exc) {
+                    Throwable cause = exc.getCause();
+                    if (cause instanceof IOException)
+                        throw (IOException)cause;
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException)cause;
+                    throw new IOException(cause);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Start ordering the tables by their RI constraints on a background thread.
+     * The model isn't modified by {@link GraphTableOrderer} so the rest of the
+     * output can be written while this is running.
+     *
+     * @param db
+     * @param recursiveConstraints populated with the constraints that had to be ignored
+     * @return
+     */
+    private static Future<List<Table>> orderTablesByRI(final Database db, final List<ForeignKeyConstraint> recursiveConstraints) {
+        FutureTask<List<Table>> ordering = new FutureTask<List<Table>>(new Callable<List<Table>>() {
+            public List<Table> call() {
+                return new GraphTableOrderer().getTablesOrderedByRI(db.getRelationshipGraph(), db.getTables(), recursiveConstraints);
+            }
+        });
+
+        Thread thread = new Thread(ordering, "TableOrderer");
+        thread.setDaemon(true);
+        thread.start();
+        return ordering;
+    }
+
     /**
      * dumpNoDataMessage
      *
@@ -537,33 +766,38 @@ public class SchemaAnalyzer {
                 invalidClasspathEntries.add(pathElement);
         }
 
-        URLClassLoader loader = new URLClassLoader(classpath.toArray(new URL[classpath.size()]));
-        Driver driver = null;
-        try {
-            driver = (Driver)Class.forName(driverClass, true, loader).newInstance();
-
-            // have to use deprecated method or we won't see messages generated by older drivers
-            //java.sql.DriverManager.setLogStream(System.err);
-        } catch (Exception exc) {
-            System.err.println(exc); // people don't want to see a stack trace...
-            System.err.println();
-            System.err.print("Failed to load driver '" + driverClass + "'");
-            if (classpath.isEmpty())
+        // reuse the driver (and its class loader) of any previous analysis within this JVM
+        String driverKey = driverClass + File.pathSeparator + driverPath;
+        Driver driver = drivers.get(driverKey);
+        if (driver == null) {
+            URLClassLoader loader = new URLClassLoader(classpath.toArray(new URL[classpath.size()]));
+            try {
+                driver = (Driver)Class.forName(driverClass, true, loader).getDeclaredConstructor().newInstance();
+                drivers.put(driverKey, driver);
+
+                // have to use deprecated method or we won't see messages generated by older drivers
+                //java.sql.DriverManager.setLogStream(System.err);
+            } catch (Exception exc) {
+                System.err.println(exc); // people don't want to see a stack trace...
                 System.err.println();
-            else
-                System.err.println("from: " + classpath);
-            if (!invalidClasspathEntries.isEmpty()) {
-                if (invalidClasspathEntries.size() == 1)
-                    System.err.print("This entry doesn't point to a valid file/directory: ");
+                System.err.print("Failed to load driver '" + driverClass + "'");
+                if (classpath.isEmpty())
+                    System.err.println();
                 else
-                    System.err.print("These entries don't point to valid files/directories: ");
-                System.err.println(invalidClasspathEntries);
+                    System.err.println("from: " + classpath);
+                if (!invalidClasspathEntries.isEmpty()) {
+                    if (invalidClasspathEntries.size() == 1)
+                        System.err.print("This entry doesn't point to a valid file/directory: ");
+                    else
+                        System.err.print("These entries don't point to valid files/directories: ");
+                    System.err.println(invalidClasspathEntries);
+                }
+                System.err.println();
+                System.err.println("Use the -dp option to specify the location of the database");
+                System.err.println("drivers for your database (usually in a .jar or .zip/.Z).");
+                System.err.println();
+                throw new ConnectionFailure(exc);
             }
-            System.err.println();
-            System.err.println("Use the -dp option to specify the location of the database");
-            System.err.println("drivers for your database (usually in a .jar or .zip/.Z).");
-            System.err.println();
-            throw new ConnectionFailure(exc);
         }
 
         Properties connectionProperties = config.getConnectionProperties();
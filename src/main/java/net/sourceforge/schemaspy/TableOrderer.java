@@ -194,7 +194,7 @@ public class TableOrderer {
     /**
      * this doesn't change the logical output of the program because all of these (leaves or roots) are at the same logical level
      */
-    private static List<Table> sortTrimmedLevel(List<Table> tables) {
+    static List<Table> sortTrimmedLevel(List<Table> tables) {
         /**
          * order by
          * <ul>
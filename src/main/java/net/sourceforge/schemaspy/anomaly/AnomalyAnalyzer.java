@@ -0,0 +1,190 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.anomaly;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import net.sourceforge.schemaspy.model.Table;
+
+/**
+ * Evaluates a set of {@link AnomalyRule}s against a collection of tables.<p/>
+ *
+ * Each table is visited once with all of the rules evaluated against it.
+ * The tables are split up with fork/join so large schemas are evaluated
+ * across all of the available processors.
+ * The instances of each anomaly are merged and sorted once at the end.
+ *
+ * @author John Currier
+ */
+public class AnomalyAnalyzer {
+    // don't bother splitting up anything smaller than this
+    private static final int MIN_TABLES_PER_TASK = 64;
+
+    private final List<AnomalyRule<?>> rules;
+
+    public AnomalyAnalyzer(List<AnomalyRule<?>> rules) {
+        this.rules = new ArrayList<AnomalyRule<?>>(rules);
+    }
+
+    /**
+     * Evaluate a single rule against the specified tables (on the current thread)
+     *
+     * @param rule
+     * @param tables
+     * @return the sorted instances of the anomaly
+     */
+    public static <T> List<T> evaluate(AnomalyRule<T> rule, Collection<Table> tables) {
+        List<T> anomalies = new ArrayList<T>();
+        for (Table table : tables)
+            rule.evaluate(table, anomalies);
+        rule.sort(anomalies);
+        return anomalies;
+    }
+
+    /**
+     * Evaluate all of the rules against the specified tables
+     *
+     * @param tables
+     * @return
+     */
+    public Anomalies evaluate(Collection<Table> tables) {
+        Table[] all = tables.toArray(new Table[tables.size()]);
+        List<List<Object>> found;
+
+        if (all.length <= MIN_TABLES_PER_TASK) {
+            found = new Evaluator(all, 0, all.length).compute();
+        } else {
+            ForkJoinPool pool = new ForkJoinPool();
+            try {
+                found = pool.invoke(new Evaluator(all, 0, all.length));
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        Anomalies anomalies = new Anomalies();
+        for (int i = 0; i < rules.size(); ++i)
+            anomalies.put(rules.get(i), found.get(i));
+        return anomalies;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void evaluate(AnomalyRule<?> rule, Table table, List<Object> anomalies) {
+        ((AnomalyRule<Object>)rule).evaluate(table, anomalies);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void sort(AnomalyRule<?> rule, List<Object> anomalies) {
+        ((AnomalyRule<Object>)rule).sort(anomalies);
+    }
+
+    /**
+     * Evaluates all of the rules against <code>tables[from, to)</code>,
+     * returning the instances found by each rule (in the same order as the rules)
+     */
+    private class Evaluator extends RecursiveTask<List<List<Object>>> {
+        private static final long serialVersionUID = 1L;
+        private final Table[] tables;
+        private final int from;
+        private final int to;
+        private final boolean outermost;
+
+        Evaluator(Table[] tables, int from, int to) {
+            this(tables, from, to, true);
+        }
+
+        private Evaluator(Table[] tables, int from, int to, boolean outermost) {
+            this.tables = tables;
+            this.from = from;
+            this.to = to;
+            this.outermost = outermost;
+        }
+
+        @Override
+        protected List<List<Object>> compute() {
+            List<List<Object>> found;
+
+            if (to - from <= MIN_TABLES_PER_TASK) {
+                found = new ArrayList<List<Object>>(rules.size());
+                for (int i = 0; i < rules.size(); ++i)
+                    found.add(new ArrayList<Object>());
+
+                for (int t = from; t < to; ++t) {
+                    for (int i = 0; i < found.size(); ++i)
+                        evaluate(rules.get(i), tables[t], found.get(i));
+                }
+            } else {
+                int middle = (from + to) >>> 1;
+                Evaluator second = new Evaluator(tables, middle, to, false);
+                second.fork();
+                found = new Evaluator(tables, from, middle, false).compute();
+                List<List<Object>> secondFound = second.join();
+                for (int i = 0; i < found.size(); ++i)
+                    found.get(i).addAll(secondFound.get(i));
+            }
+
+            if (outermost) {
+                for (int i = 0; i < found.size(); ++i)
+                    sort(rules.get(i), found.get(i));
+            }
+
+            return found;
+        }
+    }
+
+    /**
+     * The instances of each anomaly that were detected
+     */
+    public static class Anomalies {
+        private final List<AnomalyRule<?>> rules = new ArrayList<AnomalyRule<?>>();
+        private final List<List<?>> instances = new ArrayList<List<?>>();
+
+        private void put(AnomalyRule<?> rule, List<?> found) {
+            rules.add(rule);
+            instances.add(Collections.unmodifiableList(found));
+        }
+
+        /**
+         * Returns the rules in the order that they were evaluated
+         *
+         * @return
+         */
+        public List<AnomalyRule<?>> getRules() {
+            return Collections.unmodifiableList(rules);
+        }
+
+        /**
+         * Returns the sorted instances of the specified rule's anomaly
+         *
+         * @param rule
+         * @return
+         */
+        @SuppressWarnings("unchecked")
+        public <T> List<T> get(AnomalyRule<T> rule) {
+            int index = rules.indexOf(rule);
+            if (index == -1)
+                return Collections.emptyList();
+            return (List<T>)instances.get(index);
+        }
+    }
+}
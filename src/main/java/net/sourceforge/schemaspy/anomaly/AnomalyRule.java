@@ -0,0 +1,64 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.anomaly;
+
+import java.util.List;
+import net.sourceforge.schemaspy.model.Table;
+
+/**
+ * A rule that detects 'things that might not be quite right' about a schema.<p/>
+ *
+ * Rules are evaluated one table at a time by {@link AnomalyAnalyzer}.
+ * Implement either {@link TableAnomalyRule} or {@link ColumnAnomalyRule}
+ * (and specify the class with <code>-anomalyRules</code>) to add your own.
+ *
+ * @author John Currier
+ * @param <T> type of anomaly that the rule detects
+ */
+public abstract class AnomalyRule<T> {
+    /**
+     * Only {@link TableAnomalyRule} and {@link ColumnAnomalyRule} can extend this
+     */
+    AnomalyRule() {
+    }
+
+    /**
+     * Returns a description of the anomaly that's displayed above its instances
+     *
+     * @return
+     */
+    public abstract String getDescription();
+
+    /**
+     * Add the instances of this anomaly within <code>table</code> to <code>anomalies</code>.<p/>
+     *
+     * Different tables are evaluated concurrently, so implementations must be thread-safe.
+     *
+     * @param table
+     * @param anomalies
+     */
+    abstract void evaluate(Table table, List<T> anomalies);
+
+    /**
+     * Put the instances of this anomaly into the order that they should be presented
+     *
+     * @param anomalies
+     */
+    abstract void sort(List<T> anomalies);
+}
@@ -0,0 +1,101 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.anomaly;
+
+import java.util.List;
+import net.sourceforge.schemaspy.model.Table;
+import net.sourceforge.schemaspy.model.TableColumn;
+
+/**
+ * Detects tables with columns that have the same prefix and end in
+ * incrementing numbers (e.g. <code>phone1</code>, <code>phone2</code>),
+ * potentially indicating denormalization.<p/>
+ *
+ * A column without a numeric suffix is treated as though it ended in "1"
+ * to catch cases where a "column2" type of column was added to an existing column.<p/>
+ *
+ * The column names are examined in place rather than carving them up
+ * into prefixes and suffixes.
+ *
+ * @author John Currier
+ */
+public class IncrementingColumnNamesRule extends TableAnomalyRule {
+    // more digits than this won't fit in a long
+    private static final int MAX_DIGITS = 18;
+
+    @Override
+    public String getDescription() {
+        return "Tables with incrementing column names, potentially indicating denormalization";
+    }
+
+    @Override
+    public boolean isAnomalous(Table table) {
+        List<TableColumn> columns = table.getColumns();
+        int numColumns = columns.size();
+        String[] names = new String[numColumns];
+        int[] prefixLengths = new int[numColumns];
+        long[] numbers = new long[numColumns];
+
+        // open addressing hash of prefix -> most recent column with that prefix
+        int[] slots = new int[Integer.highestOneBit(Math.max(numColumns, 1)) * 4];
+        int mask = slots.length - 1;
+
+        for (int i = 0; i < numColumns; ++i) {
+            String name = columns.get(i).getName();
+            int prefixLength = name.length();
+            while (prefixLength > 1 && Character.isDigit(name.charAt(prefixLength - 1)))
+                --prefixLength;
+
+            long number;
+            if (prefixLength == name.length()) {
+                number = 1;
+            } else if (name.length() - prefixLength > MAX_DIGITS) {
+                continue;
+            } else {
+                number = 0;
+                for (int j = prefixLength; j < name.length(); ++j)
+                    number = number * 10 + Character.digit(name.charAt(j), 10);
+            }
+
+            names[i] = name;
+            prefixLengths[i] = prefixLength;
+            numbers[i] = number;
+
+            int hash = 0;
+            for (int j = 0; j < prefixLength; ++j)
+                hash = 31 * hash + name.charAt(j);
+            int slot = (hash ^ (hash >>> 16)) & mask;
+
+            // see if we've already found a column with the same prefix
+            // that had a numeric suffix +/- 1
+            while (slots[slot] != 0) {
+                int existing = slots[slot] - 1;
+                if (prefixLengths[existing] == prefixLength && names[existing].regionMatches(0, name, 0, prefixLength)) {
+                    if (Math.abs(numbers[existing] - number) == 1)
+                        return true;
+                    break;
+                }
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = i + 1;
+        }
+
+        return false;
+    }
+}
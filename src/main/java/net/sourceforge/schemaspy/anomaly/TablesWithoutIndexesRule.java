@@ -0,0 +1,38 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.anomaly;
+
+import net.sourceforge.schemaspy.model.Table;
+
+/**
+ * Detects tables (but not views) that don't have any indexes.
+ *
+ * @author John Currier
+ */
+public class TablesWithoutIndexesRule extends TableAnomalyRule {
+    @Override
+    public String getDescription() {
+        return "Tables without indexes";
+    }
+
+    @Override
+    public boolean isAnomalous(Table table) {
+        return !table.isView() && table.getIndexes().size() == 0;
+    }
+}
@@ -0,0 +1,386 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.model;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.logging.Logger;
+
+/**
+ * Table and column metadata of all of the schemas in a multi-schema run.
+ * Each of them is retrieved by a single query across those schemas and the
+ * rows are partitioned by schema (and table).  The query is narrowed down to
+ * the schemas' common prefix, if any, and the rows of other schemas are
+ * dropped as they're read.<p/>
+ *
+ * The {@link DatabaseMetaData} returned by {@link #getMetaData(DatabaseMetaData)}
+ * answers <code>getTables()</code> and <code>getColumns()</code> requests for
+ * those schemas from the harvest, so the {@link Database} of each schema
+ * (and any {@link RemoteTable}s in the other schemas) doesn't have to query
+ * the catalog for them.
+ * Everything else is passed through to the real metadata, as are requests
+ * for schemas that have been {@link #release(String) released}.
+ *
+ * @author John Currier
+ */
+public class CatalogHarvest {
+    private static final String ALL_TABLES = "%";
+    private final Set<String> schemas;
+    private volatile Partitions tables;
+    private volatile Partitions columns;
+    private boolean harvested;
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * @param schemas the schemas to harvest the metadata of
+     */
+    public CatalogHarvest(Collection<String> schemas) {
+        this.schemas = new HashSet<String>(schemas);
+    }
+
+    /**
+     * Discard the harvested metadata of a schema that's been analyzed.
+     * Any subsequent requests for it (from the {@link RemoteTable}s of
+     * other schemas) are passed through to the real metadata.
+     *
+     * @param schema
+     */
+    public void release(String schema) {
+        Partitions harvestedTables = tables;
+        Partitions harvestedColumns = columns;
+        if (harvestedTables != null)
+            harvestedTables.release(schema);
+        if (harvestedColumns != null)
+            harvestedColumns.release(schema);
+    }
+
+    /**
+     * Returns metadata that answers table and column requests for the
+     * harvested schemas from the harvest and delegates everything else
+     * to <code>meta</code>.<p/>
+     *
+     * The first call does the harvesting with <code>meta</code>.
+     *
+     * @param meta
+     * @return
+     */
+    public DatabaseMetaData getMetaData(final DatabaseMetaData meta) {
+        harvest(meta);
+
+        return (DatabaseMetaData)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {DatabaseMetaData.class}, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                String name = method.getName();
+                ResultSet harvestedRows = null;
+                if (name.equals("getTables") && tables != null && ALL_TABLES.equals(args[2]))
+                    harvestedRows = tables.select(args[1], ALL_TABLES, "TABLE_TYPE", (String[])args[3]);
+                else if (name.equals("getColumns") && columns != null && "%".equals(args[3]))
+                    harvestedRows = columns.select(args[1], args[2], null, null);
+                if (harvestedRows != null)
+                    return harvestedRows;
+
+                try {
+                    return method.invoke(meta, args);
+                } catch (InvocationTargetException exc) {
+                    throw exc.getCause();
+                }
+            }
+        });
+    }
+
+    /**
+     * Run the queries across all of the schemas.
+     * If they fail then all requests are passed through to the real metadata.
+     */
+    private synchronized void harvest(DatabaseMetaData meta) {
+        if (harvested)
+            return;
+        harvested = true;
+
+        ResultSet rs = null;
+        try {
+            long start = System.currentTimeMillis();
+            String schemaPattern = getSchemaPattern(meta.getSearchStringEscape());
+
+            rs = meta.getTables(null, schemaPattern, ALL_TABLES, null);
+            Partitions harvestedTables = new Partitions(rs, false);
+            rs.close();
+
+            rs = meta.getColumns(null, schemaPattern, "%", "%");
+            Partitions harvestedColumns = new Partitions(rs, true);
+            rs.close();
+            rs = null;
+
+            tables = harvestedTables;
+            columns = harvestedColumns;
+
+            logger.info("Harvested " + tables.numRows + " tables/views and " + columns.numRows +
+                        " columns of " + schemas.size() + " schemas in " +
+                        (System.currentTimeMillis() - start) / 1000 + " seconds");
+        } catch (SQLException exc) {
+            logger.warning("Failed to harvest the catalog, querying each schema instead: " + exc);
+        } finally {
+            if (rs != null) {
+                try {
+                    rs.close();
+                } catch (SQLException ignore) {
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the most selective <code>LIKE</code> pattern that matches all of
+     * the schemas: their longest common prefix followed by a wildcard
+     * (or the name itself if there's only one schema).
+     * Returns <code>null</code> (any schema) if they don't have a common prefix.
+     *
+     * @param escape the string that escapes wildcards in patterns
+     */
+    String getSchemaPattern(String escape) {
+        String prefix = null;
+        for (String schema : schemas) {
+            if (prefix == null) {
+                prefix = schema;
+            } else {
+                int len = 0;
+                while (len < prefix.length() && len < schema.length() && prefix.charAt(len) == schema.charAt(len))
+                    ++len;
+                prefix = prefix.substring(0, len);
+            }
+        }
+        if (prefix == null)
+            return null;
+
+        boolean canEscape = escape != null && escape.length() > 0;
+        StringBuilder pattern = new StringBuilder();
+        for (int i = 0; i < prefix.length(); ++i) {
+            char ch = prefix.charAt(i);
+            if (ch == '_' || ch == '%' || (canEscape && escape.indexOf(ch) != -1)) {
+                if (!canEscape) {
+                    // the rest of the prefix can't be matched literally
+                    prefix = prefix.substring(0, i);
+                    break;
+                }
+                pattern.append(escape);
+            }
+            pattern.append(ch);
+        }
+
+        if (schemas.size() == 1 && pattern.length() > 0 && prefix.equals(schemas.iterator().next()))
+            return pattern.toString();
+        if (pattern.length() == 0)
+            return null;
+        return pattern.append('%').toString();
+    }
+
+    /**
+     * Rows of a metadata query that belong to the harvested schemas,
+     * partitioned by schema and then by table (or by {@link #ALL_TABLES})
+     */
+    private class Partitions {
+        private final Map<String, Integer> columnIndexes = new HashMap<String, Integer>();
+        private final ConcurrentMap<String, Map<String, List<Object[]>>> partitions = new ConcurrentHashMap<String, Map<String, List<Object[]>>>();
+        private int numRows;
+
+        Partitions(ResultSet rs, boolean byTable) throws SQLException {
+            ResultSetMetaData rsMeta = rs.getMetaData();
+            int numColumns = rsMeta.getColumnCount();
+            for (int i = 0; i < numColumns; ++i)
+                columnIndexes.put(rsMeta.getColumnLabel(i + 1).toUpperCase(), i);
+
+            int schemaIndex = getColumnIndex("TABLE_SCHEM");
+            int tableIndex = getColumnIndex("TABLE_NAME");
+
+            for (String schema : schemas)
+                partitions.put(schema, new HashMap<String, List<Object[]>>());
+
+            Object[] row = new Object[numColumns];
+            while (rs.next()) {
+                // read the columns in order as some drivers require it,
+                // but don't bother with the rest of the rows of other schemas
+                for (int i = 0; i <= schemaIndex; ++i)
+                    row[i] = rs.getObject(i + 1);
+
+                Object schema = row[schemaIndex];
+                Map<String, List<Object[]>> schemaPartitions = schema == null ? null : partitions.get(schema.toString());
+                if (schemaPartitions == null)
+                    continue;
+
+                for (int i = schemaIndex + 1; i < numColumns; ++i)
+                    row[i] = rs.getObject(i + 1);
+
+                String key = byTable ? String.valueOf(row[tableIndex]) : ALL_TABLES;
+                List<Object[]> partition = schemaPartitions.get(key);
+                if (partition == null) {
+                    partition = new ArrayList<Object[]>();
+                    schemaPartitions.put(key, partition);
+                }
+                partition.add(row);
+                ++numRows;
+                row = new Object[numColumns];
+            }
+        }
+
+        void release(String schema) {
+            partitions.remove(schema);
+        }
+
+        int getColumnIndex(String label) throws SQLException {
+            Integer index = columnIndexes.get(label.toUpperCase());
+            if (index == null)
+                throw new SQLException("Invalid column name: " + label);
+            return index;
+        }
+
+        /**
+         * Returns a {@link ResultSet} over the rows of the specified partition
+         *
+         * @param schema
+         * @param table
+         * @param typeColumn if not <code>null</code> then only rows whose value of
+         *      this column is one of <code>types</code> are included
+         * @param types <code>null</code> for all types
+         * @return <code>null</code> if the schema's rows weren't harvested (or were released)
+         * @throws SQLException
+         */
+        ResultSet select(Object schema, Object table, String typeColumn, String[] types) throws SQLException {
+            Map<String, List<Object[]>> schemaPartitions = schema == null ? null : partitions.get(schema.toString());
+            if (schemaPartitions == null)
+                return null;
+
+            List<Object[]> rows = schemaPartitions.get(String.valueOf(table));
+            if (rows == null) {
+                rows = Collections.emptyList();
+            } else if (typeColumn != null && types != null) {
+                int typeIndex = getColumnIndex(typeColumn);
+                List<String> validTypes = Arrays.asList(types);
+                List<Object[]> selected = new ArrayList<Object[]>();
+                for (Object[] row : rows) {
+                    if (validTypes.contains(row[typeIndex]))
+                        selected.add(row);
+                }
+                rows = selected;
+            }
+
+            return (ResultSet)Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {ResultSet.class}, new Cursor(rows));
+        }
+
+        /**
+         * The read-only, forward-only subset of {@link ResultSet} that's
+         * required to consume metadata
+         */
+        private class Cursor implements InvocationHandler {
+            private final List<Object[]> rows;
+            private int current = -1;
+            private boolean wasNull;
+            private boolean closed;
+
+            Cursor(List<Object[]> rows) {
+                this.rows = rows;
+            }
+
+            public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+                String name = method.getName();
+                if (method.getDeclaringClass() == Object.class) {
+                    if (name.equals("equals"))
+                        return proxy == args[0];
+                    if (name.equals("hashCode"))
+                        return System.identityHashCode(proxy);
+                    return "harvested metadata: " + rows.size() + " rows";
+                }
+                if (name.equals("next"))
+                    return ++current < rows.size();
+                if (name.equals("close")) {
+                    closed = true;
+                    return null;
+                }
+                if (name.equals("isClosed"))
+                    return closed;
+                if (name.equals("wasNull"))
+                    return wasNull;
+                if (name.equals("getStatement"))
+                    return null;
+                if (name.equals("findColumn"))
+                    return getColumnIndex((String)args[0]) + 1;
+                if (name.startsWith("get") && args != null && args.length == 1) {
+                    int index = args[0] instanceof String ? getColumnIndex((String)args[0]) : ((Integer)args[0]) - 1;
+                    Object value = rows.get(current)[index];
+                    wasNull = value == null;
+                    return convert(value, method.getReturnType());
+                }
+
+                throw new SQLFeatureNotSupportedException(name + " isn't supported by harvested metadata");
+            }
+
+            private Object convert(Object value, Class<?> type) {
+                if (type == Object.class)
+                    return value;
+                if (type == String.class)
+                    return value == null ? null : value.toString();
+                if (type == boolean.class) {
+                    if (value instanceof Boolean)
+                        return value;
+                    if (value instanceof Number)
+                        return ((Number)value).intValue() != 0;
+                    return value != null && (value.equals("1") || Boolean.valueOf(value.toString()));
+                }
+
+                Number number;
+                if (value == null)
+                    number = Integer.valueOf(0);
+                else if (value instanceof Number)
+                    number = (Number)value;
+                else
+                    number = Double.valueOf(value.toString());
+
+                if (type == int.class)
+                    return number.intValue();
+                if (type == long.class)
+                    return number.longValue();
+                if (type == short.class)
+                    return number.shortValue();
+                if (type == byte.class)
+                    return number.byteValue();
+                if (type == double.class)
+                    return number.doubleValue();
+                if (type == float.class)
+                    return number.floatValue();
+                return value;
+            }
+        }
+    }
+}
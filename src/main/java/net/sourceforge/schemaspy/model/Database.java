@@ -57,6 +57,7 @@ public class Database {
     private final Connection connection;
     private final String connectTime = new SimpleDateFormat("EEE MMM dd HH:mm z yyyy").format(new Date());
     private Set<String> sqlKeywords;
+    private RelationshipGraph relationships;
     private Pattern invalidIdentifierPattern;
     private final Logger logger = Logger.getLogger(getClass().getName());
     private final boolean fineEnabled = logger.isLoggable(Level.FINE);
@@ -122,6 +123,34 @@ public class Database {
         return remoteTables.values();
     }
 
+    /**
+     * Returns the relationships between all of the tables, views and remote tables.<p/>
+     *
+     * The graph is built the first time it's requested and doesn't reflect
+     * subsequent changes to the relationships (e.g. implied constraints)
+     * until {@link #invalidateRelationshipGraph()} is called.
+     *
+     * @return
+     */
+    public synchronized RelationshipGraph getRelationshipGraph() {
+        if (relationships == null) {
+            List<Table> all = new ArrayList<Table>(getTables());
+            all.addAll(getViews());
+            all.addAll(getRemoteTables());
+            relationships = new RelationshipGraph(all);
+        }
+
+        return relationships;
+    }
+
+    /**
+     * Discard the current relationship graph so that the next request for it
+     * reflects relationships that have been added since it was built.
+     */
+    public synchronized void invalidateRelationshipGraph() {
+        relationships = null;
+    }
+
     public Connection getConnection() {
         return connection;
     }
@@ -81,6 +81,30 @@ public class ForeignKeyConstraint implements Comparable<ForeignKeyConstraint> {
         parentColumn.addChild(childColumn, this);
     }
 
+    /**
+     * Same as {@link #ForeignKeyConstraint(TableColumn, TableColumn, int, int)},
+     * but for a constraint that spans multiple columns.
+     * The parent and child columns are paired up by their position in the lists.
+     *
+     * @param parentColumns
+     * @param childColumns
+     */
+    public ForeignKeyConstraint(List<TableColumn> parentColumns, List<TableColumn> childColumns,
+                                int updateRule, int deleteRule) {
+        this(childColumns.get(0).getTable(), null, updateRule, deleteRule);
+
+        for (int i = 0; i < childColumns.size(); ++i) {
+            TableColumn childColumn = childColumns.get(i);
+            TableColumn parentColumn = parentColumns.get(i);
+
+            addChildColumn(childColumn);
+            addParentColumn(parentColumn);
+
+            childColumn.addParent(parentColumn, this);
+            parentColumn.addChild(childColumn, this);
+        }
+    }
+
     /**
      * Same as {@link #ForeignKeyConstraint(TableColumn, TableColumn, int, int)},
      * but defaults updateRule and deleteRule to
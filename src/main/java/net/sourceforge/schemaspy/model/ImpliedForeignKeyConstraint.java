@@ -18,6 +18,10 @@
  */
 package net.sourceforge.schemaspy.model;
 
+import static java.sql.DatabaseMetaData.importedKeyNoAction;
+
+import java.util.List;
+
 public class ImpliedForeignKeyConstraint extends ForeignKeyConstraint {
     /**
      * @param parentColumn
@@ -27,6 +31,16 @@ public class ImpliedForeignKeyConstraint extends ForeignKeyConstraint {
         super(parentColumn, childColumn);
     }
 
+    /**
+     * An implied constraint between composite keys
+     *
+     * @param parentColumns
+     * @param childColumns
+     */
+    public ImpliedForeignKeyConstraint(List<TableColumn> parentColumns, List<TableColumn> childColumns) {
+        super(parentColumns, childColumns, importedKeyNoAction, importedKeyNoAction);
+    }
+
     /**
      * @return
      */
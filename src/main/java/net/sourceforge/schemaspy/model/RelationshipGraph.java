@@ -0,0 +1,418 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the column-to-column relationships between a set of
+ * {@link Table}s.<p/>
+ *
+ * Every table and column is given a dense <code>int</code> id and every
+ * parent/child column pair becomes an edge.
+ * The edges of each table are kept in compressed (CSR) adjacency arrays so
+ * neighbor, degree and orphan questions can be answered by looking at just
+ * that table's edges rather than walking every column's parents and children.<p/>
+ *
+ * The graph doesn't track changes to the model, so it should only be built
+ * once all of the relationships (including implied ones) have been established.
+ *
+ * @author John Currier
+ */
+public class RelationshipGraph {
+    private static final int IMPLIED = 1;
+    private static final int REAL = 1 << 1;
+    private static final int PARENT_EXCLUDED = 1 << 2;
+    private static final int CHILD_EXCLUDED = 1 << 3;
+    private static final int PARENT_ALL_EXCLUDED = 1 << 4;
+    private static final int CHILD_ALL_EXCLUDED = 1 << 5;
+
+    private final Table[] tables;
+    private final Map<Table, Integer> tableIds;
+    private final TableColumn[] columns;
+    private final int[] columnTable;
+    private final Map<TableColumn, Integer> columnIds;
+
+    private final int numEdges;
+    private final int[] edgeParent;     // column ids
+    private final int[] edgeChild;
+    private final ForeignKeyConstraint[] edgeConstraint;
+    private final byte[] edgeFlags;
+
+    // edges where the table is the child (i.e. its parents)
+    private final int[] parentStart;
+    private final int[] parentEdges;
+    // edges where the table is the parent (i.e. its children)
+    private final int[] childStart;
+    private final int[] childEdges;
+
+    /**
+     * Capture the relationships of the specified tables.
+     * Tables outside of that collection that they're related to
+     * (e.g. in other schemas) are also given ids.
+     *
+     * @param tables
+     */
+    public RelationshipGraph(Collection<? extends Table> tables) {
+        List<Table> allTables = new ArrayList<Table>(tables.size());
+        List<TableColumn> allColumns = new ArrayList<TableColumn>();
+        List<Integer> allColumnTables = new ArrayList<Integer>();
+        tableIds = new IdentityHashMap<Table, Integer>();
+        columnIds = new IdentityHashMap<TableColumn, Integer>();
+
+        for (Table table : tables)
+            addTable(table, allTables, allColumns, allColumnTables);
+        final int numSpecified = allTables.size();
+
+        List<TableColumn> parents = new ArrayList<TableColumn>();
+        List<TableColumn> children = new ArrayList<TableColumn>();
+        List<ForeignKeyConstraint> constraints = new ArrayList<ForeignKeyConstraint>();
+
+        for (int tableId = 0; tableId < numSpecified; ++tableId) {
+            for (TableColumn column : allTables.get(tableId).getColumns()) {
+                for (TableColumn parent : column.getParents()) {
+                    addTable(parent.getTable(), allTables, allColumns, allColumnTables);
+                    parents.add(parent);
+                    children.add(column);
+                    constraints.add(column.getParentConstraint(parent));
+                }
+
+                // children in the specified tables are picked up from their side
+                for (TableColumn child : column.getChildren()) {
+                    Integer childTable = tableIds.get(child.getTable());
+                    if (childTable == null || childTable.intValue() >= numSpecified) {
+                        addTable(child.getTable(), allTables, allColumns, allColumnTables);
+                        parents.add(column);
+                        children.add(child);
+                        constraints.add(column.getChildConstraint(child));
+                    }
+                }
+            }
+        }
+
+        this.tables = allTables.toArray(new Table[allTables.size()]);
+        columns = allColumns.toArray(new TableColumn[allColumns.size()]);
+        columnTable = new int[columns.length];
+        for (int i = 0; i < columnTable.length; ++i)
+            columnTable[i] = allColumnTables.get(i);
+
+        numEdges = constraints.size();
+        edgeParent = new int[numEdges];
+        edgeChild = new int[numEdges];
+        edgeConstraint = constraints.toArray(new ForeignKeyConstraint[numEdges]);
+        edgeFlags = new byte[numEdges];
+        for (int edge = 0; edge < numEdges; ++edge) {
+            TableColumn parent = parents.get(edge);
+            TableColumn child = children.get(edge);
+            edgeParent[edge] = columnIds.get(parent);
+            edgeChild[edge] = columnIds.get(child);
+
+            int flags = 0;
+            ForeignKeyConstraint constraint = edgeConstraint[edge];
+            if (constraint != null && constraint.isImplied())
+                flags |= IMPLIED;
+            if (constraint != null && constraint.isReal())
+                flags |= REAL;
+            if (parent.isExcluded())
+                flags |= PARENT_EXCLUDED;
+            if (child.isExcluded())
+                flags |= CHILD_EXCLUDED;
+            if (parent.isAllExcluded())
+                flags |= PARENT_ALL_EXCLUDED;
+            if (child.isAllExcluded())
+                flags |= CHILD_ALL_EXCLUDED;
+            edgeFlags[edge] = (byte)flags;
+        }
+
+        parentStart = new int[this.tables.length + 1];
+        parentEdges = new int[numEdges];
+        buildAdjacency(edgeChild, parentStart, parentEdges);
+        childStart = new int[this.tables.length + 1];
+        childEdges = new int[numEdges];
+        buildAdjacency(edgeParent, childStart, childEdges);
+    }
+
+    private void addTable(Table table, List<Table> allTables, List<TableColumn> allColumns, List<Integer> allColumnTables) {
+        if (tableIds.containsKey(table))
+            return;
+
+        Integer tableId = allTables.size();
+        tableIds.put(table, tableId);
+        allTables.add(table);
+
+        for (TableColumn column : table.getColumns()) {
+            columnIds.put(column, allColumns.size());
+            allColumns.add(column);
+            allColumnTables.add(tableId);
+        }
+    }
+
+    /**
+     * Compressed adjacency: the edges of table <code>t</code> are
+     * <code>adjacent[start[t]]</code> thru <code>adjacent[start[t + 1] - 1]</code>
+     *
+     * @param edgeColumn the column at the end of each edge that determines its table
+     */
+    private void buildAdjacency(int[] edgeColumn, int[] start, int[] adjacent) {
+        for (int edge = 0; edge < numEdges; ++edge)
+            ++start[columnTable[edgeColumn[edge]] + 1];
+        for (int table = 0; table < tables.length; ++table)
+            start[table + 1] += start[table];
+        int[] next = start.clone();
+        for (int edge = 0; edge < numEdges; ++edge)
+            adjacent[next[columnTable[edgeColumn[edge]]]++] = edge;
+    }
+
+    /**
+     * Returns the number of tables in the graph
+     *
+     * @return
+     */
+    public int getNumTables() {
+        return tables.length;
+    }
+
+    public Table getTable(int tableId) {
+        return tables[tableId];
+    }
+
+    /**
+     * Returns the id of the specified table or <code>-1</code> if it isn't part of the graph
+     *
+     * @param table
+     * @return
+     */
+    public int getTableId(Table table) {
+        Integer id = tableIds.get(table);
+        return id == null ? -1 : id.intValue();
+    }
+
+    /**
+     * Returns the id of the specified column or <code>-1</code> if it isn't part of the graph
+     *
+     * @param column
+     * @return
+     */
+    public int getColumnId(TableColumn column) {
+        Integer id = columnIds.get(column);
+        return id == null ? -1 : id.intValue();
+    }
+
+    public TableColumn getColumn(int columnId) {
+        return columns[columnId];
+    }
+
+    /**
+     * Returns the number of (column to column) edges in the graph
+     *
+     * @return
+     */
+    public int getNumEdges() {
+        return numEdges;
+    }
+
+    public TableColumn getParentColumn(int edge) {
+        return columns[edgeParent[edge]];
+    }
+
+    public TableColumn getChildColumn(int edge) {
+        return columns[edgeChild[edge]];
+    }
+
+    public int getParentTableId(int edge) {
+        return columnTable[edgeParent[edge]];
+    }
+
+    public int getChildTableId(int edge) {
+        return columnTable[edgeChild[edge]];
+    }
+
+    public ForeignKeyConstraint getConstraint(int edge) {
+        return edgeConstraint[edge];
+    }
+
+    public boolean isImplied(int edge) {
+        return (edgeFlags[edge] & IMPLIED) != 0;
+    }
+
+    public boolean isReal(int edge) {
+        return (edgeFlags[edge] & REAL) != 0;
+    }
+
+    public boolean isParentExcluded(int edge) {
+        return (edgeFlags[edge] & PARENT_EXCLUDED) != 0;
+    }
+
+    public boolean isChildExcluded(int edge) {
+        return (edgeFlags[edge] & CHILD_EXCLUDED) != 0;
+    }
+
+    /**
+     * Returns <code>true</code> if either end of the edge is excluded from all diagrams
+     *
+     * @param edge
+     * @return
+     */
+    public boolean isAllExcluded(int edge) {
+        return (edgeFlags[edge] & (PARENT_ALL_EXCLUDED | CHILD_ALL_EXCLUDED)) != 0;
+    }
+
+    /**
+     * Returns the edges that connect the specified table to its parents
+     *
+     * @param tableId
+     * @return
+     */
+    public int[] getParentEdges(int tableId) {
+        return copy(parentEdges, parentStart[tableId], parentStart[tableId + 1]);
+    }
+
+    /**
+     * Returns the edges that connect the specified table to its children
+     *
+     * @param tableId
+     * @return
+     */
+    public int[] getChildEdges(int tableId) {
+        return copy(childEdges, childStart[tableId], childStart[tableId + 1]);
+    }
+
+    /**
+     * Returns all of the edges that involve the specified table.
+     * Self-referencing edges are only included once.
+     *
+     * @param table
+     * @return
+     */
+    public int[] getEdges(Table table) {
+        int tableId = getTableId(table);
+        if (tableId == -1)
+            return new int[0];
+
+        int numParentEdges = parentStart[tableId + 1] - parentStart[tableId];
+        int[] edges = new int[numParentEdges + childStart[tableId + 1] - childStart[tableId]];
+        System.arraycopy(parentEdges, parentStart[tableId], edges, 0, numParentEdges);
+        int count = numParentEdges;
+        for (int i = childStart[tableId]; i < childStart[tableId + 1]; ++i) {
+            int edge = childEdges[i];
+            if (getChildTableId(edge) != tableId)
+                edges[count++] = edge;
+        }
+
+        return count == edges.length ? edges : copy(edges, 0, count);
+    }
+
+    private static int[] copy(int[] source, int from, int to) {
+        int[] edges = new int[to - from];
+        System.arraycopy(source, from, edges, 0, edges.length);
+        return edges;
+    }
+
+    /**
+     * Returns the number of (column level) relationships to parent tables
+     *
+     * @param table
+     * @param includeImplied
+     * @return
+     */
+    public int getNumParents(Table table, boolean includeImplied) {
+        int tableId = getTableId(table);
+        if (tableId == -1)
+            return 0;
+        return count(parentEdges, parentStart[tableId], parentStart[tableId + 1], includeImplied);
+    }
+
+    /**
+     * Returns the number of (column level) relationships to child tables
+     *
+     * @param table
+     * @param includeImplied
+     * @return
+     */
+    public int getNumChildren(Table table, boolean includeImplied) {
+        int tableId = getTableId(table);
+        if (tableId == -1)
+            return 0;
+        return count(childEdges, childStart[tableId], childStart[tableId + 1], includeImplied);
+    }
+
+    private int count(int[] adjacent, int from, int to, boolean includeImplied) {
+        if (includeImplied)
+            return to - from;
+
+        int count = 0;
+        for (int i = from; i < to; ++i) {
+            if (!isImplied(adjacent[i]))
+                ++count;
+        }
+        return count;
+    }
+
+    /**
+     * Returns <code>true</code> if the table has no relationships
+     *
+     * @param table
+     * @param withImpliedRelationships
+     * @return
+     */
+    public boolean isOrphan(Table table, boolean withImpliedRelationships) {
+        return getNumParents(table, withImpliedRelationships) == 0 &&
+               getNumChildren(table, withImpliedRelationships) == 0;
+    }
+
+    /**
+     * Returns the tables that are directly related to the specified table.<p/>
+     *
+     * Implied constraints that would have contributed a relative if
+     * <code>includeImplied</code> were <code>true</code> are added to
+     * <code>skippedImpliedConstraints</code>.
+     *
+     * @param table
+     * @param includeExcluded include relationships involving columns that are
+     *          only excluded from indirect relationships
+     * @param includeImplied
+     * @param skippedImpliedConstraints
+     * @return
+     */
+    public Set<Table> getImmediateRelatives(Table table, boolean includeExcluded, boolean includeImplied, Set<ForeignKeyConstraint> skippedImpliedConstraints) {
+        Set<Table> relatives = new HashSet<Table>();
+
+        for (int edge : getEdges(table)) {
+            if (isAllExcluded(edge) || (!includeExcluded && (isParentExcluded(edge) || isChildExcluded(edge))))
+                continue;
+
+            if (includeImplied || !isImplied(edge)) {
+                relatives.add(getParentColumn(edge).getTable());
+                relatives.add(getChildColumn(edge).getTable());
+            } else {
+                skippedImpliedConstraints.add(edgeConstraint[edge]);
+            }
+        }
+
+        relatives.remove(table);
+
+        return relatives;
+    }
+}
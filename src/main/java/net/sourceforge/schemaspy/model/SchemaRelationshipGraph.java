@@ -0,0 +1,238 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The foreign keys that cross schema boundaries in a multi-schema run.<p/>
+ *
+ * Each analyzed schema's {@link Database} is {@link #add(Database) added}
+ * once it's complete.  Only the names of the related schemas, tables and
+ * columns are kept, so the databases themselves can be discarded, and
+ * no additional metadata is requested.
+ * A foreign key that's seen from both of the schemas that it joins
+ * is only counted once.
+ *
+ * @author John Currier
+ */
+public class SchemaRelationshipGraph {
+    private final Set<String> analyzedSchemas;
+    private final Map<String, Link> links = new TreeMap<String, Link>();
+
+    /**
+     * @param analyzedSchemas the schemas that are being analyzed
+     */
+    public SchemaRelationshipGraph(Collection<String> analyzedSchemas) {
+        this.analyzedSchemas = new HashSet<String>(analyzedSchemas);
+    }
+
+    /**
+     * Add the cross-schema foreign keys of the tables, views and remote tables
+     * of the specified database.  Implied relationships aren't included.
+     *
+     * @param db
+     */
+    public void add(Database db) {
+        List<Table> tables = new ArrayList<Table>(db.getTables());
+        tables.addAll(db.getViews());
+        tables.addAll(db.getRemoteTables());
+
+        List<Link> dbLinks = new ArrayList<Link>();
+        for (Table table : tables) {
+            for (ForeignKeyConstraint constraint : table.getForeignKeys()) {
+                if (constraint.isImplied())
+                    continue;
+
+                Table child = constraint.getChildTable();
+                Table parent = constraint.getParentTable();
+                if (child.getSchema() != null && parent.getSchema() != null &&
+                        !child.getSchema().equals(parent.getSchema()))
+                    dbLinks.add(new Link(constraint));
+            }
+        }
+
+        synchronized (links) {
+            for (Link link : dbLinks) {
+                String key = link.getChildSchema() + '.' + link.getChildTable() + '.' + link.getName();
+                if (!links.containsKey(key))
+                    links.put(key, link);
+            }
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the specified schema is one of those being analyzed
+     * (as opposed to one that they just happen to be related to)
+     *
+     * @param schema
+     * @return
+     */
+    public boolean isAnalyzed(String schema) {
+        return analyzedSchemas.contains(schema);
+    }
+
+    /**
+     * Returns the analyzed schemas along with any other schemas that they're related to
+     *
+     * @return
+     */
+    public Set<String> getSchemas() {
+        Set<String> schemas = new TreeSet<String>(analyzedSchemas);
+        for (Link link : getLinks()) {
+            schemas.add(link.getChildSchema());
+            schemas.add(link.getParentSchema());
+        }
+        return schemas;
+    }
+
+    /**
+     * Returns the number of foreign keys from each child schema to each
+     * of its parent schemas, keyed by child schema and then parent schema
+     *
+     * @return
+     */
+    public Map<String, Map<String, Integer>> getCounts() {
+        Map<String, Map<String, Integer>> counts = new TreeMap<String, Map<String, Integer>>();
+        for (Link link : getLinks()) {
+            Map<String, Integer> parentCounts = counts.get(link.getChildSchema());
+            if (parentCounts == null) {
+                parentCounts = new TreeMap<String, Integer>();
+                counts.put(link.getChildSchema(), parentCounts);
+            }
+            Integer count = parentCounts.get(link.getParentSchema());
+            parentCounts.put(link.getParentSchema(), count == null ? 1 : count + 1);
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the foreign keys whose child tables are in the specified schema
+     *
+     * @param schema
+     * @return
+     */
+    public List<Link> getOutbound(String schema) {
+        List<Link> outbound = new ArrayList<Link>();
+        for (Link link : getLinks()) {
+            if (link.getChildSchema().equals(schema))
+                outbound.add(link);
+        }
+        return outbound;
+    }
+
+    /**
+     * Returns the foreign keys whose parent tables are in the specified schema
+     *
+     * @param schema
+     * @return
+     */
+    public List<Link> getInbound(String schema) {
+        List<Link> inbound = new ArrayList<Link>();
+        for (Link link : getLinks()) {
+            if (link.getParentSchema().equals(schema))
+                inbound.add(link);
+        }
+        return inbound;
+    }
+
+    /**
+     * Returns <code>true</code> if none of the analyzed schemas are related to another schema
+     *
+     * @return
+     */
+    public boolean isEmpty() {
+        return getLinks().isEmpty();
+    }
+
+    /**
+     * Returns all of the cross-schema foreign keys ordered by
+     * child schema, child table and constraint name
+     */
+    private Collection<Link> getLinks() {
+        synchronized (links) {
+            return Collections.unmodifiableList(new ArrayList<Link>(links.values()));
+        }
+    }
+
+    /**
+     * A foreign key from a table in one schema to a table in another
+     */
+    public static class Link {
+        private final String name;
+        private final String childSchema;
+        private final String childTable;
+        private final String childColumns;
+        private final String parentSchema;
+        private final String parentTable;
+        private final String parentColumns;
+
+        Link(ForeignKeyConstraint constraint) {
+            name = constraint.getName();
+            childSchema = constraint.getChildTable().getSchema();
+            childTable = constraint.getChildTable().getName();
+            childColumns = ForeignKeyConstraint.toString(constraint.getChildColumns());
+            parentSchema = constraint.getParentTable().getSchema();
+            parentTable = constraint.getParentTable().getName();
+            parentColumns = ForeignKeyConstraint.toString(constraint.getParentColumns());
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getChildSchema() {
+            return childSchema;
+        }
+
+        public String getChildTable() {
+            return childTable;
+        }
+
+        public String getChildColumns() {
+            return childColumns;
+        }
+
+        public String getParentSchema() {
+            return parentSchema;
+        }
+
+        public String getParentTable() {
+            return parentTable;
+        }
+
+        public String getParentColumns() {
+            return parentColumns;
+        }
+
+        @Override
+        public String toString() {
+            return childSchema + '.' + childTable + '.' + childColumns + " refs " +
+                   parentSchema + '.' + parentTable + '.' + parentColumns;
+        }
+    }
+}
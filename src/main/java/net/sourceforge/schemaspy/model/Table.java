@@ -55,6 +55,7 @@ public class Table implements Comparable<Table> {
     private final List<TableColumn> primaryKeys = new ArrayList<TableColumn>();
     private final CaseInsensitiveMap<ForeignKeyConstraint> foreignKeys = new CaseInsensitiveMap<ForeignKeyConstraint>();
     private final CaseInsensitiveMap<TableIndex> indexes = new CaseInsensitiveMap<TableIndex>();
+    private volatile List<TableColumn> sortedColumns;
     private       Object id;
     private final Map<String, String> checkConstraints = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
     private Long numRows;
@@ -266,6 +267,12 @@ public class Table implements Comparable<Table> {
      */
     void setPrimaryColumn(TableColumn primaryColumn) {
         primaryKeys.add(primaryColumn);
+
+        // uniqueness of the existing primary columns depends on how many there are
+        for (TableColumn column : primaryKeys) {
+            if (column != null)
+                column.setIsPrimary();
+        }
     }
 
     /**
@@ -275,10 +282,13 @@ public class Table implements Comparable<Table> {
      */
     private void initColumns(Pattern excludeIndirectColumns, Pattern excludeColumns) throws SQLException {
         ResultSet rs = null;
+        DatabaseMetaData meta = db.getMetaData();
 
-        synchronized (Table.class) {
+        // drivers aren't necessarily thread safe, but each schema analyzed
+        // concurrently has its own connection (and metadata)
+        synchronized (meta) {
             try {
-                rs = db.getMetaData().getColumns(null, getSchema(), getName(), "%");
+                rs = meta.getColumns(null, getSchema(), getName(), "%");
 
                 while (rs.next())
                     addColumn(rs, excludeIndirectColumns, excludeColumns);
@@ -368,7 +378,7 @@ public class Table implements Comparable<Table> {
         if (getColumn(columnName) == null) {
             TableColumn column = new TableColumn(this, rs, excludeIndirectColumns, excludeColumns);
 
-            columns.put(column.getName(), column);
+            putColumn(column);
         }
     }
 
@@ -381,7 +391,7 @@ public class Table implements Comparable<Table> {
     protected TableColumn addColumn(TableColumnMeta colMeta) {
         TableColumn column = new TableColumn(this, colMeta);
 
-        columns.put(column.getName(), column);
+        putColumn(column);
 
         return column;
     }
@@ -601,13 +611,42 @@ public class Table implements Comparable<Table> {
 
     /**
      * Returns <code>List</code> of <code>TableColumn</code>s in ascending column number order.
+     * The list is built the first time it's requested and is reused until
+     * another column gets added to this table, so it's read-only.
      *
      * @return
      */
     public List<TableColumn> getColumns() {
-        Set<TableColumn> sorted = new TreeSet<TableColumn>(new ByColumnIdComparator());
-        sorted.addAll(columns.values());
-        return new ArrayList<TableColumn>(sorted);
+        List<TableColumn> sorted = sortedColumns;
+
+        if (sorted == null) {
+            // built while holding the lock so a column that's added meanwhile
+            // can't have its invalidation overwritten with a stale list
+            synchronized (columns) {
+                sorted = sortedColumns;
+                if (sorted == null) {
+                    Set<TableColumn> sortedSet = new TreeSet<TableColumn>(new ByColumnIdComparator());
+                    sortedSet.addAll(columns.values());
+                    sorted = Collections.unmodifiableList(new ArrayList<TableColumn>(sortedSet));
+                    sortedColumns = sorted;
+                }
+            }
+        }
+
+        return sorted;
+    }
+
+    /**
+     * Add the column to our collection of columns and discard
+     * the cached sorted view of them.
+     *
+     * @param column
+     */
+    private void putColumn(TableColumn column) {
+        synchronized (columns) {
+            columns.put(column.getName(), column);
+            sortedColumns = null;
+        }
     }
 
     /**
@@ -1143,11 +1182,9 @@ public class Table implements Comparable<Table> {
      */
     private static class ByColumnIdComparator implements Comparator<TableColumn> {
         public int compare(TableColumn column1, TableColumn column2) {
-            if (column1.getId() == null || column2.getId() == null)
+            if (!column1.hasId() || !column2.hasId())
                 return column1.getName().compareToIgnoreCase(column2.getName());
-            if (column1.getId() instanceof Number)
-                return ((Number)column1.getId()).intValue() - ((Number)column2.getId()).intValue();
-            return column1.getId().toString().compareToIgnoreCase(column2.getId().toString());
+            return column1.getIdAsInt() - column2.getIdAsInt();
         }
     }
 }
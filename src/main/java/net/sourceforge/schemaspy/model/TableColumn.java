@@ -21,6 +21,7 @@ package net.sourceforge.schemaspy.model;
 import java.sql.DatabaseMetaData;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
@@ -35,24 +36,31 @@ import net.sourceforge.schemaspy.model.xml.TableColumnMeta;
 public class TableColumn {
     private final Table table;
     private final String name;
-    private final Object id;
+    private final int id;
     private final String type;
     private final int length;
     private final int decimalDigits;
-    private final String detailedSize;
+    private final boolean hasSize;
     private final boolean isNullable;
     private       boolean isAutoUpdated;
-    private       Boolean isUnique;
+    private       boolean isUniqueEvaluated;
+    private       boolean isUnique;
+    private       boolean isPrimary;
+    private       boolean isIndexed;
     private final Object defaultValue;
     private       String comments;
-    private final Map<TableColumn, ForeignKeyConstraint> parents = new HashMap<TableColumn, ForeignKeyConstraint>();
-    private final Map<TableColumn, ForeignKeyConstraint> children = new TreeMap<TableColumn, ForeignKeyConstraint>(new ColumnComparator());
+    // the vast majority of columns aren't related to anything, so these
+    // share an empty map until a relationship is actually added
+    private Map<TableColumn, ForeignKeyConstraint> parents = Collections.emptyMap();
+    private Map<TableColumn, ForeignKeyConstraint> children = Collections.emptyMap();
     private boolean allowImpliedParents = true;
     private boolean allowImpliedChildren = true;
     private boolean isExcluded = false;
     private boolean isAllExcluded = false;
     private static final Logger logger = Logger.getLogger(TableColumn.class.getName());
     private static final boolean finerEnabled = logger.isLoggable(Level.FINER);
+    private static final int NO_ID = Integer.MIN_VALUE;
+    private static final Comparator<TableColumn> columnComparator = new ColumnComparator();
 
     /**
      * Create a column associated with a table.
@@ -79,18 +87,12 @@ public class TableColumn {
         else
             length = rs.getInt("COLUMN_SIZE");
 
-        StringBuilder buf = new StringBuilder();
-        buf.append(length);
-        if (decimalDigits > 0) {
-            buf.append(',');
-            buf.append(decimalDigits);
-        }
-        detailedSize = buf.toString();
+        hasSize = true;
 
         isNullable = rs.getInt("NULLABLE") == DatabaseMetaData.columnNullable;
         defaultValue = rs.getString("COLUMN_DEF");
         setComments(rs.getString("REMARKS"));
-        id = new Integer(rs.getInt("ORDINAL_POSITION") - 1);
+        id = rs.getInt("ORDINAL_POSITION") - 1;
 
         isAllExcluded = matches(excludeColumns);
         isExcluded = isAllExcluded || matches(excludeIndirectColumns);
@@ -111,11 +113,11 @@ public class TableColumn {
     public TableColumn(Table table, TableColumnMeta colMeta) {
         this.table = table;
         name = colMeta.getName();
-        id = null;
+        id = NO_ID;
         type = "Unknown";
         length = 0;
         decimalDigits = 0;
-        detailedSize = "";
+        hasSize = false;
         isNullable = false;
         isAutoUpdated = false;
         defaultValue = null;
@@ -146,6 +148,26 @@ public class TableColumn {
      * @return
      */
     public Object getId() {
+        return hasId() ? Integer.valueOf(id) : null;
+    }
+
+    /**
+     * Returns <code>true</code> if this column has an ID
+     *
+     * @see #getId()
+     * @return
+     */
+    boolean hasId() {
+        return id != NO_ID;
+    }
+
+    /**
+     * Same as {@link #getId()} but without boxing.
+     * Only meaningful if {@link #hasId()}.
+     *
+     * @return
+     */
+    int getIdAsInt() {
         return id;
     }
 
@@ -184,7 +206,11 @@ public class TableColumn {
      * @return
      */
     public String getDetailedSize() {
-        return detailedSize;
+        if (!hasSize)
+            return "";
+        if (decimalDigits > 0)
+            return String.valueOf(length) + ',' + decimalDigits;
+        return String.valueOf(length);
     }
 
     /**
@@ -220,22 +246,29 @@ public class TableColumn {
      * @return
      */
     public boolean isUnique() {
-        if (isUnique == null) {
+        if (!isUniqueEvaluated) {
+            boolean unique = false;
+
             // see if there's a unique index on this column by itself
-            for (TableIndex index : table.getIndexes()) {
-                if (index.isUnique()) {
-                    List<TableColumn> indexColumns = index.getColumns();
-                    if (indexColumns.size() == 1 && indexColumns.contains(this)) {
-                        isUnique = true;
-                        break;
+            if (isIndexed) {
+                for (TableIndex index : table.getIndexes()) {
+                    if (index.isUnique()) {
+                        List<TableColumn> indexColumns = index.getColumns();
+                        if (indexColumns.size() == 1 && indexColumns.contains(this)) {
+                            unique = true;
+                            break;
+                        }
                     }
                 }
             }
 
-            if (isUnique == null) {
+            if (!unique) {
                 // if it's a single PK column then it's unique
-                isUnique = table.getPrimaryColumns().size() == 1 && isPrimary();
+                unique = table.getPrimaryColumns().size() == 1 && isPrimary();
             }
+
+            isUnique = unique;
+            isUniqueEvaluated = true;
         }
 
         return isUnique;
@@ -247,7 +280,32 @@ public class TableColumn {
      * @return
      */
     public boolean isPrimary() {
-        return table.getPrimaryColumns().contains(this);
+        return isPrimary;
+    }
+
+    /**
+     * Notification from our {@link Table} that this column is part of its primary key
+     */
+    void setIsPrimary() {
+        isPrimary = true;
+        isUniqueEvaluated = false;
+    }
+
+    /**
+     * Returns <code>true</code> if this column is part of any of its table's indexes
+     *
+     * @return
+     */
+    public boolean isIndexed() {
+        return isIndexed;
+    }
+
+    /**
+     * Notification from a {@link TableIndex} that this column has been added to it
+     */
+    void setIsIndexed() {
+        isIndexed = true;
+        isUniqueEvaluated = false;
     }
 
     /**
@@ -317,6 +375,8 @@ public class TableColumn {
      * @param constraint
      */
     public void addParent(TableColumn parent, ForeignKeyConstraint constraint) {
+        if (parents.isEmpty())
+            parents = new HashMap<TableColumn, ForeignKeyConstraint>(4);
         parents.put(parent, constraint);
         table.addedParent();
     }
@@ -327,7 +387,11 @@ public class TableColumn {
      * @param parent
      */
     public void removeParent(TableColumn parent) {
-        parents.remove(parent);
+        if (!parents.isEmpty()) {
+            parents.remove(parent);
+            if (parents.isEmpty())
+                parents = Collections.emptyMap();    // go back to sharing the empty one
+        }
     }
 
     /**
@@ -337,7 +401,7 @@ public class TableColumn {
         for (TableColumn parent : parents.keySet()) {
             parent.removeChild(this);
         }
-        parents.clear();
+        parents = Collections.emptyMap();
     }
 
     /**
@@ -393,6 +457,8 @@ public class TableColumn {
      * @param constraint
      */
     public void addChild(TableColumn child, ForeignKeyConstraint constraint) {
+        if (children.isEmpty())
+            children = new TreeMap<TableColumn, ForeignKeyConstraint>(columnComparator);
         children.put(child, constraint);
         table.addedChild();
     }
@@ -403,7 +469,11 @@ public class TableColumn {
      * @param child
      */
     public void removeChild(TableColumn child) {
-        children.remove(child);
+        if (!children.isEmpty()) {
+            children.remove(child);
+            if (children.isEmpty())
+                children = Collections.emptyMap();    // go back to sharing the empty one
+        }
     }
 
     /**
@@ -412,7 +482,7 @@ public class TableColumn {
     public void unlinkChildren() {
         for (TableColumn child : children.keySet())
             child.removeParent(this);
-        children.clear();
+        children = Collections.emptyMap();
     }
 
     /**
@@ -475,7 +545,7 @@ public class TableColumn {
     /**
      * Two {@link TableColumn}s are considered equal if their tables and names match.
      */
-    private class ColumnComparator implements Comparator<TableColumn> {
+    private static class ColumnComparator implements Comparator<TableColumn> {
         public int compare(TableColumn column1, TableColumn column2) {
             int rc = column1.getTable().compareTo(column2.getTable());
             if (rc == 0)
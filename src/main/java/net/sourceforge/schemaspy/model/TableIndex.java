@@ -57,6 +57,7 @@ public class TableIndex implements Comparable<TableIndex> {
         if (column != null) {
             columns.add(column);
             columnsAscending.add(Boolean.valueOf(sortOrder == null || sortOrder.equals("A")));
+            column.setIsIndexed();
         }
     }
 
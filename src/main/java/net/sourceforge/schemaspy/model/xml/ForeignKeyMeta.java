@@ -19,8 +19,7 @@
 package net.sourceforge.schemaspy.model.xml;
 
 import java.util.logging.Logger;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
+import org.xml.sax.Attributes;
 
 /**
  * Additional metadata about a foreign key relationship as expressed in XML
@@ -34,22 +33,14 @@ public class ForeignKeyMeta {
     private final String remoteSchema;
     private final static Logger logger = Logger.getLogger(ForeignKeyMeta.class.getName());
 
-    ForeignKeyMeta(Node foreignKeyNode) {
-        NamedNodeMap attribs = foreignKeyNode.getAttributes();
-        Node node = attribs.getNamedItem("table");
-        if (node == null)
+    ForeignKeyMeta(Attributes attribs) {
+        tableName = attribs.getValue("table");
+        if (tableName == null)
             throw new IllegalStateException("XML foreignKey definition requires 'table' attribute");
-        tableName = node.getNodeValue();
-        node = attribs.getNamedItem("column");
-        if (node == null)
+        columnName = attribs.getValue("column");
+        if (columnName == null)
             throw new IllegalStateException("XML foreignKey definition requires 'column' attribute");
-        columnName = node.getNodeValue();
-        node = attribs.getNamedItem("remoteSchema");
-        if (node != null) {
-            remoteSchema = node.getNodeValue();
-        } else {
-            remoteSchema = null;
-        }
+        remoteSchema = attribs.getValue("remoteSchema");
 
         logger.finer("Found XML FK metadata for " + tableName + "." + columnName +
                 " remoteSchema: " + remoteSchema);
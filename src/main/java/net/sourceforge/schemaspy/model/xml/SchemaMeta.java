@@ -25,25 +25,26 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
 import javax.xml.XMLConstants;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.transform.dom.DOMSource;
+import javax.xml.parsers.SAXParserFactory;
 import javax.xml.transform.stream.StreamSource;
 import javax.xml.validation.Schema;
 import javax.xml.validation.SchemaFactory;
-import javax.xml.validation.Validator;
+import javax.xml.validation.ValidatorHandler;
 import net.sourceforge.schemaspy.Config;
 import net.sourceforge.schemaspy.model.InvalidConfigurationException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
 
 /**
  * Additional metadata about a schema as expressed in XML instead of from
- * the database.
+ * the database.<p/>
+ *
+ * The XML is validated and turned into metadata as it's read rather than
+ * being loaded into a DOM first, so large files don't require large amounts
+ * of memory.
  *
  * @author John Currier
  */
@@ -52,6 +53,7 @@ public class SchemaMeta {
     private final String comments;
     private final File metaFile;
     private final Logger logger = Logger.getLogger(getClass().getName());
+    private static Schema metaSchema;
 
     public SchemaMeta(String xmlMeta, String dbName, String schema) throws InvalidConfigurationException {
         File meta = new File(xmlMeta);
@@ -76,24 +78,10 @@ public class SchemaMeta {
 
         metaFile = meta;
 
-        Document doc = parse(metaFile);
-
-        NodeList commentsNodes = doc.getElementsByTagName("comments");
-        if (commentsNodes != null && commentsNodes.getLength() > 0)
-            comments = commentsNodes.item(0).getTextContent();
-        else
-            comments = null;
+        MetaHandler handler = new MetaHandler();
+        parse(metaFile, handler);
 
-        NodeList tablesNodes = doc.getElementsByTagName("tables");
-        if (tablesNodes != null) {
-            NodeList tableNodes = ((Element)tablesNodes.item(0)).getElementsByTagName("table");
-
-            for (int i = 0; i < tableNodes.getLength(); ++i) {
-                Node tableNode = tableNodes.item(i);
-                TableMeta tableMeta = new TableMeta(tableNode);
-                tables.add(tableMeta);
-            }
-        }
+        comments = handler.comments == null ? null : handler.comments.toString();
     }
 
     /**
@@ -111,45 +99,106 @@ public class SchemaMeta {
         return tables;
     }
 
-    private void validate(Document document) throws SAXException, IOException {
-        // create a SchemaFactory capable of understanding WXS schemas
-        SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
-
-        // load a WXS schema, represented by a Schema instance
-        InputStream xsl = getClass().getResourceAsStream("/schemaspy.meta.xsd");
+    /**
+     * Returns the compiled form of <code>schemaspy.meta.xsd</code>.
+     * Compiling it is expensive and the result is thread-safe,
+     * so it's only done once.
+     */
+    private static synchronized Schema getMetaSchema() throws SAXException {
+        if (metaSchema == null) {
+            // create a SchemaFactory capable of understanding WXS schemas
+            SchemaFactory factory = SchemaFactory.newInstance(XMLConstants.W3C_XML_SCHEMA_NS_URI);
 
-        Schema schema = factory.newSchema(new StreamSource(xsl));
+            // load a WXS schema, represented by a Schema instance
+            InputStream xsd = SchemaMeta.class.getResourceAsStream("/schemaspy.meta.xsd");
 
-        // create a Validator instance, which can be used to validate an instance document
-        Validator validator = schema.newValidator();
+            metaSchema = factory.newSchema(new StreamSource(xsd));
+        }
 
-        // validate the DOM tree
-        validator.validate(new DOMSource(document));
+        return metaSchema;
     }
 
-    private Document parse(File file) throws InvalidConfigurationException {
-        DocumentBuilder docBuilder;
-        Document doc = null;
-        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+    /**
+     * Parse the file, validating it on the way through to the handler
+     */
+    private void parse(File file, MetaHandler handler) throws InvalidConfigurationException {
+        XMLReader reader;
+        SAXParserFactory factory = SAXParserFactory.newInstance();
         factory.setNamespaceAware(true);
-        factory.setIgnoringElementContentWhitespace(true);
-        factory.setIgnoringComments(true);
 
         try {
-            docBuilder = factory.newDocumentBuilder();
+            reader = factory.newSAXParser().getXMLReader();
         } catch (ParserConfigurationException exc) {
             throw new InvalidConfigurationException("Invalid XML parser configuration", exc);
+        } catch (SAXException exc) {
+            throw new InvalidConfigurationException("Invalid XML parser configuration", exc);
         }
 
         try {
-            doc = docBuilder.parse(file);
-            validate(doc);
+            ValidatorHandler validator = getMetaSchema().newValidatorHandler();
+            validator.setContentHandler(handler);
+            reader.setContentHandler(validator);
+            reader.parse(file.toURI().toString());
         } catch (SAXException exc) {
             throw new InvalidConfigurationException(file + " failed XML validation:", exc);
         } catch (IOException exc) {
             throw new InvalidConfigurationException("Could not read " + file + ":", exc);
         }
+    }
+
+    /**
+     * Builds up the metadata as the (validated) elements go by
+     */
+    private class MetaHandler extends DefaultHandler {
+        private StringBuilder comments;
+        private boolean inComments;
+        private boolean inTables;
+        private boolean tablesSeen;
+        private TableMeta table;
+        private TableColumnMeta column;
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            if (localName.equals("comments")) {
+                // only the first comments describe the schema
+                if (comments == null) {
+                    comments = new StringBuilder();
+                    inComments = true;
+                }
+            } else if (localName.equals("tables")) {
+                // as are the tables of the first group
+                inTables = !tablesSeen;
+                tablesSeen = true;
+            } else if (inTables) {
+                if (localName.equals("table")) {
+                    table = new TableMeta(attributes);
+                    tables.add(table);
+                } else if (localName.equals("column") && table != null) {
+                    column = new TableColumnMeta(attributes);
+                    table.addColumn(column);
+                } else if (localName.equals("foreignKey") && column != null) {
+                    column.addForeignKey(new ForeignKeyMeta(attributes));
+                }
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            if (localName.equals("comments")) {
+                inComments = false;
+            } else if (localName.equals("tables")) {
+                inTables = false;
+            } else if (localName.equals("table")) {
+                table = null;
+            } else if (localName.equals("column")) {
+                column = null;
+            }
+        }
 
-        return doc;
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inComments)
+                comments.append(ch, start, length);
+        }
     }
-}
\ No newline at end of file
+}
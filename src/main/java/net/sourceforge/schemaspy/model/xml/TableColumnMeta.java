@@ -21,10 +21,7 @@ package net.sourceforge.schemaspy.model.xml;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
-import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import org.xml.sax.Attributes;
 
 /**
  * Additional metadata about a column as expressed in XML instead of from
@@ -43,29 +40,28 @@ public class TableColumnMeta {
     private final boolean isImpliedChildrenDisabled;
     private static final Logger logger = Logger.getLogger(TableColumnMeta.class.getName());
 
-    TableColumnMeta(Node colNode) {
-        NamedNodeMap attribs = colNode.getAttributes();
+    TableColumnMeta(Attributes attribs) {
         String tmp;
 
-        name = attribs.getNamedItem("name").getNodeValue();
-        Node node = attribs.getNamedItem("comments");
-        if (node != null) {
-            tmp = node.getNodeValue().trim();
+        name = attribs.getValue("name");
+        tmp = attribs.getValue("comments");
+        if (tmp != null) {
+            tmp = tmp.trim();
             comments = tmp.length() == 0 ? null : tmp;
         } else {
             comments = null;
         }
 
-        node = attribs.getNamedItem("primaryKey");
-        if (node != null) {
-            isPrimary = evalBoolean(node.getNodeValue());
+        tmp = attribs.getValue("primaryKey");
+        if (tmp != null) {
+            isPrimary = evalBoolean(tmp);
         } else {
             isPrimary = false;
         }
 
-        node = attribs.getNamedItem("disableImpliedKeys");
-        if (node != null) {
-            tmp = node.getNodeValue().trim().toLowerCase();
+        tmp = attribs.getValue("disableImpliedKeys");
+        if (tmp != null) {
+            tmp = tmp.trim().toLowerCase();
             if (tmp.equals("to")) {
                 isImpliedChildrenDisabled = true;
                 isImpliedParentsDisabled  = false;
@@ -81,9 +77,9 @@ public class TableColumnMeta {
             isImpliedChildrenDisabled = isImpliedParentsDisabled = false;
         }
 
-        node = attribs.getNamedItem("disableDiagramAssociations");
-        if (node != null) {
-            tmp = node.getNodeValue().trim().toLowerCase();
+        tmp = attribs.getValue("disableDiagramAssociations");
+        if (tmp != null) {
+            tmp = tmp.trim().toLowerCase();
             if (tmp.equals("all")) {
                 isAllExcluded = true;
                 isExcluded = true;
@@ -102,13 +98,10 @@ public class TableColumnMeta {
         logger.finer("Found XML column metadata for " + name +
                     " isPrimaryKey: " + isPrimary +
                     " comments: " + comments);
+    }
 
-        NodeList fkNodes = ((Element)colNode.getChildNodes()).getElementsByTagName("foreignKey");
-
-        for (int i = 0; i < fkNodes.getLength(); ++i) {
-            Node fkNode = fkNodes.item(i);
-            foreignKeys.add(new ForeignKeyMeta(fkNode));
-        }
+    void addForeignKey(ForeignKeyMeta foreignKey) {
+        foreignKeys.add(foreignKey);
     }
 
     private boolean evalBoolean(String exp) {
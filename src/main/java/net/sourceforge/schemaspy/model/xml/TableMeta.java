@@ -21,10 +21,7 @@ package net.sourceforge.schemaspy.model.xml;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.logging.Logger;
-import org.w3c.dom.Element;
-import org.w3c.dom.NamedNodeMap;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
+import org.xml.sax.Attributes;
 
 /**
  * Additional metadata about a table as expressed in XML instead of from
@@ -39,22 +36,20 @@ public class TableMeta {
     private final String remoteSchema;
     private static final Logger logger = Logger.getLogger(TableMeta.class.getName());
 
-    TableMeta(Node tableNode) {
-        NamedNodeMap attribs = tableNode.getAttributes();
+    TableMeta(Attributes attribs) {
+        name = attribs.getValue("name");
 
-        name = attribs.getNamedItem("name").getNodeValue();
-
-        Node commentNode = attribs.getNamedItem("comments");
-        if (commentNode != null) {
-            String tmp = commentNode.getNodeValue().trim();
+        String tmp = attribs.getValue("comments");
+        if (tmp != null) {
+            tmp = tmp.trim();
             comments = tmp.length() == 0 ? null : tmp;
         } else {
             comments = null;
         }
 
-        Node remoteSchemaNode = attribs.getNamedItem("remoteSchema");
-        if (remoteSchemaNode != null) {
-            remoteSchema = remoteSchemaNode.getNodeValue().trim();
+        tmp = attribs.getValue("remoteSchema");
+        if (tmp != null) {
+            remoteSchema = tmp.trim();
         } else {
             remoteSchema = null;
         }
@@ -62,13 +57,10 @@ public class TableMeta {
         logger.fine("Found XML table metadata for " + name +
                     " remoteSchema: " + remoteSchema +
                     " comments: " + comments);
+    }
 
-        NodeList columnNodes = ((Element)tableNode.getChildNodes()).getElementsByTagName("column");
-
-        for (int i = 0; i < columnNodes.getLength(); ++i) {
-            Node colNode = columnNodes.item(i);
-            columns.add(new TableColumnMeta(colNode));
-        }
+    void addColumn(TableColumnMeta column) {
+        columns.add(column);
     }
 
     public String getName() {
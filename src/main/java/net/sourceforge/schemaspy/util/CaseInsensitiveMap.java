@@ -18,49 +18,318 @@
  */
 package net.sourceforge.schemaspy.util;
 
-import java.util.HashMap;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
- * A {@link HashMap} implementation that uses {@link String}s as its keys
+ * A {@link Map} implementation that uses {@link String}s as its keys
  * where the keys are treated without regard to case.  That is, <code>get("MyTableName")</code>
- * will return the same object as <code>get("MYTABLENAME")</code>.
+ * will return the same object as <code>get("MYTABLENAME")</code>.<p/>
+ *
+ * Keys are folded a character at a time with {@link Character#toUpperCase(char)}
+ * so lookups don't allocate a new upper case <code>String</code> and
+ * aren't affected by the default locale.
+ * Keys are stored (and returned by {@link #keySet()}) in their folded form.<p/>
+ *
+ * Note that this is no longer a {@link java.util.HashMap}, so it can't be
+ * used where one is expected.  It's still {@link Serializable}.
  *
  * @author John Currier
  */
-public class CaseInsensitiveMap<V> extends HashMap<String, V>
+public class CaseInsensitiveMap<V> extends AbstractMap<String, V> implements Serializable
 {
-    private static final long serialVersionUID = 1L;
+    private static final long serialVersionUID = 2L;
+    private static final int INITIAL_CAPACITY = 16;
+
+    private transient CaseInsensitiveEntry<V>[] buckets = newBuckets(INITIAL_CAPACITY);
+    private transient int size;
+    private transient int modCount;
+    private transient Set<Map.Entry<String, V>> entrySet;
 
     @Override
     public V get(Object key) {
-        return super.get(((String)key).toUpperCase());
+        CaseInsensitiveEntry<V> entry = getEntry((String)key);
+        return entry == null ? null : entry.value;
     }
 
     @Override
-    public V put(String key, V value) {
-        return super.put(key.toUpperCase(), value);
+    public boolean containsKey(Object key) {
+        return getEntry((String)key) != null;
     }
 
     @Override
-    public void putAll(Map<? extends String, ? extends V> map) {
-        Iterator<? extends Map.Entry<? extends String, ? extends V>> iter
-                        = map.entrySet().iterator();
+    public V put(String key, V value) {
+        int hash = hash(key);
+        int bucket = hash & (buckets.length - 1);
 
-        while (iter.hasNext()) {
-            Map.Entry<? extends String, ? extends V> e = iter.next();
-            put(e.getKey(), e.getValue());
+        for (CaseInsensitiveEntry<V> entry = buckets[bucket]; entry != null; entry = entry.next) {
+            if (entry.hash == hash && matches(entry.key, key)) {
+                V old = entry.value;
+                entry.value = value;
+                return old;
+            }
         }
+
+        buckets[bucket] = new CaseInsensitiveEntry<V>(fold(key), hash, value, buckets[bucket]);
+        ++modCount;
+        if (++size > buckets.length - (buckets.length >>> 2))
+            resize();
+
+        return null;
     }
 
     @Override
     public V remove(Object key) {
-        return super.remove(((String)key).toUpperCase());
+        CaseInsensitiveEntry<V> removed = removeEntry((String)key);
+        return removed == null ? null : removed.value;
     }
 
     @Override
-    public boolean containsKey(Object key) {
-        return super.containsKey(((String)key).toUpperCase());
+    public void clear() {
+        if (size > 0) {
+            buckets = newBuckets(INITIAL_CAPACITY);
+            size = 0;
+            ++modCount;
+        }
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Map.Entry<String, V>> entrySet() {
+        if (entrySet == null) {
+            entrySet = new AbstractSet<Map.Entry<String, V>>() {
+                @Override
+                public Iterator<Map.Entry<String, V>> iterator() {
+                    return new EntryIterator();
+                }
+
+                @Override
+                public int size() {
+                    return size;
+                }
+
+                @Override
+                public void clear() {
+                    CaseInsensitiveMap.this.clear();
+                }
+            };
+        }
+
+        return entrySet;
+    }
+
+    private CaseInsensitiveEntry<V> getEntry(String key) {
+        int hash = hash(key);
+
+        for (CaseInsensitiveEntry<V> entry = buckets[hash & (buckets.length - 1)]; entry != null; entry = entry.next) {
+            if (entry.hash == hash && matches(entry.key, key))
+                return entry;
+        }
+
+        return null;
+    }
+
+    private CaseInsensitiveEntry<V> removeEntry(String key) {
+        int hash = hash(key);
+        int bucket = hash & (buckets.length - 1);
+        CaseInsensitiveEntry<V> previous = null;
+
+        for (CaseInsensitiveEntry<V> entry = buckets[bucket]; entry != null; entry = entry.next) {
+            if (entry.hash == hash && matches(entry.key, key)) {
+                if (previous == null)
+                    buckets[bucket] = entry.next;
+                else
+                    previous.next = entry.next;
+                --size;
+                ++modCount;
+                return entry;
+            }
+            previous = entry;
+        }
+
+        return null;
+    }
+
+    private void resize() {
+        CaseInsensitiveEntry<V>[] old = buckets;
+        buckets = newBuckets(old.length * 2);
+
+        for (CaseInsensitiveEntry<V> head : old) {
+            CaseInsensitiveEntry<V> entry = head;
+            while (entry != null) {
+                CaseInsensitiveEntry<V> next = entry.next;
+                int bucket = entry.hash & (buckets.length - 1);
+                entry.next = buckets[bucket];
+                buckets[bucket] = entry;
+                entry = next;
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <V> CaseInsensitiveEntry<V>[] newBuckets(int capacity) {
+        return (CaseInsensitiveEntry<V>[])new CaseInsensitiveEntry<?>[capacity];
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        out.writeInt(size);
+        for (Map.Entry<String, V> entry : entrySet()) {
+            out.writeObject(entry.getKey());
+            out.writeObject(entry.getValue());
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        buckets = newBuckets(INITIAL_CAPACITY);
+        int count = in.readInt();
+        for (int i = 0; i < count; ++i)
+            put((String)in.readObject(), (V)in.readObject());
+    }
+
+    /**
+     * Hash of the folded form of the key, computed without creating it
+     */
+    private static int hash(String key) {
+        int hash = 0;
+        for (int i = 0; i < key.length(); ++i)
+            hash = 31 * hash + Character.toUpperCase(key.charAt(i));
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Returns <code>true</code> if <code>key</code> folds to <code>folded</code>
+     */
+    private static boolean matches(String folded, String key) {
+        if (folded == key)
+            return true;
+
+        int length = folded.length();
+        if (key.length() != length)
+            return false;
+
+        for (int i = 0; i < length; ++i) {
+            if (folded.charAt(i) != Character.toUpperCase(key.charAt(i)))
+                return false;
+        }
+
+        return true;
+    }
+
+    private static String fold(String key) {
+        for (int i = 0; i < key.length(); ++i) {
+            if (Character.toUpperCase(key.charAt(i)) != key.charAt(i)) {
+                char[] chars = key.toCharArray();
+                for (int j = i; j < chars.length; ++j)
+                    chars[j] = Character.toUpperCase(chars[j]);
+                return new String(chars);
+            }
+        }
+
+        return key; // already folded
+    }
+
+    private static class CaseInsensitiveEntry<V> implements Map.Entry<String, V> {
+        private final String key;
+        private final int hash;
+        private V value;
+        private CaseInsensitiveEntry<V> next;
+
+        CaseInsensitiveEntry(String key, int hash, V value, CaseInsensitiveEntry<V> next) {
+            this.key = key;
+            this.hash = hash;
+            this.value = value;
+            this.next = next;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        public V setValue(V value) {
+            V old = this.value;
+            this.value = value;
+            return old;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (!(other instanceof Map.Entry))
+                return false;
+            Map.Entry<?, ?> entry = (Map.Entry<?, ?>)other;
+            return key.equals(entry.getKey()) &&
+                    (value == null ? entry.getValue() == null : value.equals(entry.getValue()));
+        }
+
+        @Override
+        public int hashCode() {
+            return key.hashCode() ^ (value == null ? 0 : value.hashCode());
+        }
+
+        @Override
+        public String toString() {
+            return key + '=' + value;
+        }
+    }
+
+    private class EntryIterator implements Iterator<Map.Entry<String, V>> {
+        private int expectedModCount = modCount;
+        private int bucket = -1;
+        private CaseInsensitiveEntry<V> next;
+        private CaseInsensitiveEntry<V> current;
+
+        EntryIterator() {
+            advance();
+        }
+
+        private void advance() {
+            if (next != null)
+                next = next.next;
+            while (next == null && ++bucket < buckets.length)
+                next = buckets[bucket];
+        }
+
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        public Map.Entry<String, V> next() {
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            if (next == null)
+                throw new NoSuchElementException();
+            current = next;
+            advance();
+            return current;
+        }
+
+        public void remove() {
+            if (current == null)
+                throw new IllegalStateException();
+            if (modCount != expectedModCount)
+                throw new ConcurrentModificationException();
+            removeEntry(current.key);
+            expectedModCount = modCount;
+            current = null;
+        }
     }
-}
\ No newline at end of file
+}
@@ -245,17 +245,27 @@ public class Dot {
 
     /**
      * Using the specified .dot file generates an image returning the image's image map.
+     * Both files are exchanged with dot through their {@link OutputSink#getLocalFile(File) local files}.
      */
-    public String generateDiagram(File dotFile, File diagramFile) throws DotFailure {
+    public String generateDiagram(File dotFile, File diagramFile, OutputSink sink) throws DotFailure {
         StringBuilder mapBuffer = new StringBuilder(1024);
 
+        File localDotFile;
+        File localDiagramFile;
+        try {
+            localDotFile = sink.getLocalFile(dotFile);
+            localDiagramFile = sink.getLocalFile(diagramFile);
+        } catch (IOException failed) {
+            throw new DotFailure("Failed to locate " + dotFile + " or " + diagramFile + ": " + failed);
+        }
+
         BufferedReader mapReader = null;
         // this one is for executing.  it can (hopefully) deal with funky things in filenames.
         String[] dotCommand = new String[] {
             getExe(),
             "-T" + getFormat() + getRenderer(),
-            dotFile.toString(),
-            "-o" + diagramFile,
+            localDotFile.toString(),
+            "-o" + localDiagramFile,
             "-Tcmapx"
         };
         // this one is for display purposes ONLY.
@@ -273,18 +283,19 @@ public class Dot {
             int rc = process.waitFor();
             if (rc != 0)
                 throw new DotFailure("'" + commandLine + "' failed with return code " + rc);
-            if (!diagramFile.exists())
+            if (!localDiagramFile.exists())
                 throw new DotFailure("'" + commandLine + "' failed to create output file");
+            sink.addLocalFile(diagramFile);
 
             // dot generates post-HTML 4.0.1 output...convert trailing />'s to >'s
             return mapBuffer.toString().replace("/>", ">");
         } catch (InterruptedException interrupted) {
             throw new RuntimeException(interrupted);
         } catch (DotFailure failed) {
-            diagramFile.delete();
+            sink.delete(diagramFile);
             throw failed;
         } catch (IOException failed) {
-            diagramFile.delete();
+            sink.delete(diagramFile);
             throw new DotFailure("'" + commandLine + "' failed with exception " + failed);
         } finally {
             if (mapReader != null) {
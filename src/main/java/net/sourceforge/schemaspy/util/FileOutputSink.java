@@ -0,0 +1,127 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Writes each generated file to where it says it should go.<p/>
+ *
+ * {@link #writeStatic(File, StaticContent) Static content} isn't rewritten
+ * if it's already there and, when this sink is shared by the output
+ * directories of multiple schemas, is hard linked to the first copy
+ * that was written where the file system allows it.
+ * Since any file might be one of those links, files are always replaced
+ * by new ones rather than being rewritten in place.
+ *
+ * @author John Currier
+ */
+public class FileOutputSink implements OutputSink {
+    // digest of static content to the first file it was written to
+    private final ConcurrentMap<String, File> sharedCopies = new ConcurrentHashMap<String, File>();
+
+    public void mkdirs(File dir) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory())
+            throw new IOException("Failed to create directory '" + dir + "'");
+    }
+
+    public OutputStream newOutputStream(File file) throws IOException {
+        return open(file);
+    }
+
+    public void writeStatic(File file, StaticContent content) throws IOException {
+        if (content.matches(file))
+            return;     // left over from a previous run
+
+        File shared = sharedCopies.get(content.getDigest());
+        if (shared != null && content.matches(shared)) {
+            Path link = newTempPath(file);
+            try {
+                Files.delete(link);
+                Files.createLink(link, shared.toPath());
+                Files.move(link, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                return;
+            } catch (IOException exc) {
+                // e.g. a different file system...fall back to copying
+            } catch (UnsupportedOperationException exc) {
+                // file system doesn't do links
+            } finally {
+                Files.deleteIfExists(link);
+            }
+        }
+
+        Path copy = newTempPath(file);
+        try {
+            Files.write(copy, content.getBytes());
+            Files.move(copy, file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(copy);
+        }
+        sharedCopies.putIfAbsent(content.getDigest(), file);
+    }
+
+    public boolean exists(File file) {
+        return file.exists();
+    }
+
+    public boolean delete(File file) {
+        return file.delete();
+    }
+
+    public File getLocalFile(File file) throws IOException {
+        return file;
+    }
+
+    public void addLocalFile(File file) {
+        // it's already where it belongs
+    }
+
+    public void flush() throws IOException {
+    }
+
+    public void close() throws IOException {
+    }
+
+    /**
+     * Returns a stream that writes a new <code>file</code>.
+     * Whatever was there is unlinked rather than truncated
+     * so another directory's link to it is left intact.
+     */
+    static FileOutputStream open(File file) throws IOException {
+        file.delete();
+        return new FileOutputStream(file);
+    }
+
+    /**
+     * Returns a new (empty) file next to <code>file</code> that can be
+     * moved into its place once it's been written
+     */
+    private static Path newTempPath(File file) throws IOException {
+        Path path = file.getAbsoluteFile().toPath();
+        return Files.createTempFile(path.getParent(), "." + path.getFileName(), ".tmp");
+    }
+}
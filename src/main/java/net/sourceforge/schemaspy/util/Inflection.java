@@ -19,7 +19,11 @@
 package net.sourceforge.schemaspy.util;
 
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 /**
@@ -27,7 +31,11 @@ import java.util.regex.Pattern;
  * <a href='http://api.rubyonrails.org/classes/ActiveSupport/CoreExtensions/String/Inflections.html'>Inflections</a>
  * to handle singularization and pluralization of 'Rails strings'.
  *
- * Copied from <a href='http://code.google.com/p/rogueweb/'>rogueweb</a>'s port of Rails to Java.
+ * Copied from <a href='http://code.google.com/p/rogueweb/'>rogueweb</a>'s port of Rails to Java.<p/>
+ *
+ * The rules are compiled once and combined into a single expression that
+ * determines which rule applies to a word.  Results are remembered (up to a point)
+ * since the same words tend to be inflected over and over again.
  *
  * @author Anthony Eden
  */
@@ -35,6 +43,11 @@ public class Inflection {
     private static final List<Inflection> plural = new ArrayList<Inflection>();
     private static final List<Inflection> singular = new ArrayList<Inflection>();
     private static final List<String> uncountable = new ArrayList<String>();
+    private static final int MAX_CACHED_WORDS = 4096;
+    private static final Map<String, String> pluralCache = newCache();
+    private static final Map<String, String> singularCache = newCache();
+    private static final Pattern pluralSelector;
+    private static final Pattern singularSelector;
 
     static {
         // plural is "singular to plural form"
@@ -101,11 +114,15 @@ public class Inflection {
 
         //Collections.reverse(singular);
         //Collections.reverse(plural);
+
+        pluralSelector = combine(plural);
+        singularSelector = combine(singular);
     }
 
     private final String pattern;
     private final String replacement;
     private final boolean ignoreCase;
+    private final Pattern compiled;
 
     public Inflection(String pattern) {
         this(pattern, null, true);
@@ -119,6 +136,7 @@ public class Inflection {
         this.pattern = pattern;
         this.replacement = replacement;
         this.ignoreCase = ignoreCase;
+        compiled = Pattern.compile(pattern, ignoreCase ? Pattern.CASE_INSENSITIVE : 0);
     }
 
     private static void plural(String pattern, String replacement) {
@@ -144,11 +162,7 @@ public class Inflection {
      * @return True if it matches the inflection pattern
      */
     public boolean match(String word) {
-        int flags = 0;
-        if (ignoreCase) {
-            flags = flags | Pattern.CASE_INSENSITIVE;
-        }
-        return Pattern.compile(pattern, flags).matcher(word).find();
+        return compiled.matcher(word).find();
     }
 
     /**
@@ -157,11 +171,60 @@ public class Inflection {
      * @return The result
      */
     public String replace(String word) {
-        int flags = 0;
-        if (ignoreCase) {
-            flags = flags | Pattern.CASE_INSENSITIVE;
+        return compiled.matcher(word).replaceAll(replacement);
+    }
+
+    /**
+     * Combine the inflections into a single expression.
+     * Each inflection becomes a lookahead anchored at the start of the word
+     * followed by an empty marker group, so the alternatives are attempted in
+     * the same order as the inflections and the marker group that participated
+     * in the match identifies the first inflection that matches the word.
+     */
+    private static Pattern combine(List<Inflection> inflections) {
+        StringBuilder combined = new StringBuilder("^(?:");
+        for (int i = 0; i < inflections.size(); ++i) {
+            Inflection inflection = inflections.get(i);
+            if (i > 0)
+                combined.append('|');
+            combined.append("(?=(?s:.*?)(?:");
+            if (inflection.ignoreCase)
+                combined.append("(?i)");
+            combined.append(inflection.pattern);
+            combined.append("))()");
         }
-        return Pattern.compile(pattern, flags).matcher(word).replaceAll(replacement);
+        combined.append(')');
+        return Pattern.compile(combined.toString());
+    }
+
+    /**
+     * Returns the first of the inflections that matches the word
+     * or <code>null</code> if none of them do
+     */
+    private static Inflection select(Pattern selector, List<Inflection> inflections, String word) {
+        Matcher matcher = selector.matcher(word);
+        if (!matcher.lookingAt())
+            return null;
+
+        // the marker group of each inflection follows that inflection's own groups
+        int group = 0;
+        for (Inflection inflection : inflections) {
+            group += inflection.compiled.matcher("").groupCount() + 1;
+            if (matcher.start(group) != -1)
+                return inflection;
+        }
+        return null;
+    }
+
+    private static Map<String, String> newCache() {
+        return Collections.synchronizedMap(new LinkedHashMap<String, String>(64, .75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > MAX_CACHED_WORDS;
+            }
+        });
     }
 
     /**
@@ -170,16 +233,12 @@ public class Inflection {
      * @return The pluralized word
      */
     public static String pluralize(String word) {
-        if (Inflection.isUncountable(word)) {
-            return word;
+        String inflected = pluralCache.get(word);
+        if (inflected == null) {
+            inflected = inflect(pluralSelector, plural, word);
+            pluralCache.put(word, inflected);
         }
-
-        for (Inflection inflection : plural) {
-            if (inflection.match(word)) {
-                return inflection.replace(word);
-            }
-        }
-        return word;
+        return inflected;
     }
 
     /**
@@ -188,18 +247,21 @@ public class Inflection {
      * @return The singularized word
      */
     public static String singularize(String word) {
+        String inflected = singularCache.get(word);
+        if (inflected == null) {
+            inflected = inflect(singularSelector, singular, word);
+            singularCache.put(word, inflected);
+        }
+        return inflected;
+    }
+
+    private static String inflect(Pattern selector, List<Inflection> inflections, String word) {
         if (Inflection.isUncountable(word)) {
             return word;
         }
 
-        for (Inflection inflection : singular) {
-            //System.out.println(word + " matches " + inflection.pattern + "? (ignore case: " + inflection.ignoreCase + ")");
-            if (inflection.match(word)) {
-                //System.out.println("match!");
-                return inflection.replace(word);
-            }
-        }
-        return word;
+        Inflection inflection = select(selector, inflections, word);
+        return inflection == null ? word : inflection.replace(word);
     }
 
     /**
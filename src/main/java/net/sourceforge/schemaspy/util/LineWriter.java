@@ -18,23 +18,60 @@
  */
 package net.sourceforge.schemaspy.util;
 
-import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
 import java.io.UnsupportedEncodingException;
 import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.IllegalCharsetNameException;
+import java.nio.charset.UnsupportedCharsetException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 /**
- * BufferedWriter that adds a <code>writeln()</code> method
+ * Buffered writer that adds a <code>writeln()</code> method
  * to output a <i>lineDelimited</i> line of text without
- * cluttering up code.
+ * cluttering up code.<p/>
+ *
+ * Text is encoded straight into a reusable byte buffer that's written to
+ * a channel (a <code>FileChannel</code> when writing to a file).
+ * UTF-8 is encoded inline rather than through a <code>CharsetEncoder</code>,
+ * as are single-byte charsets (such as ISO-8859-1) through a table of the
+ * byte that each char maps to.
+ * {@link Fragment}s of constant markup are written as pre-encoded bytes
+ * when the charset allows it.<p/>
+ *
+ * Unlike <code>BufferedWriter</code> instances of this class aren't
+ * synchronized so they shouldn't be shared between threads.
  */
-public class LineWriter extends BufferedWriter {
-    private final Writer out;
+public class LineWriter extends Writer {
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private static final int MAX_UTF8_BYTES_PER_CHAR = 4;
+    private static final byte[] NOT_SINGLE_BYTE = new byte[0];
+    private static final ConcurrentMap<Charset, byte[]> singleByteTables = new ConcurrentHashMap<Charset, byte[]>();
+    private final WritableByteChannel channel;
+    private final OutputStream stream;
+    private final ByteBuffer bytes;
+    private final byte[] buf;
+    private final CharsetEncoder encoder;   // null if encoding ourselves
+    private final CharBuffer chars;         // chars waiting for the encoder
+    private final byte[] singleByte;        // byte of each char of a single-byte charset
+    private final byte replacement;         // of unpaired surrogates when encoding ourselves
+    private final char[] scratch;
+    private final boolean asciiCompatible;
+    private char pendingHighSurrogate;
+    private boolean closed;
+    private static final String lineSeparator = System.getProperty("line.separator");
 
     public LineWriter(String filename, String charset) throws UnsupportedEncodingException, FileNotFoundException {
         this(new FileOutputStream(filename), charset);
@@ -53,17 +90,48 @@ public class LineWriter extends BufferedWriter {
     }
 
     public LineWriter(OutputStream out, String charset) throws UnsupportedEncodingException {
-        this(new OutputStreamWriter(out, charset), 8192);
+        this(out, 8192, charset);
     }
 
     public LineWriter(OutputStream out, int sz, String charset) throws UnsupportedEncodingException {
-        this(new OutputStreamWriter(out, charset), sz);
-    }
+        Charset cs = toCharset(charset);
 
-    private LineWriter(Writer out, int sz) {
-        // by this point a charset has already been specified
-        super(out, sz);
-        this.out = out;
+        if (out instanceof FileOutputStream) {
+            // straight to the file...closing the channel closes the stream
+            channel = ((FileOutputStream)out).getChannel();
+            stream = null;
+        } else {
+            channel = Channels.newChannel(out);
+            stream = out;
+        }
+
+        buf = new byte[Math.max(sz, 64)];
+        bytes = ByteBuffer.wrap(buf);
+        scratch = new char[Math.min(buf.length, 1024)];
+
+        if (cs.equals(UTF8)) {
+            encoder = null;
+            chars = null;
+            singleByte = null;
+            replacement = '?';
+            asciiCompatible = true;
+        } else {
+            singleByte = getSingleByteTable(cs);
+            if (singleByte != null) {
+                encoder = null;
+                chars = null;
+                replacement = cs.newEncoder().replacement()[0];
+                asciiCompatible = isAsciiCompatible(singleByte);
+            } else {
+                // same error handling as an OutputStreamWriter
+                encoder = cs.newEncoder()
+                            .onMalformedInput(CodingErrorAction.REPLACE)
+                            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+                chars = CharBuffer.allocate(buf.length);
+                replacement = '?';
+                asciiCompatible = false;
+            }
+        }
     }
 
     public void writeln(String str) throws IOException {
@@ -75,17 +143,353 @@ public class LineWriter extends BufferedWriter {
         newLine();
     }
 
+    public void newLine() throws IOException {
+        write(lineSeparator);
+    }
+
     /**
-     * Intended to simplify use when wrapping StringWriters.
+     * Write a fragment of constant text, using its pre-encoded form if possible
      */
+    public void write(Fragment fragment) throws IOException {
+        if (fragment.ascii == null || !asciiCompatible || pendingHighSurrogate != 0) {
+            write(fragment.text);
+            return;
+        }
+
+        byte[] ascii = fragment.ascii;
+        if (ascii.length > bytes.remaining()) {
+            drain();
+            if (ascii.length > bytes.remaining()) {
+                ByteBuffer large = ByteBuffer.wrap(ascii);
+                while (large.hasRemaining())
+                    channel.write(large);
+                return;
+            }
+        }
+        bytes.put(ascii);
+    }
+
+    public void writeln(Fragment fragment) throws IOException {
+        write(fragment);
+        newLine();
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        scratch[0] = (char)c;
+        write(scratch, 0, 1);
+    }
+
+    @Override
+    public void write(String str) throws IOException {
+        write(str, 0, str.length());
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        while (len > 0) {
+            int chunk = Math.min(len, scratch.length);
+            str.getChars(off, off + chunk, scratch, 0);
+            write(scratch, 0, chunk);
+            off += chunk;
+            len -= chunk;
+        }
+    }
+
     @Override
-    public String toString() {
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        ensureOpen();
+
+        if (singleByte != null) {
+            writeSingleByte(cbuf, off, len);
+        } else if (encoder == null) {
+            writeUtf8(cbuf, off, len);
+        } else {
+            while (len > 0) {
+                makeRoom();
+                int chunk = Math.min(len, chars.remaining());
+                chars.put(cbuf, off, chunk);
+                off += chunk;
+                len -= chunk;
+                if (!chars.hasRemaining())
+                    encode(false);
+            }
+        }
+    }
+
+    /**
+     * Encode the chars as UTF-8 directly into the byte buffer.
+     * Unpaired surrogates are written as <code>'?'</code>, as they are by
+     * <code>OutputStreamWriter</code>.
+     */
+    private void writeUtf8(char[] cbuf, int off, int len) throws IOException {
+        byte[] b = buf;
+        int limit = b.length - MAX_UTF8_BYTES_PER_CHAR;
+        int pos = bytes.position();
+        int end = off + len;
+
+        for (int i = off; i < end; ++i) {
+            if (pos > limit) {
+                bytes.position(pos);
+                drain();
+                pos = 0;
+            }
+
+            char ch = cbuf[i];
+            if (pendingHighSurrogate != 0) {
+                char high = pendingHighSurrogate;
+                pendingHighSurrogate = 0;
+                if (Character.isLowSurrogate(ch)) {
+                    pos = putCodePoint(b, pos, Character.toCodePoint(high, ch));
+                    continue;
+                }
+                b[pos++] = '?';
+                --i;    // reconsider this char on its own
+                continue;
+            }
+
+            if (ch < 0x80) {
+                b[pos++] = (byte)ch;
+            } else if (ch < 0x800) {
+                b[pos++] = (byte)(0xC0 | (ch >> 6));
+                b[pos++] = (byte)(0x80 | (ch & 0x3F));
+            } else if (Character.isHighSurrogate(ch)) {
+                pendingHighSurrogate = ch;
+            } else if (Character.isLowSurrogate(ch)) {
+                b[pos++] = '?';
+            } else {
+                b[pos++] = (byte)(0xE0 | (ch >> 12));
+                b[pos++] = (byte)(0x80 | ((ch >> 6) & 0x3F));
+                b[pos++] = (byte)(0x80 | (ch & 0x3F));
+            }
+        }
+
+        bytes.position(pos);
+    }
+
+    /**
+     * Map the chars of a single-byte charset straight into the byte buffer.
+     * Surrogates (paired or not) are replaced, as they are by
+     * <code>OutputStreamWriter</code>.
+     */
+    private void writeSingleByte(char[] cbuf, int off, int len) throws IOException {
+        byte[] table = singleByte;
+        byte[] b = buf;
+        int pos = bytes.position();
+        int end = off + len;
+        int i = off;
+
+        while (i < end) {
+            if (pos == b.length) {
+                bytes.position(pos);
+                drain();
+                pos = 0;
+            }
+
+            if (pendingHighSurrogate != 0) {
+                pendingHighSurrogate = 0;
+                b[pos++] = replacement;
+                if (Character.isLowSurrogate(cbuf[i]))
+                    ++i;
+                continue;
+            }
+
+            // map as many chars as will fit up to the next surrogate
+            int stop = Math.min(end, i + b.length - pos);
+            while (i < stop) {
+                char ch = cbuf[i];
+                if (Character.isSurrogate(ch))
+                    break;
+                b[pos++] = table[ch];
+                ++i;
+            }
+
+            if (i < stop) {
+                char ch = cbuf[i++];
+                if (Character.isHighSurrogate(ch))
+                    pendingHighSurrogate = ch;
+                else
+                    b[pos++] = replacement;
+            }
+        }
+
+        bytes.position(pos);
+    }
+
+    private static int putCodePoint(byte[] b, int pos, int codePoint) {
+        b[pos++] = (byte)(0xF0 | (codePoint >> 18));
+        b[pos++] = (byte)(0x80 | ((codePoint >> 12) & 0x3F));
+        b[pos++] = (byte)(0x80 | ((codePoint >> 6) & 0x3F));
+        b[pos++] = (byte)(0x80 | (codePoint & 0x3F));
+        return pos;
+    }
+
+    /**
+     * Run the pending chars through the encoder.
+     * Anything it can't encode yet (half of a surrogate pair) stays pending.
+     */
+    private void encode(boolean endOfInput) throws IOException {
+        chars.flip();
+        while (encoder.encode(chars, bytes, endOfInput).isOverflow())
+            drain();
+        chars.compact();
+    }
+
+    /**
+     * Make room for more chars to be handed to the encoder.<p/>
+     *
+     * If the encoder won't take any of the pending chars then it's waiting for
+     * input that won't make them valid (a run of unpaired surrogates), so the
+     * input is ended to have the encoder replace them and it's then reset
+     * to take the next chars.
+     */
+    private void makeRoom() throws IOException {
+        if (chars.hasRemaining())
+            return;
+
+        encode(false);
+        if (!chars.hasRemaining()) {
+            encode(true);
+            while (encoder.flush(bytes).isOverflow())
+                drain();
+            encoder.reset();
+        }
+    }
+
+    /**
+     * Write the contents of the byte buffer to the channel
+     */
+    private void drain() throws IOException {
+        bytes.flip();
+        while (bytes.hasRemaining())
+            channel.write(bytes);
+        bytes.clear();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        ensureOpen();
+        if (encoder != null)
+            encode(false);
+        drain();
+        if (stream != null)
+            stream.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed)
+            return;
+
         try {
-            flush();
-        } catch (IOException exc) {
-            throw new RuntimeException(exc);
+            if (encoder == null) {
+                if (pendingHighSurrogate != 0) {
+                    pendingHighSurrogate = 0;
+                    if (!bytes.hasRemaining())
+                        drain();
+                    bytes.put(replacement);
+                }
+            } else {
+                encode(true);
+                while (encoder.flush(bytes).isOverflow())
+                    drain();
+            }
+            drain();
+        } finally {
+            closed = true;
+            channel.close();
         }
+    }
 
-        return out.toString();
+    private void ensureOpen() throws IOException {
+        if (closed)
+            throw new IOException("Stream closed");
+    }
+
+    private static Charset toCharset(String charset) throws UnsupportedEncodingException {
+        try {
+            return Charset.forName(charset);
+        } catch (IllegalCharsetNameException exc) {
+            throw new UnsupportedEncodingException(charset);
+        } catch (UnsupportedCharsetException exc) {
+            throw new UnsupportedEncodingException(charset);
+        }
+    }
+
+    /**
+     * Returns the byte that each (non-surrogate) char is encoded as by a
+     * single-byte charset, with unmappable chars encoded as its replacement,
+     * or <code>null</code> if the charset isn't a single-byte charset
+     */
+    private static byte[] getSingleByteTable(Charset charset) {
+        byte[] table = singleByteTables.get(charset);
+        if (table == null) {
+            table = NOT_SINGLE_BYTE;
+
+            CharsetEncoder encoder = charset.newEncoder()
+                        .onMalformedInput(CodingErrorAction.REPLACE)
+                        .onUnmappableCharacter(CodingErrorAction.REPLACE);
+            if (encoder.maxBytesPerChar() == 1 && encoder.replacement().length == 1) {
+                char[] all = new char[Character.MAX_VALUE + 1];
+                for (int i = 0; i < all.length; ++i)
+                    all[i] = Character.isSurrogate((char)i) ? 0 : (char)i;
+
+                try {
+                    ByteBuffer encoded = encoder.encode(CharBuffer.wrap(all));
+                    if (encoded.remaining() == all.length) {
+                        table = new byte[all.length];
+                        encoded.get(table);
+                    }
+                } catch (CharacterCodingException exc) {
+                    // not something we can map ourselves
+                }
+            }
+
+            singleByteTables.putIfAbsent(charset, table);
+        }
+
+        return table == NOT_SINGLE_BYTE ? null : table;
+    }
+
+    /**
+     * Returns <code>true</code> if the single-byte charset encodes every ASCII
+     * character as that same byte, so pre-encoded ASCII can be mixed in with its output.
+     */
+    private static boolean isAsciiCompatible(byte[] singleByte) {
+        for (int i = 0; i < 0x80; ++i) {
+            if (singleByte[i] != i)
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * A piece of constant text (typically markup) that's written often enough
+     * that it's worth encoding it once up front rather than every time
+     * it's written.
+     */
+    public static class Fragment {
+        private final String text;
+        private final byte[] ascii;     // null if the text isn't pure ASCII
+
+        public Fragment(String text) {
+            this.text = text;
+
+            byte[] encoded = new byte[text.length()];
+            for (int i = 0; i < encoded.length; ++i) {
+                char ch = text.charAt(i);
+                if (ch >= 0x80) {
+                    encoded = null;
+                    break;
+                }
+                encoded[i] = (byte)ch;
+            }
+            ascii = encoded;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,194 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes pre-compressed copies of generated files (<code>page.html.gz</code>
+ * for <code>page.html</code>) that can be served as-is by web servers
+ * such as nginx's <code>gzip_static</code>.<p/>
+ *
+ * The content of each {@link #newOutputStream(File) stream} is held in
+ * memory until it's closed and is then compressed on a pool of threads,
+ * so compressing one page overlaps with producing the next.
+ * Only a couple of pages per thread are held waiting to be compressed;
+ * beyond that the thread that closes a page compresses it itself
+ * rather than letting the backlog use up the heap.
+ * {@link #finish()} waits for all of the pages to be written.
+ *
+ * @author John Currier
+ */
+public class OutputCompressor {
+    private final OutputSink sink;
+    private final boolean keepUncompressed;
+    private final ThreadPoolExecutor executor;
+    private final List<Future<Void>> pending = new ArrayList<Future<Void>>();
+
+    /**
+     * @param sink where the compressed (and uncompressed) files are written
+     * @param numThreads number of threads to compress with
+     * @param keepUncompressed <code>true</code> to also write the uncompressed file
+     */
+    public OutputCompressor(OutputSink sink, int numThreads, boolean keepUncompressed) {
+        this.sink = sink;
+        this.keepUncompressed = keepUncompressed;
+        numThreads = Math.max(numThreads, 1);
+        executor = new ThreadPoolExecutor(numThreads, numThreads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<Runnable>(numThreads * 2), new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                // don't hold up the JVM if we're abandoned due to a failure
+                Thread thread = new Thread(runnable, "OutputCompressor");
+                thread.setDaemon(true);
+                return thread;
+            }
+        }, new RejectedExecutionHandler() {
+            public void rejectedExecution(Runnable write, ThreadPoolExecutor pool) {
+                if (pool.isShutdown())
+                    throw new RejectedExecutionException("Can't compress output after it's been finished");
+                write.run();    // the compressing threads are behind
+            }
+        });
+    }
+
+    /**
+     * Returns a stream whose content will be compressed to <code>file</code>
+     * plus <code>.gz</code> once the stream is closed
+     *
+     * @param file
+     * @return
+     */
+    public OutputStream newOutputStream(final File file) {
+        return new ByteArrayOutputStream(16 * 1024) {
+            private boolean closed;
+
+            @Override
+            public void close() {
+                if (!closed) {
+                    closed = true;
+                    submit(file, buf, count);
+                }
+            }
+        };
+    }
+
+    /**
+     * Wait for everything that's been submitted to be written
+     *
+     * @throws IOException the first failure to write a file
+     */
+    public void finish() throws IOException {
+        try {
+            List<Future<Void>> writes;
+            synchronized (pending) {
+                writes = new ArrayList<Future<Void>>(pending);
+                pending.clear();
+            }
+
+            for (Future<Void> write : writes) {
+                try {
+                    write.get();
+                } catch (InterruptedException exc) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while compressing output", exc);
+                } catch (ExecutionException exc) {
+                    Throwable cause = exc.getCause();
+                    if (cause instanceof IOException)
+                        throw (IOException)cause;
+                    if (cause instanceof RuntimeException)
+                        throw (RuntimeException)cause;
+                    throw new IOException(cause);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Stop compressing without waiting for what's been submitted,
+     * as is done when the output is abandoned due to a failure.
+     * Has no effect once {@link #finish() finished}.
+     */
+    public void cancel() {
+        executor.shutdownNow();
+    }
+
+    private void submit(final File file, final byte[] content, final int len) {
+        submit(new Callable<Void>() {
+            public Void call() throws IOException {
+                if (keepUncompressed) {
+                    OutputStream out = sink.newOutputStream(file);
+                    try {
+                        out.write(content, 0, len);
+                    } finally {
+                        out.close();
+                    }
+                } else {
+                    // don't leave a stale copy from a previous run around
+                    sink.delete(file);
+                }
+
+                OutputStream out = newGzipOutputStream(file);
+                try {
+                    out.write(content, 0, len);
+                } finally {
+                    out.close();
+                }
+                return null;
+            }
+        });
+    }
+
+    private void submit(Callable<Void> write) {
+        // not while holding the lock since the write might be run by this thread
+        Future<Void> future = executor.submit(write);
+        synchronized (pending) {
+            pending.add(future);
+        }
+    }
+
+    /**
+     * The files are compressed once and served many times,
+     * so use the best compression available
+     */
+    private OutputStream newGzipOutputStream(File file) throws IOException {
+        return new GZIPOutputStream(sink.newOutputStream(new File(file.getPath() + ".gz")), 16 * 1024) {
+            {
+                def.setLevel(Deflater.BEST_COMPRESSION);
+            }
+        };
+    }
+}
@@ -0,0 +1,241 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+import net.sourceforge.schemaspy.Config;
+
+/**
+ * Keeps track of which files were generated from which inputs so that
+ * a subsequent run can skip regenerating files whose inputs haven't changed.<p/>
+ *
+ * Each entry associates a digest of the inputs of a unit of output
+ * (e.g. a table's page along with its diagrams) with the files that
+ * make it up.  The manifest is written to the output directory by
+ * {@link #finish()}, which also deletes the files of units that are
+ * no longer generated (such as those of dropped tables).
+ *
+ * @author John Currier
+ */
+public class OutputManifest {
+    public static final String NAME = "schemaSpy.manifest";
+
+    private final File outputDir;
+    private final Map<String, Entry> previous = new HashMap<String, Entry>();
+    private final Map<String, Entry> current = new TreeMap<String, Entry>();
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * Load the manifest of the previous run (if any) from <code>outputDir</code>.
+     * The manifest is removed until {@link #finish()} writes its replacement
+     * so an interrupted run can't leave it describing files that have since
+     * been rewritten.
+     *
+     * @param outputDir
+     */
+    public OutputManifest(File outputDir) {
+        this.outputDir = outputDir;
+
+        File manifest = new File(outputDir, NAME);
+        if (manifest.exists()) {
+            try {
+                load(manifest);
+            } catch (IOException exc) {
+                logger.warning("Regenerating everything since " + manifest + " couldn't be read: " + exc);
+                previous.clear();
+            }
+            manifest.delete();
+        }
+    }
+
+    /**
+     * Remove any manifest from <code>outputDir</code>, as needs to be done
+     * when its files are regenerated without keeping track of their inputs
+     *
+     * @param outputDir
+     */
+    public static void discard(File outputDir) {
+        new File(outputDir, NAME).delete();
+    }
+
+    /**
+     * Returns <code>true</code> if the files of <code>unit</code> were generated
+     * from inputs with the same <code>digest</code> and are all still there,
+     * in which case they'll be kept as is.
+     *
+     * @param unit
+     * @param digest
+     * @return
+     */
+    public boolean isCurrent(String unit, String digest) {
+        Entry entry = previous.get(unit);
+        if (entry == null || !entry.digest.equals(digest))
+            return false;
+
+        for (String file : entry.files) {
+            if (!new File(outputDir, file).exists())
+                return false;
+        }
+
+        current.put(unit, entry);
+        return true;
+    }
+
+    /**
+     * Record that <code>unit</code> was generated from inputs with the specified
+     * <code>digest</code>.  Its files are relative to the output directory and are
+     * only recorded if they exist once the manifest is {@link #finish() finished},
+     * so files that only might have been generated can be included.
+     *
+     * @param unit
+     * @param digest
+     * @param files
+     */
+    public void put(String unit, String digest, List<String> files) {
+        current.put(unit, new Entry(digest, files));
+    }
+
+    /**
+     * Delete the files of units that weren't generated this time around
+     * and write the manifest of what was
+     *
+     * @throws IOException
+     */
+    public void finish() throws IOException {
+        Set<String> keep = new HashSet<String>();
+        for (Map.Entry<String, Entry> unit : current.entrySet()) {
+            List<String> files = new ArrayList<String>();
+            for (String file : unit.getValue().files) {
+                if (new File(outputDir, file).exists())
+                    files.add(file);
+            }
+            unit.setValue(new Entry(unit.getValue().digest, files));
+            keep.addAll(files);
+        }
+
+        for (Entry entry : previous.values()) {
+            for (String file : entry.files) {
+                if (!keep.contains(file) && new File(outputDir, file).delete())
+                    logger.fine("Deleted " + file);
+            }
+        }
+
+        LineWriter out = new LineWriter(new File(outputDir, NAME), Config.DOT_CHARSET);
+        out.writeln("# unit<tab>digest of its inputs<tab>file[<tab>file...]");
+        for (Map.Entry<String, Entry> unit : current.entrySet()) {
+            StringBuilder line = new StringBuilder(unit.getKey());
+            line.append('\t');
+            line.append(unit.getValue().digest);
+            for (String file : unit.getValue().files) {
+                line.append('\t');
+                line.append(file);
+            }
+            out.writeln(line.toString());
+        }
+        out.close();
+    }
+
+    /**
+     * Returns a stream that digests everything written to it, with
+     * the digest returned by {@link DigestStream#getDigest()}
+     *
+     * @return
+     */
+    public static DigestStream newDigestStream() {
+        try {
+            return new DigestStream(MessageDigest.getInstance("SHA-1"));
+        } catch (NoSuchAlgorithmException exc) {
+            throw new RuntimeException(exc);  // every JVM is required to support SHA-1
+        }
+    }
+
+    private void load(File manifest) throws IOException {
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(manifest), Config.DOT_CHARSET));
+        try {
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (line.startsWith("#"))
+                    continue;
+                String[] fields = line.split("\t");
+                if (fields.length < 2)
+                    throw new IOException("Malformed entry: " + line);
+                previous.put(fields[0], new Entry(fields[1], Arrays.asList(fields).subList(2, fields.length)));
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static class Entry {
+        private final String digest;
+        private final List<String> files;
+
+        Entry(String digest, List<String> files) {
+            this.digest = digest;
+            this.files = files;
+        }
+    }
+
+    /**
+     * A stream whose content is only digested
+     */
+    public static class DigestStream extends DigestOutputStream {
+        private DigestStream(MessageDigest digest) {
+            super(new OutputStream() {
+                @Override
+                public void write(int b) {
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                }
+            }, digest);
+        }
+
+        /**
+         * Returns the hex representation of the digest of what's been written.
+         * The stream should be flushed (or closed) before calling this.
+         *
+         * @return
+         */
+        public String getDigest() {
+            StringBuilder hex = new StringBuilder();
+            for (byte b : getMessageDigest().digest())
+                hex.append(String.format("%02x", b & 0xff));
+            return hex.toString();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Where the generated files end up.<p/>
+ *
+ * Files are still identified by where they'd be written in the output
+ * directory, but it's up to the sink whether they're actually written there
+ * ({@link FileOutputSink}) or somewhere else entirely ({@link ZipOutputSink}).
+ * Implementations must allow files to be written by multiple threads at once.
+ *
+ * @author John Currier
+ */
+public interface OutputSink {
+    /**
+     * Make sure the specified directory (and its parents) can be written to
+     *
+     * @param dir
+     * @throws IOException
+     */
+    void mkdirs(File dir) throws IOException;
+
+    /**
+     * Returns a stream that writes the specified file.
+     * The file is complete once the stream has been closed.
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    OutputStream newOutputStream(File file) throws IOException;
+
+    /**
+     * Write content that's the same from one run (or schema) to the next,
+     * such as images and scripts.  The sink is free to leave a file that
+     * already has exactly that content alone or to share one copy of it
+     * between output directories.
+     *
+     * @param file
+     * @param content
+     * @throws IOException
+     */
+    void writeStatic(File file, StaticContent content) throws IOException;
+
+    /**
+     * Returns <code>true</code> if the specified file has been written
+     *
+     * @param file
+     * @return
+     */
+    boolean exists(File file);
+
+    /**
+     * Delete the specified file if the sink still allows it
+     *
+     * @param file
+     * @return <code>true</code> if the file was deleted
+     */
+    boolean delete(File file);
+
+    /**
+     * Returns the file on the local file system that an external program
+     * (such as Graphviz's dot) can read the specified file from or write it to
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    File getLocalFile(File file) throws IOException;
+
+    /**
+     * Called once an external program has written the {@link #getLocalFile(File) local file}
+     * of <code>file</code>
+     *
+     * @param file
+     * @throws IOException
+     */
+    void addLocalFile(File file) throws IOException;
+
+    /**
+     * Wait for everything that's been written so far to be complete
+     *
+     * @throws IOException
+     */
+    void flush() throws IOException;
+
+    /**
+     * Finish writing.  Nothing else can be written afterwards
+     * and closing it again has no effect.
+     *
+     * @throws IOException
+     */
+    void close() throws IOException;
+}
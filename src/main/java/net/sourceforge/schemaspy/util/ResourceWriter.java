@@ -18,15 +18,20 @@
  */
 package net.sourceforge.schemaspy.util;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class ResourceWriter {
     private static ResourceWriter instance = new ResourceWriter();
 
+    // resources are only extracted once no matter how many directories they're written to
+    private static final Map<String, StaticContent> extracted = new ConcurrentHashMap<String, StaticContent>();
+
     protected ResourceWriter() {
     }
 
@@ -35,26 +40,54 @@ public class ResourceWriter {
     }
 
     /**
-     * Write the specified resource to the specified filename
+     * Write the specified resource to the specified file of <code>sink</code>
+     * (unless it's already there)
      *
      * @param resourceName
      * @param writeTo
+     * @param sink
      * @throws IOException
      */
-    public void writeResource(String resourceName, File writeTo) throws IOException {
-        writeTo.getParentFile().mkdirs();
-        InputStream in = getClass().getResourceAsStream(resourceName);
-        if (in == null)
-            throw new IOException("Resource \"" + resourceName + "\" not found");
-
-        byte[] buf = new byte[4096];
-
-        OutputStream out = new FileOutputStream(writeTo);
-        int numBytes = 0;
-        while ((numBytes = in.read(buf)) != -1) {
-            out.write(buf, 0, numBytes);
+    public void writeResource(String resourceName, File writeTo, OutputSink sink) throws IOException {
+        sink.mkdirs(writeTo.getParentFile());
+        sink.writeStatic(writeTo, getResource(resourceName));
+    }
+
+    /**
+     * Write the specified resource to <code>out</code>, closing it when done
+     *
+     * @param resourceName
+     * @param out
+     * @throws IOException
+     */
+    public void writeResource(String resourceName, OutputStream out) throws IOException {
+        try {
+            out.write(getResource(resourceName).getBytes());
+        } finally {
+            out.close();
+        }
+    }
+
+    private StaticContent getResource(String resourceName) throws IOException {
+        StaticContent content = extracted.get(resourceName);
+        if (content == null) {
+            InputStream in = getClass().getResourceAsStream(resourceName);
+            if (in == null)
+                throw new IOException("Resource \"" + resourceName + "\" not found");
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 * 1024);
+            try {
+                byte[] buf = new byte[4096];
+                int numBytes;
+                while ((numBytes = in.read(buf)) != -1)
+                    bytes.write(buf, 0, numBytes);
+            } finally {
+                in.close();
+            }
+
+            content = new StaticContent(bytes.toByteArray());
+            extracted.put(resourceName, content);
         }
-        in.close();
-        out.close();
+        return content;
     }
 }
\ No newline at end of file
@@ -0,0 +1,78 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+
+/**
+ * Content that's written unchanged to every output directory,
+ * such as images, scripts and the style sheet, along with its digest
+ * so existing copies can be recognized.
+ *
+ * @author John Currier
+ */
+public class StaticContent {
+    private final byte[] content;
+    private final String digest;
+
+    public StaticContent(byte[] content) {
+        this.content = content;
+        digest = digest(content);
+    }
+
+    public byte[] getBytes() {
+        return content;
+    }
+
+    /**
+     * Returns the hex representation of the content's SHA-1 digest
+     *
+     * @return
+     */
+    public String getDigest() {
+        return digest;
+    }
+
+    /**
+     * Returns <code>true</code> if <code>file</code> already has exactly this content.
+     * Its length is compared first so most differences don't require reading it.
+     *
+     * @param file
+     * @return
+     * @throws IOException
+     */
+    public boolean matches(File file) throws IOException {
+        if (!file.isFile() || file.length() != content.length)
+            return false;
+        return digest.equals(digest(Files.readAllBytes(file.toPath())));
+    }
+
+    private static String digest(byte[] content) {
+        OutputManifest.DigestStream digest = OutputManifest.newDigestStream();
+        try {
+            digest.write(content);
+            digest.close();
+        } catch (IOException exc) {
+            throw new RuntimeException(exc);  // it doesn't write anywhere
+        }
+        return digest.getDigest();
+    }
+}
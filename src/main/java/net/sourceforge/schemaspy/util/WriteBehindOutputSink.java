@@ -0,0 +1,264 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Writes files to the output directory on a few dedicated I/O threads so
+ * that rendering the next page overlaps with writing the previous one,
+ * which makes a difference when the output directory is on slow storage.<p/>
+ *
+ * Pages are rendered into pooled in-memory buffers that are queued for
+ * writing once they're closed.  The queue is bounded, so if the I/O threads
+ * fall behind then closing a page blocks until there's room for it.<p/>
+ *
+ * Anything that looks at a file (such as dot reading a <code>.dot</code> file)
+ * waits for any pending write of that file, while {@link #flush()} waits
+ * for all of them.
+ *
+ * @author John Currier
+ */
+public class WriteBehindOutputSink extends FileOutputSink {
+    private static final int INITIAL_BUFFER_SIZE = 16 * 1024;
+    private static final int MAX_POOLED_BUFFER_SIZE = 1024 * 1024;
+
+    private final BlockingQueue<Write> queue;
+    private final Queue<Buffer> pool = new ConcurrentLinkedQueue<Buffer>();
+    private final ConcurrentMap<File, Write> pending = new ConcurrentHashMap<File, Write>();
+    private final Thread[] writers;
+    private volatile IOException failure;
+    private volatile boolean closed;
+
+    /**
+     * @param numThreads number of threads that write to disk
+     * @param queueSize number of closed files that can be waiting to be written
+     *          before rendering is held up
+     */
+    public WriteBehindOutputSink(int numThreads, int queueSize) {
+        queue = new ArrayBlockingQueue<Write>(Math.max(queueSize, 1));
+        writers = new Thread[Math.max(numThreads, 1)];
+        for (int i = 0; i < writers.length; ++i) {
+            writers[i] = new Thread("WriteBehindOutputSink-" + i) {
+                @Override
+                public void run() {
+                    drain();
+                }
+            };
+            // don't hold up the JVM if we're abandoned due to a failure
+            writers[i].setDaemon(true);
+            writers[i].start();
+        }
+    }
+
+    @Override
+    public OutputStream newOutputStream(File file) throws IOException {
+        if (closed)
+            throw new IOException("Can't write " + file + " after the output has been closed");
+        checkFailure();
+
+        Buffer buffer = pool.poll();
+        if (buffer == null)
+            buffer = new Buffer();
+        buffer.open(file.getAbsoluteFile());
+        return buffer;
+    }
+
+    @Override
+    public void writeStatic(File file, StaticContent content) throws IOException {
+        await(file);
+        super.writeStatic(file, content);
+    }
+
+    @Override
+    public boolean exists(File file) {
+        return pending.containsKey(file.getAbsoluteFile()) || super.exists(file);
+    }
+
+    @Override
+    public boolean delete(File file) {
+        await(file);
+        return super.delete(file);
+    }
+
+    @Override
+    public File getLocalFile(File file) throws IOException {
+        await(file);
+        checkFailure();
+        return super.getLocalFile(file);
+    }
+
+    /**
+     * Wait for everything that's been closed so far to be written
+     *
+     * @throws IOException the first failure to write a file
+     */
+    @Override
+    public void flush() throws IOException {
+        for (File file : pending.keySet())
+            await(file);
+        checkFailure();
+    }
+
+    /**
+     * Write everything that's pending and stop the I/O threads
+     */
+    @Override
+    public void close() throws IOException {
+        closed = true;
+        try {
+            flush();
+        } finally {
+            for (Thread writer : writers)
+                writer.interrupt();
+        }
+    }
+
+    private void enqueue(Write write) throws IOException {
+        try {
+            // writes of the same file have to land in the order that they were made,
+            // so only one of them can be pending at a time
+            Write previous;
+            while ((previous = pending.putIfAbsent(write.file, write)) != null)
+                previous.done.await();
+
+            try {
+                queue.put(write);
+            } catch (InterruptedException exc) {
+                pending.remove(write.file, write);
+                write.done.countDown();
+                throw exc;
+            }
+        } catch (InterruptedException exc) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while queuing " + write.file, exc);
+        }
+    }
+
+    private void drain() {
+        try {
+            while (true) {
+                Write write = queue.take();
+                try {
+                    write.run();
+                } catch (IOException exc) {
+                    if (failure == null)
+                        failure = exc;
+                } finally {
+                    pending.remove(write.file, write);
+                    write.done.countDown();
+                    write.buffer.release();
+                }
+            }
+        } catch (InterruptedException done) {
+            // closed
+        }
+    }
+
+    private void await(File file) {
+        Write write = pending.get(file.getAbsoluteFile());
+        if (write != null) {
+            try {
+                write.done.await();
+            } catch (InterruptedException exc) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void checkFailure() throws IOException {
+        if (failure != null)
+            throw failure;
+    }
+
+    /**
+     * A file whose content is ready to be written
+     */
+    private static class Write {
+        private final File file;
+        private final Buffer buffer;
+        private final CountDownLatch done = new CountDownLatch(1);
+
+        Write(File file, Buffer buffer) {
+            this.file = file;
+            this.buffer = buffer;
+        }
+
+        void run() throws IOException {
+            FileOutputStream out = open(file);
+            try {
+                FileChannel channel = out.getChannel();
+                ByteBuffer content = buffer.getContent();
+                while (content.hasRemaining())
+                    channel.write(content);
+            } finally {
+                out.close();
+            }
+        }
+    }
+
+    /**
+     * The in-memory content of a file that's returned to the pool
+     * once it's been written
+     */
+    private class Buffer extends ByteArrayOutputStream {
+        private File file;
+
+        Buffer() {
+            super(INITIAL_BUFFER_SIZE);
+        }
+
+        void open(File target) {
+            file = target;
+            reset();
+        }
+
+        ByteBuffer getContent() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (file != null) {
+                File target = file;
+                file = null;
+                enqueue(new Write(target, this));
+            }
+        }
+
+        void release() {
+            // don't hang on to the memory used by unusually large files
+            if (buf.length <= MAX_POOLED_BUFFER_SIZE)
+                pool.offer(this);
+        }
+    }
+}
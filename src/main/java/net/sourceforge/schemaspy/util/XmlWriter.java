@@ -0,0 +1,181 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Writes an indented XML document element by element as it's produced
+ * rather than building it up in memory first.<p/>
+ *
+ * The output matches what {@link DOMUtil#printDOM(org.w3c.dom.Node, LineWriter)}
+ * produces for the equivalent DOM: three space indentation, attributes in
+ * alphabetical order and whitespace within attribute values escaped so it
+ * survives a round trip.
+ *
+ * @author John Currier
+ */
+public class XmlWriter {
+    private static final String INDENT = "   ";
+    private final Writer out;
+    private final String lineSeparator = System.getProperty("line.separator");
+    private final List<String> openElements = new ArrayList<String>();
+    private final Map<String, String> pendingAttributes = new TreeMap<String, String>();
+    private boolean startTagPending;
+
+    /**
+     * Creates a writer that writes an XML declaration of the specified encoding
+     * to <code>out</code>.  The caller is responsible for <code>out</code>
+     * actually using that encoding.
+     *
+     * @param out
+     * @param encoding
+     * @throws IOException
+     */
+    public XmlWriter(Writer out, String encoding) throws IOException {
+        this.out = out;
+        out.write("<?xml version=\"1.0\" encoding=\"" + encoding + "\" standalone=\"no\"?>");
+        out.write(lineSeparator);
+    }
+
+    /**
+     * Start a new element nested within the current one
+     *
+     * @param name
+     * @throws IOException
+     */
+    public void startElement(String name) throws IOException {
+        finishStartTag(false);
+        indent();
+        out.write('<');
+        out.write(name);
+        openElements.add(name);
+        startTagPending = true;
+    }
+
+    /**
+     * Add an attribute to the element that was just started.
+     * Attributes must be added before any nested elements are started.
+     *
+     * @param name
+     * @param value
+     */
+    public void attribute(String name, String value) {
+        if (!startTagPending)
+            throw new IllegalStateException("Attribute '" + name + "' must immediately follow the start of an element");
+        pendingAttributes.put(name, value);
+    }
+
+    /**
+     * End the current element
+     *
+     * @throws IOException
+     */
+    public void endElement() throws IOException {
+        String name = openElements.get(openElements.size() - 1);
+
+        if (startTagPending) {
+            finishStartTag(true);
+            openElements.remove(openElements.size() - 1);
+        } else {
+            openElements.remove(openElements.size() - 1);
+            indent();
+            out.write("</");
+            out.write(name);
+            out.write('>');
+            out.write(lineSeparator);
+        }
+    }
+
+    /**
+     * End any elements that are still open and flush the underlying writer.
+     * The underlying writer is left open.
+     *
+     * @throws IOException
+     */
+    public void finish() throws IOException {
+        while (!openElements.isEmpty())
+            endElement();
+        out.flush();
+    }
+
+    private void finishStartTag(boolean empty) throws IOException {
+        if (startTagPending) {
+            for (Map.Entry<String, String> attribute : pendingAttributes.entrySet()) {
+                out.write(' ');
+                out.write(attribute.getKey());
+                out.write("=\"");
+                writeEscaped(attribute.getValue());
+                out.write('"');
+            }
+            pendingAttributes.clear();
+
+            out.write(empty ? "/>" : ">");
+            out.write(lineSeparator);
+            startTagPending = false;
+        }
+    }
+
+    private void indent() throws IOException {
+        for (int i = 0; i < openElements.size(); ++i)
+            out.write(INDENT);
+    }
+
+    /**
+     * Write the attribute value, escaping the markup and anything that
+     * would otherwise be normalized away when it's parsed
+     */
+    private void writeEscaped(String value) throws IOException {
+        int len = value.length();
+        int start = 0;
+
+        for (int i = 0; i < len; ++i) {
+            char ch = value.charAt(i);
+            String escaped;
+
+            if (ch == '&')
+                escaped = "&amp;";
+            else if (ch == '<')
+                escaped = "&lt;";
+            else if (ch == '>')
+                escaped = "&gt;";
+            else if (ch == '"')
+                escaped = "&quot;";
+            else if (ch < ' ')
+                escaped = "&#" + (int)ch + ';';
+            else if (Character.isHighSurrogate(ch) && i + 1 < len && Character.isLowSurrogate(value.charAt(i + 1)))
+                escaped = "&#" + value.codePointAt(i) + ';';
+            else
+                continue;
+
+            out.write(value, start, i - start);
+            out.write(escaped);
+            if (Character.isHighSurrogate(ch))
+                ++i;
+            start = i + 1;
+        }
+
+        out.write(value, start, len - start);
+    }
+}
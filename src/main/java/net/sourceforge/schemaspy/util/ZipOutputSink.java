@@ -0,0 +1,244 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.logging.Logger;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * Streams the generated files into a single zip (or jar) archive without
+ * writing them to the output directory.  Their names within the archive are
+ * relative to the output directory.<p/>
+ *
+ * Each file is held in memory until it's closed and is then added to the
+ * archive as a whole, so files can be written concurrently.<p/>
+ *
+ * The only files that touch the disk are those that dot works with:
+ * <code>.dot</code> files are staged in a scratch directory until the archive
+ * is closed (dot reads them and they may be deleted if they turn out
+ * not to be needed) and the diagrams that dot produces are moved into
+ * the archive as soon as they've been {@link #addLocalFile(File) added}.
+ *
+ * @author John Currier
+ */
+public class ZipOutputSink implements OutputSink {
+    private final String rootPath;
+    private final File archive;
+    private ZipOutputStream zip;
+    private final Set<String> entries = new HashSet<String>();
+    private File scratchDir;
+    private boolean closed;
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * @param root the output directory that the files would otherwise be written to
+     * @param archive
+     */
+    public ZipOutputSink(File root, File archive) {
+        this.rootPath = root.getAbsolutePath() + File.separator;
+        this.archive = archive;
+    }
+
+    public void mkdirs(File dir) {
+        // the archive's entries imply their directories
+    }
+
+    public OutputStream newOutputStream(File file) throws IOException {
+        if (isStaged(file))
+            return new FileOutputStream(getLocalFile(file));
+
+        final String name = getEntryName(file);
+        return new ByteArrayOutputStream(16 * 1024) {
+            private boolean streamClosed;
+
+            @Override
+            public void close() throws IOException {
+                if (!streamClosed) {
+                    streamClosed = true;
+                    addEntry(name, buf, count);
+                }
+            }
+        };
+    }
+
+    public void writeStatic(File file, StaticContent content) throws IOException {
+        OutputStream out = newOutputStream(file);
+        out.write(content.getBytes());
+        out.close();
+    }
+
+    public boolean exists(File file) {
+        if (new File(getScratchPath(file)).exists())
+            return true;
+
+        synchronized (this) {
+            return entries.contains(getEntryName(file));
+        }
+    }
+
+    public boolean delete(File file) {
+        // can't take anything back out of the archive
+        return new File(getScratchPath(file)).delete();
+    }
+
+    public File getLocalFile(File file) throws IOException {
+        File local = new File(getScratchPath(file));
+        File dir = local.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory())
+            throw new IOException("Failed to create directory '" + dir + "'");
+        return local;
+    }
+
+    public void addLocalFile(File file) throws IOException {
+        File local = new File(getScratchPath(file));
+        addEntry(getEntryName(file), local);
+        local.delete();
+    }
+
+    public void flush() {
+        // each file's added to the archive as it's closed
+    }
+
+    /**
+     * Adds the remaining <code>.dot</code> files and finishes the archive
+     */
+    public synchronized void close() throws IOException {
+        if (closed)
+            return;
+
+        try {
+            if (scratchDir != null)
+                addStagedFiles(scratchDir, "");
+            getZip().close();
+        } finally {
+            closed = true;
+            if (scratchDir != null)
+                deleteRecursively(scratchDir);
+        }
+    }
+
+    /**
+     * The sources of diagrams have to be on disk for dot to read them
+     */
+    private boolean isStaged(File file) {
+        return file.getName().endsWith(".dot");
+    }
+
+    private String getEntryName(File file) {
+        String path = file.getAbsolutePath();
+        if (!path.startsWith(rootPath))
+            throw new IllegalArgumentException("'" + file + "' isn't within the output directory '" + rootPath + "'");
+        return path.substring(rootPath.length()).replace(File.separatorChar, '/');
+    }
+
+    private synchronized String getScratchPath(File file) {
+        if (scratchDir == null) {
+            try {
+                scratchDir = File.createTempFile("schemaSpy", ".scratch");
+                if (!scratchDir.delete() || !scratchDir.mkdir())
+                    throw new IOException("Failed to create directory '" + scratchDir + "'");
+            } catch (IOException exc) {
+                throw new RuntimeException(exc);
+            }
+        }
+
+        return new File(scratchDir, getEntryName(file)).getPath();
+    }
+
+    private synchronized void addEntry(String name, byte[] content, int len) throws IOException {
+        if (startEntry(name)) {
+            zip.write(content, 0, len);
+            zip.closeEntry();
+        }
+    }
+
+    private synchronized void addEntry(String name, File local) throws IOException {
+        if (startEntry(name)) {
+            InputStream in = new FileInputStream(local);
+            try {
+                byte[] buf = new byte[16 * 1024];
+                int len;
+                while ((len = in.read(buf)) != -1)
+                    zip.write(buf, 0, len);
+            } finally {
+                in.close();
+            }
+            zip.closeEntry();
+        }
+    }
+
+    /**
+     * Returns <code>false</code> if the entry can't be added
+     */
+    private boolean startEntry(String name) throws IOException {
+        if (closed)
+            throw new IOException("Can't add " + name + " to " + archive + " after it's been closed");
+
+        if (!entries.add(name)) {
+            // something like two tables whose names only differ by case
+            logger.warning("Skipping duplicate archive entry " + name);
+            return false;
+        }
+
+        getZip().putNextEntry(new ZipEntry(name));
+        return true;
+    }
+
+    private ZipOutputStream getZip() throws IOException {
+        if (zip == null) {
+            File dir = archive.getAbsoluteFile().getParentFile();
+            if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory())
+                throw new IOException("Failed to create directory '" + dir + "'");
+            zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(archive), 64 * 1024));
+        }
+        return zip;
+    }
+
+    private void addStagedFiles(File dir, String prefix) throws IOException {
+        File[] files = dir.listFiles();
+        Arrays.sort(files);
+        for (File file : files) {
+            if (file.isDirectory())
+                addStagedFiles(file, prefix + file.getName() + '/');
+            else
+                addEntry(prefix + file.getName(), file);
+        }
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] files = file.listFiles();
+        if (files != null) {
+            for (File child : files)
+                deleteRecursively(child);
+        }
+        file.delete();
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.view;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import net.sourceforge.schemaspy.model.Table;
+import net.sourceforge.schemaspy.model.TableColumn;
+
+/**
+ * Snapshot of every column of a set of tables along with whether each column
+ * is part of a primary key or an index.<p/>
+ *
+ * Built once so that the various <code>columns.by*.html</code> pages
+ * don't each have to walk all of the tables again.
+ * Each ordering of the columns is represented as a permutation of
+ * indexes into {@link #getColumn(int)}.
+ */
+public class ColumnIndex {
+    private final TableColumn[] columns;
+    private final boolean[] primary;
+    private final boolean[] indexed;
+
+    public ColumnIndex(Collection<Table> tables) {
+        List<TableColumn> all = new ArrayList<TableColumn>();
+
+        for (Table table : tables) {
+            all.addAll(table.getColumns());
+        }
+
+        columns = all.toArray(new TableColumn[all.size()]);
+        primary = new boolean[columns.length];
+        indexed = new boolean[columns.length];
+
+        for (int i = 0; i < columns.length; ++i) {
+            primary[i] = columns[i].isPrimary();
+            indexed[i] = columns[i].isIndexed();
+        }
+    }
+
+    /**
+     * Returns the number of columns in the index
+     *
+     * @return
+     */
+    public int size() {
+        return columns.length;
+    }
+
+    public TableColumn getColumn(int i) {
+        return columns[i];
+    }
+
+    public boolean isPrimary(int i) {
+        return primary[i];
+    }
+
+    public boolean isIndexed(int i) {
+        return indexed[i];
+    }
+
+    /**
+     * Returns the indexes of all of the columns ordered by the specified comparator.
+     * The ordering is stable and leaves the index itself untouched,
+     * so it's safe to call concurrently.
+     *
+     * @param comparator
+     * @return
+     */
+    public int[] getOrdering(Comparator<TableColumn> comparator) {
+        int[] order = new int[columns.length];
+        for (int i = 0; i < order.length; ++i)
+            order[i] = i;
+
+        if (order.length > 1)
+            sort(order, new int[order.length], 0, order.length, comparator);
+
+        return order;
+    }
+
+    /**
+     * Merge sort of <code>order[from, to)</code> using <code>scratch</code> as a work area
+     */
+    private void sort(int[] order, int[] scratch, int from, int to, Comparator<TableColumn> comparator) {
+        if (to - from < 8) {
+            // insertion sort small ranges
+            for (int i = from + 1; i < to; ++i) {
+                int current = order[i];
+                int j = i - 1;
+                while (j >= from && comparator.compare(columns[order[j]], columns[current]) > 0) {
+                    order[j + 1] = order[j];
+                    --j;
+                }
+                order[j + 1] = current;
+            }
+            return;
+        }
+
+        int middle = (from + to) >>> 1;
+        sort(order, scratch, from, middle, comparator);
+        sort(order, scratch, middle, to, comparator);
+
+        // already in order?
+        if (comparator.compare(columns[order[middle - 1]], columns[order[middle]]) <= 0)
+            return;
+
+        System.arraycopy(order, from, scratch, from, to - from);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; ++i) {
+            if (right >= to || (left < middle && comparator.compare(columns[scratch[left]], columns[scratch[right]]) <= 0))
+                order[i] = scratch[left++];
+            else
+                order[i] = scratch[right++];
+        }
+    }
+}
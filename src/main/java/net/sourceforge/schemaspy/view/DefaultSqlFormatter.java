@@ -19,9 +19,13 @@
 package net.sourceforge.schemaspy.view;
 
 import java.sql.DatabaseMetaData;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
@@ -31,13 +35,20 @@ import net.sourceforge.schemaspy.util.CaseInsensitiveMap;
 import net.sourceforge.schemaspy.util.HtmlEncoder;
 
 /**
- * Default implementation of {@link SqlFormatter}
+ * Default implementation of {@link SqlFormatter}.<p>
+ *
+ * The SQL is split into tokens in a single pass that both formats it and
+ * resolves the tables/views that it possibly references.
+ * Both results are remembered so a view's SQL is only processed once
+ * regardless of how many times it's requested.
  *
  * @author John Currier
  */
 public class DefaultSqlFormatter implements SqlFormatter {
     private Set<String> keywords;
-    private Map<String, Table> tablesByPossibleNames;
+    private Database indexedDb;
+    private Map<String, List<Table>> tablesByName;
+    private final Map<String, FormattedSql> formattedSql = new HashMap<String, FormattedSql>();
     private static String TOKENS = " \t\n\r\f()<>|,";
 
     /**
@@ -48,147 +59,246 @@ public class DefaultSqlFormatter implements SqlFormatter {
      * @return HTML-formatted representation of the specified SQL
      */
     public String format(String sql, Database db, Set<Table> references) {
-        StringBuilder formatted = new StringBuilder(sql.length() * 2);
-
-        boolean alreadyFormatted = sql.contains("\n") || sql.contains("\r");
-        if (alreadyFormatted)
-        {
-            // apparently already formatted, so dump it as is
-            formatted.append("<div class='viewDefinition preFormatted'>");
+        FormattedSql formatted = getFormattedSql(sql, db);
+        references.addAll(formatted.references);
+        return formatted.html;
+    }
 
-            int len = sql.length();
-            for (int i = 0; i < len; i++) {
-                char ch = sql.charAt(i);
+    /**
+     * Returns a {@link Set} of tables/views that are possibly referenced
+     * by the specified SQL.
+     *
+     * @param sql
+     * @param db
+     * @return
+     */
+    protected Set<Table> getReferencedTables(String sql, Database db) {
+        return getFormattedSql(sql, db).references;
+    }
 
-                // encode everything except whitespace
-                if (Character.isWhitespace(ch)) {
-                    formatted.append(ch);
-                } else {
-                    formatted.append(HtmlEncoder.encodeToken(ch));
-                }
-            }
-        }
-        else
-        {
-            formatted.append("  <div class='viewDefinition'>");
-            @SuppressWarnings("hiding")
-            Set<String> keywords = getKeywords(db.getMetaData());
-            StringTokenizer tokenizer = new StringTokenizer(sql, TOKENS, true);
-            while (tokenizer.hasMoreTokens()) {
-                String token = tokenizer.nextToken();
-                if (keywords.contains(token.toUpperCase())) {
-                    formatted.append("<b>");
-                    formatted.append(token);
-                    formatted.append("</b>");
-                } else {
-                    formatted.append(HtmlEncoder.encodeToken(token));
-                }
-            }
+    /**
+     * Returns the formatted representation of the specified SQL along with the
+     * tables/views that it references, processing the SQL if it hasn't been
+     * seen before.
+     *
+     * @param sql
+     * @param db
+     * @return
+     */
+    private synchronized FormattedSql getFormattedSql(String sql, Database db) {
+        if (db != indexedDb) {
+            // a different database, so nothing that we know is relevant
+            formattedSql.clear();
+            tablesByName = null;
+            indexedDb = db;
         }
 
-        formatted.append("</div>");
-
-        references.addAll(getReferencedTables(sql, db));
+        FormattedSql formatted = formattedSql.get(sql);
+        if (formatted == null) {
+            formatted = lex(sql, db);
+            formattedSql.put(sql, formatted);
+        }
 
-        return formatted.toString();
+        return formatted;
     }
 
     /**
-     * Returns a {@link Set} of tables/views that are possibly referenced
-     * by the specified SQL.
+     * Split the SQL into tokens, formatting each one and resolving the ones that
+     * aren't keywords against the tables/views in the database.
      *
      * @param sql
      * @param db
      * @return
      */
-    protected Set<Table> getReferencedTables(String sql, Database db) {
-        Set<Table> referenced = new HashSet<Table>();
-
-        Map<String, Table> tables = getTableMap(db);
+    private FormattedSql lex(String sql, Database db) {
+        StringBuilder html = new StringBuilder(sql.length() * 2);
+        Set<Table> references = new HashSet<Table>();
         @SuppressWarnings("hiding")
         Set<String> keywords = getKeywords(db.getMetaData());
+        Map<String, List<Table>> tables = getTableMap(db);
+        String dbName = db.getName();
 
-        StringTokenizer tokenizer = new StringTokenizer(sql, TOKENS, true);
-        while (tokenizer.hasMoreTokens()) {
-            String token = tokenizer.nextToken();
-            if (!keywords.contains(token.toUpperCase())) {
-                Table t = tables.get(token);
+        boolean alreadyFormatted = sql.indexOf('\n') != -1 || sql.indexOf('\r') != -1;
+        if (alreadyFormatted) {
+            // apparently already formatted, so dump it as is
+            html.append("<div class='viewDefinition preFormatted'>");
+        } else {
+            html.append("  <div class='viewDefinition'>");
+        }
+
+        int len = sql.length();
+        int start = 0;
+        while (start < len) {
+            int end = start + 1;
+            if (TOKENS.indexOf(sql.charAt(start)) == -1) {
+                while (end < len && TOKENS.indexOf(sql.charAt(end)) == -1)
+                    ++end;
+            }
 
-                if (t == null) {
-                    int lastDot = token.lastIndexOf('.');
-                    if (lastDot != -1) {
-                        t = tables.get(token.substring(0, lastDot));
+            String token = sql.substring(start, end);
+            boolean keyword = keywords.contains(token);
+
+            if (alreadyFormatted) {
+                // encode everything except whitespace
+                for (int i = start; i < end; ++i) {
+                    char ch = sql.charAt(i);
+                    if (Character.isWhitespace(ch)) {
+                        html.append(ch);
+                    } else {
+                        html.append(HtmlEncoder.encodeToken(ch));
                     }
                 }
+            } else if (keyword) {
+                html.append("<b>");
+                html.append(token);
+                html.append("</b>");
+            } else {
+                html.append(HtmlEncoder.encodeToken(token));
+            }
 
-                if (t != null) {
-                    referenced.add(t);
-                }
+            if (!keyword) {
+                Table table = resolve(token, tables, dbName);
+                if (table != null)
+                    references.add(table);
             }
+
+            start = end;
         }
 
-        return referenced;
+        html.append("</div>");
+
+        return new FormattedSql(html.toString(), Collections.unmodifiableSet(references));
     }
 
     /**
-     * Returns a {@link Map} of all tables/views in the database
-     * keyed by several possible ways to refer to the table.
+     * Returns the table/view that the token refers to, ignoring any trailing
+     * column name, or <code>null</code> if it doesn't refer to one.
+     */
+    private static Table resolve(String token, Map<String, List<Table>> tables, String dbName) {
+        Table table = resolveQuoted(token, tables, dbName);
+
+        if (table == null) {
+            int lastDot = token.lastIndexOf('.');
+            if (lastDot != -1) {
+                table = resolveQuoted(token.substring(0, lastDot), tables, dbName);
+            }
+        }
+
+        return table;
+    }
+
+    /**
+     * Resolves an identifier that's either unquoted, quoted in its entirety
+     * or has its schema and name quoted separately (with the same quote).
+     */
+    private static Table resolveQuoted(String identifier, Map<String, List<Table>> tables, String dbName) {
+        int len = identifier.length();
+        if (len == 0)
+            return null;
+
+        char quote = identifier.charAt(0);
+        if (quote != '`' && quote != '\'' && quote != '"')
+            return resolveQualified(identifier, tables, dbName);
+
+        if (len < 2 || identifier.charAt(len - 1) != quote)
+            return null;
+
+        String unquoted = identifier.substring(1, len - 1);
+        int endOfSchema = unquoted.indexOf(quote);
+        if (endOfSchema == -1)
+            return resolveQualified(unquoted, tables, dbName);
+
+        // "schema"."name"
+        int startOfName = endOfSchema + 3;
+        if (startOfName > unquoted.length() ||
+                unquoted.charAt(endOfSchema + 1) != '.' ||
+                unquoted.charAt(endOfSchema + 2) != quote ||
+                unquoted.indexOf(quote, startOfName) != -1)
+            return null;
+
+        return find(unquoted.substring(0, endOfSchema), unquoted.substring(startOfName), tables, dbName);
+    }
+
+    /**
+     * Resolves an unquoted identifier that's either a name or a schema-qualified name
+     */
+    private static Table resolveQualified(String identifier, Map<String, List<Table>> tables, String dbName) {
+        Table table = find(null, identifier, tables, dbName);
+
+        for (int dot = identifier.indexOf('.'); table == null && dot != -1; dot = identifier.indexOf('.', dot + 1)) {
+            table = find(identifier.substring(0, dot), identifier.substring(dot + 1), tables, dbName);
+        }
+
+        return table;
+    }
+
+    /**
+     * Returns the table/view with the specified name (and schema if it's not
+     * <code>null</code>).  The last one registered wins if there are several.
+     */
+    private static Table find(String schema, String name, Map<String, List<Table>> tables, String dbName) {
+        List<Table> candidates = tables.get(name);
+        if (candidates == null)
+            return null;
+
+        for (int i = candidates.size() - 1; i >= 0; --i) {
+            Table table = candidates.get(i);
+            if (schema == null)
+                return table;
+
+            String tableSchema = table.getSchema();
+            if (tableSchema == null)
+                tableSchema = dbName;
+            if (schema.equalsIgnoreCase(tableSchema))
+                return table;
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns a {@link Map} of all tables/views in the database keyed by their
+     * (case-insensitive) names.  Quoting and schema qualification are dealt
+     * with while resolving references, so each table only has a single entry.
      *
      * @param db
      * @return
      */
-    protected Map<String, Table> getTableMap(Database db)
+    protected synchronized Map<String, List<Table>> getTableMap(Database db)
     {
-        if (tablesByPossibleNames == null)
+        if (tablesByName == null || db != indexedDb)
         {
-            tablesByPossibleNames = new CaseInsensitiveMap<Table>();
+            tablesByName = new CaseInsensitiveMap<List<Table>>();
 
-            tablesByPossibleNames.putAll(getTableMap(db.getTables(), db.getName()));
-            tablesByPossibleNames.putAll(getTableMap(db.getViews(), db.getName()));
+            addTables(db.getTables(), tablesByName);
+            addTables(db.getViews(), tablesByName);
+            indexedDb = db;
         }
 
-        return tablesByPossibleNames;
+        return tablesByName;
     }
 
-    /**
-     * Returns a {@link Map} of the specified tables/views
-     * keyed by several possible ways to refer to the table.
-     *
-     * @param tables
-     * @param dbName
-     * @return
-     */
-    protected Map<String, Table> getTableMap(Collection<? extends Table> tables, String dbName) {
-        Map<String, Table> map = new CaseInsensitiveMap<Table>();
+    private static void addTables(Collection<? extends Table> tables, Map<String, List<Table>> tablesByName) {
         for (Table t : tables) {
-            String name = t.getName();
-            String schema = t.getSchema();
-            if (schema == null)
-                schema = dbName;
-
-            map.put(name, t);
-            map.put("`" + name + "`", t);
-            map.put("'" + name + "'", t);
-            map.put("\"" + name + "\"", t);
-            map.put(schema + "." + name, t);
-            map.put("`" + schema + "`.`" + name + "`", t);
-            map.put("'" + schema + "'.'" + name + "'", t);
-            map.put("\"" + schema + "\".\"" + name + "\"", t);
-            map.put("`" + schema + '.' + name + "`", t);
-            map.put("'" + schema + '.' + name + "'", t);
-            map.put("\"" + schema + '.' + name + "\"", t);
+            List<Table> named = tablesByName.get(t.getName());
+            if (named == null) {
+                named = new ArrayList<Table>(1);
+                tablesByName.put(t.getName(), named);
+            }
+            named.add(t);
         }
-
-        return map;
     }
 
     /**
+     * Returns the (case-insensitive) set of SQL keywords
+     *
      * @param meta
      * @return
      */
-    public Set<String> getKeywords(DatabaseMetaData meta) {
+    public synchronized Set<String> getKeywords(DatabaseMetaData meta) {
         if (keywords == null) {
-            keywords = new HashSet<String>(Arrays.asList(new String[] {
+            keywords = Collections.newSetFromMap(new CaseInsensitiveMap<Boolean>());
+            keywords.addAll(Arrays.asList(new String[] {
                 "ABSOLUTE", "ACTION", "ADD", "ALL", "ALLOCATE", "ALTER", "AND",
                 "ANY", "ARE", "AS", "ASC", "ASSERTION", "AT", "AUTHORIZATION", "AVG",
                 "BEGIN", "BETWEEN", "BIT", "BIT_LENGTH", "BOTH", "BY",
@@ -257,4 +367,17 @@ public class DefaultSqlFormatter implements SqlFormatter {
 
         return keywords;
     }
+
+    /**
+     * The HTML representation of some SQL and the tables/views that it references
+     */
+    private static class FormattedSql {
+        private final String html;
+        private final Set<Table> references;
+
+        FormattedSql(String html, Set<Table> references) {
+            this.html = html;
+            this.references = references;
+        }
+    }
 }
@@ -18,11 +18,12 @@
  */
 package net.sourceforge.schemaspy.view;
 
-import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
+import net.sourceforge.schemaspy.model.RelationshipGraph;
 import net.sourceforge.schemaspy.model.Table;
-import net.sourceforge.schemaspy.model.TableColumn;
 
 /**
  * Format table data into .dot format to feed to Graphvis' dot program.
@@ -44,77 +45,99 @@ public class DotConnectorFinder {
 
     /**
      *
+     * @param relationships RelationshipGraph
      * @param table Table
-     * @throws IOException
      * @return Set of <code>dot</code> relationships (as {@link DotConnector}s)
      */
-    public Set<DotConnector> getRelatedConnectors(Table table, boolean includeImplied) {
-        Set<DotConnector> relationships = new HashSet<DotConnector>();
+    public Set<DotConnector> getRelatedConnectors(RelationshipGraph relationships, Table table, boolean includeImplied) {
+        Set<DotConnector> relatedConnectors = new HashSet<DotConnector>();
 
-        for (TableColumn column : table.getColumns()) {
-            relationships.addAll(getRelatedConnectors(column, null, false, includeImplied));
+        for (int edge : relationships.getEdges(table)) {
+            if (relationships.isParentExcluded(edge) || relationships.isChildExcluded(edge))
+                continue;
+            addConnector(relationships, edge, includeImplied, relatedConnectors);
         }
 
-        return relationships;
+        return relatedConnectors;
     }
 
     /**
      * Get all the relationships that exist between these two tables.
      *
+     * @param relationships RelationshipGraph
      * @param table1 Table
      * @param table2 Table
-     * @throws IOException
      * @return Set of <code>dot</code> relationships (as {@link DotConnector}s)
      */
-    public Set<DotConnector> getRelatedConnectors(Table table1, Table table2, boolean includeExcluded, boolean includeImplied) {
-        Set<DotConnector> relationships = new HashSet<DotConnector>();
-
-        for (TableColumn column : table1.getColumns()) {
-            relationships.addAll(getRelatedConnectors(column, table2, includeExcluded, includeImplied));
-        }
+    public Set<DotConnector> getRelatedConnectors(RelationshipGraph relationships, Table table1, Table table2, boolean includeExcluded, boolean includeImplied) {
+        Set<DotConnector> relatedConnectors = new HashSet<DotConnector>();
+        int table2Id = relationships.getTableId(table2);
 
-        for (TableColumn column : table2.getColumns()) {
-            relationships.addAll(getRelatedConnectors(column, table1, includeExcluded, includeImplied));
+        for (int edge : relationships.getEdges(table1)) {
+            if (relationships.getParentTableId(edge) != table2Id && relationships.getChildTableId(edge) != table2Id)
+                continue;
+            // the relationship is visible from either end unless both ends are excluded
+            if (!includeExcluded && relationships.isParentExcluded(edge) && relationships.isChildExcluded(edge))
+                continue;
+            addConnector(relationships, edge, includeImplied, relatedConnectors);
         }
 
-        return relationships;
+        return relatedConnectors;
     }
 
     /**
-     * @param column TableColumn
-     * @param targetTable Table
-     * @throws IOException
+     * Get all of the relationships between the specified tables
+     * (but not those from a table to itself).<p/>
+     *
+     * Equivalent to combining {@link #getRelatedConnectors(RelationshipGraph, Table, Table, boolean, boolean)}
+     * (excluding excluded columns) for every pair of <code>tables</code>, but each
+     * relationship is only visited once, so the cost is proportional to
+     * the number of relationships that the tables have rather than the
+     * square of the number of tables.
+     *
+     * @param relationships RelationshipGraph
+     * @param tables Collection
+     * @param includeImplied boolean
      * @return Set of <code>dot</code> relationships (as {@link DotConnector}s)
      */
-    private Set<DotConnector> getRelatedConnectors(TableColumn column, Table targetTable, boolean includeExcluded, boolean includeImplied) {
+    public Set<DotConnector> getRelatedConnectors(RelationshipGraph relationships, Collection<Table> tables, boolean includeImplied) {
         Set<DotConnector> relatedConnectors = new HashSet<DotConnector>();
-        if (!includeExcluded && column.isExcluded())
-            return relatedConnectors;
 
-        for (TableColumn parentColumn : column.getParents()) {
-            Table parentTable = parentColumn.getTable();
-            if (targetTable != null && parentTable != targetTable)
-                continue;
-            if (targetTable == null && !includeExcluded && parentColumn.isExcluded())
-                continue;
-            boolean implied = column.getParentConstraint(parentColumn).isImplied();
-            if (!implied || includeImplied) {
-                relatedConnectors.add(new DotConnector(parentColumn, column, implied));
-            }
+        // position of each of the graph's tables within 'tables'
+        int[] position = new int[relationships.getNumTables()];
+        Arrays.fill(position, -1);
+        int numTables = 0;
+        for (Table table : tables) {
+            int tableId = relationships.getTableId(table);
+            if (tableId != -1 && position[tableId] == -1)
+                position[tableId] = numTables++;
         }
 
-        for (TableColumn childColumn : column.getChildren()) {
-            Table childTable = childColumn.getTable();
-            if (targetTable != null && childTable != targetTable)
-                continue;
-            if (targetTable == null && !includeExcluded && childColumn.isExcluded())
+        for (Table table : tables) {
+            int tableId = relationships.getTableId(table);
+            if (tableId == -1)
                 continue;
-            boolean implied = column.getChildConstraint(childColumn).isImplied();
-            if (!implied || includeImplied) {
-                relatedConnectors.add(new DotConnector(column, childColumn, implied));
+
+            for (int edge : relationships.getEdges(table)) {
+                int parentId = relationships.getParentTableId(edge);
+                int otherId = parentId == tableId ? relationships.getChildTableId(edge) : parentId;
+
+                // only take each relationship from the end that comes first
+                if (position[otherId] <= position[tableId])
+                    continue;
+                if (relationships.isParentExcluded(edge) && relationships.isChildExcluded(edge))
+                    continue;
+                addConnector(relationships, edge, includeImplied, relatedConnectors);
             }
         }
 
         return relatedConnectors;
     }
+
+    private void addConnector(RelationshipGraph relationships, int edge, boolean includeImplied, Set<DotConnector> relatedConnectors) {
+        boolean implied = relationships.isImplied(edge);
+        if (!implied || includeImplied) {
+            relatedConnectors.add(new DotConnector(relationships.getParentColumn(edge), relationships.getChildColumn(edge), implied));
+        }
+    }
 }
@@ -19,11 +19,8 @@
 package net.sourceforge.schemaspy.view;
 
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
@@ -32,10 +29,13 @@ import net.sourceforge.schemaspy.Config;
 import net.sourceforge.schemaspy.Revision;
 import net.sourceforge.schemaspy.model.Database;
 import net.sourceforge.schemaspy.model.ForeignKeyConstraint;
+import net.sourceforge.schemaspy.model.RelationshipGraph;
+import net.sourceforge.schemaspy.model.SchemaRelationshipGraph;
 import net.sourceforge.schemaspy.model.Table;
 import net.sourceforge.schemaspy.model.TableColumn;
 import net.sourceforge.schemaspy.util.Dot;
 import net.sourceforge.schemaspy.util.LineWriter;
+import net.sourceforge.schemaspy.util.URLEncoder;
 import net.sourceforge.schemaspy.view.DotNode.DotNodeConfig;
 
 /**
@@ -61,22 +61,22 @@ public class DotFormatter {
      * Write real relationships (excluding implied) associated with the given table.<p>
      * Returns a set of the implied constraints that could have been included but weren't.
      */
-    public Set<ForeignKeyConstraint> writeRealRelationships(Table table, boolean twoDegreesOfSeparation, WriteStats stats, LineWriter dot) throws IOException {
-        return writeRelationships(table, twoDegreesOfSeparation, stats, false, dot);
+    public Set<ForeignKeyConstraint> writeRealRelationships(RelationshipGraph relationships, Table table, boolean twoDegreesOfSeparation, WriteStats stats, LineWriter dot) throws IOException {
+        return writeRelationships(relationships, table, twoDegreesOfSeparation, stats, false, dot);
     }
 
     /**
      * Write implied relationships associated with the given table
      */
-    public void writeAllRelationships(Table table, boolean twoDegreesOfSeparation, WriteStats stats, LineWriter dot) throws IOException {
-        writeRelationships(table, twoDegreesOfSeparation, stats, true, dot);
+    public void writeAllRelationships(RelationshipGraph relationships, Table table, boolean twoDegreesOfSeparation, WriteStats stats, LineWriter dot) throws IOException {
+        writeRelationships(relationships, table, twoDegreesOfSeparation, stats, true, dot);
     }
 
     /**
      * Write relationships associated with the given table.<p>
      * Returns a set of the implied constraints that could have been included but weren't.
      */
-    private Set<ForeignKeyConstraint> writeRelationships(Table table, boolean twoDegreesOfSeparation, WriteStats stats, boolean includeImplied, LineWriter dot) throws IOException {
+    private Set<ForeignKeyConstraint> writeRelationships(RelationshipGraph relationships, Table table, boolean twoDegreesOfSeparation, WriteStats stats, boolean includeImplied, LineWriter dot) throws IOException {
         Set<Table> tablesWritten = new HashSet<Table>();
         Set<ForeignKeyConstraint> skippedImpliedConstraints = new HashSet<ForeignKeyConstraint>();
 
@@ -85,9 +85,9 @@ public class DotFormatter {
         String diagramName = includeImplied ? "impliedTwoDegreesRelationshipsDiagram" : (twoDegreesOfSeparation ? "twoDegreesRelationshipsDiagram" : "oneDegreeRelationshipsDiagram");
         writeHeader(diagramName, true, dot);
 
-        Set<Table> relatedTables = getImmediateRelatives(table, true, includeImplied, skippedImpliedConstraints);
+        Set<Table> relatedTables = relationships.getImmediateRelatives(table, true, includeImplied, skippedImpliedConstraints);
 
-        Set<DotConnector> connectors = new TreeSet<DotConnector>(finder.getRelatedConnectors(table, includeImplied));
+        Set<DotConnector> connectors = new TreeSet<DotConnector>(finder.getRelatedConnectors(relationships, table, includeImplied));
         tablesWritten.add(table);
 
         Map<Table, DotNode> nodes = new TreeMap<Table, DotNode>();
@@ -97,8 +97,8 @@ public class DotFormatter {
             if (!tablesWritten.add(relatedTable))
                 continue; // already written
 
-            nodes.put(relatedTable, new DotNode(relatedTable, true, ""));
-            connectors.addAll(finder.getRelatedConnectors(relatedTable, table, true, includeImplied));
+            nodes.put(relatedTable, new DotNode(relatedTable, relationships, true, ""));
+            connectors.addAll(finder.getRelatedConnectors(relationships, relatedTable, table, true, includeImplied));
         }
 
         // connect the edges that go directly to the target table
@@ -114,14 +114,14 @@ public class DotFormatter {
         // next write 'cousins' (2nd degree of separation)
         if (twoDegreesOfSeparation) {
             for (Table relatedTable : relatedTables) {
-                Set<Table> cousins = getImmediateRelatives(relatedTable, false, includeImplied, skippedImpliedConstraints);
+                Set<Table> cousins = relationships.getImmediateRelatives(relatedTable, false, includeImplied, skippedImpliedConstraints);
 
                 for (Table cousin : cousins) {
                     if (!tablesWritten.add(cousin))
                         continue; // already written
 
-                    allCousinConnectors.addAll(finder.getRelatedConnectors(cousin, relatedTable, false, includeImplied));
-                    nodes.put(cousin, new DotNode(cousin, false, ""));
+                    allCousinConnectors.addAll(finder.getRelatedConnectors(relationships, cousin, relatedTable, false, includeImplied));
+                    nodes.put(cousin, new DotNode(cousin, relationships, false, ""));
                 }
 
                 allCousins.addAll(cousins);
@@ -129,21 +129,11 @@ public class DotFormatter {
         }
 
         // glue together any 'participants' that aren't yet connected
-        // note that this is the epitome of nested loops from hell
-        List<Table> participants = new ArrayList<Table>(nodes.keySet());
-        Iterator<Table> iter = participants.iterator();
-        while (iter.hasNext()) {
-            Table participantA = iter.next();
-            iter.remove(); // cut down the combos as quickly as possible
-
-            for (Table participantB : participants) {
-                for (DotConnector connector : finder.getRelatedConnectors(participantA, participantB, false, includeImplied)) {
-                    if (twoDegreesOfSeparation && (allCousins.contains(participantA) || allCousins.contains(participantB))) {
-                        allCousinConnectors.add(connector);
-                    } else {
-                        connectors.add(connector);
-                    }
-                }
+        for (DotConnector connector : finder.getRelatedConnectors(relationships, nodes.keySet(), includeImplied)) {
+            if (twoDegreesOfSeparation && (allCousins.contains(connector.getParentTable()) || allCousins.contains(connector.getChildTable()))) {
+                allCousinConnectors.add(connector);
+            } else {
+                connectors.add(connector);
             }
         }
 
@@ -159,7 +149,7 @@ public class DotFormatter {
         }
 
         // include the table itself
-        nodes.put(table, new DotNode(table, ""));
+        nodes.put(table, new DotNode(table, relationships, ""));
 
         connectors.addAll(allCousinConnectors);
         for (DotConnector connector : connectors) {
@@ -175,7 +165,8 @@ public class DotFormatter {
         }
 
         for (DotNode node : nodes.values()) {
-            dot.writeln(node.toString());
+            node.write(dot);
+            dot.writeln();
             stats.wroteTable(node.getTable());
         }
 
@@ -184,48 +175,6 @@ public class DotFormatter {
         return skippedImpliedConstraints;
     }
 
-    private Set<Table> getImmediateRelatives(Table table, boolean includeExcluded, boolean includeImplied, Set<ForeignKeyConstraint> skippedImpliedConstraints) {
-        Set<TableColumn> relatedColumns = new HashSet<TableColumn>();
-
-        for (TableColumn column : table.getColumns()) {
-            if (column.isAllExcluded() || (!includeExcluded && column.isExcluded())) {
-                continue;
-            }
-
-            for (TableColumn childColumn : column.getChildren()) {
-                if (childColumn.isAllExcluded() || (!includeExcluded && childColumn.isExcluded())) {
-                    continue;
-                }
-
-                ForeignKeyConstraint constraint = column.getChildConstraint(childColumn);
-                if (includeImplied || !constraint.isImplied())
-                    relatedColumns.add(childColumn);
-                else
-                    skippedImpliedConstraints.add(constraint);
-            }
-
-            for (TableColumn parentColumn : column.getParents()) {
-                if (parentColumn.isAllExcluded() || (!includeExcluded && parentColumn.isExcluded())) {
-                    continue;
-                }
-
-                ForeignKeyConstraint constraint = column.getParentConstraint(parentColumn);
-                if (includeImplied || !constraint.isImplied())
-                    relatedColumns.add(parentColumn);
-                else
-                    skippedImpliedConstraints.add(constraint);
-            }
-        }
-
-        Set<Table> relatedTables = new HashSet<Table>();
-        for (TableColumn column : relatedColumns)
-            relatedTables.add(column.getTable());
-
-        relatedTables.remove(table);
-
-        return relatedTables;
-    }
-
     private void writeHeader(String diagramName, boolean showLabel, LineWriter dot) throws IOException {
         dot.writeln("// dot " + Dot.getInstance().getVersion() + " on " + System.getProperty("os.name") + " " + System.getProperty("os.version"));
         dot.writeln("// SchemaSpy rev " + new Revision());
@@ -270,6 +219,7 @@ public class DotFormatter {
 
     private boolean writeRelationships(Database db, Collection<Table> tables, boolean compact, boolean showColumns, boolean includeImplied, WriteStats stats, LineWriter dot) throws IOException {
         DotConnectorFinder finder = DotConnectorFinder.getInstance();
+        RelationshipGraph relationships = db.getRelationshipGraph();
         DotNodeConfig nodeConfig = showColumns ? new DotNodeConfig(!compact, false) : new DotNodeConfig();
         boolean wroteImplied = false;
 
@@ -290,19 +240,19 @@ public class DotFormatter {
         Map<Table, DotNode> nodes = new TreeMap<Table, DotNode>();
 
         for (Table table : tables) {
-            if (!table.isOrphan(includeImplied)) {
-                nodes.put(table, new DotNode(table, "tables/", nodeConfig));
+            if (!relationships.isOrphan(table, includeImplied)) {
+                nodes.put(table, new DotNode(table, relationships, "tables/", nodeConfig));
             }
         }
 
         for (Table table : db.getRemoteTables()) {
-            nodes.put(table, new DotNode(table, "tables/", nodeConfig));
+            nodes.put(table, new DotNode(table, relationships, "tables/", nodeConfig));
         }
 
         Set<DotConnector> connectors = new TreeSet<DotConnector>();
 
         for (DotNode node : nodes.values()) {
-            connectors.addAll(finder.getRelatedConnectors(node.getTable(), includeImplied));
+            connectors.addAll(finder.getRelatedConnectors(relationships, node.getTable(), includeImplied));
         }
 
         markExcludedColumns(nodes, stats.getExcludedColumns());
@@ -310,9 +260,10 @@ public class DotFormatter {
         for (DotNode node : nodes.values()) {
             Table table = node.getTable();
 
-            dot.writeln(node.toString());
+            node.write(dot);
+            dot.writeln();
             stats.wroteTable(table);
-            wroteImplied = wroteImplied || (includeImplied && table.isOrphan(false));
+            wroteImplied = wroteImplied || (includeImplied && relationships.isOrphan(table, false));
         }
 
         for (DotConnector connector : connectors) {
@@ -333,9 +284,57 @@ public class DotFormatter {
         }
     }
 
-    public void writeOrphan(Table table, LineWriter dot) throws IOException {
+    public void writeOrphan(RelationshipGraph relationships, Table table, LineWriter dot) throws IOException {
         writeHeader(table.getName(), false, dot);
-        dot.writeln(new DotNode(table, true, "tables/").toString());
+        new DotNode(table, relationships, true, "tables/").write(dot);
+        dot.writeln();
         dot.writeln("}");
     }
+
+    /**
+     * Write a diagram with a node for each schema and an edge from each schema
+     * to each of the schemas that it has foreign keys to, labeled with the
+     * number of those foreign keys.
+     * Analyzed schemas link to their <code>&lt;schema&gt;.relationships.html</code> page.
+     *
+     * @param schemaRelationships
+     * @param dot
+     * @throws IOException
+     */
+    public void writeSchemaRelationships(SchemaRelationshipGraph schemaRelationships, LineWriter dot) throws IOException {
+        StyleSheet css = StyleSheet.getInstance();
+        URLEncoder urlEncoder = new URLEncoder(Config.DOT_CHARSET);
+
+        writeHeader("schemaRelationships", true, dot);
+
+        for (String schema : schemaRelationships.getSchemas()) {
+            dot.writeln("  \"" + escape(schema) + "\" [");
+            dot.writeln("    label=\"" + escape(schema) + "\"");
+            dot.writeln("    shape=\"box\"");
+            dot.writeln("    style=\"filled\"");
+            if (schemaRelationships.isAnalyzed(schema)) {
+                dot.writeln("    fillcolor=\"" + css.getTableHeadBackground() + "\"");
+                dot.writeln("    URL=\"" + urlEncoder.encode(schema) + ".relationships.html\"");
+            } else {
+                dot.writeln("    fillcolor=\"" + css.getTableBackground() + "\"");
+            }
+            dot.writeln("    tooltip=\"" + escape(schema) + "\"");
+            dot.writeln("  ];");
+        }
+
+        for (Map.Entry<String, Map<String, Integer>> child : schemaRelationships.getCounts().entrySet()) {
+            for (Map.Entry<String, Integer> parent : child.getValue().entrySet()) {
+                int count = parent.getValue();
+                dot.write("  \"" + escape(child.getKey()) + "\" -> \"" + escape(parent.getKey()) + "\"");
+                dot.writeln(" [label=\"" + count + "\" tooltip=\"" + count + " foreign key" + (count == 1 ? "" : "s") +
+                            " from " + escape(child.getKey()) + " to " + escape(parent.getKey()) + "\"];");
+            }
+        }
+
+        dot.writeln("}");
+    }
+
+    private static String escape(String id) {
+        return id.replace("\"", "\\\"");
+    }
 }
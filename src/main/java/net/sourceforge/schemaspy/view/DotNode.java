@@ -18,39 +18,58 @@
  */
 package net.sourceforge.schemaspy.view;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.text.NumberFormat;
 import java.util.HashSet;
-import java.util.List;
 import java.util.Set;
 import net.sourceforge.schemaspy.Config;
+import net.sourceforge.schemaspy.model.RelationshipGraph;
 import net.sourceforge.schemaspy.model.Table;
 import net.sourceforge.schemaspy.model.TableColumn;
-import net.sourceforge.schemaspy.model.TableIndex;
+import net.sourceforge.schemaspy.util.LineWriter;
 import net.sourceforge.schemaspy.util.URLEncoder;
 
 public class DotNode {
     private final Table table;
+    private final RelationshipGraph relationships;
     private final DotNodeConfig config;
     private final String path;
     private final Set<TableColumn> excludedColumns = new HashSet<TableColumn>();
-    private final String lineSeparator = System.getProperty("line.separator");
     private final boolean displayNumRows = Config.getInstance().isNumRowsEnabled();
     private static final URLEncoder urlEncoder = new URLEncoder(Config.DOT_CHARSET);
 
+    // constant markup written for every node and column, encoded up front
+    private static final LineWriter.Fragment LABEL = new LineWriter.Fragment("    label=<");
+    private static final LineWriter.Fragment ROW = new LineWriter.Fragment("      <TR>");
+    private static final LineWriter.Fragment END_ROW = new LineWriter.Fragment("</TR>");
+    private static final LineWriter.Fragment PORT = new LineWriter.Fragment("<TD PORT=\"");
+    private static final LineWriter.Fragment END_PORT = new LineWriter.Fragment("\" ");
+    private static final LineWriter.Fragment TYPE_PORT = new LineWriter.Fragment(".type\" ALIGN=\"LEFT\">");
+    private static final LineWriter.Fragment COLSPAN_2 = new LineWriter.Fragment("COLSPAN=\"2\" ");
+    private static final LineWriter.Fragment COLSPAN_3 = new LineWriter.Fragment("COLSPAN=\"3\" ");
+    private static final LineWriter.Fragment ALIGN_LEFT = new LineWriter.Fragment("ALIGN=\"LEFT\">");
+    private static final LineWriter.Fragment END_CELL = new LineWriter.Fragment("</TD>");
+    private static final LineWriter.Fragment ELIPSES = new LineWriter.Fragment("      <TR><TD PORT=\"elipses\" COLSPAN=\"3\" ALIGN=\"LEFT\">...</TD></TR>");
+    private static final LineWriter.Fragment END_TABLE = new LineWriter.Fragment("    </TABLE>>");
+    private static final LineWriter.Fragment END_NODE = new LineWriter.Fragment("  ];");
+
     /**
      * Create a DotNode that is a focal point of a diagram.
      * That is, all of its columns are displayed in addition to the details
      * of those columns.
      *
      * @param table Table
+     * @param relationships RelationshipGraph
      * @param path String
      */
-    public DotNode(Table table, String path) {
-        this(table, path, new DotNodeConfig(true, true));
+    public DotNode(Table table, RelationshipGraph relationships, String path) {
+        this(table, relationships, path, new DotNodeConfig(true, true));
     }
 
-    public DotNode(Table table, String path, DotNodeConfig config) {
+    public DotNode(Table table, RelationshipGraph relationships, String path, DotNodeConfig config) {
         this.table = table;
+        this.relationships = relationships;
         this.path = path + (table.isRemote() ? ("../../" + table.getSchema() + "/tables/") : "");
         this.config = config;
     }
@@ -60,11 +79,12 @@ public class DotNode {
      * The details of the optional columns (e.g. type, size) are not displayed.
      *
      * @param table Table
+     * @param relationships RelationshipGraph
      * @param showColumns boolean
      * @param path String
      */
-    public DotNode(Table table, boolean showColumns, String path) {
-        this(table, path, showColumns ? new DotNodeConfig(true, false) : new DotNodeConfig());
+    public DotNode(Table table, RelationshipGraph relationships, boolean showColumns, String path) {
+        this(table, relationships, path, showColumns ? new DotNodeConfig(true, false) : new DotNodeConfig());
     }
 
     public void setShowImplied(boolean showImplied) {
@@ -81,54 +101,68 @@ public class DotNode {
 
     @Override
     public String toString() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            LineWriter out = new LineWriter(bytes, Config.DOT_CHARSET);
+            write(out);
+            out.close();
+            return bytes.toString(Config.DOT_CHARSET);
+        } catch (IOException exc) {
+            // can't happen when writing to memory
+            throw new RuntimeException(exc);
+        }
+    }
+
+    /**
+     * Write the dot representation of this node (without a trailing line separator)
+     *
+     * @param out
+     * @throws IOException
+     */
+    public void write(LineWriter out) throws IOException {
         StyleSheet css = StyleSheet.getInstance();
-        StringBuilder buf = new StringBuilder();
         String tableName = table.getName();
         // fully qualified table name (optionally prefixed with schema)
         String fqTableName = (table.isRemote() ? table.getSchema() + "." : "") + tableName;
-        String colspan = config.showColumnDetails ? "COLSPAN=\"2\" " : "COLSPAN=\"3\" ";
+        LineWriter.Fragment colspan = config.showColumnDetails ? COLSPAN_2 : COLSPAN_3;
 
-        buf.append("  \"" + fqTableName + "\" [" + lineSeparator);
-        buf.append("    label=<" + lineSeparator);
-        buf.append("    <TABLE BORDER=\"" + (config.showColumnDetails ? "2" : "0") + "\" CELLBORDER=\"1\" CELLSPACING=\"0\" BGCOLOR=\"" + css.getTableBackground() + "\">" + lineSeparator);
-        buf.append("      <TR>");
-        buf.append("<TD COLSPAN=\"3\" BGCOLOR=\"" + css.getTableHeadBackground() + "\" ALIGN=\"CENTER\">" + fqTableName + "</TD>");
-        buf.append("</TR>" + lineSeparator);
+        out.writeln("  \"" + fqTableName + "\" [");
+        out.writeln(LABEL);
+        out.writeln("    <TABLE BORDER=\"" + (config.showColumnDetails ? "2" : "0") + "\" CELLBORDER=\"1\" CELLSPACING=\"0\" BGCOLOR=\"" + css.getTableBackground() + "\">");
+        out.write(ROW);
+        out.write("<TD COLSPAN=\"3\" BGCOLOR=\"" + css.getTableHeadBackground() + "\" ALIGN=\"CENTER\">" + fqTableName + "</TD>");
+        out.writeln(END_ROW);
 
         boolean skippedTrivial = false;
 
         if (config.showColumns) {
-            List<TableColumn> primaryColumns = table.getPrimaryColumns();
-            Set<TableColumn> indexColumns = new HashSet<TableColumn>();
-
-            for (TableIndex index : table.getIndexes()) {
-                indexColumns.addAll(index.getColumns());
-            }
-            indexColumns.removeAll(primaryColumns);
-
             for (TableColumn column : table.getColumns()) {
-                if (config.showTrivialColumns || config.showColumnDetails || column.isPrimary() || column.isForeignKey() || indexColumns.contains(column)) {
-                    buf.append("      <TR>");
-                    buf.append("<TD PORT=\"" + column.getName() + "\" " + colspan);
+                if (config.showTrivialColumns || config.showColumnDetails || column.isPrimary() || column.isForeignKey() || column.isIndexed()) {
+                    out.write(ROW);
+                    out.write(PORT);
+                    out.write(column.getName());
+                    out.write(END_PORT);
+                    out.write(colspan);
                     if (excludedColumns.contains(column))
-                        buf.append("BGCOLOR=\"" + css.getExcludedColumnBackgroundColor() + "\" ");
-                    else if (primaryColumns.contains(column))
-                        buf.append("BGCOLOR=\"" + css.getPrimaryKeyBackground() + "\" ");
-                    else if (indexColumns.contains(column))
-                        buf.append("BGCOLOR=\"" + css.getIndexedColumnBackground() + "\" ");
-                    buf.append("ALIGN=\"LEFT\">");
-                    buf.append(column.getName());
-                    buf.append("</TD>");
+                        out.write("BGCOLOR=\"" + css.getExcludedColumnBackgroundColor() + "\" ");
+                    else if (column.isPrimary())
+                        out.write("BGCOLOR=\"" + css.getPrimaryKeyBackground() + "\" ");
+                    else if (column.isIndexed())
+                        out.write("BGCOLOR=\"" + css.getIndexedColumnBackground() + "\" ");
+                    out.write(ALIGN_LEFT);
+                    out.write(column.getName());
+                    out.write(END_CELL);
                     if (config.showColumnDetails) {
-                        buf.append("<TD PORT=\"");
-                        buf.append(column.getName());
-                        buf.append(".type\" ALIGN=\"LEFT\">");
-                        buf.append(column.getType().toLowerCase());
-                        buf.append("[");
-                        buf.append(column.getDetailedSize());
-                        buf.append("]</TD>");
+                        out.write(PORT);
+                        out.write(column.getName());
+                        out.write(TYPE_PORT);
+                        out.write(column.getType().toLowerCase());
+                        out.write("[");
+                        out.write(column.getDetailedSize());
+                        out.write("]");
+                        out.write(END_CELL);
                     }
-                    buf.append("</TR>" + lineSeparator);
+                    out.writeln(END_ROW);
                 } else {
                     skippedTrivial = true;
                 }
@@ -136,47 +170,46 @@ public class DotNode {
         }
 
         if (skippedTrivial || !config.showColumns) {
-            buf.append("      <TR><TD PORT=\"elipses\" COLSPAN=\"3\" ALIGN=\"LEFT\">...</TD></TR>" + lineSeparator);
+            out.writeln(ELIPSES);
         }
 
-        buf.append("      <TR>");
-        buf.append("<TD ALIGN=\"LEFT\" BGCOLOR=\"" + css.getBodyBackground() + "\">");
-        int numParents = config.showImpliedRelationships ? table.getNumParents() : table.getNumNonImpliedParents();
+        out.write(ROW);
+        out.write("<TD ALIGN=\"LEFT\" BGCOLOR=\"" + css.getBodyBackground() + "\">");
+        int numParents = relationships.getNumParents(table, config.showImpliedRelationships);
         if (numParents > 0 || config.showColumnDetails)
-            buf.append("&lt; " + numParents);
+            out.write("&lt; " + numParents);
         else
-            buf.append("  ");
-        buf.append("</TD>");
-        buf.append("<TD ALIGN=\"RIGHT\" BGCOLOR=\"" + css.getBodyBackground() + "\">");
+            out.write("  ");
+        out.write(END_CELL);
+        out.write("<TD ALIGN=\"RIGHT\" BGCOLOR=\"" + css.getBodyBackground() + "\">");
         if (table.isView())
-            buf.append("view");
+            out.write("view");
         else {
             final long numRows = table.getNumRows();
             if (displayNumRows && numRows != -1) {
-                buf.append(NumberFormat.getInstance().format(numRows));
-                buf.append(" row");
+                out.write(NumberFormat.getInstance().format(numRows));
+                out.write(" row");
                 if (numRows != 1)
-                    buf.append('s');
+                    out.write('s');
             } else {
-                buf.append("  ");
+                out.write("  ");
             }
         }
-        buf.append("</TD>");
-        buf.append("<TD ALIGN=\"RIGHT\" BGCOLOR=\"" + css.getBodyBackground() + "\">");
-        int numChildren = config.showImpliedRelationships ? table.getNumChildren() : table.getNumNonImpliedChildren();
+        out.write(END_CELL);
+        out.write("<TD ALIGN=\"RIGHT\" BGCOLOR=\"" + css.getBodyBackground() + "\">");
+        int numChildren = relationships.getNumChildren(table, config.showImpliedRelationships);
         if (numChildren > 0 || config.showColumnDetails)
-            buf.append(numChildren + " &gt;");
+            out.write(numChildren + " &gt;");
         else
-            buf.append("  ");
-        buf.append("</TD></TR>" + lineSeparator);
+            out.write("  ");
+        out.write(END_CELL);
+        out.writeln(END_ROW);
 
-        buf.append("    </TABLE>>" + lineSeparator);
+        out.writeln(END_TABLE);
         if (!table.isRemote() || Config.getInstance().isOneOfMultipleSchemas())
-            buf.append("    URL=\"" + path + toNCR( urlEncoder.encode(tableName) ) + ".html\"" + lineSeparator);
-        buf.append("    tooltip=\"" + toNCR(fqTableName) + "\"" + lineSeparator);
-        buf.append("  ];");
-
-        return buf.toString();
+            out.writeln("    URL=\"" + path + toNCR( urlEncoder.encode(tableName) ) + ".html\"");
+        out.writeln("    tooltip=\"" + toNCR(fqTableName) + "\"");
+        out.write(END_NODE);
     }
 
     /**
@@ -20,10 +20,20 @@ package net.sourceforge.schemaspy.view;
 
 import java.io.IOException;
 import java.text.NumberFormat;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashSet;
 import java.util.List;
-import net.sourceforge.schemaspy.DbAnalyzer;
+import net.sourceforge.schemaspy.Config;
+import net.sourceforge.schemaspy.anomaly.AnomalyAnalyzer;
+import net.sourceforge.schemaspy.anomaly.AnomalyAnalyzer.Anomalies;
+import net.sourceforge.schemaspy.anomaly.AnomalyRule;
+import net.sourceforge.schemaspy.anomaly.ColumnAnomalyRule;
+import net.sourceforge.schemaspy.anomaly.DefaultNullStringColumnsRule;
+import net.sourceforge.schemaspy.anomaly.IncrementingColumnNamesRule;
+import net.sourceforge.schemaspy.anomaly.SingleColumnTablesRule;
+import net.sourceforge.schemaspy.anomaly.TableAnomalyRule;
+import net.sourceforge.schemaspy.anomaly.TablesWithoutIndexesRule;
+import net.sourceforge.schemaspy.anomaly.UniqueNullableColumnsRule;
 import net.sourceforge.schemaspy.model.Database;
 import net.sourceforge.schemaspy.model.ForeignKeyConstraint;
 import net.sourceforge.schemaspy.model.Table;
@@ -56,13 +66,37 @@ public class HtmlAnomaliesPage extends HtmlFormatter {
     }
 
     public void write(Database database, Collection<Table> tables, List<? extends ForeignKeyConstraint> impliedConstraints, boolean hasOrphans, LineWriter out) throws IOException {
+        TablesWithoutIndexesRule tablesWithoutIndexes = new TablesWithoutIndexesRule();
+        UniqueNullableColumnsRule uniqueNullables = new UniqueNullableColumnsRule();
+        SingleColumnTablesRule tablesWithOneColumn = new SingleColumnTablesRule();
+        IncrementingColumnNamesRule incrementingColumnNames = new IncrementingColumnNamesRule();
+        DefaultNullStringColumnsRule defaultNullStrings = new DefaultNullStringColumnsRule();
+        List<AnomalyRule<?>> userRules = Config.getInstance().getAnomalyRules();
+
+        List<AnomalyRule<?>> rules = new ArrayList<AnomalyRule<?>>();
+        rules.add(tablesWithoutIndexes);
+        rules.add(uniqueNullables);
+        rules.add(tablesWithOneColumn);
+        rules.add(incrementingColumnNames);
+        rules.add(defaultNullStrings);
+        rules.addAll(userRules);
+
+        // visit each table once for all of the rules
+        Anomalies anomalies = new AnomalyAnalyzer(rules).evaluate(tables);
+
         writeHeader(database, hasOrphans, out);
         writeImpliedConstraints(impliedConstraints, out);
-        writeTablesWithoutIndexes(DbAnalyzer.getTablesWithoutIndexes(new HashSet<Table>(tables)), out);
-        writeUniqueNullables(DbAnalyzer.getMustBeUniqueNullableColumns(new HashSet<Table>(tables)), out);
-        writeTablesWithOneColumn(DbAnalyzer.getTablesWithOneColumn(tables), out);
-        writeTablesWithIncrementingColumnNames(DbAnalyzer.getTablesWithIncrementingColumnNames(tables), out);
-        writeDefaultNullStrings(DbAnalyzer.getDefaultNullStringColumns(new HashSet<Table>(tables)), out);
+        writeTablesWithoutIndexes(tablesWithoutIndexes, anomalies.get(tablesWithoutIndexes), out);
+        writeColumnBasedAnomaly(uniqueNullables, anomalies.get(uniqueNullables), out);
+        writeTablesWithOneColumn(tablesWithOneColumn, anomalies.get(tablesWithOneColumn), out);
+        writeTableBasedAnomaly(incrementingColumnNames, anomalies.get(incrementingColumnNames), out);
+        writeColumnBasedAnomaly(defaultNullStrings, anomalies.get(defaultNullStrings), out);
+        for (AnomalyRule<?> rule : userRules) {
+            if (rule instanceof TableAnomalyRule)
+                writeTableBasedAnomaly((TableAnomalyRule)rule, anomalies.get((TableAnomalyRule)rule), out);
+            else
+                writeColumnBasedAnomaly((ColumnAnomalyRule)rule, anomalies.get((ColumnAnomalyRule)rule), out);
+        }
         writeFooter(out);
     }
 
@@ -139,16 +173,9 @@ public class HtmlAnomaliesPage extends HtmlFormatter {
         out.writeln("<p></li>");
     }
 
-    private void writeUniqueNullables(List<TableColumn> uniqueNullables, LineWriter out) throws IOException {
-        out.writeln("<li>");
-        out.writeln("<b>Columns that are flagged as both 'nullable' and 'must be unique':</b>");
-        writeColumnBasedAnomaly(uniqueNullables, out);
-        out.writeln("<p></li>");
-    }
-
-    private void writeTablesWithoutIndexes(List<Table> unindexedTables, LineWriter out) throws IOException {
+    private void writeTablesWithoutIndexes(AnomalyRule<Table> rule, List<Table> unindexedTables, LineWriter out) throws IOException {
         out.writeln("<li>");
-        out.writeln("<b>Tables without indexes:</b>");
+        out.writeln("<b>" + rule.getDescription() + ":</b>");
         if (!unindexedTables.isEmpty()) {
             out.writeln("<table class='dataTable' border='1' rules='groups'>");
             out.writeln("<colgroup>");
@@ -189,9 +216,9 @@ public class HtmlAnomaliesPage extends HtmlFormatter {
         out.writeln("<p></li>");
     }
 
-    private void writeTablesWithIncrementingColumnNames(List<Table> tables, LineWriter out) throws IOException {
+    private void writeTableBasedAnomaly(AnomalyRule<Table> rule, List<Table> tables, LineWriter out) throws IOException {
         out.writeln("<li>");
-        out.writeln("<b>Tables with incrementing column names, potentially indicating denormalization:</b>");
+        out.writeln("<b>" + rule.getDescription() + ":</b>");
         if (!tables.isEmpty()) {
             out.writeln("<table class='dataTable' border='1' rules='groups'>");
             out.writeln("<thead align='left'>");
@@ -220,9 +247,9 @@ public class HtmlAnomaliesPage extends HtmlFormatter {
         out.writeln("<p></li>");
     }
 
-    private void writeTablesWithOneColumn(List<Table> tables, LineWriter out) throws IOException {
+    private void writeTablesWithOneColumn(AnomalyRule<Table> rule, List<Table> tables, LineWriter out) throws IOException {
         out.writeln("<li>");
-        out.write("<b>Tables that contain a single column:</b>");
+        out.write("<b>" + rule.getDescription() + ":</b>");
         if (!tables.isEmpty()) {
             out.writeln("<table class='dataTable' border='1' rules='groups'>");
             out.writeln("<colgroup>");
@@ -255,14 +282,9 @@ public class HtmlAnomaliesPage extends HtmlFormatter {
         out.writeln("<p></li>");
     }
 
-    private void writeDefaultNullStrings(List<TableColumn> uniqueNullables, LineWriter out) throws IOException {
+    private void writeColumnBasedAnomaly(AnomalyRule<TableColumn> rule, List<TableColumn> columns, LineWriter out) throws IOException {
         out.writeln("<li>");
-        out.writeln("<b>Columns whose default value is the word 'NULL' or 'null', but the SQL NULL value may have been intended:</b>");
-        writeColumnBasedAnomaly(uniqueNullables, out);
-        out.writeln("<p></li>");
-    }
-
-    private void writeColumnBasedAnomaly(List<TableColumn> columns, LineWriter out) throws IOException {
+        out.writeln("<b>" + rule.getDescription() + ":</b>");
         if (!columns.isEmpty()) {
             out.writeln("<table class='dataTable' border='1' rules='groups'>");
             out.writeln("<thead align='left'>");
@@ -289,6 +311,7 @@ public class HtmlAnomaliesPage extends HtmlFormatter {
             out.writeln("</table>");
         }
         writeSummary(columns.size(), out);
+        out.writeln("<p></li>");
     }
 
     private void writeSummary(int numAnomalies, LineWriter out) throws IOException {
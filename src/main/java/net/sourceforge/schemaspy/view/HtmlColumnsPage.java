@@ -22,14 +22,10 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Comparator;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
-import java.util.TreeSet;
 import net.sourceforge.schemaspy.model.Database;
 import net.sourceforge.schemaspy.model.Table;
 import net.sourceforge.schemaspy.model.TableColumn;
-import net.sourceforge.schemaspy.model.TableIndex;
 import net.sourceforge.schemaspy.util.LineWriter;
 
 /**
@@ -109,26 +105,17 @@ public class HtmlColumnsPage extends HtmlFormatter {
         }
     }
 
-    public void write(Database database, Collection<Table> tables, ColumnInfo columnInfo, boolean showOrphansDiagram, LineWriter html) throws IOException {
-        Set<TableColumn> columns = new TreeSet<TableColumn>(columnInfo.getComparator());
-        Set<TableColumn> primaryColumns = new HashSet<TableColumn>();
-        Set<TableColumn> indexedColumns = new HashSet<TableColumn>();
+    public void write(Database database, ColumnIndex columns, ColumnInfo columnInfo, boolean showOrphansDiagram, LineWriter html) throws IOException {
+        int[] ordering = columns.getOrdering(columnInfo.getComparator());
 
-        for (Table table : tables) {
-            columns.addAll(table.getColumns());
-
-            primaryColumns.addAll(table.getPrimaryColumns());
-            for (TableIndex index : table.getIndexes()) {
-                indexedColumns.addAll(index.getColumns());
-            }
-        }
-
-        writeHeader(database, columns.size(), showOrphansDiagram, columnInfo, html);
+        writeHeader(database, ordering.length, showOrphansDiagram, columnInfo, html);
 
         HtmlTablePage formatter = HtmlTablePage.getInstance();
 
-        for (TableColumn column : columns) {
-            formatter.writeColumn(column, column.getTable().getName(), primaryColumns, indexedColumns, true, false, html);
+        for (int i = 0; i < ordering.length; ++i) {
+            int column = ordering[i];
+            TableColumn tableColumn = columns.getColumn(column);
+            formatter.writeColumn(tableColumn, tableColumn.getTable().getName(), columns.isPrimary(column), columns.isIndexed(column), i % 2 == 0, true, false, html);
         }
 
         writeFooter(html);
@@ -41,7 +41,6 @@ import net.sourceforge.schemaspy.util.LineWriter;
  */
 public class HtmlConstraintsPage extends HtmlFormatter {
     private static HtmlConstraintsPage instance = new HtmlConstraintsPage();
-    private int columnCounter;
 
     /**
      * Singleton: Don't allow instantiation
@@ -114,8 +113,9 @@ public class HtmlConstraintsPage extends HtmlFormatter {
         html.writeln("</tr>");
         html.writeln("</thead>");
         html.writeln("<tbody>");
+        int row = 0;
         for (ForeignKeyConstraint constraint : constraintsByName) {
-            writeForeignKeyConstraint(constraint, html);
+            writeForeignKeyConstraint(constraint, row++ % 2 == 0, html);
         }
         if (constraints.size() == 0) {
             html.writeln(" <tr>");
@@ -130,11 +130,11 @@ public class HtmlConstraintsPage extends HtmlFormatter {
      * Write specified foreign key constraint
      *
      * @param constraint ForeignKeyConstraint
+     * @param even boolean
      * @param html LineWriter
      * @throws IOException
      */
-    private void writeForeignKeyConstraint(ForeignKeyConstraint constraint, LineWriter html) throws IOException {
-        boolean even = columnCounter++ % 2 == 0;
+    private void writeForeignKeyConstraint(ForeignKeyConstraint constraint, boolean even, LineWriter html) throws IOException {
         if (even)
             html.writeln("  <tr class='even'>");
         else
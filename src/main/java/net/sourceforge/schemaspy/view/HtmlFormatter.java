@@ -38,11 +38,17 @@ public class HtmlFormatter {
     private   final boolean isMetered            = Config.getInstance().isMeterEnabled();
     private   final URLEncoder  urlEncoder       = new URLEncoder( Config.getInstance().getCharset());
 
+    // constant markup written on every page, encoded up front
+    private static final LineWriter.Fragment DOCTYPE = new LineWriter.Fragment("<!DOCTYPE HTML PUBLIC '-//W3C//DTD HTML 4.01 Transitional//EN' 'http://www.w3.org/TR/html4/loose.dtd'>");
+    private static final LineWriter.Fragment SIGNATURE = new LineWriter.Fragment("  <td class='heading' align='right' valign='top' title='John Currier - Creator of Cool Tools'><span class='indent'>Generated by</span><br><span class='indent'><span class='signature'><a href='http://schemaspy.sourceforge.net' target='_blank'>SchemaSpy</a></span></span></td>");
+    private static final LineWriter.Fragment GENERATED_BY = new LineWriter.Fragment("Generated by <span class='signature'><a href='http://schemaspy.sourceforge.net' target='_blank'>SchemaSpy</a></span> on ");
+    private static final LineWriter.Fragment DONATE = new LineWriter.Fragment("  <li><a href='http://sourceforge.net/donate/index.php?group_id=137197' title='Please help keep SchemaSpy alive' target='_blank'>Donate</a></li>");
+
     protected HtmlFormatter() {
     }
 
     protected void writeHeader(Database db, Table table, String text, boolean showOrphans, List<String> javascript, LineWriter out) throws IOException {
-        out.writeln("<!DOCTYPE HTML PUBLIC '-//W3C//DTD HTML 4.01 Transitional//EN' 'http://www.w3.org/TR/html4/loose.dtd'>");
+        out.writeln(DOCTYPE);
         out.writeln("<html>");
         out.writeln("<head>");
         out.writeln("  <!-- SchemaSpy rev " + new Revision() + " -->");
@@ -93,7 +99,7 @@ public class HtmlFormatter {
             out.writeln("</div><p>");
         }
         out.writeln("</td>");;
-        out.writeln("  <td class='heading' align='right' valign='top' title='John Currier - Creator of Cool Tools'><span class='indent'>Generated by</span><br><span class='indent'><span class='signature'><a href='http://schemaspy.sourceforge.net' target='_blank'>SchemaSpy</a></span></span></td>");
+        out.writeln(SIGNATURE);
         out.writeln(" </tr>");
         out.writeln("</table>");
     }
@@ -107,7 +113,7 @@ public class HtmlFormatter {
 
     protected void writeGeneratedBy(String connectTime, LineWriter html) throws IOException {
         html.write("<span class='container'>");
-        html.write("Generated by <span class='signature'><a href='http://schemaspy.sourceforge.net' target='_blank'>SchemaSpy</a></span> on ");
+        html.write(GENERATED_BY);
         html.write(connectTime);
         html.writeln("</span>");
     }
@@ -128,7 +134,7 @@ public class HtmlFormatter {
         html.writeln("  <li" + (isConstraintsPage() ? " id='current'" : "") + "><a href='" + path + "constraints.html' title='Useful for diagnosing error messages that just give constraint name or number'>Constraints</a></li>");
         html.writeln("  <li" + (isAnomaliesPage() ? " id='current'" : "") + "><a href='" + path + "anomalies.html' title=\"Things that might not be quite right\">Anomalies</a></li>");
         html.writeln("  <li" + (isColumnsPage() ? " id='current'" : "") + "><a href='" + path + encodeHref(HtmlColumnsPage.getInstance().getColumnInfos().get(0).toString()) + "' title=\"All of the columns in the schema\">Columns</a></li>");
-        html.writeln("  <li><a href='http://sourceforge.net/donate/index.php?group_id=137197' title='Please help keep SchemaSpy alive' target='_blank'>Donate</a></li>");
+        html.writeln(DONATE);
         html.writeln(" </ul>");
         html.writeln("</div>");
         html.writeln("</td></tr></table>");
@@ -27,6 +27,7 @@ import java.util.List;
 import java.util.Set;
 import java.util.TreeSet;
 import net.sourceforge.schemaspy.model.Database;
+import net.sourceforge.schemaspy.model.RelationshipGraph;
 import net.sourceforge.schemaspy.model.Table;
 import net.sourceforge.schemaspy.util.HtmlEncoder;
 import net.sourceforge.schemaspy.util.LineWriter;
@@ -62,6 +63,7 @@ public class HtmlMainIndexPage extends HtmlFormatter {
             }
         });
         byName.addAll(tables);
+        RelationshipGraph relationships = database.getRelationshipGraph();
 
         boolean showIds = false;
         int numViews = 0;
@@ -81,7 +83,7 @@ public class HtmlMainIndexPage extends HtmlFormatter {
         int numViewCols = 0;
         long numRows = 0;
         for (Table table : byName) {
-            writeLineItem(table, showIds, html);
+            writeLineItem(relationships, table, showIds, html);
 
             if (!table.isView())
                 numTableCols += table.getColumns().size();
@@ -190,7 +192,7 @@ public class HtmlMainIndexPage extends HtmlFormatter {
         html.writeln("<tbody>");
     }
 
-    private void writeLineItem(Table table, boolean showIds, LineWriter html) throws IOException {
+    private void writeLineItem(RelationshipGraph relationships, Table table, boolean showIds, LineWriter html) throws IOException {
         html.write(" <tr class='" + (table.isView() ? "view" : "tbl") + "' valign='top'>");
         html.write("  <td class='detail'><a href='tables/");
         html.write(encodeHref(table.getName()));
@@ -209,12 +211,12 @@ public class HtmlMainIndexPage extends HtmlFormatter {
         }
 
         html.write("  <td class='detail' align='right'>");
-        int numRelatives = table.getNumNonImpliedChildren();
+        int numRelatives = relationships.getNumChildren(table, false);
         if (numRelatives != 0)
             html.write(String.valueOf(integerFormatter.format(numRelatives)));
         html.writeln("</td>");
         html.write("  <td class='detail' align='right'>");
-        numRelatives = table.getNumNonImpliedParents();
+        numRelatives = relationships.getNumParents(table, false);
         if (numRelatives != 0)
             html.write(String.valueOf(integerFormatter.format(numRelatives)));
         html.writeln("</td>");
@@ -18,6 +18,7 @@
  */
 package net.sourceforge.schemaspy.view;
 
+import java.io.File;
 import java.io.IOException;
 import java.sql.DatabaseMetaData;
 import java.sql.SQLException;
@@ -25,14 +26,18 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.List;
 import net.sourceforge.schemaspy.Config;
+import net.sourceforge.schemaspy.model.SchemaRelationshipGraph;
+import net.sourceforge.schemaspy.util.Dot;
 import net.sourceforge.schemaspy.util.LineWriter;
+import net.sourceforge.schemaspy.util.OutputSink;
 
 /**
  * The page that contains links to the various schemas that were analyzed
+ * and, once they've been analyzed, a diagram of the relationships between them
  *
  * @author John Currier
  */
-public class HtmlMultipleSchemasIndexPage extends HtmlFormatter {
+public class HtmlMultipleSchemasIndexPage extends HtmlDiagramFormatter {
     private static HtmlMultipleSchemasIndexPage instance = new HtmlMultipleSchemasIndexPage();
 
     /**
@@ -50,17 +55,40 @@ public class HtmlMultipleSchemasIndexPage extends HtmlFormatter {
         return instance;
     }
 
-    public void write(String dbName, List<String> populatedSchemas, DatabaseMetaData meta, LineWriter index) throws IOException {
-        writeHeader(dbName, meta, populatedSchemas.size(), false, populatedSchemas.get(0).toString(), index);
+    public void write(String dbName, List<String> populatedSchemas, String databaseProduct, LineWriter index) throws IOException {
+        write(dbName, populatedSchemas, databaseProduct, null, null, index);
+    }
+
+    /**
+     * Write the index along with the number of foreign keys that each schema
+     * has to and from the other schemas and a diagram of those relationships.
+     * The diagram's files are written to <code>outputDir</code>.
+     *
+     * @param dbName
+     * @param populatedSchemas
+     * @param databaseProduct
+     * @param schemaRelationships <code>null</code> if the relationships aren't known (yet)
+     * @param outputDir
+     * @param index
+     * @throws IOException
+     */
+    public void write(String dbName, List<String> populatedSchemas, String databaseProduct, SchemaRelationshipGraph schemaRelationships, File outputDir, LineWriter index) throws IOException {
+        writeHeader(dbName, databaseProduct, populatedSchemas.size(), false, schemaRelationships != null, populatedSchemas.get(0).toString(), index);
 
         for (String schema : populatedSchemas) {
-            writeLineItem(schema, index);
+            writeLineItem(schema, schemaRelationships, index);
         }
 
+        index.writeln("</tbody>");
+        index.writeln("</table>");
+
+        if (schemaRelationships != null && !schemaRelationships.isEmpty())
+            writeDiagram(schemaRelationships, outputDir, index);
+
         writeFooter(index);
     }
 
-    private void writeHeader(String databaseName, DatabaseMetaData meta, int numberOfSchemas, boolean showIds, String aSchema, LineWriter html) throws IOException {
+    private void writeHeader(String databaseName, String databaseProduct, int numberOfSchemas, boolean showIds, boolean showRelationships, String aSchema, LineWriter html) throws IOException {
         String connectTime = new SimpleDateFormat("EEE MMM dd HH:mm z yyyy").format(new Date());
 
         html.writeln("<!DOCTYPE HTML PUBLIC '-//W3C//DTD HTML 4.01 Transitional//EN' 'http://www.w3.org/TR/html4/loose.dtd'>");
@@ -98,9 +126,9 @@ public class HtmlMultipleSchemasIndexPage extends HtmlFormatter {
         html.writeln(" </td></tr>");
         html.writeln(" <tr>");
         html.write("  <td class='container'>");
-        if (meta != null) {
+        if (databaseProduct != null) {
             html.write("Database Type: ");
-            html.write(getDatabaseProduct(meta));
+            html.write(databaseProduct);
         }
         html.writeln("  </td>");
         html.writeln("  <td class='container' align='right' valign='top' rowspan='3'>");
@@ -133,21 +161,70 @@ public class HtmlMultipleSchemasIndexPage extends HtmlFormatter {
         html.writeln("</th>");
         if (showIds)
             html.writeln("  <th align='center' valign='bottom'>ID</th>");
+        if (showRelationships) {
+            html.writeln("  <th align='right' valign='bottom' title='Foreign keys from this schema to other schemas'>Outbound</th>");
+            html.writeln("  <th align='right' valign='bottom' title='Foreign keys from other schemas to this schema'>Inbound</th>");
+        }
         html.writeln("</tr>");
         html.writeln("</thead>");
         html.writeln("<tbody>");
     }
 
-    private void writeLineItem(String schema, LineWriter index) throws IOException {
+    private void writeLineItem(String schema, SchemaRelationshipGraph schemaRelationships, LineWriter index) throws IOException {
         index.writeln(" <tr>");
         index.write("  <td class='detail'><a href='");
         index.write(encodeHref(schema));
         index.write("/index.html'>");
         index.write(schema);
         index.writeln("</a></td>");
+        if (schemaRelationships != null) {
+            writeRelationshipCount(schema, schemaRelationships.getOutbound(schema).size(), "outbound", index);
+            writeRelationshipCount(schema, schemaRelationships.getInbound(schema).size(), "inbound", index);
+        }
         index.writeln(" </tr>");
     }
 
+    private void writeRelationshipCount(String schema, int count, String anchor, LineWriter index) throws IOException {
+        index.write("  <td class='detail' align='right'>");
+        if (count > 0) {
+            index.write("<a href='");
+            index.write(encodeHref(schema));
+            index.write(".relationships.html#");
+            index.write(anchor);
+            index.write("'>");
+            index.write(String.valueOf(count));
+            index.write("</a>");
+        } else {
+            index.write("0");
+        }
+        index.writeln("</td>");
+    }
+
+    private void writeDiagram(SchemaRelationshipGraph schemaRelationships, File outputDir, LineWriter index) throws IOException {
+        Dot dot = getDot();
+        if (dot == null) {
+            writeInvalidGraphvizInstallation(index);
+            return;
+        }
+
+        File dotFile = new File(outputDir, "schemaRelationships.dot");
+        File diagramFile = new File(outputDir, "schemaRelationships." + dot.getFormat());
+        OutputSink sink = Config.getInstance().getOutputSink();
+
+        LineWriter dotOut = new LineWriter(sink.newOutputStream(dotFile), Config.DOT_CHARSET);
+        DotFormatter.getInstance().writeSchemaRelationships(schemaRelationships, dotOut);
+        dotOut.close();
+
+        try {
+            index.writeln("<p/>");
+            index.writeln("<b>Relationships between schemas:</b><br>");
+            index.writeln(dot.generateDiagram(dotFile, diagramFile, sink));
+            index.writeln("  <a name='diagram'><img id='schemaRelationshipsImg' src='" + encodeHref(diagramFile.getName()) + "' usemap='#schemaRelationships' class='diagram' border='0' alt=''></a>");
+        } catch (Dot.DotFailure dotFailure) {
+            System.err.println(dotFailure);
+        }
+    }
+
     protected void writeTableOfContents(LineWriter html) throws IOException {
         // have to use a table to deal with a horizontal scrollbar showing up inappropriately
         html.writeln("<table id='headerHolder' cellspacing='0' cellpadding='0'><tr><td>");
@@ -166,7 +243,7 @@ public class HtmlMultipleSchemasIndexPage extends HtmlFormatter {
      * @param meta DatabaseMetaData
      * @return String
      */
-    private String getDatabaseProduct(DatabaseMetaData meta) {
+    public String getDatabaseProduct(DatabaseMetaData meta) {
         try {
             return meta.getDatabaseProductName() + " - " + meta.getDatabaseProductVersion();
         } catch (SQLException exc) {
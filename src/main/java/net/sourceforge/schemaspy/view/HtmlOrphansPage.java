@@ -25,9 +25,11 @@ import java.util.List;
 import java.util.Set;
 import net.sourceforge.schemaspy.Config;
 import net.sourceforge.schemaspy.model.Database;
+import net.sourceforge.schemaspy.model.RelationshipGraph;
 import net.sourceforge.schemaspy.model.Table;
 import net.sourceforge.schemaspy.util.Dot;
 import net.sourceforge.schemaspy.util.LineWriter;
+import net.sourceforge.schemaspy.util.OutputSink;
 
 /**
  * The page that contains the all tables that aren't related to others (orphans)
@@ -57,10 +59,11 @@ public class HtmlOrphansPage extends HtmlDiagramFormatter {
         if (dot == null)
             return false;
 
+        RelationshipGraph relationships = db.getRelationshipGraph();
         Set<Table> orphansWithImpliedRelationships = new HashSet<Table>();
 
         for (Table table : orphanTables) {
-            if (!table.isOrphan(true)){
+            if (!relationships.isOrphan(table, true)){
                 orphansWithImpliedRelationships.add(table);
             }
         }
@@ -69,6 +72,7 @@ public class HtmlOrphansPage extends HtmlDiagramFormatter {
 
         html.writeln("<a name='diagram'>");
         try {
+            OutputSink sink = Config.getInstance().getOutputSink();
             StringBuilder maps = new StringBuilder(64 * 1024);
 
             for (Table table : orphanTables) {
@@ -77,11 +81,11 @@ public class HtmlOrphansPage extends HtmlDiagramFormatter {
                 File dotFile = new File(diagramDir, dotBaseFilespec + ".1degree.dot");
                 File imgFile = new File(diagramDir, dotBaseFilespec + ".1degree.png");
 
-                LineWriter dotOut = new LineWriter(dotFile, Config.DOT_CHARSET);
-                DotFormatter.getInstance().writeOrphan(table, dotOut);
+                LineWriter dotOut = new LineWriter(sink.newOutputStream(dotFile), Config.DOT_CHARSET);
+                DotFormatter.getInstance().writeOrphan(relationships, table, dotOut);
                 dotOut.close();
                 try {
-                    maps.append(dot.generateDiagram(dotFile, imgFile));
+                    maps.append(dot.generateDiagram(dotFile, imgFile, sink));
                 } catch (Dot.DotFailure dotFailure) {
                     System.err.println(dotFailure);
                     return false;
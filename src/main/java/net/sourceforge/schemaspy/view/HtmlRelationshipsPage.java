@@ -23,10 +23,12 @@ import java.io.IOException;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import net.sourceforge.schemaspy.Config;
 import net.sourceforge.schemaspy.model.Database;
 import net.sourceforge.schemaspy.model.TableColumn;
 import net.sourceforge.schemaspy.util.Dot;
 import net.sourceforge.schemaspy.util.LineWriter;
+import net.sourceforge.schemaspy.util.OutputSink;
 
 /**
  * The page that contains the overview entity relationship diagrams.
@@ -61,6 +63,7 @@ public class HtmlRelationshipsPage extends HtmlDiagramFormatter {
         File compactImpliedDiagramFile = new File(diagramDir, dotBaseFilespec + ".implied.compact.png");
         File largeImpliedDotFile = new File(diagramDir, dotBaseFilespec + ".implied.large.dot");
         File largeImpliedDiagramFile = new File(diagramDir, dotBaseFilespec + ".implied.large.png");
+        OutputSink sink = Config.getInstance().getOutputSink();
 
         try {
             Dot dot = getDot();
@@ -80,7 +83,7 @@ public class HtmlRelationshipsPage extends HtmlDiagramFormatter {
                 if (!fineEnabled)
                     System.out.print(".");
 
-                html.writeln(dot.generateDiagram(compactRelationshipsDotFile, compactRelationshipsDiagramFile));
+                html.writeln(dot.generateDiagram(compactRelationshipsDotFile, compactRelationshipsDiagramFile, sink));
                 html.writeln("  <a name='diagram'><img id='realCompactImg' src='diagrams/summary/" + encodeHref( compactRelationshipsDiagramFile.getName() ) + "' usemap='#compactRelationshipsDiagram' class='diagram' border='0' alt=''></a>");
 
                 // we've run into instances where the first diagrams get generated, but then
@@ -90,7 +93,7 @@ public class HtmlRelationshipsPage extends HtmlDiagramFormatter {
                     if (!fineEnabled)
                         System.out.print(".");
 
-                    html.writeln(dot.generateDiagram(largeRelationshipsDotFile, largeRelationshipsDiagramFile));
+                    html.writeln(dot.generateDiagram(largeRelationshipsDotFile, largeRelationshipsDiagramFile, sink));
                     html.writeln("  <a name='diagram'><img id='realLargeImg' src='diagrams/summary/" + encodeHref( largeRelationshipsDiagramFile.getName() ) + "' usemap='#largeRelationshipsDiagram' class='diagram' border='0' alt=''></a>");
                 } catch (Dot.DotFailure dotFailure) {
                     System.err.println("dot failed to generate all of the relationships diagrams:");
@@ -104,13 +107,13 @@ public class HtmlRelationshipsPage extends HtmlDiagramFormatter {
                     if (!fineEnabled)
                         System.out.print(".");
 
-                    html.writeln(dot.generateDiagram(compactImpliedDotFile, compactImpliedDiagramFile));
+                    html.writeln(dot.generateDiagram(compactImpliedDotFile, compactImpliedDiagramFile, sink));
                     html.writeln("  <a name='diagram'><img id='impliedCompactImg' src='diagrams/summary/" + encodeHref(compactImpliedDiagramFile.getName()) + "' usemap='#compactImpliedRelationshipsDiagram' class='diagram' border='0' alt=''></a>");
 
                     if (!fineEnabled)
                         System.out.print(".");
 
-                    html.writeln(dot.generateDiagram(largeImpliedDotFile, largeImpliedDiagramFile));
+                    html.writeln(dot.generateDiagram(largeImpliedDotFile, largeImpliedDiagramFile, sink));
                     html.writeln("  <a name='diagram'><img id='impliedLargeImg' src='diagrams/summary/" + encodeHref(largeImpliedDiagramFile.getName() ) + "' usemap='#largeImpliedRelationshipsDiagram' class='diagram' border='0' alt=''></a>");
                 }
             } catch (Dot.DotFailure dotFailure) {
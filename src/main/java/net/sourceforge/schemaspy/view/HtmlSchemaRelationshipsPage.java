@@ -0,0 +1,188 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.view;
+
+import java.io.IOException;
+import java.util.List;
+import net.sourceforge.schemaspy.Config;
+import net.sourceforge.schemaspy.model.SchemaRelationshipGraph;
+import net.sourceforge.schemaspy.model.SchemaRelationshipGraph.Link;
+import net.sourceforge.schemaspy.util.LineWriter;
+
+/**
+ * The page that lists the foreign keys between one schema and the
+ * other schemas of a multi-schema run, both outbound and inbound
+ *
+ * @author John Currier
+ */
+public class HtmlSchemaRelationshipsPage extends HtmlFormatter {
+    private static HtmlSchemaRelationshipsPage instance = new HtmlSchemaRelationshipsPage();
+
+    /**
+     * Singleton: Don't allow instantiation
+     */
+    private HtmlSchemaRelationshipsPage() {
+    }
+
+    /**
+     * Singleton accessor
+     *
+     * @return the singleton instance
+     */
+    public static HtmlSchemaRelationshipsPage getInstance() {
+        return instance;
+    }
+
+    /**
+     * Write the relationships of <code>schema</code>.
+     * The page is expected to be written alongside the multiple schema index page.
+     *
+     * @param dbName
+     * @param schema
+     * @param schemaRelationships
+     * @param aSchema an analyzed schema whose style sheet can be used
+     * @param html
+     * @throws IOException
+     */
+    public void write(String dbName, String schema, SchemaRelationshipGraph schemaRelationships, String aSchema, LineWriter html) throws IOException {
+        writeHeader(dbName, schema, aSchema, html);
+
+        List<Link> outbound = schemaRelationships.getOutbound(schema);
+        html.writeln("<a name='outbound'></a>");
+        html.write("<b>");
+        html.write(String.valueOf(outbound.size()));
+        html.write(" foreign key");
+        html.write(outbound.size() == 1 ? "" : "s");
+        html.writeln(" to other schemas:</b>");
+        writeLinks(outbound, schemaRelationships, html);
+
+        List<Link> inbound = schemaRelationships.getInbound(schema);
+        html.writeln("<p/>");
+        html.writeln("<a name='inbound'></a>");
+        html.write("<b>");
+        html.write(String.valueOf(inbound.size()));
+        html.write(" foreign key");
+        html.write(inbound.size() == 1 ? "" : "s");
+        html.writeln(" from other schemas:</b>");
+        writeLinks(inbound, schemaRelationships, html);
+
+        html.writeln("</div>");
+        writeFooter(html);
+    }
+
+    private void writeHeader(String databaseName, String schema, String aSchema, LineWriter html) throws IOException {
+        html.writeln("<!DOCTYPE HTML PUBLIC '-//W3C//DTD HTML 4.01 Transitional//EN' 'http://www.w3.org/TR/html4/loose.dtd'>");
+        html.writeln("<html>");
+        html.writeln("<head>");
+        html.write("  <title>Relationships of Schema ");
+        html.write(schema);
+        if (databaseName != null) {
+            html.write(" of Database ");
+            html.write(databaseName);
+        }
+        html.writeln("</title>");
+        html.write("  <link rel=stylesheet href='");
+        html.write(encodeHref(aSchema));
+        html.writeln("/schemaSpy.css' type='text/css'>");
+        html.writeln("  <meta HTTP-EQUIV='Content-Type' CONTENT='text/html; charset=" + Config.getInstance().getCharset() + "'>");
+        html.writeln("</head>");
+        html.writeln("<body>");
+        writeTableOfContents(html);
+        html.writeln("<div class='content' style='clear:both;'>");
+        html.writeln("<table width='100%' border='0' cellpadding='0'>");
+        html.writeln(" <tr>");
+        html.write("  <td class='heading' valign='top'><h1>Relationships of Schema <a href='");
+        html.write(encodeHref(schema));
+        html.write("/index.html'>");
+        html.write(schema);
+        html.writeln("</a></h1></td>");
+        html.writeln("  <td class='heading' align='right' valign='top' title='John Currier - Creator of Cool Tools'><span class='indent'>Generated by</span><br><span class='indent'><span class='signature'><a href='http://schemaspy.sourceforge.net' target='_blank'>SchemaSpy</a></span></span></td>");
+        html.writeln(" </tr>");
+        html.writeln("</table>");
+        html.writeln("<div class='indent'>");
+    }
+
+    private void writeLinks(List<Link> links, SchemaRelationshipGraph schemaRelationships, LineWriter html) throws IOException {
+        html.writeln("<TABLE class='dataTable' border='1' rules='groups'>");
+        html.writeln("<colgroup>");
+        html.writeln("<colgroup>");
+        html.writeln("<colgroup>");
+        html.writeln("<thead align='left'>");
+        html.writeln("<tr>");
+        html.writeln("  <th>Constraint Name</th>");
+        html.writeln("  <th>Child Column</th>");
+        html.writeln("  <th>Parent Column</th>");
+        html.writeln("</tr>");
+        html.writeln("</thead>");
+        html.writeln("<tbody>");
+
+        for (Link link : links) {
+            html.writeln(" <tr>");
+            html.write("  <td class='detail'>");
+            html.write(link.getName());
+            html.writeln("</td>");
+            writeColumn(link.getChildSchema(), link.getChildTable(), link.getChildColumns(), schemaRelationships, html);
+            writeColumn(link.getParentSchema(), link.getParentTable(), link.getParentColumns(), schemaRelationships, html);
+            html.writeln(" </tr>");
+        }
+
+        html.writeln("</tbody>");
+        html.writeln("</table>");
+    }
+
+    private void writeColumn(String schema, String table, String columns, SchemaRelationshipGraph schemaRelationships, LineWriter html) throws IOException {
+        boolean analyzed = schemaRelationships.isAnalyzed(schema);
+
+        html.write("  <td class='detail'>");
+        if (analyzed) {
+            html.write("<a href='");
+            html.write(encodeHref(schema));
+            html.write(".relationships.html'>");
+        }
+        html.write(schema);
+        if (analyzed)
+            html.write("</a>");
+        html.write('.');
+        if (analyzed) {
+            html.write("<a href='");
+            html.write(encodeHref(schema));
+            html.write("/tables/");
+            html.write(encodeHref(table));
+            html.write(".html'>");
+        }
+        html.write(table);
+        if (analyzed)
+            html.write("</a>");
+        html.write('.');
+        html.write(columns);
+        html.writeln("</td>");
+    }
+
+    private void writeTableOfContents(LineWriter html) throws IOException {
+        // have to use a table to deal with a horizontal scrollbar showing up inappropriately
+        html.writeln("<table id='headerHolder' cellspacing='0' cellpadding='0'><tr><td>");
+        html.writeln("<div id='header'>");
+        html.writeln(" <ul>");
+        html.writeln("  <li><a href='index.html' title='All user schemas in the database'>Schemas</a></li>");
+        html.writeln("  <li id='current'><a href='#' title='Foreign keys to and from other schemas'>Relationships</a></li>");
+        html.writeln(" </ul>");
+        html.writeln("</div>");
+        html.writeln("</td></tr></table>");
+    }
+}
@@ -20,9 +20,11 @@ package net.sourceforge.schemaspy.view;
 
 import java.io.File;
 import java.io.IOException;
+import net.sourceforge.schemaspy.Config;
 import net.sourceforge.schemaspy.model.Table;
 import net.sourceforge.schemaspy.util.Dot;
 import net.sourceforge.schemaspy.util.LineWriter;
+import net.sourceforge.schemaspy.util.OutputSink;
 
 public class HtmlTableDiagrammer extends HtmlDiagramFormatter {
     private static HtmlTableDiagrammer instance = new HtmlTableDiagrammer();
@@ -41,16 +43,17 @@ public class HtmlTableDiagrammer extends HtmlDiagramFormatter {
         File twoDegreesDiagramFile = new File(diagramDir, table.getName() + ".2degrees.png");
         File impliedDotFile = new File(diagramDir, table.getName() + ".implied2degrees.dot");
         File impliedDiagramFile = new File(diagramDir, table.getName() + ".implied2degrees.png");
+        OutputSink sink = Config.getInstance().getOutputSink();
 
         try {
             Dot dot = getDot();
             if (dot == null)
                 return false;
 
-            String map = dot.generateDiagram(oneDegreeDotFile, oneDegreeDiagramFile);
+            String map = dot.generateDiagram(oneDegreeDotFile, oneDegreeDiagramFile, sink);
 
             html.write("<br><form action='get'><b>Close relationships");
-            if (twoDegreesDotFile.exists()) {
+            if (sink.exists(twoDegreesDotFile)) {
                 html.writeln("</b><span class='degrees' id='degrees' title='Detail diminishes with increased separation from " + table.getName() + "'>");
                 html.write("&nbsp;within <label for='oneDegree'><input type='radio' name='degrees' id='oneDegree' checked>one</label>");
                 html.write("  <label for='twoDegrees'><input type='radio' name='degrees' id='twoDegrees'>two degrees</label> of separation");
@@ -63,19 +66,19 @@ public class HtmlTableDiagrammer extends HtmlDiagramFormatter {
             map = null;
             html.writeln("  <a name='diagram'><img id='oneDegreeImg' src='../diagrams/" + encodeHref( oneDegreeDiagramFile.getName() ) + "' usemap='#oneDegreeRelationshipsDiagram' class='diagram' border='0' alt='' align='left'></a>");
 
-            if (impliedDotFile.exists()) {
-                html.writeln(dot.generateDiagram(impliedDotFile, impliedDiagramFile));
+            if (sink.exists(impliedDotFile)) {
+                html.writeln(dot.generateDiagram(impliedDotFile, impliedDiagramFile, sink));
                 html.writeln("  <a name='diagram'><img id='impliedTwoDegreesImg' src='../diagrams/" + encodeHref( impliedDiagramFile.getName() ) + "' usemap='#impliedTwoDegreesRelationshipsDiagram' class='diagram' border='0' alt='' align='left'></a>");
             } else {
-                impliedDotFile.delete();
-                impliedDiagramFile.delete();
+                sink.delete(impliedDotFile);
+                sink.delete(impliedDiagramFile);
             }
-            if (twoDegreesDotFile.exists()) {
-                html.writeln(dot.generateDiagram(twoDegreesDotFile, twoDegreesDiagramFile));
+            if (sink.exists(twoDegreesDotFile)) {
+                html.writeln(dot.generateDiagram(twoDegreesDotFile, twoDegreesDiagramFile, sink));
                 html.writeln("  <a name='diagram'><img id='twoDegreesImg' src='../diagrams/" + encodeHref (twoDegreesDiagramFile.getName() ) + "' usemap='#twoDegreesRelationshipsDiagram' class='diagram' border='0' alt='' align='left'></a>");
             } else {
-                twoDegreesDotFile.delete();
-                twoDegreesDiagramFile.delete();
+                sink.delete(twoDegreesDotFile);
+                sink.delete(twoDegreesDiagramFile);
             }
         } catch (Dot.DotFailure dotFailure) {
             System.err.println(dotFailure);
@@ -21,22 +21,27 @@ package net.sourceforge.schemaspy.view;
 import java.io.File;
 import java.io.IOException;
 import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import net.sourceforge.schemaspy.Config;
+import net.sourceforge.schemaspy.Revision;
 import net.sourceforge.schemaspy.model.Database;
 import net.sourceforge.schemaspy.model.ForeignKeyConstraint;
+import net.sourceforge.schemaspy.model.RelationshipGraph;
 import net.sourceforge.schemaspy.model.Table;
 import net.sourceforge.schemaspy.model.TableColumn;
 import net.sourceforge.schemaspy.model.TableIndex;
-import net.sourceforge.schemaspy.model.View;
-import net.sourceforge.schemaspy.util.CaseInsensitiveMap;
 import net.sourceforge.schemaspy.util.HtmlEncoder;
 import net.sourceforge.schemaspy.util.LineWriter;
+import net.sourceforge.schemaspy.util.OutputManifest;
+import net.sourceforge.schemaspy.util.OutputSink;
+import net.sourceforge.schemaspy.util.XmlWriter;
 
 /**
  * The page that contains the details of a specific table or view
@@ -45,7 +50,25 @@ import net.sourceforge.schemaspy.util.LineWriter;
  */
 public class HtmlTablePage extends HtmlFormatter {
     private static final HtmlTablePage instance = new HtmlTablePage();
-    private int columnCounter = 0;
+
+    // constant markup written for every column, encoded up front
+    private static final LineWriter.Fragment ROW_EVEN = new LineWriter.Fragment("<tr class='even'>");
+    private static final LineWriter.Fragment ROW_ODD = new LineWriter.Fragment("<tr class='odd'>");
+    private static final LineWriter.Fragment END_ROW = new LineWriter.Fragment("</tr>");
+    private static final LineWriter.Fragment DETAIL = new LineWriter.Fragment(" <td class='detail'>");
+    private static final LineWriter.Fragment DETAIL_RIGHT = new LineWriter.Fragment(" <td class='detail' align='right'>");
+    private static final LineWriter.Fragment END_DETAIL = new LineWriter.Fragment("</td>");
+    private static final LineWriter.Fragment EMPTY_DETAIL = new LineWriter.Fragment(" <td class='detail'></td>");
+    private static final LineWriter.Fragment DETAIL_TABLE_LINK = new LineWriter.Fragment(" <td class='detail'><a href='tables/");
+    private static final LineWriter.Fragment END_HREF = new LineWriter.Fragment(".html'>");
+    private static final LineWriter.Fragment END_LINKED_DETAIL = new LineWriter.Fragment("</a></td>");
+    private static final LineWriter.Fragment PRIMARY_KEY = new LineWriter.Fragment(" <td class='primaryKey' title='Primary Key'>");
+    private static final LineWriter.Fragment INDEXED_COLUMN = new LineWriter.Fragment(" <td class='indexedColumn' title='Indexed'>");
+    private static final LineWriter.Fragment NULLABLE = new LineWriter.Fragment(" <td class='detail' align='center' title='nullable'>&nbsp;&radic;&nbsp;</td>");
+    private static final LineWriter.Fragment NOT_NULLABLE = new LineWriter.Fragment(" <td class='detail' align='center'></td>");
+    private static final LineWriter.Fragment AUTO_UPDATED = new LineWriter.Fragment(" <td class='detail' align='center' title='Automatically updated by the database'>&nbsp;&radic;&nbsp;</td>");
+    private static final LineWriter.Fragment NOT_AUTO_UPDATED = new LineWriter.Fragment(" <td class='detail' align='center'></td>");
+    private static final LineWriter.Fragment COMMENT_DETAIL = new LineWriter.Fragment(" <td class='comment detail'>");
 
     private final Map<String, String> defaultValueAliases = new HashMap<String, String>();
     {
@@ -73,12 +96,13 @@ public class HtmlTablePage extends HtmlFormatter {
 
     public WriteStats write(Database db, Table table, boolean hasOrphans, File outputDir, WriteStats stats, LineWriter out) throws IOException {
         File diagramsDir = new File(outputDir, "diagrams");
-        boolean hasImplied = generateDots(table, diagramsDir, stats);
+        RelationshipGraph relationships = db.getRelationshipGraph();
+        boolean hasImplied = generateDots(relationships, table, diagramsDir, stats);
 
         writeHeader(db, table, null, hasOrphans, out);
         out.writeln("<table width='100%' border='0'>");
         out.writeln("<tr valign='top'><td class='container' align='left' valign='top'>");
-        writeHeader(table, hasImplied, out);
+        writeHeader(relationships, table, hasImplied, out);
         out.writeln("</td><td class='container' rowspan='2' align='right' valign='top'>");
         writeLegend(true, out);
         out.writeln("</td><tr valign='top'><td class='container' align='left' valign='top'>");
@@ -94,11 +118,74 @@ public class HtmlTablePage extends HtmlFormatter {
         return stats;
     }
 
-    private void writeHeader(Table table, boolean hasImplied, LineWriter html) throws IOException {
+    /**
+     * Returns a digest of everything that the table's page and diagrams are
+     * derived from: the table's details, its relatives within two degrees of
+     * separation (by way of the sources of its diagrams), the options that
+     * affect how they're rendered and the version of SchemaSpy.
+     *
+     * @param db
+     * @param table
+     * @param hasOrphans
+     * @param stats
+     * @return
+     * @throws IOException
+     * @see #getOutputFiles(Table)
+     */
+    public String getInputDigest(Database db, Table table, boolean hasOrphans, WriteStats stats) throws IOException {
+        OutputManifest.DigestStream digest = OutputManifest.newDigestStream();
+        LineWriter out = new LineWriter(digest, Config.DOT_CHARSET);
+
+        out.writeln("SchemaSpy rev " + new Revision());
+        out.writeln(Config.getInstance().getRenderingOptions().toString());
+        out.writeln(String.valueOf(hasOrphans));
+        Set<String> excludedColumns = new TreeSet<String>();
+        for (TableColumn column : stats.getExcludedColumns())
+            excludedColumns.add(column.getTable().getName() + '.' + column.getName() + ' ' + column.isAllExcluded());
+        out.writeln(excludedColumns.toString());
+
+        XmlWriter xml = new XmlWriter(out, Config.DOT_CHARSET);
+        XmlTableFormatter.getInstance().writeTables(xml, Collections.singleton(table));
+        xml.finish();
+
+        if (table.getMaxChildren() + table.getMaxParents() > 0) {
+            RelationshipGraph relationships = db.getRelationshipGraph();
+            DotFormatter formatter = DotFormatter.getInstance();
+            formatter.writeRealRelationships(relationships, table, false, new WriteStats(stats), out);
+            formatter.writeRealRelationships(relationships, table, true, new WriteStats(stats), out);
+            formatter.writeAllRelationships(relationships, table, true, new WriteStats(stats), out);
+        }
+
+        out.close();
+        return digest.getDigest();
+    }
+
+    /**
+     * Returns the paths, relative to the output directory, of the files that
+     * might be generated for the table: its page (along with its compressed copy),
+     * its diagrams and, should it be an orphan, its diagram on the utility tables page
+     *
+     * @param table
+     * @return
+     */
+    public List<String> getOutputFiles(Table table) {
+        List<String> files = new ArrayList<String>();
+        files.add("tables/" + table.getName() + ".html");
+        files.add("tables/" + table.getName() + ".html.gz");
+        for (String diagram : new String[] {".1degree", ".2degrees", ".implied2degrees"}) {
+            files.add("diagrams/" + table.getName() + diagram + ".dot");
+            files.add("diagrams/" + table.getName() + diagram + ".png");
+        }
+        files.add("diagrams/summary/" + table.getName() + ".1degree.dot");
+        files.add("diagrams/summary/" + table.getName() + ".1degree.png");
+        return files;
+    }
+
+    private void writeHeader(RelationshipGraph relationships, Table table, boolean hasImplied, LineWriter html) throws IOException {
         html.writeln("<form name='options' action=''>");
         if (hasImplied) {
             html.write(" <label for='implied'><input type=checkbox id='implied'");
-            if (table.isOrphan(false))
+            if (relationships.isOrphan(table, false))
                 html.write(" checked");
             html.writeln(">Implied relationships</label>");
         }
@@ -123,65 +210,53 @@ public class HtmlTablePage extends HtmlFormatter {
         HtmlColumnsPage.getInstance().writeMainTableHeader(table.getId() != null, null, out);
 
         out.writeln("<tbody valign='top'>");
-        Set<TableColumn> primaries = new HashSet<TableColumn>(table.getPrimaryColumns());
-        Set<TableColumn> indexedColumns = new HashSet<TableColumn>();
-        for (TableIndex index : table.getIndexes()) {
-            indexedColumns.addAll(index.getColumns());
-        }
 
         boolean showIds = table.getId() != null;
+        int row = 0;
         for (TableColumn column : table.getColumns()) {
-            writeColumn(column, null, primaries, indexedColumns, false, showIds, out);
+            writeColumn(column, null, column.isPrimary(), column.isIndexed(), row++ % 2 == 0, false, showIds, out);
         }
         out.writeln("</table>");
     }
 
-    public void writeColumn(TableColumn column, String tableName, Set<TableColumn> primaries, Set<TableColumn> indexedColumns, boolean slim, boolean showIds, LineWriter out) throws IOException {
-        boolean even = columnCounter++ % 2 == 0;
-        if (even)
-            out.writeln("<tr class='even'>");
-        else
-            out.writeln("<tr class='odd'>");
+    /**
+     * Write a row describing the column.
+     * The caller determines the column's key details and whether
+     * it's on an even or odd row.<p/>
+     *
+     * Doesn't touch any state of this formatter so it can be used by multiple threads.
+     */
+    public void writeColumn(TableColumn column, String tableName, boolean isPrimary, boolean isIndexed, boolean even, boolean slim, boolean showIds, LineWriter out) throws IOException {
+        out.writeln(even ? ROW_EVEN : ROW_ODD);
 
         if (showIds) {
-            out.write(" <td class='detail' align='right'>");
+            out.write(DETAIL_RIGHT);
             out.write(String.valueOf(column.getId()));
-            out.writeln("</td>");
+            out.writeln(END_DETAIL);
         }
         if (tableName != null) {
-            out.write(" <td class='detail'><a href='tables/");
+            out.write(DETAIL_TABLE_LINK);
             out.write(encodeHref(tableName));
-            out.write(".html'>");
+            out.write(END_HREF);
             out.write(tableName);
-            out.writeln("</a></td>");
+            out.writeln(END_LINKED_DETAIL);
         }
-        if (primaries.contains(column))
-            out.write(" <td class='primaryKey' title='Primary Key'>");
-        else if (indexedColumns.contains(column))
-            out.write(" <td class='indexedColumn' title='Indexed'>");
+        if (isPrimary)
+            out.write(PRIMARY_KEY);
+        else if (isIndexed)
+            out.write(INDEXED_COLUMN);
         else
-            out.write(" <td class='detail'>");
+            out.write(DETAIL);
         out.write(column.getName());
-        out.writeln("</td>");
-        out.write(" <td class='detail'>");
+        out.writeln(END_DETAIL);
+        out.write(DETAIL);
         out.write(column.getType().toLowerCase());
-        out.writeln("</td>");
-        out.write(" <td class='detail' align='right'>");
+        out.writeln(END_DETAIL);
+        out.write(DETAIL_RIGHT);
         out.write(column.getDetailedSize());
-        out.writeln("</td>");
-        out.write(" <td class='detail' align='center'");
-        if (column.isNullable())
-            out.write(" title='nullable'>&nbsp;&radic;&nbsp;");
-        else
-            out.write(">");
-        out.writeln("</td>");
-        out.write(" <td class='detail' align='center'");
-        if (column.isAutoUpdated()) {
-            out.write(" title='Automatically updated by the database'>&nbsp;&radic;&nbsp;");
-        } else {
-            out.write(">");
-        }
-        out.writeln("</td>");
+        out.writeln(END_DETAIL);
+        out.writeln(column.isNullable() ? NULLABLE : NOT_NULLABLE);
+        out.writeln(column.isAutoUpdated() ? AUTO_UPDATED : NOT_AUTO_UPDATED);
 
         Object defaultValue = column.getDefaultValue();
         if (defaultValue != null || column.isNullable()) {
@@ -193,23 +268,23 @@ public class HtmlTablePage extends HtmlFormatter {
                 out.write(alias.toString());
                 out.writeln("</i></td>");
             } else {
-                out.write(" <td class='detail' align='right'>");
+                out.write(DETAIL_RIGHT);
                 out.write(String.valueOf(defaultValue));
-                out.writeln("</td>");
+                out.writeln(END_DETAIL);
             }
         } else {
-            out.writeln(" <td class='detail'></td>");
+            out.writeln(EMPTY_DETAIL);
         }
         if (!slim) {
-            out.write(" <td class='detail'>");
+            out.write(DETAIL);
             String path = tableName == null ? "" : "tables/";
             writeRelatives(column, false, path, even, out);
-            out.writeln("</td>");
-            out.write(" <td class='detail'>");
+            out.writeln(END_DETAIL);
+            out.write(DETAIL);
             writeRelatives(column, true, path, even, out);
             out.writeln(" </td>");
         }
-        out.write(" <td class='comment detail'>");
+        out.write(COMMENT_DETAIL);
         String comments = column.getComments();
         if (comments != null) {
             if (encodeComments)
@@ -218,8 +293,8 @@ public class HtmlTablePage extends HtmlFormatter {
             else
                 out.write(comments);
         }
-        out.writeln("</td>");
-        out.writeln("</tr>");
+        out.writeln(END_DETAIL);
+        out.writeln(END_ROW);
     }
 
     /**
@@ -411,13 +486,6 @@ public class HtmlTablePage extends HtmlFormatter {
     private void writeView(Table table, Database db, LineWriter out) throws IOException {
         String sql;
         if (table.isView() && (sql = table.getViewSql()) != null) {
-            Map<String, Table> tables = new CaseInsensitiveMap<Table>();
-
-            for (Table t : db.getTables())
-                tables.put(t.getName(), t);
-            for (View v : db.getViews())
-                tables.put(v.getName(), v);
-
             Set<Table> references = new TreeSet<Table>();
             String formatted = Config.getInstance().getSqlFormatter().format(sql, db, references);
 
@@ -455,50 +523,52 @@ public class HtmlTablePage extends HtmlFormatter {
      * Also generates a <TABLENAME>..implied2degrees.dot if the table has implied relatives within
      * two degrees of separation.
      *
+     * @param relationships RelationshipGraph
      * @param table Table
      * @param diagramsDir File
      * @throws IOException
      * @return boolean <code>true</code> if the table has implied relatives within two
      *                 degrees of separation.
      */
-    private boolean generateDots(Table table, File diagramDir, WriteStats stats) throws IOException {
+    private boolean generateDots(RelationshipGraph relationships, Table table, File diagramDir, WriteStats stats) throws IOException {
         File oneDegreeDotFile = new File(diagramDir, table.getName() + ".1degree.dot");
         File oneDegreeDiagramFile = new File(diagramDir, table.getName() + ".1degree.png");
         File twoDegreesDotFile = new File(diagramDir, table.getName() + ".2degrees.dot");
         File twoDegreesDiagramFile = new File(diagramDir, table.getName() + ".2degrees.png");
         File impliedDotFile = new File(diagramDir, table.getName() + ".implied2degrees.dot");
         File impliedDiagramFile = new File(diagramDir, table.getName() + ".implied2degrees.png");
+        OutputSink sink = Config.getInstance().getOutputSink();
 
         // delete before we start because we'll use the existence of these files to determine
         // if they should be turned into pngs & presented
-        oneDegreeDotFile.delete();
-        oneDegreeDiagramFile.delete();
-        twoDegreesDotFile.delete();
-        twoDegreesDiagramFile.delete();
-        impliedDotFile.delete();
-        impliedDiagramFile.delete();
+        sink.delete(oneDegreeDotFile);
+        sink.delete(oneDegreeDiagramFile);
+        sink.delete(twoDegreesDotFile);
+        sink.delete(twoDegreesDiagramFile);
+        sink.delete(impliedDotFile);
+        sink.delete(impliedDiagramFile);
 
         if (table.getMaxChildren() + table.getMaxParents() > 0) {
             Set<ForeignKeyConstraint> impliedConstraints;
 
             DotFormatter formatter = DotFormatter.getInstance();
-            LineWriter dotOut = new LineWriter(oneDegreeDotFile, Config.DOT_CHARSET);
+            LineWriter dotOut = new LineWriter(sink.newOutputStream(oneDegreeDotFile), Config.DOT_CHARSET);
             WriteStats oneStats = new WriteStats(stats);
-            formatter.writeRealRelationships(table, false, oneStats, dotOut);
+            formatter.writeRealRelationships(relationships, table, false, oneStats, dotOut);
             dotOut.close();
 
-            dotOut = new LineWriter(twoDegreesDotFile, Config.DOT_CHARSET);
+            dotOut = new LineWriter(sink.newOutputStream(twoDegreesDotFile), Config.DOT_CHARSET);
             WriteStats twoStats = new WriteStats(stats);
-            impliedConstraints = formatter.writeRealRelationships(table, true, twoStats, dotOut);
+            impliedConstraints = formatter.writeRealRelationships(relationships, table, true, twoStats, dotOut);
             dotOut.close();
 
             if (oneStats.getNumTablesWritten() + oneStats.getNumViewsWritten() == twoStats.getNumTablesWritten() + twoStats.getNumViewsWritten()) {
-                twoDegreesDotFile.delete(); // no different than before, so don't show it
+                sink.delete(twoDegreesDotFile); // no different than before, so don't show it
             }
 
             if (!impliedConstraints.isEmpty()) {
-                dotOut = new LineWriter(impliedDotFile, Config.DOT_CHARSET);
-                formatter.writeAllRelationships(table, true, stats, dotOut);
+                dotOut = new LineWriter(sink.newOutputStream(impliedDotFile), Config.DOT_CHARSET);
+                formatter.writeAllRelationships(relationships, table, true, stats, dotOut);
                 dotOut.close();
                 return true;
             }
@@ -20,6 +20,7 @@ package net.sourceforge.schemaspy.view;
 
 import java.io.File;
 import java.io.IOException;
+import net.sourceforge.schemaspy.util.OutputSink;
 import net.sourceforge.schemaspy.util.ResourceWriter;
 
 public class ImageWriter extends ResourceWriter {
@@ -32,11 +33,9 @@ public class ImageWriter extends ResourceWriter {
         return instance;
     }
 
-    public void writeImages(File outputDir) throws IOException {
-        new File(outputDir, "images").mkdir();
-
-        writeResource("/images/tabLeft.gif", new File(outputDir, "/images/tabLeft.gif"));
-        writeResource("/images/tabRight.gif", new File(outputDir, "/images/tabRight.gif"));
-        writeResource("/images/background.gif", new File(outputDir, "/images/background.gif"));
+    public void writeImages(File outputDir, OutputSink sink) throws IOException {
+        writeResource("/images/tabLeft.gif", new File(outputDir, "/images/tabLeft.gif"), sink);
+        writeResource("/images/tabRight.gif", new File(outputDir, "/images/tabRight.gif"), sink);
+        writeResource("/images/background.gif", new File(outputDir, "/images/background.gif"), sink);
     }
 }
@@ -19,6 +19,7 @@
 package net.sourceforge.schemaspy.view;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
@@ -34,6 +35,7 @@ import java.util.StringTokenizer;
 import net.sourceforge.schemaspy.Config;
 import net.sourceforge.schemaspy.model.InvalidConfigurationException;
 import net.sourceforge.schemaspy.util.LineWriter;
+import net.sourceforge.schemaspy.util.StaticContent;
 
 /**
  * Represents our CSS style sheet (CSS) with accessors for important
@@ -114,7 +116,7 @@ public class StyleSheet {
      * @return the singleton
      * @throws ParseException
      */
-    public static StyleSheet getInstance() throws ParseException {
+    public static synchronized StyleSheet getInstance() throws ParseException {
         if (instance == null) {
             try {
                 instance = new StyleSheet(new BufferedReader(getReader(Config.getInstance().getCss())));
@@ -184,6 +186,23 @@ public class StyleSheet {
         out.write(css);
     }
 
+    /**
+     * Returns the contents of the original css as they'd be {@link #write(LineWriter) written}
+     * with the specified <code>charset</code>.  The css is the same for every schema,
+     * so copies of it that are already in place don't need to be rewritten.
+     *
+     * @param charset
+     * @return
+     * @throws IOException
+     */
+    public StaticContent getContent(String charset) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(css.length());
+        LineWriter out = new LineWriter(bytes, charset);
+        write(out);
+        out.close();
+        return new StaticContent(bytes.toByteArray());
+    }
+
     public String getBodyBackground() {
         if (bodyBackgroundColor == null)
             throw new MissingCssPropertyException(".content", "background");
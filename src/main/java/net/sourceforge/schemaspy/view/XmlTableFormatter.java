@@ -18,6 +18,7 @@
  */
 package net.sourceforge.schemaspy.view;
 
+import java.io.IOException;
 import java.util.Collection;
 import java.util.Comparator;
 import java.util.Map;
@@ -28,13 +29,11 @@ import net.sourceforge.schemaspy.model.ForeignKeyConstraint;
 import net.sourceforge.schemaspy.model.Table;
 import net.sourceforge.schemaspy.model.TableColumn;
 import net.sourceforge.schemaspy.model.TableIndex;
-import net.sourceforge.schemaspy.util.DOMUtil;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
-import org.w3c.dom.Node;
+import net.sourceforge.schemaspy.util.XmlWriter;
 
 /**
- * Formats {@link Table}s into an XML DOM tree.
+ * Formats {@link Table}s into XML.
+ * Each table is written as it's formatted so the document is never held in memory.
  *
  * @author John Currier
  */
@@ -62,12 +61,14 @@ public class XmlTableFormatter {
     }
 
     /**
-     * Append the specified tables to the XML node
+     * Write the specified tables as a <code>tables</code> element
+     * nested within the current element
      *
-     * @param schemaNode
+     * @param out
      * @param tables
+     * @throws IOException
      */
-    public void appendTables(Element schemaNode, Collection<Table> tables) {
+    public void writeTables(XmlWriter out, Collection<Table> tables) throws IOException {
         Set<Table> byName = new TreeSet<Table>(new Comparator<Table>() {
             public int compare(Table table1, Table table2) {
                 return table1.getName().compareToIgnoreCase(table2.getName());
@@ -75,189 +76,187 @@ public class XmlTableFormatter {
         });
         byName.addAll(tables);
 
-        Document document = schemaNode.getOwnerDocument();
-        Element tablesNode = document.createElement("tables");
-        schemaNode.appendChild(tablesNode);
+        out.startElement("tables");
         for (Table table : byName)
-            appendTable(tablesNode, table);
+            writeTable(out, table);
+        out.endElement();
     }
 
     /**
-     * Append table details to the XML node
+     * Write table details
      *
-     * @param tablesNode
+     * @param out
      * @param table
+     * @throws IOException
      */
-    private void appendTable(Element tablesNode, Table table) {
-        Document document = tablesNode.getOwnerDocument();
-        Element tableNode = document.createElement("table");
-        tablesNode.appendChild(tableNode);
+    private void writeTable(XmlWriter out, Table table) throws IOException {
+        out.startElement("table");
         if (table.getId() != null)
-            DOMUtil.appendAttribute(tableNode, "id", String.valueOf(table.getId()));
+            out.attribute("id", String.valueOf(table.getId()));
         if (table.getSchema() != null)
-            DOMUtil.appendAttribute(tableNode, "schema", table.getSchema());
-        DOMUtil.appendAttribute(tableNode, "name", table.getName());
+            out.attribute("schema", table.getSchema());
+        out.attribute("name", table.getName());
         if (table.getNumRows() != -1)
-            DOMUtil.appendAttribute(tableNode, "numRows", String.valueOf(table.getNumRows()));
-        DOMUtil.appendAttribute(tableNode, "type", table.isView() ? "VIEW" : "TABLE");
-        DOMUtil.appendAttribute(tableNode, "remarks", table.getComments() == null ? "" : table.getComments());
-        appendColumns(tableNode, table);
-        appendPrimaryKeys(tableNode, table);
-        appendIndexes(tableNode, table);
-        appendCheckConstraints(tableNode, table);
-        appendView(tableNode, table);
+            out.attribute("numRows", String.valueOf(table.getNumRows()));
+        out.attribute("type", table.isView() ? "VIEW" : "TABLE");
+        out.attribute("remarks", table.getComments() == null ? "" : table.getComments());
+        writeView(out, table);
+        writeColumns(out, table);
+        writePrimaryKeys(out, table);
+        writeIndexes(out, table);
+        writeCheckConstraints(out, table);
+        out.endElement();
     }
 
     /**
-     * Append all columns in the table to the XML node
+     * Write all columns in the table
      *
-     * @param tableNode
+     * @param out
      * @param table
+     * @throws IOException
      */
-    private void appendColumns(Element tableNode, Table table) {
+    private void writeColumns(XmlWriter out, Table table) throws IOException {
         for (TableColumn column : table.getColumns()) {
-            appendColumn(tableNode, column);
+            writeColumn(out, column);
         }
     }
 
     /**
-     * Append column details to the XML node
+     * Write column details
      *
-     * @param tableNode
+     * @param out
      * @param column
-     * @return
+     * @throws IOException
      */
-    private Node appendColumn(Node tableNode, TableColumn column) {
-        Document document = tableNode.getOwnerDocument();
-        Node columnNode = document.createElement("column");
-        tableNode.appendChild(columnNode);
+    private void writeColumn(XmlWriter out, TableColumn column) throws IOException {
+        out.startElement("column");
 
-        DOMUtil.appendAttribute(columnNode, "id", String.valueOf(column.getId()));
-        DOMUtil.appendAttribute(columnNode, "name", column.getName());
-        DOMUtil.appendAttribute(columnNode, "type", column.getType());
-        DOMUtil.appendAttribute(columnNode, "size", String.valueOf(column.getLength()));
-        DOMUtil.appendAttribute(columnNode, "digits", String.valueOf(column.getDecimalDigits()));
-        DOMUtil.appendAttribute(columnNode, "nullable", String.valueOf(column.isNullable()));
-        DOMUtil.appendAttribute(columnNode, "autoUpdated", String.valueOf(column.isAutoUpdated()));
+        out.attribute("id", String.valueOf(column.getId()));
+        out.attribute("name", column.getName());
+        out.attribute("type", column.getType());
+        out.attribute("size", String.valueOf(column.getLength()));
+        out.attribute("digits", String.valueOf(column.getDecimalDigits()));
+        out.attribute("nullable", String.valueOf(column.isNullable()));
+        out.attribute("autoUpdated", String.valueOf(column.isAutoUpdated()));
         if (column.getDefaultValue() != null) {
             String defaultValue = column.getDefaultValue().toString();
             if (isBinary(defaultValue)) {
                 // we're run into a binary default value, convert it to its hex equivalent
                 defaultValue = asBinary(defaultValue);
                 // and indicate that it's been converted
-                DOMUtil.appendAttribute(columnNode, "defaultValueIsBinary", "true");
+                out.attribute("defaultValueIsBinary", "true");
             }
-            DOMUtil.appendAttribute(columnNode, "defaultValue", defaultValue);
+            out.attribute("defaultValue", defaultValue);
         }
-        DOMUtil.appendAttribute(columnNode, "remarks", column.getComments() == null ? "" : column.getComments());
+        out.attribute("remarks", column.getComments() == null ? "" : column.getComments());
 
         for (TableColumn childColumn : column.getChildren()) {
-            Node childNode = document.createElement("child");
-            columnNode.appendChild(childNode);
+            out.startElement("child");
             ForeignKeyConstraint constraint = column.getChildConstraint(childColumn);
-            DOMUtil.appendAttribute(childNode, "foreignKey", constraint.getName());
-            DOMUtil.appendAttribute(childNode, "table", childColumn.getTable().getName());
-            DOMUtil.appendAttribute(childNode, "column", childColumn.getName());
-            DOMUtil.appendAttribute(childNode, "implied", String.valueOf(constraint.isImplied()));
-            DOMUtil.appendAttribute(childNode, "onDeleteCascade", String.valueOf(constraint.isCascadeOnDelete()));
+            out.attribute("foreignKey", constraint.getName());
+            out.attribute("table", childColumn.getTable().getName());
+            out.attribute("column", childColumn.getName());
+            out.attribute("implied", String.valueOf(constraint.isImplied()));
+            out.attribute("onDeleteCascade", String.valueOf(constraint.isCascadeOnDelete()));
+            out.endElement();
         }
 
         for (TableColumn parentColumn : column.getParents()) {
-            Node parentNode = document.createElement("parent");
-            columnNode.appendChild(parentNode);
+            out.startElement("parent");
             ForeignKeyConstraint constraint = column.getParentConstraint(parentColumn);
-            DOMUtil.appendAttribute(parentNode, "foreignKey", constraint.getName());
-            DOMUtil.appendAttribute(parentNode, "table", parentColumn.getTable().getName());
-            DOMUtil.appendAttribute(parentNode, "column", parentColumn.getName());
-            DOMUtil.appendAttribute(parentNode, "implied", String.valueOf(constraint.isImplied()));
-            DOMUtil.appendAttribute(parentNode, "onDeleteCascade", String.valueOf(constraint.isCascadeOnDelete()));
+            out.attribute("foreignKey", constraint.getName());
+            out.attribute("table", parentColumn.getTable().getName());
+            out.attribute("column", parentColumn.getName());
+            out.attribute("implied", String.valueOf(constraint.isImplied()));
+            out.attribute("onDeleteCascade", String.valueOf(constraint.isCascadeOnDelete()));
+            out.endElement();
         }
 
-        return columnNode;
+        out.endElement();
     }
 
     /**
-     * Append primary key details to the XML node
+     * Write primary key details
      *
-     * @param tableNode
+     * @param out
      * @param table
+     * @throws IOException
      */
-    private void appendPrimaryKeys(Element tableNode, Table table) {
-        Document document = tableNode.getOwnerDocument();
+    private void writePrimaryKeys(XmlWriter out, Table table) throws IOException {
         int index = 1;
 
         for (TableColumn primaryKeyColumn : table.getPrimaryColumns()) {
-            Node primaryKeyNode = document.createElement("primaryKey");
-            tableNode.appendChild(primaryKeyNode);
+            out.startElement("primaryKey");
 
-            DOMUtil.appendAttribute(primaryKeyNode, "column", primaryKeyColumn.getName());
-            DOMUtil.appendAttribute(primaryKeyNode, "sequenceNumberInPK", String.valueOf(index++));
+            out.attribute("column", primaryKeyColumn.getName());
+            out.attribute("sequenceNumberInPK", String.valueOf(index++));
+            out.endElement();
         }
     }
 
     /**
-     * Append check constraint details to the XML node
+     * Write check constraint details
      *
-     * @param tableNode
+     * @param out
      * @param table
+     * @throws IOException
      */
-    private void appendCheckConstraints(Element tableNode, Table table) {
-        Document document = tableNode.getOwnerDocument();
+    private void writeCheckConstraints(XmlWriter out, Table table) throws IOException {
         Map<String, String> constraints = table.getCheckConstraints();
         if (constraints != null && !constraints.isEmpty()) {
             for (String name : constraints.keySet()) {
-                Node constraintNode = document.createElement("checkConstraint");
-                tableNode.appendChild(constraintNode);
+                out.startElement("checkConstraint");
 
-                DOMUtil.appendAttribute(constraintNode, "name", name);
-                DOMUtil.appendAttribute(constraintNode, "constraint", constraints.get(name).toString());
+                out.attribute("name", name);
+                out.attribute("constraint", constraints.get(name).toString());
+                out.endElement();
             }
         }
     }
 
     /**
-     * Append index details to the XML node
+     * Write index details
      *
-     * @param tableNode
+     * @param out
      * @param table
+     * @throws IOException
      */
-    private void appendIndexes(Node tableNode, Table table) {
+    private void writeIndexes(XmlWriter out, Table table) throws IOException {
         boolean showId = table.getId() != null;
         Set<TableIndex> indexes = table.getIndexes();
         if (indexes != null && !indexes.isEmpty()) {
             indexes = new TreeSet<TableIndex>(indexes); // sort primary keys first
-            Document document = tableNode.getOwnerDocument();
 
             for (TableIndex index : indexes) {
-                Node indexNode = document.createElement("index");
+                out.startElement("index");
 
                 if (showId)
-                    DOMUtil.appendAttribute(indexNode, "id", String.valueOf(index.getId()));
-                DOMUtil.appendAttribute(indexNode, "name", index.getName());
-                DOMUtil.appendAttribute(indexNode, "unique", String.valueOf(index.isUnique()));
+                    out.attribute("id", String.valueOf(index.getId()));
+                out.attribute("name", index.getName());
+                out.attribute("unique", String.valueOf(index.isUnique()));
 
                 for (TableColumn column : index.getColumns()) {
-                    Node columnNode = document.createElement("column");
+                    out.startElement("column");
 
-                    DOMUtil.appendAttribute(columnNode, "name", column.getName());
-                    DOMUtil.appendAttribute(columnNode, "ascending", String.valueOf(index.isAscending(column)));
-                    indexNode.appendChild(columnNode);
+                    out.attribute("name", column.getName());
+                    out.attribute("ascending", String.valueOf(index.isAscending(column)));
+                    out.endElement();
                 }
-                tableNode.appendChild(indexNode);
+                out.endElement();
             }
         }
     }
 
     /**
-     * Append view SQL to the XML node
+     * Write view SQL as an attribute of the table
      *
-     * @param tableNode
+     * @param out
      * @param table
      */
-    private void appendView(Element tableNode, Table table) {
+    private void writeView(XmlWriter out, Table table) {
         String sql;
         if (table.isView() && (sql = table.getViewSql()) != null) {
-            DOMUtil.appendAttribute(tableNode, "viewSql", sql);
+            out.attribute("viewSql", sql);
         }
     }
 
@@ -0,0 +1,150 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import net.sourceforge.schemaspy.model.Database;
+import net.sourceforge.schemaspy.model.ForeignKeyConstraint;
+import net.sourceforge.schemaspy.model.ImpliedForeignKeyConstraint;
+import net.sourceforge.schemaspy.model.Table;
+import net.sourceforge.schemaspy.model.TableColumn;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author John Currier
+ */
+public class DbAnalyzerTest {
+    @Test
+    public void testImpliedSingleColumnKeys() throws Exception {
+        FakeCatalog catalog = new FakeCatalog();
+        catalog.table("S", "customer").column("customer_id", "int", 10, false).primaryKey("customer_id");
+        catalog.table("S", "orders").column("order_id", "int", 10, false).column("customer_id", "int", 10, true).primaryKey("order_id");
+        catalog.table("S", "refund").column("refund_id", "int", 10, false).column("customer_id", "varchar", 10, true).primaryKey("refund_id");
+        catalog.table("S", "note").column("note_id", "int", 10, false).column("customer_id", "int", 20, true).primaryKey("note_id");
+
+        assertEquals("[orders.customer_id -> customer.customer_id]", implied(catalog.analyze("S")));
+    }
+
+    @Test
+    public void testImpliedCompositeKeys() throws Exception {
+        FakeCatalog catalog = new FakeCatalog();
+        catalog.table("S", "account").column("tenant", "int", 10, false).column("account_no", "int", 10, false).primaryKey("tenant", "account_no");
+        catalog.table("S", "invoice").column("invoice_id", "int", 10, false).column("account_no", "int", 10, false).column("tenant", "int", 10, false).primaryKey("invoice_id");
+        // same names, but account_no is of a different type so it's not related
+        catalog.table("S", "quote").column("quote_id", "int", 10, false).column("account_no", "varchar", 10, false).column("tenant", "int", 10, false).primaryKey("quote_id");
+        // only has one of the key's columns
+        catalog.table("S", "audit").column("audit_id", "int", 10, false).column("tenant", "int", 10, false).primaryKey("audit_id");
+
+        assertEquals("[invoice.tenant,account_no -> account.tenant,account_no]", implied(catalog.analyze("S")));
+    }
+
+    @Test
+    public void testAmbiguousCompositeKeysArentMatched() throws Exception {
+        FakeCatalog catalog = new FakeCatalog();
+        catalog.table("S", "account").column("tenant", "int", 10, false).column("account_no", "int", 10, false).primaryKey("tenant", "account_no");
+        catalog.table("S", "account_archive").column("tenant", "int", 10, false).column("account_no", "int", 10, false).primaryKey("account_no", "tenant");
+        catalog.table("S", "invoice").column("invoice_id", "int", 10, false).column("account_no", "int", 10, false).column("tenant", "int", 10, false).primaryKey("invoice_id");
+
+        assertEquals("[]", implied(catalog.analyze("S")));
+    }
+
+    @Test
+    public void testColumnsOnlyGetOneImpliedParent() throws Exception {
+        FakeCatalog catalog = new FakeCatalog();
+        catalog.table("S", "tenant").column("tenant_id", "int", 10, false).primaryKey("tenant_id");
+        catalog.table("S", "account").column("tenant_id", "int", 10, false).column("account_no", "int", 10, false).primaryKey("tenant_id", "account_no");
+        catalog.table("S", "invoice").column("invoice_id", "int", 10, false).column("tenant_id", "int", 10, false).column("account_no", "int", 10, false).primaryKey("invoice_id");
+
+        Database db = catalog.analyze("S");
+        // the composite key takes precedence over the single-column key of one of its columns
+        assertEquals("[account.tenant_id -> tenant.tenant_id, invoice.tenant_id,account_no -> account.tenant_id,account_no]", implied(db));
+
+        for (Table table : db.getTables()) {
+            for (TableColumn column : table.getColumns())
+                assertTrue(column.toString(), column.getParents().size() <= 1);
+        }
+    }
+
+    @Test
+    public void testCompositeKeyIsPreferred() throws Exception {
+        FakeCatalog catalog = new FakeCatalog();
+        catalog.table("S", "orders").column("order_id", "int", 10, false).primaryKey("order_id");
+        catalog.table("S", "order_line").column("order_id", "int", 10, false).column("line_no", "int", 10, false).primaryKey("order_id", "line_no");
+        catalog.table("S", "shipment_line").column("shipment_id", "int", 10, false).column("order_id", "int", 10, false).column("line_no", "int", 10, false).primaryKey("shipment_id", "line_no");
+        catalog.table("S", "order_note").column("note_id", "int", 10, false).column("order_id", "int", 10, false).primaryKey("note_id");
+
+        assertEquals("[order_line.order_id -> orders.order_id, order_note.order_id -> orders.order_id, shipment_line.order_id,line_no -> order_line.order_id,line_no]",
+                implied(catalog.analyze("S")));
+    }
+
+    @Test
+    public void testManyTables() throws Exception {
+        // enough tables to be evaluated in parallel (if there are enough processors)
+        for (int run = 0; run < 3; ++run) {
+            FakeCatalog catalog = new FakeCatalog();
+            List<String> expected = new ArrayList<String>();
+            for (int i = 0; i < 500; ++i) {
+                String name = String.format("t%03d", i);
+                FakeCatalog.FakeTable table = catalog.table("S", name).column(name + "_id", "int", 10, false).primaryKey(name + "_id");
+                if (i > 0) {
+                    String parent = String.format("t%03d", i - 1);
+                    table.column(parent + "_id", "int", 10, true);
+                    expected.add(name + '.' + parent + "_id -> " + parent + '.' + parent + "_id");
+                }
+            }
+
+            assertEquals(expected.toString(), implied(catalog.analyze("S")));
+        }
+
+        int threads = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith("DbAnalyzer-"))
+                ++threads;
+        }
+        assertTrue("DbAnalyzer threads: " + threads, threads <= Runtime.getRuntime().availableProcessors());
+    }
+
+    private static String implied(Database db) {
+        List<String> constraints = new ArrayList<String>();
+        for (ImpliedForeignKeyConstraint constraint : DbAnalyzer.getImpliedConstraints(db.getTables()))
+            constraints.add(describe(constraint));
+        Collections.sort(constraints);
+        return constraints.toString();
+    }
+
+    private static String describe(ForeignKeyConstraint constraint) {
+        return constraint.getChildTable().getName() + '.' + names(constraint.getChildColumns()) + " -> " +
+                constraint.getParentTable().getName() + '.' + names(constraint.getParentColumns());
+    }
+
+    private static String names(List<TableColumn> columns) {
+        StringBuilder names = new StringBuilder();
+        for (TableColumn column : columns) {
+            if (names.length() > 0)
+                names.append(',');
+            names.append(column.getName());
+        }
+        return names.toString();
+    }
+}
@@ -0,0 +1,377 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Pattern;
+import net.sourceforge.schemaspy.model.Database;
+import net.sourceforge.schemaspy.model.xml.SchemaMeta;
+
+/**
+ * An in-memory catalog of tables that's exposed through just enough of
+ * the JDBC metadata API to build a {@link Database} without a real database.
+ * Every metadata request is recorded so tests can check what was asked for.
+ *
+ * @author John Currier
+ */
+public class FakeCatalog {
+    private final List<FakeTable> tables = new ArrayList<FakeTable>();
+    private final List<String> calls = Collections.synchronizedList(new ArrayList<String>());
+    private final Connection connection;
+    private final DatabaseMetaData meta;
+
+    public FakeCatalog() {
+        meta = proxy(DatabaseMetaData.class, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+                return metaData(method, args);
+            }
+        });
+        connection = proxy(Connection.class, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+                if (method.getName().equals("getMetaData"))
+                    return meta;
+                if (method.getName().equals("prepareStatement"))
+                    return statement((String)args[0]);
+                return defaultValue(method);
+            }
+        });
+    }
+
+    /**
+     * Add a table to the catalog
+     *
+     * @param schema
+     * @param name
+     * @return
+     */
+    public FakeTable table(String schema, String name) {
+        FakeTable table = new FakeTable(schema, name);
+        tables.add(table);
+        return table;
+    }
+
+    public Connection getConnection() {
+        return connection;
+    }
+
+    public DatabaseMetaData getMetaData() {
+        return meta;
+    }
+
+    /**
+     * Returns the metadata requests made so far, such as
+     * <code>getColumns(null, S, orders, %)</code>
+     *
+     * @return
+     */
+    public List<String> getCalls() {
+        synchronized (calls) {
+            return new ArrayList<String>(calls);
+        }
+    }
+
+    /**
+     * Analyze the tables of <code>schema</code> without views, row counts
+     * or any of the other bells and whistles
+     *
+     * @param schema
+     * @return
+     * @throws SQLException
+     */
+    public Database analyze(String schema) throws SQLException {
+        return analyze(schema, null);
+    }
+
+    /**
+     * Same as {@link #analyze(String)} but also applies the specified XML metadata
+     *
+     * @param schema
+     * @param schemaMeta
+     * @return
+     * @throws SQLException
+     */
+    public Database analyze(String schema, SchemaMeta schemaMeta) throws SQLException {
+        Config config = new Config();
+        config.setSchema(schema);
+        config.setNumRowsEnabled(false);
+        config.setViewsEnabled(false);
+        config.setMaxDbThreads(1);
+        Config.setThreadInstance(config);
+        try {
+            return new Database(config, connection, meta, "fake", schema, new Properties(), schemaMeta);
+        } finally {
+            Config.setThreadInstance(null);
+        }
+    }
+
+    public static class FakeTable {
+        private final String schema;
+        private final String name;
+        private final List<Object[]> columns = new ArrayList<Object[]>();
+        private final List<String> primaryKey = new ArrayList<String>();
+        private final List<Object[]> foreignKeys = new ArrayList<Object[]>();
+        private final List<Object[]> indexes = new ArrayList<Object[]>();
+
+        FakeTable(String schema, String name) {
+            this.schema = schema;
+            this.name = name;
+        }
+
+        public FakeTable column(String column, String type, int size, boolean nullable) {
+            return column(column, type, size, 0, nullable);
+        }
+
+        public FakeTable column(String column, String type, int size, int decimalDigits, boolean nullable) {
+            columns.add(new Object[] {column, type, Integer.valueOf(size), Boolean.valueOf(nullable), Integer.valueOf(decimalDigits)});
+            return this;
+        }
+
+        public FakeTable primaryKey(String... column) {
+            primaryKey.addAll(Arrays.asList(column));
+            return this;
+        }
+
+        public FakeTable foreignKey(String fkName, String column, String parentTable, String parentColumn) {
+            foreignKeys.add(new Object[] {fkName, column, parentTable, parentColumn});
+            return this;
+        }
+
+        public FakeTable index(String indexName, boolean unique, String column) {
+            indexes.add(new Object[] {indexName, Boolean.valueOf(unique), column});
+            return this;
+        }
+    }
+
+    private Object metaData(Method method, Object[] args) throws SQLException {
+        String name = method.getName();
+        if (method.getReturnType() == ResultSet.class)
+            calls.add(name + (args == null ? "()" : Arrays.asList(args).toString().replace('[', '(').replace(']', ')')));
+
+        List<Map<String, Object>> rows = new ArrayList<Map<String, Object>>();
+        if (name.equals("getConnection"))
+            return connection;
+        if (name.equals("getIdentifierQuoteString"))
+            return "\"";
+        if (name.equals("getSearchStringEscape"))
+            return "\\";
+        if (name.equals("getDatabaseProductName"))
+            return "FakeCatalog";
+        if (name.equals("supportsSchemasInTableDefinitions"))
+            return Boolean.TRUE;
+        if (name.equals("getTables")) {
+            for (FakeTable table : find(args[1], args[2]))
+                rows.add(row("TABLE_SCHEM", table.schema, "TABLE_NAME", table.name, "TABLE_TYPE", "TABLE", "REMARKS", null));
+        } else if (name.equals("getColumns")) {
+            for (FakeTable table : find(args[1], args[2])) {
+                int position = 1;
+                for (Object[] column : table.columns) {
+                    rows.add(row("TABLE_SCHEM", table.schema, "TABLE_NAME", table.name,
+                            "COLUMN_NAME", column[0], "TYPE_NAME", column[1], "COLUMN_SIZE", column[2],
+                            "DECIMAL_DIGITS", column[4], "BUFFER_LENGTH", null, "ORDINAL_POSITION", position++,
+                            "NULLABLE", ((Boolean)column[3]).booleanValue() ? DatabaseMetaData.columnNullable : DatabaseMetaData.columnNoNulls,
+                            "COLUMN_DEF", null, "REMARKS", null));
+                }
+            }
+        } else if (name.equals("getPrimaryKeys")) {
+            for (FakeTable table : find(args[1], args[2])) {
+                for (String column : table.primaryKey)
+                    rows.add(row("PK_NAME", table.name + "_PK", "COLUMN_NAME", column));
+            }
+        } else if (name.equals("getIndexInfo")) {
+            for (FakeTable table : find(args[1], args[2])) {
+                for (String column : table.primaryKey)
+                    rows.add(index(table.name + "_PK", true, column));
+                for (Object[] index : table.indexes)
+                    rows.add(index((String)index[0], ((Boolean)index[1]).booleanValue(), (String)index[2]));
+            }
+        } else if (name.equals("getImportedKeys")) {
+            for (FakeTable table : find(args[1], args[2])) {
+                for (Object[] fk : table.foreignKeys)
+                    rows.add(foreignKey(table, fk));
+            }
+        } else if (name.equals("getExportedKeys")) {
+            for (FakeTable table : tables) {
+                for (Object[] fk : table.foreignKeys) {
+                    if (fk[2].equals(args[2]) && table.schema.equals(args[1]))
+                        rows.add(foreignKey(table, fk));
+                }
+            }
+        } else if (method.getReturnType() != ResultSet.class) {
+            return defaultValue(method);
+        }
+
+        return resultSet(rows);
+    }
+
+    private List<FakeTable> find(Object schema, Object table) {
+        List<FakeTable> found = new ArrayList<FakeTable>();
+        for (FakeTable candidate : tables) {
+            if (like(candidate.schema, schema) && like(candidate.name, table))
+                found.add(candidate);
+        }
+        return found;
+    }
+
+    /**
+     * SQL <code>LIKE</code> matching as done by metadata name patterns,
+     * with wildcards escaped by a backslash
+     */
+    private static boolean like(String value, Object pattern) {
+        if (pattern == null)
+            return true;
+        StringBuilder regex = new StringBuilder();
+        boolean escaped = false;
+        for (char ch : pattern.toString().toCharArray()) {
+            if (escaped) {
+                regex.append(Pattern.quote(String.valueOf(ch)));
+                escaped = false;
+            } else if (ch == '\\')
+                escaped = true;
+            else if (ch == '%')
+                regex.append(".*");
+            else if (ch == '_')
+                regex.append('.');
+            else
+                regex.append(Pattern.quote(String.valueOf(ch)));
+        }
+        return value.matches(regex.toString());
+    }
+
+    private static Map<String, Object> index(String name, boolean unique, String column) {
+        return row("INDEX_NAME", name, "NON_UNIQUE", Boolean.valueOf(!unique),
+                    "TYPE", Short.valueOf(DatabaseMetaData.tableIndexOther),
+                    "COLUMN_NAME", column, "ASC_OR_DESC", "A");
+    }
+
+    private static Map<String, Object> foreignKey(FakeTable child, Object[] fk) {
+        return row("FK_NAME", fk[0], "FKTABLE_SCHEM", child.schema, "FKTABLE_NAME", child.name, "FKCOLUMN_NAME", fk[1],
+                    "PKTABLE_SCHEM", child.schema, "PKTABLE_NAME", fk[2], "PKCOLUMN_NAME", fk[3],
+                    "UPDATE_RULE", DatabaseMetaData.importedKeyNoAction,
+                    "DELETE_RULE", DatabaseMetaData.importedKeyNoAction);
+    }
+
+    /**
+     * The only statements that are expected are the ones that look for
+     * auto-incrementing columns, so they don't find any
+     */
+    private PreparedStatement statement(final String sql) {
+        return proxy(PreparedStatement.class, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+                if (method.getName().equals("executeQuery")) {
+                    if (!sql.startsWith("select * from "))
+                        throw new SQLException("Unsupported SQL: " + sql);
+                    return resultSet(Collections.<Map<String, Object>>emptyList());
+                }
+                return defaultValue(method);
+            }
+        });
+    }
+
+    private static Map<String, Object> row(Object... namesAndValues) {
+        Map<String, Object> row = new LinkedHashMap<String, Object>();
+        for (int i = 0; i < namesAndValues.length; i += 2)
+            row.put((String)namesAndValues[i], namesAndValues[i + 1]);
+        return row;
+    }
+
+    private static ResultSet resultSet(final List<Map<String, Object>> rows) {
+        return proxy(ResultSet.class, new InvocationHandler() {
+            private int current = -1;
+            private boolean wasNull;
+
+            public Object invoke(Object proxy, Method method, Object[] args) throws SQLException {
+                String name = method.getName();
+                if (name.equals("next"))
+                    return Boolean.valueOf(++current < rows.size());
+                if (name.equals("wasNull"))
+                    return Boolean.valueOf(wasNull);
+                if (name.equals("getMetaData"))
+                    return resultSetMetaData(rows.isEmpty() ? Collections.<String>emptyList() : new ArrayList<String>(rows.get(0).keySet()));
+                if (name.startsWith("get") && args != null && args.length == 1) {
+                    Map<String, Object> row = rows.get(current);
+                    String label = args[0] instanceof String ? ((String)args[0]).toUpperCase() :
+                                    new ArrayList<String>(row.keySet()).get(((Integer)args[0]).intValue() - 1);
+                    if (!row.containsKey(label))
+                        throw new SQLException("No such column: " + label);
+                    Object value = row.get(label);
+                    wasNull = value == null;
+                    if (name.equals("getString"))
+                        return value == null ? null : value.toString();
+                    if (name.equals("getObject"))
+                        return value;
+                    if (name.equals("getBoolean"))
+                        return Boolean.valueOf(value != null && ((Boolean)value).booleanValue());
+                    if (name.equals("getInt"))
+                        return Integer.valueOf(value == null ? 0 : ((Number)value).intValue());
+                    if (name.equals("getShort"))
+                        return Short.valueOf(value == null ? 0 : ((Number)value).shortValue());
+                    if (name.equals("getLong"))
+                        return Long.valueOf(value == null ? 0 : ((Number)value).longValue());
+                }
+                return defaultValue(method);
+            }
+        });
+    }
+
+    private static ResultSetMetaData resultSetMetaData(final List<String> labels) {
+        return proxy(ResultSetMetaData.class, new InvocationHandler() {
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                if (method.getName().equals("getColumnCount"))
+                    return Integer.valueOf(labels.size());
+                if (method.getName().equals("getColumnName") || method.getName().equals("getColumnLabel"))
+                    return labels.get(((Integer)args[0]).intValue() - 1);
+                return defaultValue(method);
+            }
+        });
+    }
+
+    private static Object defaultValue(Method method) {
+        Class<?> type = method.getReturnType();
+        if (type == boolean.class)
+            return Boolean.FALSE;
+        if (type == int.class)
+            return Integer.valueOf(0);
+        if (type == long.class)
+            return Long.valueOf(0);
+        if (type == short.class)
+            return Short.valueOf((short)0);
+        if (type == String.class)
+            return "";
+        return null;
+    }
+
+    private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+        return type.cast(Proxy.newProxyInstance(FakeCatalog.class.getClassLoader(), new Class<?>[] {type}, handler));
+    }
+}
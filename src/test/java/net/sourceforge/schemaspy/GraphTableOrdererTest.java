@@ -0,0 +1,130 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import net.sourceforge.schemaspy.model.Database;
+import net.sourceforge.schemaspy.model.ForeignKeyConstraint;
+import net.sourceforge.schemaspy.model.Table;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author John Currier
+ */
+public class GraphTableOrdererTest {
+    @Test
+    public void testSameOrderAsTableOrdererWithoutCycles() throws Exception {
+        Random random = new Random(42);
+        for (int run = 0; run < 20; ++run) {
+            FakeCatalog catalog = new FakeCatalog();
+            int numTables = 5 + random.nextInt(40);
+            for (int i = 0; i < numTables; ++i) {
+                FakeCatalog.FakeTable table = catalog.table("S", "t" + i).column("id", "int", 10, false).primaryKey("id");
+                for (int parent = 0; parent < i; ++parent) {
+                    if (random.nextInt(numTables) < 2)
+                        table.column("t" + parent + "_id", "int", 10, true).foreignKey("fk_" + i + "_" + parent, "t" + parent + "_id", "t" + parent, "id");
+                }
+            }
+
+            List<ForeignKeyConstraint> expectedRecursive = new ArrayList<ForeignKeyConstraint>();
+            List<Table> expected = new TableOrderer().getTablesOrderedByRI(catalog.analyze("S").getTables(), expectedRecursive);
+            List<ForeignKeyConstraint> recursive = new ArrayList<ForeignKeyConstraint>();
+            List<Table> actual = new GraphTableOrderer().getTablesOrderedByRI(catalog.analyze("S").getTables(), recursive);
+
+            assertEquals(names(expected), names(actual));
+            assertEquals(0, expectedRecursive.size());
+            assertEquals(0, recursive.size());
+        }
+    }
+
+    @Test
+    public void testSelfReferencesArentRelationships() throws Exception {
+        FakeCatalog catalog = new FakeCatalog();
+        catalog.table("S", "employee").column("id", "int", 10, false).column("manager_id", "int", 10, true)
+                .primaryKey("id").foreignKey("fk_manager", "manager_id", "employee", "id");
+        catalog.table("S", "customer").column("id", "int", 10, false).primaryKey("id");
+        catalog.table("S", "orders").column("id", "int", 10, false).column("customer_id", "int", 10, true)
+                .primaryKey("id").foreignKey("fk_customer", "customer_id", "customer", "id");
+        catalog.table("S", "audit").column("id", "int", 10, false).primaryKey("id");
+
+        Database db = catalog.analyze("S");
+        List<ForeignKeyConstraint> recursive = new ArrayList<ForeignKeyConstraint>();
+        List<Table> ordered = new GraphTableOrderer().getTablesOrderedByRI(db.getTables(), recursive);
+
+        // employee only references itself, so it's listed with the unrelated tables
+        // (ahead of audit since it has more children)
+        assertEquals("[customer, orders, employee, audit]", names(ordered));
+        assertEquals(1, recursive.size());
+        assertEquals("fk_manager", recursive.get(0).getName());
+    }
+
+    @Test
+    public void testCyclesAreBroken() throws Exception {
+        FakeCatalog catalog = new FakeCatalog();
+        catalog.table("S", "a").column("id", "int", 10, false).column("c_id", "int", 10, true)
+                .primaryKey("id").foreignKey("fk_a_c", "c_id", "c", "id");
+        catalog.table("S", "b").column("id", "int", 10, false).column("a_id", "int", 10, true)
+                .primaryKey("id").foreignKey("fk_b_a", "a_id", "a", "id");
+        catalog.table("S", "c").column("id", "int", 10, false).column("b_id", "int", 10, true)
+                .primaryKey("id").foreignKey("fk_c_b", "b_id", "b", "id");
+        catalog.table("S", "d").column("id", "int", 10, false).column("a_id", "int", 10, true)
+                .primaryKey("id").foreignKey("fk_d_a", "a_id", "a", "id");
+
+        Database db = catalog.analyze("S");
+        int numConstraints = numForeignKeys(db);
+        List<ForeignKeyConstraint> recursive = new ArrayList<ForeignKeyConstraint>();
+        List<Table> ordered = new GraphTableOrderer().getTablesOrderedByRI(db.getTables(), recursive);
+
+        assertEquals(4, ordered.size());
+        assertEquals(1, recursive.size());
+
+        // every constraint that wasn't ignored has its parent listed first
+        Set<ForeignKeyConstraint> ignored = new HashSet<ForeignKeyConstraint>(recursive);
+        for (Table table : db.getTables()) {
+            for (ForeignKeyConstraint constraint : table.getForeignKeys()) {
+                if (!ignored.contains(constraint))
+                    assertTrue(constraint.getName(), ordered.indexOf(constraint.getParentTable()) < ordered.indexOf(constraint.getChildTable()));
+            }
+        }
+
+        // the model isn't modified
+        assertEquals(numConstraints, numForeignKeys(db));
+    }
+
+    private static int numForeignKeys(Database db) {
+        int count = 0;
+        for (Table table : db.getTables())
+            count += table.getForeignKeys().size() + table.getNumChildren();
+        return count;
+    }
+
+    private static String names(List<Table> tables) {
+        List<String> names = new ArrayList<String>();
+        for (Table table : tables)
+            names.add(table.getName());
+        return names.toString();
+    }
+}
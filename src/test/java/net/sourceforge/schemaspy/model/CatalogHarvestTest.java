@@ -0,0 +1,99 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.model;
+
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import net.sourceforge.schemaspy.FakeCatalog;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author John Currier
+ */
+public class CatalogHarvestTest {
+    @Test
+    public void testHarvestIsLimitedToTheSchemas() throws Exception {
+        FakeCatalog catalog = newCatalog();
+        DatabaseMetaData meta = new CatalogHarvest(Arrays.asList("APP_A", "APP_B")).getMetaData(catalog.getMetaData());
+
+        assertEquals("[getTables(null, APP\\_%, %, null), getColumns(null, APP\\_%, %, %)]", catalog.getCalls().toString());
+
+        assertEquals("[APP_A.customer, APP_A.orders]", names(meta.getTables(null, "APP_A", "%", new String[] {"TABLE"}), "TABLE_NAME"));
+        assertEquals("[APP_B.item]", names(meta.getTables(null, "APP_B", "%", null), "TABLE_NAME"));
+        assertEquals("[APP_A.id, APP_A.customer_id]", names(meta.getColumns(null, "APP_A", "orders", "%"), "COLUMN_NAME"));
+        assertEquals("[]", names(meta.getColumns(null, "APP_A", "missing", "%"), "COLUMN_NAME"));
+        assertEquals(2, catalog.getCalls().size());
+
+        // anything else goes to the database
+        assertEquals("[APP_X.audit]", names(meta.getTables(null, "APP_X", "%", null), "TABLE_NAME"));
+        assertEquals("[OTHER.log]", names(meta.getTables(null, "OTHER", "%", null), "TABLE_NAME"));
+        assertEquals(4, catalog.getCalls().size());
+    }
+
+    @Test
+    public void testReleasedSchemasGoToTheDatabase() throws Exception {
+        FakeCatalog catalog = newCatalog();
+        CatalogHarvest harvest = new CatalogHarvest(Arrays.asList("APP_A", "APP_B"));
+        DatabaseMetaData meta = harvest.getMetaData(catalog.getMetaData());
+
+        harvest.release("APP_A");
+        assertEquals("[APP_A.id, APP_A.customer_id]", names(meta.getColumns(null, "APP_A", "orders", "%"), "COLUMN_NAME"));
+        assertEquals("getColumns(null, APP_A, orders, %)", catalog.getCalls().get(2));
+
+        assertEquals("[APP_B.id]", names(meta.getColumns(null, "APP_B", "item", "%"), "COLUMN_NAME"));
+        assertEquals(3, catalog.getCalls().size());
+    }
+
+    @Test
+    public void testSchemaPattern() {
+        assertEquals("APP", new CatalogHarvest(Arrays.asList("APP")).getSchemaPattern("\\"));
+        assertEquals("APP%", new CatalogHarvest(Arrays.asList("APP1", "APP2", "APPS")).getSchemaPattern("\\"));
+        assertEquals("APP\\_%", new CatalogHarvest(Arrays.asList("APP_A", "APP_B")).getSchemaPattern("\\"));
+        assertEquals("A\\_B", new CatalogHarvest(Arrays.asList("A_B")).getSchemaPattern("\\"));
+        assertEquals("A%", new CatalogHarvest(Arrays.asList("A_B")).getSchemaPattern(""));
+        assertEquals("APP%", new CatalogHarvest(Arrays.asList("APP_A", "APP_B")).getSchemaPattern(null));
+        assertNull(new CatalogHarvest(Arrays.asList("SALES", "HR")).getSchemaPattern("\\"));
+        assertNull(new CatalogHarvest(Arrays.asList("_A")).getSchemaPattern(null));
+    }
+
+    private static FakeCatalog newCatalog() {
+        FakeCatalog catalog = new FakeCatalog();
+        catalog.table("APP_A", "customer").column("id", "int", 10, false);
+        catalog.table("APP_A", "orders").column("id", "int", 10, false).column("customer_id", "int", 10, true);
+        catalog.table("APP_B", "item").column("id", "int", 10, false);
+        catalog.table("APP_X", "audit").column("id", "int", 10, false);
+        catalog.table("OTHER", "log").column("id", "int", 10, false);
+        return catalog;
+    }
+
+    private static String names(ResultSet rs, String column) throws SQLException {
+        List<String> names = new ArrayList<String>();
+        while (rs.next())
+            names.add(rs.getString("TABLE_SCHEM") + "." + rs.getString(column));
+        rs.close();
+        return names.toString();
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.model;
+
+import java.util.Collections;
+import net.sourceforge.schemaspy.FakeCatalog;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author John Currier
+ */
+public class TableColumnTest {
+    @Test
+    public void testIdAndSize() throws Exception {
+        FakeCatalog catalog = new FakeCatalog();
+        catalog.table("S", "item").column("id", "int", 10, false).column("price", "decimal", 12, 2, true);
+        Table table = catalog.analyze("S").getTablesByName().get("item");
+
+        TableColumn id = table.getColumn("id");
+        TableColumn price = table.getColumn("price");
+        assertEquals(Integer.valueOf(0), id.getId());
+        assertEquals(Integer.valueOf(1), price.getId());
+        assertEquals("10", id.getDetailedSize());
+        assertEquals("12,2", price.getDetailedSize());
+    }
+
+    @Test
+    public void testUniqueness() throws Exception {
+        FakeCatalog catalog = new FakeCatalog();
+        catalog.table("S", "single").column("id", "int", 10, false).column("code", "int", 10, false)
+                .column("other", "int", 10, false).primaryKey("id").index("code_idx", true, "code");
+        catalog.table("S", "composite").column("a", "int", 10, false).column("b", "int", 10, false).primaryKey("a", "b");
+        Database db = catalog.analyze("S");
+
+        Table single = db.getTablesByName().get("single");
+        assertTrue(single.getColumn("id").isUnique());
+        assertTrue(single.getColumn("code").isUnique());
+        assertFalse(single.getColumn("other").isUnique());
+
+        // uniqueness has to be reevaluated once there's more than one primary key column
+        Table composite = db.getTablesByName().get("composite");
+        assertTrue(composite.getColumn("a").isPrimary());
+        assertFalse(composite.getColumn("a").isUnique());
+        assertFalse(composite.getColumn("b").isUnique());
+    }
+
+    @Test
+    public void testRelationships() throws Exception {
+        FakeCatalog catalog = new FakeCatalog();
+        catalog.table("S", "customer").column("id", "int", 10, false).primaryKey("id");
+        catalog.table("S", "orders").column("id", "int", 10, false).column("customer_id", "int", 10, false)
+                .column("notes", "varchar", 100, true).primaryKey("id").foreignKey("fk", "customer_id", "customer", "id");
+        Database db = catalog.analyze("S");
+
+        TableColumn parent = db.getTablesByName().get("customer").getColumn("id");
+        TableColumn child = db.getTablesByName().get("orders").getColumn("customer_id");
+        TableColumn unrelated = db.getTablesByName().get("orders").getColumn("notes");
+
+        assertEquals(1, parent.getChildren().size());
+        assertTrue(child.getParents().contains(parent));
+        assertTrue(unrelated.getParents().isEmpty());
+        assertTrue(unrelated.getChildren().isEmpty());
+
+        // removing a relationship from a shared empty map has to be harmless
+        unrelated.removeParent(parent);
+        unrelated.unlinkChildren();
+
+        child.unlinkParents();
+        assertTrue(child.getParents().isEmpty());
+        assertTrue(parent.getChildren().isEmpty());
+
+        // and the maps have to come back when there's a relationship again
+        new ForeignKeyConstraint(parent, child);
+        assertTrue(child.getParents().contains(parent));
+        assertTrue(parent.getChildren().contains(child));
+    }
+
+    @Test
+    public void testColumnsFromMetadataHaveNoId() throws Exception {
+        FakeCatalog catalog = new FakeCatalog();
+        catalog.table("S", "item").column("id", "int", 10, false);
+        Table table = catalog.analyze("S").getTablesByName().get("item");
+        TableColumn column = new TableColumn(table, TableTest.columnMeta("added"));
+
+        assertNull(column.getId());
+        assertEquals("", column.getDetailedSize());
+    }
+
+    /**
+     * Columns without any relationships (most of them) share the same empty
+     * parents and children rather than each having maps of their own
+     */
+    @Test
+    public void testColumnsWithoutRelativesShareEmptyMaps() throws Exception {
+        FakeCatalog catalog = new FakeCatalog();
+        catalog.table("S", "customer").column("id", "int", 10, false).column("name", "varchar", 50, true).primaryKey("id");
+        catalog.table("S", "orders").column("id", "int", 10, false).column("customer", "int", 10, true).primaryKey("id")
+                .foreignKey("orders_customer_fk", "customer", "customer", "id");
+        Database db = catalog.analyze("S");
+        Table customer = db.getTablesByName().get("customer");
+        Table orders = db.getTablesByName().get("orders");
+
+        TableColumn name = customer.getColumn("name");
+        TableColumn orderId = orders.getColumn("id");
+        assertSame(Collections.emptySet(), name.getParents());
+        assertSame(Collections.emptySet(), name.getChildren());
+        assertSame(name.getParents(), orderId.getParents());
+        assertSame(name.getChildren(), orderId.getChildren());
+
+        TableColumn parent = customer.getColumn("id");
+        TableColumn child = orders.getColumn("customer");
+        assertEquals(Collections.singleton(child), parent.getChildren());
+        assertSame(Collections.emptySet(), parent.getParents());
+        assertEquals(Collections.singleton(parent), child.getParents());
+        assertSame(Collections.emptySet(), child.getChildren());
+
+        child.unlinkParents();
+        assertSame(Collections.emptySet(), child.getParents());
+        assertSame(Collections.emptySet(), parent.getChildren());
+    }
+}
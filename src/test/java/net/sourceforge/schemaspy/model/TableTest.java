@@ -0,0 +1,104 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.model;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import net.sourceforge.schemaspy.FakeCatalog;
+import net.sourceforge.schemaspy.model.xml.SchemaMeta;
+import net.sourceforge.schemaspy.model.xml.TableColumnMeta;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author John Currier
+ */
+public class TableTest {
+    @Test
+    public void testColumnsAreInColumnOrder() throws Exception {
+        Table table = newTable(new FakeCatalog());
+
+        assertEquals("[zeta, alpha, mid]", names(table.getColumns()));
+        assertSame(table.getColumns(), table.getColumns());
+
+        try {
+            table.getColumns().clear();
+            fail("The cached columns shouldn't be modifiable");
+        } catch (UnsupportedOperationException expected) {
+        }
+    }
+
+    @Test
+    public void testAddingColumnsInvalidatesOrder() throws Exception {
+        Table table = newTable(new FakeCatalog());
+        List<TableColumn> before = table.getColumns();
+
+        assertSame(before, table.getColumns());
+
+        table.addColumn(columnMeta("added"));
+
+        List<TableColumn> after = table.getColumns();
+        assertNotSame(before, after);
+        assertSame(after, table.getColumns());
+        assertEquals(3, before.size());
+        assertEquals(4, after.size());
+        assertTrue(after.contains(table.getColumn("added")));
+    }
+
+    private static Table newTable(FakeCatalog catalog) throws Exception {
+        catalog.table("S", "orders")
+                .column("zeta", "int", 10, false)
+                .column("alpha", "int", 10, false)
+                .column("mid", "int", 10, false);
+        return catalog.analyze("S").getTablesByName().get("orders");
+    }
+
+    /**
+     * Returns the metadata of a column that's defined in XML
+     */
+    static TableColumnMeta columnMeta(String name) throws Exception {
+        File xml = File.createTempFile("schemaSpy", ".meta.xml");
+        try {
+            Writer out = new OutputStreamWriter(new FileOutputStream(xml), "UTF-8");
+            out.write("<?xml version='1.0' encoding='UTF-8'?>\n" +
+                      "<schemaMeta><comments/><tables><table name='orders'><column name='" + name + "'/></table></tables></schemaMeta>");
+            out.close();
+
+            return new SchemaMeta(xml.getPath(), "fake", "S").getTables().get(0).getColumns().get(0);
+        } finally {
+            xml.delete();
+        }
+    }
+
+    static String names(List<TableColumn> columns) {
+        List<String> names = new ArrayList<String>();
+        for (TableColumn column : columns)
+            names.add(column.getName());
+        return names.toString();
+    }
+}
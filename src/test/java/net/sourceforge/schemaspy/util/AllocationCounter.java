@@ -0,0 +1,80 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+
+/**
+ * Measures how many bytes the current thread allocates, which is a steadier
+ * measure of the cost of a tight loop than its timing.
+ * Only HotSpot based JVMs can provide this, so check {@link #isSupported()}
+ * (typically with <code>Assume</code>) before relying on it.
+ *
+ * @author John Currier
+ */
+public class AllocationCounter {
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private final Method allocatedBytes;
+
+    public AllocationCounter() {
+        Method method = null;
+        try {
+            Class<?> hotspot = Class.forName("com.sun.management.ThreadMXBean");
+            if (hotspot.isInstance(threads)) {
+                method = hotspot.getMethod("getThreadAllocatedBytes", long.class);
+                if (((Long)method.invoke(threads, Thread.currentThread().getId())).longValue() < 0)
+                    method = null;
+            }
+        } catch (Exception notHotSpot) {
+            method = null;
+        }
+        allocatedBytes = method;
+    }
+
+    public boolean isSupported() {
+        return allocatedBytes != null;
+    }
+
+    /**
+     * Returns the number of bytes allocated by the current thread so far
+     *
+     * @return
+     */
+    public long getAllocatedBytes() {
+        try {
+            return ((Long)allocatedBytes.invoke(threads, Thread.currentThread().getId())).longValue();
+        } catch (Exception exc) {
+            throw new IllegalStateException(exc);
+        }
+    }
+
+    /**
+     * Returns the number of bytes the current thread allocates running <code>task</code>
+     *
+     * @param task
+     * @return
+     */
+    public long measure(Runnable task) {
+        long before = getAllocatedBytes();
+        task.run();
+        return getAllocatedBytes() - before;
+    }
+}
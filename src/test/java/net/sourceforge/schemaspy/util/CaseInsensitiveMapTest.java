@@ -0,0 +1,232 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Checks that {@link CaseInsensitiveMap} behaves like the <code>HashMap</code>
+ * with upper cased keys that it replaced.
+ *
+ * @author John Currier
+ */
+public class CaseInsensitiveMapTest {
+    private static final String[] NAMES = {
+        "Customer", "CUSTOMER_ID", "order_line", "OrderLine", "x", "", "a1_b2", "TBL$1", "\u00dcn\u00efc\u00f6d\u00e9"
+    };
+
+    /**
+     * What <code>CaseInsensitiveMap</code> used to be
+     */
+    private static class UpperCaseMap<V> extends HashMap<String, V> {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public V get(Object key) {
+            return super.get(((String)key).toUpperCase(Locale.ENGLISH));
+        }
+
+        @Override
+        public V put(String key, V value) {
+            return super.put(key.toUpperCase(Locale.ENGLISH), value);
+        }
+
+        @Override
+        public V remove(Object key) {
+            return super.remove(((String)key).toUpperCase(Locale.ENGLISH));
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return super.containsKey(((String)key).toUpperCase(Locale.ENGLISH));
+        }
+    }
+
+    @Test
+    public void testMatchesOldBehavior() {
+        Random random = new Random(42);
+        Map<String, Integer> expected = new UpperCaseMap<Integer>();
+        Map<String, Integer> actual = new CaseInsensitiveMap<Integer>();
+
+        for (int i = 0; i < 20000; ++i) {
+            String key = randomCase(randomName(random), random);
+            switch (random.nextInt(4)) {
+                case 0:
+                case 1:
+                    assertEquals(key, expected.put(key, i), actual.put(key, i));
+                    break;
+                case 2:
+                    assertEquals(key, expected.remove(key), actual.remove(key));
+                    break;
+                default:
+                    assertEquals(key, expected.get(key), actual.get(key));
+                    assertEquals(key, expected.containsKey(key), actual.containsKey(key));
+            }
+            assertEquals(expected.size(), actual.size());
+        }
+
+        assertEquals(new TreeMap<String, Integer>(expected), new TreeMap<String, Integer>(actual));
+        assertEquals(expected, actual);
+        assertEquals(expected.hashCode(), actual.hashCode());
+    }
+
+    @Test
+    public void testKeysAreFolded() {
+        Map<String, String> map = new CaseInsensitiveMap<String>();
+        for (String name : NAMES)
+            map.put(name, name);
+
+        for (String name : NAMES) {
+            assertEquals(name, map.get(name.toLowerCase(Locale.ENGLISH)));
+            assertEquals(name, map.get(name.toUpperCase(Locale.ENGLISH)));
+            assertTrue(map.keySet().contains(name.toUpperCase(Locale.ENGLISH)));
+        }
+        assertEquals(NAMES.length, map.size());
+    }
+
+    @Test
+    public void testIgnoresDefaultLocale() {
+        Locale original = Locale.getDefault();
+        Locale.setDefault(new Locale("tr", "TR"));
+        try {
+            Map<String, String> map = new CaseInsensitiveMap<String>();
+            map.put("id", "id");
+            assertEquals("id", map.get("ID"));
+            assertTrue(map.containsKey("ID"));
+            assertEquals("ID", map.keySet().iterator().next());
+        } finally {
+            Locale.setDefault(original);
+        }
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        Map<String, Integer> map = new CaseInsensitiveMap<Integer>();
+        for (int i = 0; i < 100; ++i)
+            map.put("key" + i, i);
+
+        for (Iterator<Integer> iter = map.values().iterator(); iter.hasNext(); ) {
+            if (iter.next() % 2 == 0)
+                iter.remove();
+        }
+
+        assertEquals(50, map.size());
+        assertNull(map.get("KEY2"));
+        assertEquals(Integer.valueOf(3), map.get("Key3"));
+    }
+
+    @Test
+    public void testSerializable() throws Exception {
+        CaseInsensitiveMap<String> map = new CaseInsensitiveMap<String>();
+        for (String name : NAMES)
+            map.put(name, name);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(map);
+        out.close();
+
+        ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        @SuppressWarnings("unchecked")
+        Map<String, String> copy = (Map<String, String>)in.readObject();
+
+        assertEquals(map, copy);
+        assertEquals("Customer", copy.get("customer"));
+        copy.put("new", "new");
+        assertFalse(map.containsKey("new"));
+    }
+
+    /**
+     * Lookups used to upper case the key, allocating a new <code>String</code>
+     * every time.  Now they shouldn't allocate at all.
+     */
+    @Test
+    public void testLookupsDontAllocate() {
+        final AllocationCounter counter = new AllocationCounter();
+        Assume.assumeTrue(counter.isSupported());
+
+        final Map<String, Integer> oldMap = new UpperCaseMap<Integer>();
+        final Map<String, Integer> newMap = new CaseInsensitiveMap<Integer>();
+        final List<String> keys = new ArrayList<String>();
+        for (int i = 0; i < 1000; ++i) {
+            String key = "Table_" + i;
+            oldMap.put(key, i);
+            newMap.put(key, i);
+            keys.add(key.toLowerCase(Locale.ENGLISH));
+        }
+
+        Runnable oldLookups = lookups(oldMap, keys);
+        Runnable newLookups = lookups(newMap, keys);
+        for (int i = 0; i < 20; ++i) {  // warm up
+            oldLookups.run();
+            newLookups.run();
+        }
+
+        long oldBytes = counter.measure(oldLookups);
+        long newBytes = counter.measure(newLookups);
+        assertTrue("lookups allocated " + newBytes + " bytes, upper casing the keys allocated " + oldBytes,
+                newBytes * 100 < oldBytes);
+    }
+
+    private static Runnable lookups(final Map<String, Integer> map, final List<String> keys) {
+        return new Runnable() {
+            public void run() {
+                for (int i = 0; i < 100; ++i) {
+                    for (String key : keys) {
+                        if (map.get(key) == null)
+                            throw new AssertionError(key);
+                    }
+                }
+            }
+        };
+    }
+
+    private static String randomName(Random random) {
+        if (random.nextInt(4) == 0)
+            return NAMES[random.nextInt(NAMES.length)];
+        return "t" + random.nextInt(500);
+    }
+
+    private static String randomCase(String name, Random random) {
+        StringBuilder buf = new StringBuilder(name.length());
+        for (int i = 0; i < name.length(); ++i) {
+            char ch = name.charAt(i);
+            buf.append(random.nextBoolean() ? Character.toUpperCase(ch) : Character.toLowerCase(ch));
+        }
+        return buf.toString();
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author John Currier
+ */
+public class FileOutputSinkTest {
+    private static final StaticContent CSS = new StaticContent(bytes("body { margin: 0 }"));
+    private static final StaticContent OTHER_CSS = new StaticContent(bytes("body { margin: 1em }"));
+
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void testStaticContent() throws Exception {
+        File file = temp.newFile("schemaSpy.css");
+        assertFalse(CSS.matches(file));
+        assertFalse(CSS.matches(new File(temp.getRoot(), "missing.css")));
+        assertFalse(CSS.matches(temp.getRoot()));
+
+        Files.write(file.toPath(), bytes("body { margin: 9 }"));   // same length
+        assertFalse(CSS.matches(file));
+        Files.write(file.toPath(), CSS.getBytes());
+        assertTrue(CSS.matches(file));
+        assertEquals(CSS.getDigest(), new StaticContent(bytes("body { margin: 0 }")).getDigest());
+        assertFalse(CSS.getDigest().equals(OTHER_CSS.getDigest()));
+    }
+
+    @Test
+    public void testStaticContentIsShared() throws Exception {
+        File a = new File(temp.newFolder("a"), "schemaSpy.css");
+        File b = new File(temp.newFolder("b"), "schemaSpy.css");
+        FileOutputSink sink = new FileOutputSink();
+        sink.writeStatic(a, CSS);
+        sink.writeStatic(b, CSS);
+        assertArrayEquals(CSS.getBytes(), Files.readAllBytes(a.toPath()));
+        assertArrayEquals(CSS.getBytes(), Files.readAllBytes(b.toPath()));
+        assertNoTempFiles(a.getParentFile());
+        assertNoTempFiles(b.getParentFile());
+
+        // content that's already there is left alone
+        long modified = a.lastModified();
+        Thread.sleep(1100);
+        new FileOutputSink().writeStatic(a, CSS);
+        assertEquals(modified, a.lastModified());
+    }
+
+    @Test
+    public void testSharedCopiesArentRewritten() throws Exception {
+        File a = new File(temp.newFolder("a"), "schemaSpy.css");
+        File b = new File(temp.newFolder("b"), "schemaSpy.css");
+        FileOutputSink sink = new FileOutputSink();
+        sink.writeStatic(a, CSS);
+        sink.writeStatic(b, CSS);
+
+        // whether or not they're links, replacing one mustn't change the other
+        sink.writeStatic(b, OTHER_CSS);
+        assertArrayEquals(CSS.getBytes(), Files.readAllBytes(a.toPath()));
+        assertArrayEquals(OTHER_CSS.getBytes(), Files.readAllBytes(b.toPath()));
+
+        sink.writeStatic(b, CSS);
+        write(sink, b, bytes("generated"));
+        assertArrayEquals(CSS.getBytes(), Files.readAllBytes(a.toPath()));
+        assertArrayEquals(bytes("generated"), Files.readAllBytes(b.toPath()));
+
+        sink.writeStatic(b, CSS);
+        WriteBehindOutputSink writeBehind = new WriteBehindOutputSink(1, 1);
+        write(writeBehind, b, bytes("written behind"));
+        writeBehind.close();
+        assertArrayEquals(CSS.getBytes(), Files.readAllBytes(a.toPath()));
+        assertArrayEquals(bytes("written behind"), Files.readAllBytes(b.toPath()));
+
+        assertNoTempFiles(a.getParentFile());
+        assertNoTempFiles(b.getParentFile());
+    }
+
+    private static void assertNoTempFiles(File dir) {
+        String[] names = dir.list();
+        assertEquals(Arrays.toString(names), 1, names.length);
+    }
+
+    private static void write(OutputSink sink, File file, byte[] content) throws IOException {
+        OutputStream out = sink.newOutputStream(file);
+        out.write(content);
+        out.close();
+    }
+
+    private static byte[] bytes(String content) {
+        try {
+            return content.getBytes("UTF-8");
+        } catch (IOException exc) {
+            throw new RuntimeException(exc);
+        }
+    }
+}
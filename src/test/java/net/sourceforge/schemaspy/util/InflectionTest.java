@@ -0,0 +1,180 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author John Currier
+ */
+public class InflectionTest {
+    /**
+     * word, its plural and its singular as inflected by the original
+     * implementation that evaluated each rule's expression in turn
+     */
+    private static final String[][] INFLECTIONS = {
+        {"table", "tables", "table"},
+        {"Table", "Tables", "Table"},
+        {"TABLE", "TABLEs", "TABLE"},
+        {"address", "addresses", "addres"},
+        {"status", "statuses", "statu"},
+        {"Status", "Statuses", "Statu"},
+        {"alias", "aliases", "alia"},
+        {"bus", "buses", "bu"},
+        {"buffalo", "buffaloes", "buffalo"},
+        {"tomato", "tomatoes", "tomato"},
+        {"datum", "data", "datum"},
+        {"medium", "media", "medium"},
+        {"analysis", "analyses", "analysi"},
+        {"basis", "bases", "basi"},
+        {"diagnosis", "diagnoses", "diagnosi"},
+        {"knife", "knives", "knife"},
+        {"wife", "wives", "wife"},
+        {"half", "halves", "half"},
+        {"wolf", "wolves", "wolf"},
+        {"hive", "hives", "hive"},
+        {"category", "categories", "category"},
+        {"query", "queries", "query"},
+        {"day", "days", "day"},
+        {"box", "boxes", "box"},
+        {"church", "churches", "church"},
+        {"class", "classes", "clas"},
+        {"dish", "dishes", "dish"},
+        {"matrix", "matrices", "matrix"},
+        {"vertex", "vertices", "vertex"},
+        {"index", "indices", "index"},
+        {"mouse", "mice", "mouse"},
+        {"louse", "lice", "louse"},
+        {"ox", "oxen", "ox"},
+        {"Ox", "Oxen", "Ox"},
+        {"quiz", "quizzes", "quiz"},
+        {"person", "people", "person"},
+        {"Person", "People", "Person"},
+        {"man", "men", "man"},
+        {"woman", "women", "woman"},
+        {"child", "children", "child"},
+        {"sex", "sexes", "sex"},
+        {"move", "moves", "move"},
+        {"equipment", "equipment", "equipment"},
+        {"Information", "Information", "Information"},
+        {"rice", "rice", "rice"},
+        {"money", "money", "money"},
+        {"species", "species", "species"},
+        {"series", "series", "series"},
+        {"fish", "fish", "fish"},
+        {"sheep", "sheep", "sheep"},
+        {"octopus", "octopi", "octopu"},
+        {"virus", "viri", "viru"},
+        {"axis", "axes", "axi"},
+        {"testis", "testes", "testi"},
+        {"crisis", "crises", "crisi"},
+        {"news", "news", "news"},
+        {"movie", "movies", "movie"},
+        {"shoe", "shoes", "shoe"},
+        {"archive", "archives", "archive"},
+        {"objective", "objectives", "objective"},
+        {"x", "xes", "x"},
+        {"", "s", ""},
+        {"users", "users", "user"},
+        {"user_roles", "user_roles", "user_role"},
+        {"OrderItem", "OrderItems", "OrderItem"},
+        {"order_items", "order_items", "order_item"},
+        {"data", "datas", "datum"},
+        {"people", "peoples", "person"},
+        {"men", "mens", "man"},
+        {"children", "childrens", "child"},
+        {"sexes", "sexes", "sex"},
+        {"moves", "moves", "move"},
+        {"mice", "mices", "mouse"},
+        {"oxen", "oxens", "ox"},
+        {"quizzes", "quizzes", "quiz"},
+        {"vertices", "vertices", "vertex"},
+        {"indices", "indices", "index"},
+        {"matrices", "matrices", "matrix"},
+        {"statuses", "statuses", "status"},
+        {"aliases", "aliases", "alias"},
+        {"buses", "buses", "bus"},
+        {"octopi", "octopis", "octopus"},
+        {"viri", "viris", "virus"},
+        {"crises", "crises", "crisis"},
+        {"axes", "axes", "axis"},
+        {"tests", "tests", "test"},
+        {"shoes", "shoes", "shoe"},
+        {"movies", "movies", "movie"},
+        {"knives", "knives", "knife"},
+        {"wives", "wives", "wife"},
+        {"halves", "halves", "half"},
+        {"wolves", "wolves", "wolf"},
+        {"hives", "hives", "hive"},
+        {"categories", "categories", "category"},
+        {"queries", "queries", "query"},
+        {"boxes", "boxes", "box"},
+        {"churches", "churches", "church"},
+        {"classes", "classes", "class"},
+        {"dishes", "dishes", "dish"},
+        {"analyses", "analyses", "analysis"},
+        {"bases", "bases", "basis"},
+        {"theses", "theses", "thesis"},
+        {"tomatoes", "tomatoes", "tomato"},
+        {"media", "medias", "medium"},
+        {"addresses", "addresses", "address"},
+        {"archives", "archives", "archive"},
+        {"objectives", "objectives", "objective"},
+        {"CUSTOMERS", "CUSTOMERs", "CUSTOMER"},
+        {"Employees", "Employees", "Employee"},
+        {"Leaves", "Leaves", "Leafe"},
+        {"lives", "lives", "life"},
+        {"s", "s", ""},
+        {"ss", "sses", "s"},
+        {"es", "es", "e"}
+    };
+
+    @Test
+    public void testSameAsOriginalImplementation() {
+        for (String[] inflection : INFLECTIONS) {
+            assertEquals(inflection[0], inflection[1], Inflection.pluralize(inflection[0]));
+            assertEquals(inflection[0], inflection[2], Inflection.singularize(inflection[0]));
+        }
+    }
+
+    @Test
+    public void testEvictedWordsAreInflectedAgain() {
+        for (int i = 0; i < 10000; ++i) {
+            assertEquals("table" + i + "s", Inflection.pluralize("table" + i));
+            assertEquals("categor" + i + "y", Inflection.singularize("categor" + i + "ies"));
+        }
+        testSameAsOriginalImplementation();
+    }
+
+    @Test
+    public void testInstances() {
+        Inflection inflection = new Inflection("(bu)s$", "$1ses");
+        assertTrue(inflection.match("Bus"));
+        assertEquals("Buses", inflection.replace("Bus"));
+        assertFalse(inflection.match("bush"));
+
+        Inflection caseSensitive = new Inflection("(bu)s$", "$1ses", false);
+        assertFalse(caseSensitive.match("BUS"));
+        assertEquals("BUS", caseSensitive.replace("BUS"));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+/**
+ * Benchmark of writing table rows with a <code>LineWriter</code> compared
+ * with the <code>BufferedWriter</code> over an <code>OutputStreamWriter</code>
+ * that it used to be.  Timings depend too much on the machine to be part
+ * of the tests, so it's run by hand:
+ * <pre>java net.sourceforge.schemaspy.util.LineWriterBenchmark [charset...]</pre>
+ *
+ * @author John Currier
+ */
+public class LineWriterBenchmark {
+    private static final LineWriter.Fragment ROW = new LineWriter.Fragment("  <tr>\n    <td class='detail'>");
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0)
+            args = new String[] {"UTF-8", "ISO-8859-1", "windows-1252"};
+
+        for (String charset : args) {
+            long best = Long.MAX_VALUE;
+            long bestOld = Long.MAX_VALUE;
+            for (int round = 0; round < 10; ++round) {
+                long start = System.nanoTime();
+                LineWriter writer = new LineWriter(new NullOutputStream(), 24 * 1024, charset);
+                writeRows(writer, ROW);
+                writer.close();
+                long middle = System.nanoTime();
+                Writer old = new BufferedWriter(new OutputStreamWriter(new NullOutputStream(), charset), 24 * 1024);
+                writeRows(old, null);
+                old.close();
+                long end = System.nanoTime();
+
+                best = Math.min(best, middle - start);
+                bestOld = Math.min(bestOld, end - middle);
+            }
+
+            System.out.println(charset + ": LineWriter took " + best / 1000000 + "ms vs " + bestOld / 1000000 + "ms through an OutputStreamWriter");
+        }
+    }
+
+    private static void writeRows(Writer writer, LineWriter.Fragment row) throws IOException {
+        for (int i = 0; i < 200000; ++i) {
+            if (row != null)
+                ((LineWriter)writer).write(row);
+            else
+                writer.write(ROW.toString());
+            writer.write("column_");
+            writer.write(String.valueOf(i & 63));
+            writer.write("</td>\n    <td>caf\u00e9 \u00e0 la carte</td>\n  </tr>\n");
+        }
+    }
+
+    private static class NullOutputStream extends OutputStream {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    }
+}
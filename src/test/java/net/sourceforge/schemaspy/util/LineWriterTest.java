@@ -0,0 +1,138 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author John Currier
+ */
+public class LineWriterTest {
+    private static final String[] CHARSETS = {
+        "UTF-8", "ISO-8859-1", "US-ASCII", "windows-1252", "ISO-8859-15", "KOI8-R", "UTF-16", "Shift_JIS"
+    };
+    private static final String[] PIECES = {
+        "a", "xyz", "<td>", "\n", "\u00e9", "\u20ac", "\u65e5", "\ud83d\ude00", "\ud800", "\udc00"
+    };
+    private static final LineWriter.Fragment ROW = new LineWriter.Fragment("  <tr>\n    <td class='detail'>");
+
+    @Test
+    public void testLoneSurrogates() throws Exception {
+        char[] highs = new char[500];
+        Arrays.fill(highs, '\ud800');
+        char[] lows = new char[500];
+        Arrays.fill(lows, '\udc00');
+
+        for (String charset : CHARSETS) {
+            for (char[] surrogates : Arrays.asList(highs, lows)) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                LineWriter writer = new LineWriter(out, 128, charset);
+                writer.write(new String(surrogates));
+                writer.close();
+
+                assertArrayEquals(charset, encode(charset, new String(surrogates)), out.toByteArray());
+            }
+        }
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LineWriter writer = new LineWriter(out, 128, "windows-1252");
+        writer.write(new String(highs));
+        writer.close();
+        char[] replaced = new char[highs.length];
+        Arrays.fill(replaced, '?');
+        assertEquals(new String(replaced), out.toString("windows-1252"));
+    }
+
+    @Test
+    public void testSurrogatePairsSplitAcrossWrites() throws Exception {
+        for (String charset : CHARSETS) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            LineWriter writer = new LineWriter(out, 64, charset);
+            writer.write('\ud83d');
+            writer.flush();
+            writer.write('\ude00');
+            writer.write("\ud83d");
+            writer.write(ROW);
+            writer.write("\ud83d");
+            writer.close();
+
+            assertArrayEquals(charset, encode(charset, "\ud83d\ude00\ud83d" + ROW + "\ud83d"), out.toByteArray());
+        }
+    }
+
+    @Test
+    public void testSameAsOutputStreamWriter() throws Exception {
+        Random random = new Random(3);
+        for (String charset : CHARSETS) {
+            for (int run = 0; run < 50; ++run) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                LineWriter writer = new LineWriter(out, 64 + random.nextInt(100), charset);
+                StringBuilder expected = new StringBuilder();
+
+                for (int i = random.nextInt(100); i > 0; --i) {
+                    StringBuilder text = new StringBuilder();
+                    for (int j = random.nextInt(200); j > 0; --j)
+                        text.append(PIECES[random.nextInt(PIECES.length)]);
+                    String str = text.toString();
+
+                    switch (random.nextInt(5)) {
+                        case 0:
+                            writer.write(str);
+                            break;
+                        case 1:
+                            for (int j = 0; j < str.length(); ++j)
+                                writer.write(str.charAt(j));
+                            break;
+                        case 2:
+                            writer.write(str.toCharArray(), 0, str.length());
+                            break;
+                        case 3:
+                            writer.write(new LineWriter.Fragment(str));
+                            break;
+                        default:
+                            writer.flush();
+                            writer.writeln(str);
+                            str += System.getProperty("line.separator");
+                    }
+                    expected.append(str);
+                }
+                writer.close();
+
+                assertArrayEquals(charset, encode(charset, expected.toString()), out.toByteArray());
+            }
+        }
+    }
+
+    private static byte[] encode(String charset, String text) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Writer writer = new OutputStreamWriter(out, charset);
+        writer.write(text);
+        writer.close();
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,218 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.zip.GZIPInputStream;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author John Currier
+ */
+public class OutputCompressorTest {
+    private static final File ROOT = new File("output").getAbsoluteFile();
+
+    @Test
+    public void testCompressedAndUncompressed() throws Exception {
+        MemorySink sink = new MemorySink();
+        OutputCompressor compressor = new OutputCompressor(sink, 3, true);
+        for (int i = 0; i < 20; ++i)
+            write(compressor, "page" + i + ".html", content(i));
+        compressor.finish();
+
+        assertEquals(40, sink.files.size());
+        for (int i = 0; i < 20; ++i) {
+            assertEquals(content(i), new String(sink.get("page" + i + ".html"), "UTF-8"));
+            assertEquals(content(i), gunzip(sink.get("page" + i + ".html.gz")));
+        }
+    }
+
+    @Test
+    public void testUncompressedCopyIsDeleted() throws Exception {
+        MemorySink sink = new MemorySink();
+        sink.files.put(new File(ROOT, "page.html"), new byte[] {1, 2, 3});
+        OutputCompressor compressor = new OutputCompressor(sink, 1, false);
+        write(compressor, "page.html", "<html/>");
+        compressor.finish();
+
+        assertNull(sink.get("page.html"));
+        assertEquals("<html/>", gunzip(sink.get("page.html.gz")));
+    }
+
+    @Test
+    public void testBacklogIsCompressedByTheCaller() throws Exception {
+        MemorySink sink = new MemorySink();
+        sink.blocked = new CountDownLatch(1);
+        OutputCompressor compressor = new OutputCompressor(sink, 1, false);
+
+        // one being compressed, two queued and the rest have to be done by this thread
+        write(compressor, "blocked.html", "x");
+        while (sink.writers.isEmpty())
+            Thread.sleep(1);
+        for (int i = 0; i < 5; ++i)
+            write(compressor, "page" + i + ".html", content(i));
+
+        assertEquals(Thread.currentThread().getName(), sink.writers.get(new File(ROOT, "page2.html.gz")));
+        assertEquals(Thread.currentThread().getName(), sink.writers.get(new File(ROOT, "page4.html.gz")));
+        assertFalse(sink.writers.containsKey(new File(ROOT, "page0.html.gz")));
+
+        sink.blocked.countDown();
+        compressor.finish();
+        assertEquals("OutputCompressor", sink.writers.get(new File(ROOT, "page0.html.gz")));
+        for (int i = 0; i < 5; ++i)
+            assertEquals(content(i), gunzip(sink.get("page" + i + ".html.gz")));
+    }
+
+    @Test
+    public void testFailureIsReportedByFinish() throws Exception {
+        MemorySink sink = new MemorySink();
+        sink.failing = "bad.html.gz";
+        OutputCompressor compressor = new OutputCompressor(sink, 2, false);
+        write(compressor, "good.html", "good");
+        write(compressor, "bad.html", "bad");
+        try {
+            compressor.finish();
+            fail("Expected the failure to write bad.html.gz");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("bad.html.gz"));
+        }
+        assertEquals("good", gunzip(sink.get("good.html.gz")));
+    }
+
+    @Test
+    public void testNothingAfterFinished() throws Exception {
+        for (boolean cancel : new boolean[] {false, true}) {
+            OutputCompressor compressor = new OutputCompressor(new MemorySink(), 1, false);
+            if (cancel)
+                compressor.cancel();
+            else
+                compressor.finish();
+            compressor.cancel();    // harmless either way
+
+            try {
+                write(compressor, "late.html", "late");
+                fail("Expected the late page to be rejected");
+            } catch (RejectedExecutionException expected) {
+            }
+        }
+    }
+
+    private static void write(OutputCompressor compressor, String name, String content) throws IOException {
+        OutputStream out = compressor.newOutputStream(new File(ROOT, name));
+        out.write(content.getBytes("UTF-8"));
+        out.close();
+    }
+
+    private static String content(int i) {
+        StringBuilder content = new StringBuilder();
+        for (int j = 0; j < i * 100; ++j)
+            content.append("<tr><td>").append(j).append("</td></tr>\n");
+        return content.toString();
+    }
+
+    private static String gunzip(byte[] compressed) throws IOException {
+        InputStream in = new GZIPInputStream(new ByteArrayInputStream(compressed));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buf = new byte[4096];
+        int len;
+        while ((len = in.read(buf)) != -1)
+            out.write(buf, 0, len);
+        in.close();
+        return new String(out.toByteArray(), "UTF-8");
+    }
+
+    /**
+     * Keeps the files in memory along with the name of the thread that wrote each one
+     */
+    private static class MemorySink implements OutputSink {
+        private final Map<File, byte[]> files = new ConcurrentHashMap<File, byte[]>();
+        private final Map<File, String> writers = new ConcurrentHashMap<File, String>();
+        private volatile CountDownLatch blocked;
+        private volatile String failing;
+
+        byte[] get(String name) {
+            return files.get(new File(ROOT, name));
+        }
+
+        public void mkdirs(File dir) {
+        }
+
+        public OutputStream newOutputStream(final File file) throws IOException {
+            if (file.getName().equals(failing))
+                throw new IOException("Failed to write " + file.getName());
+
+            writers.put(file, Thread.currentThread().getName());
+            if (blocked != null && file.getName().startsWith("blocked")) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException exc) {
+                    throw new IOException(exc);
+                }
+            }
+
+            return new ByteArrayOutputStream() {
+                @Override
+                public void close() {
+                    files.put(file, toByteArray());
+                }
+            };
+        }
+
+        public void writeStatic(File file, StaticContent content) {
+            files.put(file, content.getBytes());
+        }
+
+        public boolean exists(File file) {
+            return files.containsKey(file);
+        }
+
+        public boolean delete(File file) {
+            return files.remove(file) != null;
+        }
+
+        public File getLocalFile(File file) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void addLocalFile(File file) {
+            throw new UnsupportedOperationException();
+        }
+
+        public void flush() {
+        }
+
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author John Currier
+ */
+public class OutputManifestTest {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void testUnchangedUnitsAreCurrent() throws Exception {
+        File dir = temp.getRoot();
+        write(dir, "tables/a.html", "diagrams/a.png", "tables/b.html");
+
+        OutputManifest manifest = new OutputManifest(dir);
+        assertFalse(manifest.isCurrent("tables/a.html", "1"));
+        manifest.put("tables/a.html", "1", Arrays.asList("tables/a.html", "diagrams/a.png", "diagrams/a.2degrees.png"));
+        manifest.put("tables/b.html", "2", Arrays.asList("tables/b.html"));
+        manifest.finish();
+
+        // only the files that were actually written are recorded
+        assertEquals(Arrays.asList(
+                "# unit<tab>digest of its inputs<tab>file[<tab>file...]",
+                "tables/a.html\t1\ttables/a.html\tdiagrams/a.png",
+                "tables/b.html\t2\ttables/b.html"),
+                Files.readAllLines(new File(dir, OutputManifest.NAME).toPath(), StandardCharsets.UTF_8));
+
+        manifest = new OutputManifest(dir);
+        assertFalse("manifest should be removed until it's finished", new File(dir, OutputManifest.NAME).exists());
+        assertTrue(manifest.isCurrent("tables/a.html", "1"));
+        assertFalse(manifest.isCurrent("tables/b.html", "3"));
+        assertFalse(manifest.isCurrent("tables/c.html", "1"));
+
+        new File(dir, "diagrams/a.png").delete();
+        manifest = new OutputManifest(dir);
+        assertFalse("a missing file has to be regenerated", manifest.isCurrent("tables/a.html", "1"));
+    }
+
+    @Test
+    public void testFilesOfDroppedUnitsAreDeleted() throws Exception {
+        File dir = temp.getRoot();
+        write(dir, "tables/a.html", "diagrams/a.png", "tables/b.html", "diagrams/b.png", "diagrams/shared.png");
+
+        OutputManifest manifest = new OutputManifest(dir);
+        manifest.put("tables/a.html", "1", Arrays.asList("tables/a.html", "diagrams/a.png"));
+        manifest.put("tables/b.html", "2", Arrays.asList("tables/b.html", "diagrams/b.png", "diagrams/shared.png"));
+        manifest.finish();
+
+        // b was dropped, but one of its files now belongs to the regenerated a
+        manifest = new OutputManifest(dir);
+        manifest.put("tables/a.html", "3", Arrays.asList("tables/a.html", "diagrams/a.png", "diagrams/shared.png"));
+        manifest.finish();
+
+        assertTrue(new File(dir, "tables/a.html").exists());
+        assertTrue(new File(dir, "diagrams/shared.png").exists());
+        assertFalse(new File(dir, "tables/b.html").exists());
+        assertFalse(new File(dir, "diagrams/b.png").exists());
+
+        // units that were current are carried forward
+        manifest = new OutputManifest(dir);
+        assertTrue(manifest.isCurrent("tables/a.html", "3"));
+        manifest.finish();
+        assertTrue(new OutputManifest(dir).isCurrent("tables/a.html", "3"));
+        assertTrue(new File(dir, "diagrams/a.png").exists());
+    }
+
+    @Test
+    public void testMalformedManifestRegeneratesEverything() throws Exception {
+        File dir = temp.getRoot();
+        write(dir, "tables/a.html");
+        OutputStream out = new FileOutputStream(new File(dir, OutputManifest.NAME));
+        out.write("tables/a.html\t1\ttables/a.html\ngarbage\n".getBytes("UTF-8"));
+        out.close();
+
+        OutputManifest manifest = new OutputManifest(dir);
+        assertFalse(manifest.isCurrent("tables/a.html", "1"));
+        assertFalse(new File(dir, OutputManifest.NAME).exists());
+    }
+
+    @Test
+    public void testDiscard() throws Exception {
+        File dir = temp.getRoot();
+        write(dir, "tables/a.html");
+        OutputManifest manifest = new OutputManifest(dir);
+        manifest.put("tables/a.html", "1", Arrays.asList("tables/a.html"));
+        manifest.finish();
+
+        OutputManifest.discard(dir);
+        assertFalse(new OutputManifest(dir).isCurrent("tables/a.html", "1"));
+    }
+
+    @Test
+    public void testDigest() throws Exception {
+        OutputManifest.DigestStream digest = OutputManifest.newDigestStream();
+        digest.write("abc".getBytes("UTF-8"));
+        digest.close();
+        assertEquals("a9993e364706816aba3e25717850c26c9cd0d89d", digest.getDigest());
+
+        assertEquals("da39a3ee5e6b4b0d3255bfef95601890afd80709", new StaticContent(new byte[0]).getDigest());
+    }
+
+    private static void write(File dir, String... names) throws IOException {
+        for (String name : names) {
+            File file = new File(dir, name);
+            file.getParentFile().mkdirs();
+            OutputStream out = new FileOutputStream(file);
+            out.write(name.getBytes("UTF-8"));
+            out.close();
+        }
+    }
+}
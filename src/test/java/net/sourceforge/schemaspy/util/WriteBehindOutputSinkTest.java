@@ -0,0 +1,165 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author John Currier
+ */
+public class WriteBehindOutputSinkTest {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void testEverythingIsWrittenByFlush() throws Exception {
+        File dir = temp.getRoot();
+        WriteBehindOutputSink sink = new WriteBehindOutputSink(2, 3);
+        for (int i = 0; i < 200; ++i)
+            write(sink, new File(dir, "page" + i + ".html"), content('a' + i % 26, i * 100));
+        assertTrue(sink.exists(new File(dir, "page199.html")));
+        sink.flush();
+
+        for (int i = 0; i < 200; ++i)
+            assertArrayEquals(content('a' + i % 26, i * 100), Files.readAllBytes(new File(dir, "page" + i + ".html").toPath()));
+        sink.close();
+    }
+
+    @Test
+    public void testLocalFileIsComplete() throws Exception {
+        File dir = temp.getRoot();
+        WriteBehindOutputSink sink = new WriteBehindOutputSink(1, 1);
+        for (int i = 0; i < 50; ++i) {
+            File dot = new File(dir, "diagram" + i + ".dot");
+            byte[] content = content('d', 100000 + i);
+            write(sink, dot, content);
+            assertArrayEquals(content, Files.readAllBytes(sink.getLocalFile(dot).toPath()));
+        }
+        sink.close();
+    }
+
+    @Test
+    public void testWritesOfTheSameFileDontOverlap() throws Exception {
+        final File file = new File(temp.getRoot(), "contended.html");
+        final WriteBehindOutputSink sink = new WriteBehindOutputSink(4, 8);
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        List<Future<Void>> writers = new ArrayList<Future<Void>>();
+        for (int i = 0; i < 8; ++i) {
+            final int c = 'a' + i;
+            writers.add(executor.submit(new Callable<Void>() {
+                public Void call() throws IOException {
+                    for (int j = 0; j < 100; ++j)
+                        write(sink, file, content(c, 50000 + 10000 * (c - 'a')));
+                    return null;
+                }
+            }));
+        }
+        for (Future<Void> writer : writers)
+            writer.get();
+        executor.shutdown();
+        sink.close();
+
+        // whichever write was last, it can't be mixed up with any of the others
+        byte[] written = Files.readAllBytes(file.toPath());
+        assertArrayEquals(content(written[0], written.length), written);
+        assertEquals(50000 + 10000 * (written[0] - 'a'), written.length);
+    }
+
+    @Test
+    public void testLastWriteWins() throws Exception {
+        File file = new File(temp.getRoot(), "index.html");
+        WriteBehindOutputSink sink = new WriteBehindOutputSink(3, 10);
+        for (int i = 0; i < 100; ++i)
+            write(sink, file, content('a' + i % 26, 1000 - i));
+        sink.close();
+        assertArrayEquals(content('a' + 99 % 26, 901), Files.readAllBytes(file.toPath()));
+    }
+
+    @Test
+    public void testFailureIsReported() throws Exception {
+        File dir = temp.getRoot();
+        WriteBehindOutputSink sink = new WriteBehindOutputSink(1, 1);
+        write(sink, new File(dir, "missing/page.html"), content('x', 10));
+        try {
+            sink.flush();
+            fail("Expected the failure to write into a missing directory");
+        } catch (IOException expected) {
+        }
+
+        try {
+            sink.newOutputStream(new File(dir, "next.html"));
+            fail("Expected the failure to be reported again");
+        } catch (IOException expected) {
+        }
+
+        try {
+            sink.close();
+            fail("Expected the failure to be reported by close");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void testNothingAfterClosed() throws Exception {
+        File dir = temp.getRoot();
+        WriteBehindOutputSink sink = new WriteBehindOutputSink(1, 1);
+        write(sink, new File(dir, "index.html"), content('i', 10));
+        sink.close();
+        sink.close();   // harmless
+        assertTrue(new File(dir, "index.html").isFile());
+
+        try {
+            sink.newOutputStream(new File(dir, "late.html"));
+            fail("Expected the late file to be rejected");
+        } catch (IOException expected) {
+        }
+        assertFalse(new File(dir, "late.html").exists());
+    }
+
+    private static void write(OutputSink sink, File file, byte[] content) throws IOException {
+        OutputStream out = sink.newOutputStream(file);
+        out.write(content);
+        out.close();
+    }
+
+    private static byte[] content(int c, int len) {
+        byte[] content = new byte[len];
+        Arrays.fill(content, (byte)c);
+        return content;
+    }
+}
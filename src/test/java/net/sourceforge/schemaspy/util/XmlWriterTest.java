@@ -0,0 +1,117 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Random;
+import javax.xml.parsers.DocumentBuilderFactory;
+import org.junit.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author John Currier
+ */
+public class XmlWriterTest {
+    private static final String[] VALUES = {
+        "", "plain", "a & b", "<tag>", "say \"hi\"", "it's", "tab\there", "line\nbreak", "cr\r\nlf",
+        "  padded  ", "caf\u00e9", "\u65e5\u672c", "emoji \ud83d\ude00", "select *\n  from t\n where a > 1"
+    };
+
+    @Test
+    public void testSameAsDomSerialization() throws Exception {
+        Random random = new Random(7);
+        for (int run = 0; run < 50; ++run) {
+            Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+            ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+            LineWriter out = new LineWriter(streamed, "UTF-8");
+            XmlWriter writer = new XmlWriter(out, "UTF-8");
+
+            Element root = document.createElement("database");
+            document.appendChild(root);
+            writer.startElement("database");
+            addAttributes(random, root, writer);
+            addChildren(random, root, writer, 0);
+            writer.finish();
+            out.close();
+
+            document.getDocumentElement().normalize();
+            ByteArrayOutputStream printed = new ByteArrayOutputStream();
+            out = new LineWriter(printed, "UTF-8");
+            DOMUtil.printDOM(document, out);
+            out.close();
+
+            assertEquals(printed.toString("UTF-8"), streamed.toString("UTF-8"));
+        }
+    }
+
+    @Test
+    public void testEmptyDocument() throws Exception {
+        Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        document.appendChild(document.createElement("database"));
+        ByteArrayOutputStream printed = new ByteArrayOutputStream();
+        LineWriter out = new LineWriter(printed, "UTF-8");
+        DOMUtil.printDOM(document, out);
+        out.close();
+
+        ByteArrayOutputStream streamed = new ByteArrayOutputStream();
+        out = new LineWriter(streamed, "UTF-8");
+        XmlWriter writer = new XmlWriter(out, "UTF-8");
+        writer.startElement("database");
+        writer.finish();
+        out.close();
+
+        assertEquals(printed.toString("UTF-8"), streamed.toString("UTF-8"));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAttributesMustFollowStartElement() throws Exception {
+        XmlWriter writer = new XmlWriter(new LineWriter(new ByteArrayOutputStream(), "UTF-8"), "UTF-8");
+        writer.startElement("database");
+        writer.startElement("tables");
+        writer.endElement();
+        writer.attribute("name", "too late");
+    }
+
+    private static void addChildren(Random random, Node parent, XmlWriter writer, int depth) throws Exception {
+        int numChildren = depth < 4 ? random.nextInt(4) : 0;
+        for (int i = 0; i < numChildren; ++i) {
+            String name = "element" + random.nextInt(3);
+            Element child = parent.getOwnerDocument().createElement(name);
+            parent.appendChild(child);
+            writer.startElement(name);
+            addAttributes(random, child, writer);
+            addChildren(random, child, writer, depth + 1);
+            writer.endElement();
+        }
+    }
+
+    private static void addAttributes(Random random, Element element, XmlWriter writer) {
+        int numAttributes = random.nextInt(4);
+        for (int i = 0; i < numAttributes; ++i) {
+            String name = "attr" + (char)('a' + random.nextInt(6));
+            String value = VALUES[random.nextInt(VALUES.length)];
+            DOMUtil.appendAttribute(element, name, value);
+            writer.attribute(name, value);
+        }
+    }
+}
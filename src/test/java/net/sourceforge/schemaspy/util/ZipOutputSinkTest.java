@@ -0,0 +1,171 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * @author John Currier
+ */
+public class ZipOutputSinkTest {
+    @Rule
+    public TemporaryFolder temp = new TemporaryFolder();
+
+    @Test
+    public void testEntriesAreRelativeToTheOutputDirectory() throws Exception {
+        File root = new File(temp.getRoot(), "output");
+        File archive = new File(temp.getRoot(), "archives/report.zip");
+        ZipOutputSink sink = new ZipOutputSink(root, archive);
+
+        write(sink, new File(root, "index.html"), "index");
+        write(sink, new File(root, "tables/a.html"), "a");
+        sink.writeStatic(new File(root, "images/tab.gif"), new StaticContent(new byte[] {1, 2, 3}));
+        assertTrue(sink.exists(new File(root, "tables/a.html")));
+        assertFalse(sink.exists(new File(root, "tables/b.html")));
+        assertFalse(new File(root, "index.html").exists());
+        sink.close();
+
+        Map<String, String> entries = read(archive);
+        assertEquals("[index.html, tables/a.html, images/tab.gif]", entries.keySet().toString());
+        assertEquals("index", entries.get("index.html"));
+        assertEquals("\u0001\u0002\u0003", entries.get("images/tab.gif"));
+    }
+
+    @Test
+    public void testDiagramsAreStaged() throws Exception {
+        File root = new File(temp.getRoot(), "output");
+        File archive = new File(temp.getRoot(), "report.zip");
+        ZipOutputSink sink = new ZipOutputSink(root, archive);
+
+        File dot = new File(root, "diagrams/a.1degree.dot");
+        write(sink, dot, "digraph");
+        File local = sink.getLocalFile(dot);
+        assertTrue(local.isFile());
+        assertTrue(sink.exists(dot));
+
+        // the way dot writes its output
+        File png = new File(root, "diagrams/a.1degree.png");
+        File localPng = sink.getLocalFile(png);
+        OutputStream out = new FileOutputStream(localPng);
+        out.write("png".getBytes("UTF-8"));
+        out.close();
+        sink.addLocalFile(png);
+        assertFalse(localPng.exists());
+
+        File unneeded = new File(root, "diagrams/a.2degrees.dot");
+        write(sink, unneeded, "unneeded");
+        assertTrue(sink.delete(unneeded));
+
+        sink.close();
+        assertFalse("scratch directory should be deleted", local.exists());
+        assertFalse(local.getParentFile().exists());
+
+        Map<String, String> entries = read(archive);
+        assertEquals("[diagrams/a.1degree.png, diagrams/a.1degree.dot]", entries.keySet().toString());
+        assertEquals("digraph", entries.get("diagrams/a.1degree.dot"));
+        assertEquals("png", entries.get("diagrams/a.1degree.png"));
+    }
+
+    @Test
+    public void testDuplicatesAreSkipped() throws Exception {
+        File root = new File(temp.getRoot(), "output");
+        File archive = new File(temp.getRoot(), "report.jar");
+        ZipOutputSink sink = new ZipOutputSink(root, archive);
+        write(sink, new File(root, "tables/a.html"), "first");
+        write(sink, new File(root, "tables/a.html"), "second");
+        sink.close();
+
+        Map<String, String> entries = read(archive);
+        assertEquals(1, entries.size());
+        assertEquals("first", entries.get("tables/a.html"));
+    }
+
+    @Test
+    public void testNothingAfterClosed() throws Exception {
+        File root = new File(temp.getRoot(), "output");
+        File archive = new File(temp.getRoot(), "report.zip");
+        ZipOutputSink sink = new ZipOutputSink(root, archive);
+        write(sink, new File(root, "index.html"), "index");
+        sink.close();
+        long length = archive.length();
+        sink.close();   // harmless
+        assertEquals(length, archive.length());
+
+        try {
+            write(sink, new File(root, "late.html"), "late");
+            fail("Expected the late file to be rejected");
+        } catch (IOException expected) {
+        }
+
+        try {
+            sink.newOutputStream(new File(temp.getRoot(), "elsewhere.html"));
+            fail("Expected a file outside of the output directory to be rejected");
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static void write(OutputSink sink, File file, String content) throws IOException {
+        OutputStream out = sink.newOutputStream(file);
+        out.write(content.getBytes("UTF-8"));
+        out.close();
+    }
+
+    /**
+     * Returns the content of each entry by name, in the order that they were added
+     */
+    private static Map<String, String> read(File archive) throws IOException {
+        Map<String, String> entries = new LinkedHashMap<String, String>();
+        ZipFile zip = new ZipFile(archive);
+        try {
+            Enumeration<? extends ZipEntry> e = zip.entries();
+            while (e.hasMoreElements()) {
+                ZipEntry entry = e.nextElement();
+                InputStream in = zip.getInputStream(entry);
+                ByteArrayOutputStream content = new ByteArrayOutputStream();
+                byte[] buf = new byte[4096];
+                int len;
+                while ((len = in.read(buf)) != -1)
+                    content.write(buf, 0, len);
+                in.close();
+                entries.put(entry.getName(), new String(content.toByteArray(), "UTF-8"));
+            }
+        } finally {
+            zip.close();
+        }
+        return entries;
+    }
+}
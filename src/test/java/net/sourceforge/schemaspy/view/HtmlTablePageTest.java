@@ -0,0 +1,83 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.view;
+
+import net.sourceforge.schemaspy.Config;
+import net.sourceforge.schemaspy.FakeCatalog;
+import net.sourceforge.schemaspy.model.Database;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+/**
+ * @author John Currier
+ */
+public class HtmlTablePageTest {
+    @Test
+    public void testDigestIgnoresOptionsThatDontAffectTheOutput() throws Exception {
+        Database db = newDatabase();
+        String digest = digest(db, new Config());
+
+        Config config = new Config();
+        config.setMaxDbThreads(3);
+        config.setMaxSchemaThreads(17);
+        config.setWriteThreads(2);
+        config.setLogLevel("finest");
+        config.setUser("someone");
+        config.setPassword("secret");
+        config.setHost("elsewhere");
+        assertEquals(digest, digest(db, config));
+        assertEquals(digest, digest(db, new Config()));
+    }
+
+    @Test
+    public void testDigestIncludesOptionsThatAffectTheOutput() throws Exception {
+        Database db = newDatabase();
+        String digest = digest(db, new Config());
+
+        Config config = new Config();
+        config.setCss("other.css");
+        assertFalse(digest.equals(digest(db, config)));
+
+        config = new Config();
+        config.setImpliedConstraintsEnabled(false);
+        assertFalse(digest.equals(digest(db, config)));
+
+        config = new Config();
+        config.setNumRowsEnabled(false);
+        assertFalse(digest.equals(digest(db, config)));
+    }
+
+    private static Database newDatabase() throws Exception {
+        FakeCatalog catalog = new FakeCatalog();
+        catalog.table("S", "customer").column("customer_id", "int", 10, false).primaryKey("customer_id");
+        catalog.table("S", "orders").column("order_id", "int", 10, false).column("customer_id", "int", 10, true).primaryKey("order_id");
+        return catalog.analyze("S");
+    }
+
+    private static String digest(Database db, Config config) throws Exception {
+        Config.setThreadInstance(config);
+        try {
+            return HtmlTablePage.getInstance().getInputDigest(db, db.getTablesByName().get("orders"), false, new WriteStats(db.getTables()));
+        } finally {
+            Config.setThreadInstance(null);
+        }
+    }
+}